@@ -28,6 +28,7 @@ import com.amazon.apl.android.APLLayout;
 import com.amazon.apl.android.APLOptions;
 import com.amazon.apl.android.Action;
 import com.amazon.apl.android.Content;
+import com.amazon.apl.android.DocumentState;
 import com.amazon.apl.android.IAPLViewPresenter;
 import com.amazon.apl.android.RootConfig;
 import com.amazon.apl.android.RootContext;
@@ -37,7 +38,9 @@ import com.amazon.apl.android.dependencies.IDataSourceErrorCallback;
 import com.amazon.apl.android.dependencies.IDataSourceFetchCallback;
 import com.amazon.apl.android.dependencies.ISendEventCallback;
 import com.amazon.apl.android.dependencies.IVisualContextListener;
+import com.amazon.apl.android.render.content.APLDocumentCache;
 import com.amazon.apl.android.render.content.APLHttpContentRetriever;
+import com.amazon.apl.android.render.context.VisualContextReporter;
 import com.amazon.apl.android.render.dagger.component.ActivityComponent;
 import com.amazon.apl.android.render.dagger.component.ApplicationComponent;
 import com.amazon.apl.android.render.dagger.component.DaggerActivityComponent;
@@ -95,7 +98,7 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
     private ActivityComponent mActivityComponent;
     private ApplicationComponent mApplicationComponent;
     private RenderDocumentPayload mRenderDocumentPayload;
-    private RenderedDocumentStatePayload mLatestRenderedDocumentState;
+    private VisualContextReporter mVisualContextReporter;
     private String mDefaultWindowId;
     private JSONArray mVisualCharacteristics;
     private Hashtable<String, String> mRuntimeProperties;
@@ -103,6 +106,9 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
     private LocalInfoExtension mLocalInfoExtension;
     private BackExtension mBackHandler;
     private BackStack mBackStack;
+    private final APLDocumentCache mDocumentCache = new APLDocumentCache();
+    private String mDisplayedDocument;
+    private boolean mRestoringDocument;
     private ILocalInfoDataConsumer mLocalInfoDataConsumer;
     private IDismissible mDismissibleCallback;
 
@@ -151,6 +157,7 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
         mVisualCharacteristics = visualCharacteristics;
         mAplEventSender = aplEventSender;
         mDefaultWindowId = defaultWindowId;
+        mVisualContextReporter = new VisualContextReporter(mAplEventSender);
         APLSingleton.getInstance().init(mContext, mAplEventSender, this);
         mApplicationComponent = APLSingleton.getInstance().getApplicationComponent();
         mActivityComponent = initActivityComponent(mContext);
@@ -192,6 +199,7 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
         mVisualCharacteristics = visualCharacteristics;
         mAplEventSender = aplEventSender;
         mDefaultWindowId = defaultWindowId;
+        mVisualContextReporter = new VisualContextReporter(mAplEventSender);
         APLSingleton.getInstance().init(mContext, mAplEventSender, this);
         mApplicationComponent = APLSingleton.getInstance().getApplicationComponent();
         mActivityComponent = initActivityComponent(mContext);
@@ -291,18 +299,7 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
 
             Log.i(TAG, "APL render document token: " + mToken + " windowId: " + mRenderDocumentPayload.getWindowId());
 
-            // Set up content retriever and render callback
-            APLHttpContentRetriever contentRetriever =
-                    new APLHttpContentRetriever(mApplicationComponent.getOkHttpClientWrapper(),
-                            mApplicationComponent.getNetworkExecutor(), mRenderDocumentPayload);
-            contentRetriever.addCompleteCallback(content -> doRender(content));
-
-            // Inflate the document
-            try {
-                Content.create(mRenderDocumentPayload.getDocument(), contentRetriever);
-            } catch (Content.ContentException exception) {
-                Log.e(TAG, exception.getMessage());
-            }
+            inflateDocument(mRenderDocumentPayload, jsonPayload, false);
         } catch (Exception e) {
             Log.e(TAG, e.getMessage());
             renderResponse(token, false, e.getMessage());
@@ -315,12 +312,13 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
         getAplLayout().post(() -> {
             // Clean up current view
             destroyAplView();
+            mDisplayedDocument = null;
             // Clear back stack since skill session is done
             mBackStack.clear();
             // Notify that clear document is done
             mExecutor.submit(() -> {
                 Log.i(TAG, "Clearing card: token: " + token);
-                mLatestRenderedDocumentState = null;
+                mVisualContextReporter.clear();
                 mRenderDocumentPayload = null;
                 mToken = null;
                 sendDeviceWindowState();
@@ -447,8 +445,7 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
                             .versionName(BuildConfig.VERSION_NAME)
                             .componentsVisibleOnScreenArray(compsVisibleOnScreen)
                             .build();
-            mLatestRenderedDocumentState = payload;
-            mAplEventSender.sendContext(mLatestRenderedDocumentState.toString());
+            mVisualContextReporter.update(payload);
         }
     }
 
@@ -493,6 +490,20 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
         mDismissibleCallback = dismissibleCallback;
     }
 
+    @Override
+    public void requestVisualContext() {
+        mVisualContextReporter.requestContext();
+    }
+
+    /**
+     * Sets the minimum time between two visual contexts sent for updates of the rendered document.
+     *
+     * @param frameBudgetMs Minimum time in milliseconds, 0 to send every update that changes the visual context.
+     */
+    public void setVisualContextFrameBudget(long frameBudgetMs) {
+        mVisualContextReporter.setFrameBudget(frameBudgetMs);
+    }
+
     @Override
     public void cancelExecution() {
         if (mAplController != null) {
@@ -531,6 +542,8 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
 
             String userEvent = new UserEventPayload(getToken(), jsonArgs, jsonComponents, jsonSources).toString();
             Log.v(TAG, "UserEvent: " + userEvent);
+            // Send the context the event was raised in before the event, a coalesced update may still be pending
+            requestVisualContext();
             mAplEventSender.sendUserEventRequest(userEvent);
         } catch (Exception e) {
             Log.e(TAG, e.getMessage());
@@ -594,6 +607,10 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
     @Override
     public void onDocumentRender(@NonNull RootContext rootContext) {
         Log.v(TAG, "onDocumentRender: ");
+        if (mRestoringDocument) {
+            mRestoringDocument = false;
+            return;
+        }
         renderResponse(getToken(), true, "");
     }
 
@@ -663,14 +680,49 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
         }
     }
 
+    /**
+     * Inflate and render a document.
+     *
+     * @param payload the render document payload
+     * @param jsonPayload the render document payload as received, kept as the snapshot of the document in the back
+     *         stack
+     * @param restore whether the document is restored from the back stack
+     */
+    private void inflateDocument(RenderDocumentPayload payload, String jsonPayload, boolean restore) {
+        // Render the content inflated before when the same document is rendered with the same datasources
+        String documentKey = APLDocumentCache.getKey(payload.getDocument());
+        String dataKey = APLDocumentCache.getKey(String.valueOf(payload.getDataSources()));
+        Content cachedContent = mDocumentCache.getContent(documentKey, dataKey);
+        if (cachedContent != null) {
+            Log.i(TAG, "Rendering cached content of document " + documentKey);
+            getAplLayout().post(() -> doRender(cachedContent, jsonPayload, restore));
+            return;
+        }
+
+        // Set up content retriever and render callback
+        APLHttpContentRetriever contentRetriever =
+                new APLHttpContentRetriever(mApplicationComponent.getPackageStore(), mDocumentCache, documentKey,
+                        dataKey, mApplicationComponent.getExecutorService(), payload);
+        contentRetriever.addCompleteCallback(content -> doRender(content, jsonPayload, restore));
+
+        // Inflate the document
+        try {
+            Content.create(payload.getDocument(), contentRetriever);
+        } catch (Content.ContentException exception) {
+            Log.e(TAG, exception.getMessage());
+        }
+    }
+
     /**
      * Render the document.
      *
      * @param content the inflated contents
+     * @param jsonPayload the render document payload of the contents
+     * @param restore whether the document is restored from the back stack
      */
-    private void doRender(Content content) {
-        // Finish the old document
-        destroyAplView();
+    private void doRender(Content content, String jsonPayload, boolean restore) {
+        // Finish the old document, it is already off the back stack when going back
+        destroyAplView(!restore);
         applyScaling();
 
         mExtensionManager = new ExtensionManager(mRootConfig);
@@ -695,10 +747,11 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
         }
 
         // Register extension and render when done
-        mExtensionManager.registerRequestedExtensions(extensionRequests, () -> performLayout(content));
+        mExtensionManager.registerRequestedExtensions(
+                extensionRequests, () -> performLayout(content, jsonPayload, restore));
     }
 
-    private void performLayout(Content content) {
+    private void performLayout(Content content, String jsonPayload, boolean restore) {
         // Make sure mAplLayout is inflated and initialized
         APLLayout aplLayout = getAplLayout();
         APLOptions options = getAPLOptions();
@@ -708,7 +761,10 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
                 IAPLViewPresenter presenter = aplLayout.getPresenter();
                 aplLayout.getPresenter().addDocumentLifecycleListener(this);
                 try {
+                    // The result of a document restored from the back stack is not reported
+                    mRestoringDocument = restore;
                     mAplController = APLController.renderDocument(content, options, mRootConfig, presenter);
+                    mDisplayedDocument = jsonPayload;
                     sendDeviceWindowState();
                     updateRuntimeProperties();
                 } catch (Exception e) {
@@ -732,13 +788,22 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
     /**
      * Clean up rendering session.
      */
-    private synchronized void destroyAplView() {
+    private void destroyAplView() {
+        destroyAplView(true);
+    }
+
+    /**
+     * Clean up rendering session.
+     *
+     * @param addToBackStack whether the document is added to the back stack.
+     */
+    private synchronized void destroyAplView(boolean addToBackStack) {
         if (mAplController == null) {
             return;
         } else {
-            if (mBackHandler != null) {
-                BackStackDocument document =
-                        new BackStackDocument(mBackHandler.getDocumentId(), mAplController.getDocumentState());
+            if (addToBackStack && mBackHandler != null) {
+                BackStackDocument document = new BackStackDocument(
+                        mBackHandler.getDocumentId(), mAplController.getDocumentState(), mDisplayedDocument);
                 mBackHandler.addDocument(document);
             }
         }
@@ -840,15 +905,36 @@ public class APLPresenter implements IPresenter, ISendEventCallback, IDataSource
     //-------------------------------------------------------------------------
 
     public void goBack(@NonNull BackStackDocument backStackDocument) {
+        DocumentState documentState = backStackDocument.getDocumentState();
+        if (documentState == null) {
+            // The document was demoted to its snapshot, render it again
+            try {
+                String jsonPayload = backStackDocument.getSnapshot();
+                inflateDocument(RenderDocumentUtils.convertToRenderDocument(jsonPayload), jsonPayload, true);
+            } catch (Exception e) {
+                Log.e(TAG, "Document failed to restore from snapshot.", e);
+            }
+            return;
+        }
         getAplLayout().post(() -> {
             mAplController.finishDocument();
-            backStackDocument.getDocumentState().setOptions(getAPLOptions());
+            documentState.setOptions(getAPLOptions());
             try {
-                mAplController = APLController.restoreDocument(
-                        backStackDocument.getDocumentState(), getAplLayout().getPresenter());
+                mAplController = APLController.restoreDocument(documentState, getAplLayout().getPresenter());
+                mDisplayedDocument = backStackDocument.getSnapshot();
             } catch (APLController.APLException e) {
                 Log.e(TAG, "Document failed to restore.");
             }
         });
     }
+
+    /**
+     * Sets the budget of the back stack.
+     *
+     * @param maxLiveDocuments Number of the most recent documents kept with their inflated state.
+     * @param maxSnapshotBytes Size of the snapshots kept in the back stack.
+     */
+    public void setBackStackBudget(int maxLiveDocuments, long maxSnapshotBytes) {
+        mBackStack.setBudget(maxLiveDocuments, maxSnapshotBytes);
+    }
 }
@@ -64,6 +64,7 @@ public class APLSingleton {
         final NetworkExecutor networkExecutor = mApplicationComponent.getNetworkExecutor();
 
         networkExecutor.execute(() -> mApplicationComponent.getOkHttpClientWrapper().init());
+        mApplicationComponent.getPackageStore().prewarm();
     }
 
     public ApplicationComponent getApplicationComponent() {
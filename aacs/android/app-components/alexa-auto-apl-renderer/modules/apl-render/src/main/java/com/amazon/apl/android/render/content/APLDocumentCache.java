@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.apl.android.render.content;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.amazon.apl.android.Content;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the recently rendered documents, by a hash of the document.
+ *
+ * For every document, the cache keeps the packages its imports resolved to, so that the imports of a repeat render
+ * are resolved from memory without looking them up again. The inflated {@link Content} of the last render is kept
+ * too. It can be rendered again as is when the datasources did not change, for example when a card is shown again.
+ * A {@link Content} is bound to its datasources when it is inflated, so a render with other datasources inflates a
+ * new {@link Content} with the cached imports.
+ */
+public class APLDocumentCache {
+    private static final int MAX_DOCUMENTS = 8;
+
+    private final LruCache<String, CachedDocument> mDocuments = new LruCache<>(MAX_DOCUMENTS);
+
+    private static class CachedDocument {
+        final Map<String, String> mImports = new ConcurrentHashMap<>();
+        String mDataKey;
+        Content mContent;
+    }
+
+    /**
+     * @param value Document or datasources of a render.
+     * @return Key of {@code value} in the cache.
+     */
+    @NonNull
+    public static String getKey(@Nullable String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((value != null ? value : "").getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param documentKey Key of the document.
+     * @param dataKey Key of the datasources.
+     * @return The content inflated for the document and datasources, or {@code null} if it is not cached.
+     */
+    @Nullable
+    public Content getContent(@NonNull String documentKey, @NonNull String dataKey) {
+        CachedDocument document = mDocuments.get(documentKey);
+        if (document == null) {
+            return null;
+        }
+        synchronized (document) {
+            return dataKey.equals(document.mDataKey) ? document.mContent : null;
+        }
+    }
+
+    /**
+     * Keeps the content inflated for a document and datasources, in place of the one inflated before.
+     */
+    public void putContent(@NonNull String documentKey, @NonNull String dataKey, @NonNull Content content) {
+        CachedDocument document = getOrCreate(documentKey);
+        synchronized (document) {
+            document.mDataKey = dataKey;
+            document.mContent = content;
+        }
+    }
+
+    /**
+     * @param documentKey Key of the document.
+     * @param importKey Key of the import, see {@link #getImportKey(Content.ImportRequest)}.
+     * @return The package that the import of the document resolved to, or {@code null} if it is not cached.
+     */
+    @Nullable
+    public String getImport(@NonNull String documentKey, @NonNull String importKey) {
+        CachedDocument document = mDocuments.get(documentKey);
+        return document != null ? document.mImports.get(importKey) : null;
+    }
+
+    public void putImport(@NonNull String documentKey, @NonNull String importKey, @NonNull String packageContent) {
+        getOrCreate(documentKey).mImports.put(importKey, packageContent);
+    }
+
+    /**
+     * @return Key of an import, its source if it has one or its name and version.
+     */
+    @NonNull
+    public static String getImportKey(@NonNull Content.ImportRequest request) {
+        String source = request.getSource();
+        if (source != null && !source.isEmpty()) {
+            return source;
+        }
+        return request.getPackageName() + "@" + request.getVersion();
+    }
+
+    private synchronized CachedDocument getOrCreate(String documentKey) {
+        CachedDocument document = mDocuments.get(documentKey);
+        if (document == null) {
+            document = new CachedDocument();
+            mDocuments.put(documentKey, document);
+        }
+        return document;
+    }
+}
@@ -22,17 +22,13 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 
 import com.amazon.apl.android.Content;
-import com.amazon.apl.android.render.network.OkHttpClientWrapper;
+import com.amazon.apl.android.render.network.APLPackageStore;
 import com.amazon.apl.android.render.payload.RenderDocumentPayload;
-import com.amazon.apl.android.thread.SequentialExecutor;
 
 import org.json.JSONObject;
 
-import java.io.IOException;
-
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.Response;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * This class is used during the APL rendering process to download
@@ -47,15 +43,30 @@ public class APLHttpContentRetriever extends Content.Callback {
     // Name of the mainTemplate parameter to which entire datasources payload is bound to.
     private static final String PARAM_PAYLOAD = "payload";
 
-    private final OkHttpClientWrapper mOkHttpClient;
-    private final SequentialExecutor mNetworkExecutor;
+    private final APLPackageStore mPackageStore;
+    private final APLDocumentCache mDocumentCache;
+    private final String mDocumentKey;
+    private final String mDataKey;
+    private final Executor mExecutor;
     private final RenderDocumentPayload mPayload;
     private CompleteCallback mCallback;
 
-    public APLHttpContentRetriever(@NonNull OkHttpClientWrapper okHttpClient,
-            @NonNull SequentialExecutor networkExecutor, @NonNull RenderDocumentPayload payload) {
-        mNetworkExecutor = networkExecutor;
-        mOkHttpClient = okHttpClient;
+    /**
+     * @param packageStore Store that resolves the imported packages.
+     * @param documentCache Cache that keeps the resolved imports and the inflated content of the document.
+     * @param documentKey Key of the document in {@code documentCache}.
+     * @param dataKey Key of the datasources in {@code documentCache}.
+     * @param executor Executor on which the resolved packages are added to the content.
+     * @param payload Payload of the document.
+     */
+    public APLHttpContentRetriever(@NonNull APLPackageStore packageStore, @NonNull APLDocumentCache documentCache,
+            @NonNull String documentKey, @NonNull String dataKey, @NonNull Executor executor,
+            @NonNull RenderDocumentPayload payload) {
+        mPackageStore = packageStore;
+        mDocumentCache = documentCache;
+        mDocumentKey = documentKey;
+        mDataKey = dataKey;
+        mExecutor = executor;
         mPayload = payload;
     }
 
@@ -69,17 +80,42 @@ public class APLHttpContentRetriever extends Content.Callback {
         return CLOUDFRONT_LOCATION_PREFIX + packageName + "/" + version + CLOUDFRONT_LOCATION_SUFFIX;
     }
 
+    /**
+     * Resolves every import as soon as it is requested, so that all imports of a document load in parallel. The
+     * imports of a document rendered before are resolved from the document cache.
+     */
     @Override
     public void onPackageRequest(final Content content, final Content.ImportRequest request) {
-        final String url = TextUtils.isEmpty(request.getSource())
-                ? getDefaultPackageUrl(request.getPackageName(), request.getVersion())
-                : request.getSource();
-        if (TextUtils.isEmpty(url)) {
+        final String importKey = APLDocumentCache.getImportKey(request);
+        final String cachedPackage = mDocumentCache.getImport(mDocumentKey, importKey);
+        final CompletableFuture<String> packageFuture;
+        if (cachedPackage != null) {
+            packageFuture = CompletableFuture.completedFuture(cachedPackage);
+        } else if (!TextUtils.isEmpty(request.getSource())) {
+            packageFuture = mPackageStore.getPackage(request.getSource());
+        } else if (!TextUtils.isEmpty(request.getPackageName()) && !TextUtils.isEmpty(request.getVersion())) {
+            packageFuture = mPackageStore.getPackage(request.getPackageName(), request.getVersion(),
+                    getDefaultPackageUrl(request.getPackageName(), request.getVersion()));
+        } else {
             Log.e(TAG, "Empty url, cannot fetch package");
             return;
         }
 
-        mNetworkExecutor.execute(new LoadContentRequest(mOkHttpClient, url, content, request));
+        // Never add the package from within this callback, even when it is already in memory
+        packageFuture.whenCompleteAsync((packageContent, throwable) -> {
+            if (throwable != null) {
+                Log.e(TAG, "Failed to load package " + request.getPackageName() + ". " + throwable.getMessage());
+                return;
+            }
+            if (cachedPackage == null) {
+                mDocumentCache.putImport(mDocumentKey, importKey, packageContent);
+            }
+            try {
+                content.addPackage(request, packageContent);
+            } catch (Content.ContentException ex) {
+                Log.e(TAG, "Add package content failed.", ex);
+            }
+        }, mExecutor);
     }
 
     @Override
@@ -89,6 +125,7 @@ public class APLHttpContentRetriever extends Content.Callback {
 
     @Override
     public void onComplete(Content content) {
+        mDocumentCache.putContent(mDocumentKey, mDataKey, content);
         Handler handler = new Handler(Looper.getMainLooper());
         handler.post(() -> {
             if (mCallback != null) {
@@ -99,62 +136,8 @@ public class APLHttpContentRetriever extends Content.Callback {
 
     @Override
     public void onError(final Content content) {
+        // Package loads are not cancelled, they may be shared with other documents and are stored for later use
         Log.e(TAG, "On APL error");
-        mOkHttpClient.cancelAll();
-    }
-
-    static final class LoadContentRequest implements Runnable {
-        private final static int CONTENT_LENGTH_UNKNOWN_SIZE = -1;
-        private final String mUrl;
-        private final OkHttpClientWrapper mOkHttpClient;
-        private final Content mContent;
-        private final Content.ImportRequest mRequest;
-
-        LoadContentRequest(@NonNull final OkHttpClientWrapper okHttpClient, @NonNull final String url,
-                @NonNull final Content content, @NonNull final Content.ImportRequest request) {
-            mUrl = url;
-            mOkHttpClient = okHttpClient;
-            mContent = content;
-            mRequest = request;
-        }
-
-        @Override
-        public void run() {
-            mOkHttpClient.newCall(mUrl).enqueue(new Callback() {
-                @Override
-                public void onFailure(@lombok.NonNull final Call call, @lombok.NonNull final IOException e) {
-                    Log.e(TAG, "OkHttp failure. " + e.getMessage());
-                }
-
-                @Override
-                public void onResponse(@lombok.NonNull final Call call, @lombok.NonNull final Response response) {
-                    if (response.isSuccessful()) {
-                        assert response.body() != null;
-
-                        try {
-                            final boolean isCacheHit = response.cacheResponse() != null;
-                            final boolean isNetworkHit = response.networkResponse() != null;
-
-                            Log.i(TAG, "onResponse: cacheHit: " + isCacheHit + " networkHit: " + isNetworkHit);
-
-                            // If content length is -1, then this means that the response size is unknown
-                            // and is streamed to get the content. In this case we are reporting response
-                            // size as -1 and the whole set of imports size is ignored inside ImportTracker.
-                            final long contentLength = response.body().contentLength();
-                            mContent.addPackage(mRequest, response.body().string());
-                        } catch (IOException e) {
-                            Log.e(TAG, "OkHttp response error. " + e.getMessage());
-                        } catch (Content.ContentException ex) {
-                            Log.e(TAG, "Add package content failed.", ex);
-                        } finally {
-                            response.close();
-                        }
-                    } else {
-                        Log.e(TAG, "OkHttp response failure, code: " + response.code());
-                    }
-                }
-            });
-        }
     }
 
     void onDataSourceContentRequest(final Content content, final String dataId, final RenderDocumentPayload payload) {
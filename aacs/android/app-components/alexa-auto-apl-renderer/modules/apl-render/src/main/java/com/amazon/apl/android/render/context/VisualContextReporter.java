@@ -0,0 +1,138 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.apl.android.render.context;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.amazon.apl.android.render.interfaces.IAPLEventSender;
+import com.amazon.apl.android.render.payload.RenderedDocumentStatePayload;
+
+/**
+ * Reports the visual context of the rendered document.
+ *
+ * The APL runtime reports the visual context every time the document changes, which can be every frame while the
+ * document scrolls or animates. Updates are coalesced so that at most one context is sent per frame budget, and a
+ * context is sent only when the components visible on screen differ from the last context sent. Requests for the
+ * context, such as before a user event is sent, are answered immediately with the latest update.
+ */
+public class VisualContextReporter {
+    private static final String TAG = VisualContextReporter.class.getSimpleName();
+
+    public static final long DEFAULT_FRAME_BUDGET_MS = 100;
+
+    private final IAPLEventSender mAplEventSender;
+    private final Handler mHandler;
+    private final Runnable mFlush = this::flush;
+
+    private long mFrameBudgetMs = DEFAULT_FRAME_BUDGET_MS;
+    private RenderedDocumentStatePayload mLatestState;
+    private boolean mFlushPending;
+    private long mLastSentTime;
+    private String mLastSentContext;
+    private int mLastSentHash;
+
+    /**
+     * @param aplEventSender The object used to send the context.
+     */
+    public VisualContextReporter(@NonNull IAPLEventSender aplEventSender) {
+        mAplEventSender = aplEventSender;
+        mHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Sets the minimum time between two contexts sent for updates.
+     *
+     * @param frameBudgetMs Minimum time in milliseconds, 0 to send every update that changes the context.
+     */
+    public synchronized void setFrameBudget(long frameBudgetMs) {
+        mFrameBudgetMs = Math.max(0, frameBudgetMs);
+    }
+
+    /**
+     * Reports an update of the visual context. It is sent at the end of the current frame budget if it is still the
+     * latest update and it changed the context.
+     *
+     * @param state The rendered document state.
+     */
+    public synchronized void update(@NonNull RenderedDocumentStatePayload state) {
+        mLatestState = state;
+        if (mFlushPending) {
+            return;
+        }
+        mFlushPending = true;
+        long delay = Math.max(0, mLastSentTime + mFrameBudgetMs - SystemClock.uptimeMillis());
+        mHandler.postDelayed(mFlush, delay);
+    }
+
+    /**
+     * Sends the latest visual context immediately, even if it did not change since it was last sent.
+     */
+    public void requestContext() {
+        String context;
+        synchronized (this) {
+            mHandler.removeCallbacks(mFlush);
+            mFlushPending = false;
+            context = takeContext(true);
+        }
+        if (context != null) {
+            mAplEventSender.sendContext(context);
+        }
+    }
+
+    /**
+     * Forgets the visual context when the document is cleared. Pending updates are dropped.
+     */
+    public synchronized void clear() {
+        mHandler.removeCallbacks(mFlush);
+        mFlushPending = false;
+        mLatestState = null;
+        mLastSentContext = null;
+        mLastSentHash = 0;
+    }
+
+    private void flush() {
+        String context;
+        synchronized (this) {
+            mFlushPending = false;
+            context = takeContext(false);
+        }
+        if (context != null) {
+            mAplEventSender.sendContext(context);
+        }
+    }
+
+    private String takeContext(boolean force) {
+        if (mLatestState == null) {
+            return null;
+        }
+        String context = mLatestState.toString();
+        // Compare the hashes first, most updates that change the context change its hash
+        int hash = context.hashCode();
+        if (!force && hash == mLastSentHash && context.equals(mLastSentContext)) {
+            Log.v(TAG, "Visual context unchanged, not sent");
+            return null;
+        }
+        mLastSentContext = context;
+        mLastSentHash = hash;
+        mLastSentTime = SystemClock.uptimeMillis();
+        return context;
+    }
+}
@@ -26,6 +26,7 @@ import com.amazon.apl.android.render.dagger.module.TtsModule;
 import com.amazon.apl.android.render.interfaces.IAPLEventSender;
 import com.amazon.apl.android.render.interfaces.IAPLTokenProvider;
 import com.amazon.apl.android.render.media.APLMediaPlayerProvider;
+import com.amazon.apl.android.render.network.APLPackageStore;
 import com.amazon.apl.android.render.network.NetworkExecutor;
 import com.amazon.apl.android.render.network.OkHttpClientWrapper;
 import com.amazon.apl.android.render.tts.APLTtsPlayerProvider;
@@ -60,6 +61,11 @@ public interface ApplicationComponent {
      */
     OkHttpClientWrapper getOkHttpClientWrapper();
 
+    /**
+     * @return The {@link APLPackageStore}.
+     */
+    APLPackageStore getPackageStore();
+
     /**
      * @return The {@link APLTtsPlayerProvider}
      */
@@ -19,9 +19,13 @@ import android.content.Context;
 
 import com.amazon.apl.android.render.dagger.ApplicationContext;
 import com.amazon.apl.android.render.dagger.ApplicationScope;
+import com.amazon.apl.android.render.network.APLPackageStore;
 import com.amazon.apl.android.render.network.NetworkExecutor;
 import com.amazon.apl.android.render.network.OkHttpClientWrapper;
 
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+
 import dagger.Lazy;
 import dagger.Module;
 import dagger.Provides;
@@ -34,6 +38,7 @@ import okhttp3.OkHttpClient;
 @Module(includes = {ApplicationModule.class})
 public class NetworkModule {
     private static final long CACHE_SIZE = 4L * 1024L * 1024L; // cache size 4MiB on disk
+    private static final String PACKAGE_STORE_DIRECTORY = "apl-packages";
 
     /**
      * Provides an instance of {@link OkHttpClient}.
@@ -71,6 +76,22 @@ public class NetworkModule {
         return new Cache(context.getCacheDir(), CACHE_SIZE);
     }
 
+    /**
+     * Provides the store of APL packages.
+     *
+     * @param okHttpClient the OkHttp client wrapper used to download packages.
+     * @param context The application {@link Context}.
+     * @param executorService The executor used to read and write the store.
+     * @return An instance of {@link APLPackageStore}.
+     */
+    @Provides
+    @ApplicationScope
+    APLPackageStore providePackageStore(OkHttpClientWrapper okHttpClient,
+            @ApplicationContext final Context context, ExecutorService executorService) {
+        return new APLPackageStore(okHttpClient, new File(context.getFilesDir(), PACKAGE_STORE_DIRECTORY),
+                executorService);
+    }
+
     @Provides
     @ApplicationScope
     NetworkExecutor provideNetworkExecutor() {
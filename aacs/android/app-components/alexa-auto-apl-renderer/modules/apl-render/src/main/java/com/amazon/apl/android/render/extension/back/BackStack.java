@@ -30,15 +30,46 @@ import java.util.List;
  *
  * APL-Spec https://developer.amazon.com/en-US/docs/alexa/alexa-presentation-language/apl-ext-backstack.html
  *
+ * The stack is bounded. Only the most recent documents keep their inflated state, the older ones are demoted to
+ * their snapshots, see {@link BackStackDocument}. The oldest documents are dropped when the snapshots exceed their
+ * size budget.
+ *
  * Note:
  * The top of the stack is {@link BackStack#length()} - 1.
  */
 public class BackStack {
     private static final String TAG = BackStack.class.getSimpleName();
 
+    public static final int DEFAULT_MAX_LIVE_DOCUMENTS = 2;
+    public static final long DEFAULT_MAX_SNAPSHOT_BYTES = 2 * 1024 * 1024;
+
     private ArrayDeque<BackStackDocument> mDocuments;
+    private int mMaxLiveDocuments;
+    private long mMaxSnapshotBytes;
+
     public BackStack() {
+        this(DEFAULT_MAX_LIVE_DOCUMENTS, DEFAULT_MAX_SNAPSHOT_BYTES);
+    }
+
+    /**
+     * @param maxLiveDocuments Number of the most recent documents kept with their inflated state.
+     * @param maxSnapshotBytes Size of the snapshots of all the documents.
+     */
+    public BackStack(int maxLiveDocuments, long maxSnapshotBytes) {
         mDocuments = new ArrayDeque<>();
+        mMaxLiveDocuments = maxLiveDocuments;
+        mMaxSnapshotBytes = maxSnapshotBytes;
+    }
+
+    /**
+     * Sets the budget of the stack and trims it to the budget.
+     * @param maxLiveDocuments Number of the most recent documents kept with their inflated state.
+     * @param maxSnapshotBytes Size of the snapshots of all the documents.
+     */
+    public void setBudget(int maxLiveDocuments, long maxSnapshotBytes) {
+        mMaxLiveDocuments = maxLiveDocuments;
+        mMaxSnapshotBytes = maxSnapshotBytes;
+        trim();
     }
 
     /**
@@ -48,6 +79,38 @@ public class BackStack {
     void addDocument(@NonNull BackStackDocument backStackDocument) {
         Log.v(TAG, "addDocument: " + backStackDocument.hashCode());
         mDocuments.addLast(backStackDocument);
+        trim();
+    }
+
+    /**
+     * Demotes the documents older than the most recent live ones, and drops the oldest documents when the
+     * snapshots exceed their budget. A document that has no snapshot is dropped instead of demoted.
+     */
+    private void trim() {
+        int documents = 0;
+        int liveDocuments = 0;
+        long snapshotBytes = 0;
+        boolean dropping = false;
+        for (Iterator<BackStackDocument> itr = mDocuments.descendingIterator(); itr.hasNext();) {
+            BackStackDocument document = itr.next();
+            snapshotBytes += document.getSnapshotBytes();
+            // Never drop the most recent document for its size, it is the one to go back to
+            if (documents++ > 0 && snapshotBytes > mMaxSnapshotBytes) {
+                dropping = true;
+            }
+            if (!dropping && document.isLive() && ++liveDocuments > mMaxLiveDocuments) {
+                if (document.getSnapshot() != null) {
+                    Log.v(TAG, "demote: " + document.hashCode());
+                    document.demote();
+                } else {
+                    dropping = true;
+                }
+            }
+            if (dropping) {
+                Log.v(TAG, "drop: " + document.hashCode());
+                itr.remove();
+            }
+        }
     }
 
     /**
@@ -18,6 +18,7 @@ package com.amazon.apl.android.render.extension.back;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.amazon.apl.android.DocumentState;
 
@@ -27,6 +28,10 @@ import java.util.Objects;
 
 /**
  * Maintains a document with a specified ID in the backstack.
+ *
+ * A document is kept with its inflated state until the back stack demotes it to its snapshot, the render document
+ * payload it was rendered from, to release the memory of the state. A demoted document is rendered again from its
+ * snapshot when the back stack goes back to it, without the state it had, such as its scroll position or page.
  */
 public class BackStackDocument {
     private static final String TAG = BackStackDocument.class.getSimpleName();
@@ -38,10 +43,16 @@ public class BackStackDocument {
     private final String mDocumentId;
 
     /**
-     * The document's cached state.
+     * The document's cached state, or null once the document is demoted to its snapshot.
      */
-    @NonNull
-    private final DocumentState mDocumentState;
+    @Nullable
+    private DocumentState mDocumentState;
+
+    /**
+     * The render document payload of the document, or null if it is not known.
+     */
+    @Nullable
+    private final String mSnapshot;
 
     /**
      * Map of metadata that can be attached to this document. Metadata
@@ -57,8 +68,20 @@ public class BackStackDocument {
      * @param documentState the document's cached state
      */
     public BackStackDocument(@NonNull final String documentId, @NonNull final DocumentState documentState) {
+        this(documentId, documentState, null);
+    }
+
+    /**
+     * Creates a BackStack document to add to the backstack.
+     * @param documentId    the backstackId
+     * @param documentState the document's cached state
+     * @param snapshot      the render document payload of the document
+     */
+    public BackStackDocument(@NonNull final String documentId, @NonNull final DocumentState documentState,
+            @Nullable final String snapshot) {
         mDocumentId = documentId;
         mDocumentState = documentState;
+        mSnapshot = snapshot;
     }
 
     /**
@@ -72,13 +95,43 @@ public class BackStackDocument {
 
     /**
      * Return the cached document.
-     * @return the document's cached state.
+     * @return the document's cached state, or null if the document was demoted to its snapshot.
      */
-    @NonNull
+    @Nullable
     public DocumentState getDocumentState() {
         return mDocumentState;
     }
 
+    /**
+     * Return the snapshot of the document.
+     * @return the render document payload of the document, or null if it is not known.
+     */
+    @Nullable
+    public String getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * @return true if the document is kept with its cached state.
+     */
+    boolean isLive() {
+        return mDocumentState != null;
+    }
+
+    /**
+     * @return the size of the snapshot in memory.
+     */
+    long getSnapshotBytes() {
+        return mSnapshot != null ? 2L * mSnapshot.length() : 0;
+    }
+
+    /**
+     * Releases the cached state, the document can then only be restored from its snapshot.
+     */
+    void demote() {
+        mDocumentState = null;
+    }
+
     /**
      * Return metadata associated with this document using a key.
      * @param key the key
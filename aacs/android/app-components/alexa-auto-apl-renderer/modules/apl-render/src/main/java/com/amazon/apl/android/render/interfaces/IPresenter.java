@@ -67,6 +67,11 @@ public interface IPresenter
      */
     void setDismissibleCallback(IDismissible dismissibleCallback);
 
+    /**
+     * Sends the visual context of the rendered document immediately, for example when it is requested for an event.
+     */
+    void requestVisualContext();
+
     /**
      * This should be called to stop execution when there is a barge in.
      */
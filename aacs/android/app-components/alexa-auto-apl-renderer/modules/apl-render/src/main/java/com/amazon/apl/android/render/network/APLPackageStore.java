@@ -0,0 +1,266 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.apl.android.render.network;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Resolves APL package imports.
+ *
+ * Packages imported by name and version from the default location are immutable, so they are kept in a store on disk
+ * keyed by name and version, and never requested again once stored. Concurrent requests for the same package, for
+ * example from two documents rendered at the same time, share a single load. Packages imported from another source
+ * go through {@link OkHttpClientWrapper} and its HTTP cache.
+ */
+public class APLPackageStore {
+    private static final String TAG = APLPackageStore.class.getSimpleName();
+
+    // Packages imported by nearly every document, loaded into memory by prewarm()
+    private static final String[] PREWARM_PACKAGES = {"alexa-layouts", "alexa-styles", "alexa-viewport-profiles"};
+    private static final int MAX_STORED_PACKAGES = 64;
+    private static final int MEMORY_CACHE_SIZE_CHARS = 2 * 1024 * 1024;
+    private static final String PACKAGE_FILE_SUFFIX = ".json";
+
+    private final OkHttpClientWrapper mOkHttpClient;
+    private final File mDirectory;
+    private final Executor mDiskExecutor;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> mLoads = new ConcurrentHashMap<>();
+    private final LruCache<String, String> mMemoryCache = new LruCache<String, String>(MEMORY_CACHE_SIZE_CHARS) {
+        @Override
+        protected int sizeOf(String key, String value) {
+            return value.length();
+        }
+    };
+
+    /**
+     * @param okHttpClient Client used to download packages.
+     * @param directory Directory of the package store.
+     * @param diskExecutor Executor used to read and write the package store.
+     */
+    public APLPackageStore(
+            @NonNull OkHttpClientWrapper okHttpClient, @NonNull File directory, @NonNull Executor diskExecutor) {
+        mOkHttpClient = okHttpClient;
+        mDirectory = directory;
+        mDiskExecutor = diskExecutor;
+    }
+
+    /**
+     * Gets an immutable package, from memory, from the package store or from {@code url}, in that order.
+     *
+     * @param name Name of the package.
+     * @param version Version of the package.
+     * @param url Location of the package.
+     * @return Future completed with the package.
+     */
+    public CompletableFuture<String> getPackage(
+            @NonNull String name, @NonNull String version, @NonNull String url) {
+        String fileName = getFileName(name, version);
+        String cached = mMemoryCache.get(fileName);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return load(fileName, () -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            mDiskExecutor.execute(() -> {
+                String stored = read(fileName);
+                if (stored != null) {
+                    mMemoryCache.put(fileName, stored);
+                    future.complete(stored);
+                } else {
+                    download(url, fileName, future);
+                }
+            });
+            return future;
+        });
+    }
+
+    /**
+     * Gets a package that is not versioned from {@code url}.
+     *
+     * @param url Location of the package.
+     * @return Future completed with the package.
+     */
+    public CompletableFuture<String> getPackage(@NonNull String url) {
+        return load(url, () -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            download(url, null, future);
+            return future;
+        });
+    }
+
+    /**
+     * Loads the stored versions of the packages that nearly every document imports into memory, so that the first
+     * document does not wait for the disk.
+     */
+    public void prewarm() {
+        mDiskExecutor.execute(() -> {
+            File[] files = mDirectory.listFiles();
+            if (files == null) {
+                return;
+            }
+            for (File file : files) {
+                for (String packageName : PREWARM_PACKAGES) {
+                    if (file.getName().startsWith(encode(packageName) + "@")) {
+                        String stored = read(file.getName());
+                        if (stored != null) {
+                            mMemoryCache.put(file.getName(), stored);
+                            Log.d(TAG, "Prewarmed " + file.getName());
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private interface LoadFactory { CompletableFuture<String> start(); }
+
+    private CompletableFuture<String> load(String key, LoadFactory factory) {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = mLoads.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        factory.start().whenComplete((result, throwable) -> {
+            mLoads.remove(key, created);
+            if (throwable != null) {
+                created.completeExceptionally(throwable);
+            } else {
+                created.complete(result);
+            }
+        });
+        return created;
+    }
+
+    private void download(String url, String fileName, CompletableFuture<String> future) {
+        mOkHttpClient.newCall(url).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        future.completeExceptionally(new IOException("Response code " + response.code()));
+                        return;
+                    }
+                    Log.i(TAG,
+                            "onResponse: cacheHit: " + (response.cacheResponse() != null)
+                                    + " networkHit: " + (response.networkResponse() != null));
+                    String content = body.string();
+                    if (fileName != null) {
+                        mMemoryCache.put(fileName, content);
+                        mDiskExecutor.execute(() -> write(fileName, content));
+                    }
+                    future.complete(content);
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    private String read(String fileName) {
+        File file = new File(mDirectory, fileName);
+        if (!file.isFile()) {
+            return null;
+        }
+        StringBuilder content = new StringBuilder((int) file.length());
+        char[] buffer = new char[8192];
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read stored package " + fileName + ": " + e.getMessage());
+            return null;
+        }
+        // Keep the most recently used packages when the store is trimmed
+        file.setLastModified(System.currentTimeMillis());
+        return content.toString();
+    }
+
+    private void write(String fileName, String content) {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Failed to create package store " + mDirectory);
+            return;
+        }
+        // Write to a temporary file first so that a package is never read partially written
+        File temporary = new File(mDirectory, fileName + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to store package " + fileName + ": " + e.getMessage());
+            temporary.delete();
+            return;
+        }
+        if (!temporary.renameTo(new File(mDirectory, fileName))) {
+            temporary.delete();
+            return;
+        }
+        trim();
+    }
+
+    private void trim() {
+        File[] files = mDirectory.listFiles((directory, name) -> name.endsWith(PACKAGE_FILE_SUFFIX));
+        if (files == null || files.length <= MAX_STORED_PACKAGES) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - MAX_STORED_PACKAGES; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static String getFileName(String name, String version) {
+        return encode(name) + "@" + encode(version) + PACKAGE_FILE_SUFFIX;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
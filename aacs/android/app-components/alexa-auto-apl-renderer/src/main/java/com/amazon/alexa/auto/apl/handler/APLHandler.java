@@ -29,6 +29,7 @@ import com.amazon.alexa.auto.apl.Constants;
 import com.amazon.alexa.auto.apps.common.util.FileUtil;
 import com.amazon.apl.android.APLLayout;
 import com.amazon.apl.android.render.APLPresenter;
+import com.amazon.apl.android.render.extension.back.BackStack;
 import com.amazon.apl.android.render.interfaces.IAPLEventSender;
 import com.amazon.apl.android.render.interfaces.IDismissible;
 
@@ -327,6 +328,21 @@ public class APLHandler implements APLVisualController, IAPLEventSender, IDismis
 
         mPresenter = new APLPresenter(mVisualConfig, mDefaultWindowId, this);
 
+        try {
+            JSONObject gui = new JSONObject(configs).getJSONObject("aacs.alexa").getJSONObject("gui");
+            if (gui.has("visualContextFrameBudgetMs")) {
+                mPresenter.setVisualContextFrameBudget(gui.getLong("visualContextFrameBudgetMs"));
+            }
+            JSONObject backStack = gui.optJSONObject("backStack");
+            if (backStack != null) {
+                mPresenter.setBackStackBudget(
+                        backStack.optInt("maxLiveDocuments", BackStack.DEFAULT_MAX_LIVE_DOCUMENTS),
+                        backStack.optLong("maxSnapshotBytes", BackStack.DEFAULT_MAX_SNAPSHOT_BYTES));
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to parse APL presenter settings: " + e);
+        }
+
         mPresenter.setDismissibleCallback(this);
     }
 
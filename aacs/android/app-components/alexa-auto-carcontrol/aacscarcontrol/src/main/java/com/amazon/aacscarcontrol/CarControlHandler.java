@@ -33,6 +33,7 @@ public class CarControlHandler {
     private Context mContext;
     private CarPropertyManager mCarManager;
     private CarControlHelper mHelper;
+    private CarPropertyValueCache mValueCache;
 
     public CarControlHandler(Context context) {
         mContext = context;
@@ -42,6 +43,7 @@ public class CarControlHandler {
             mCarManager = null;
         } else {
             mCarManager = (CarPropertyManager) car.getCarManager(Car.PROPERTY_SERVICE);
+            mValueCache = new CarPropertyValueCache(mCarManager);
             if (mHelper == null) {
                 mHelper = new CarControlHelper(context);
             }
@@ -52,6 +54,7 @@ public class CarControlHandler {
         mContext = context;
         mCarManager = carPropertyManager;
         mHelper = helper;
+        mValueCache = new CarPropertyValueCache(carPropertyManager);
     }
 
     public boolean changePowerController(String endpointId, boolean turnOn) {
@@ -67,6 +70,7 @@ public class CarControlHandler {
         }
         try {
             mCarManager.setBooleanProperty(setting.propertyId, setting.areaId, turnOn);
+            mValueCache.invalidate(setting.propertyId, setting.areaId);
             Log.d(TAG,
                     String.format("Turn Power Controller for PropertyID: %s at AreaID: %s to %s", setting.propertyId,
                             setting.areaId, turnOn));
@@ -89,7 +93,7 @@ public class CarControlHandler {
             return false;
         }
         try {
-            return mCarManager.getBooleanProperty(setting.propertyId, setting.areaId);
+            return mValueCache.getBooleanProperty(setting.propertyId, setting.areaId);
         } catch (SecurityException | IllegalArgumentException e) {
             Log.e(TAG, String.format("Error when get Power controller value for %s with exception %s", endpointId, e));
             return false;
@@ -117,12 +121,14 @@ public class CarControlHandler {
                     } else {
                         mCarManager.setIntProperty(setting.propertyId, setting.areaId, 0);
                     }
+                    mValueCache.invalidate(setting.propertyId, setting.areaId);
                     Log.d(TAG,
                             String.format("Turn Toggle Controller for PropertyID: %s at AreaID: %s to %s",
                                     setting.propertyId, setting.areaId, turnOn));
                     return true;
                 case BOOLEAN:
                     mCarManager.setBooleanProperty(setting.propertyId, setting.areaId, turnOn);
+                    mValueCache.invalidate(setting.propertyId, setting.areaId);
                     Log.d(TAG,
                             String.format("Turn Toggle Controller for PropertyID: %s at AreaID: %s to %s",
                                     setting.propertyId, setting.areaId, turnOn));
@@ -151,7 +157,7 @@ public class CarControlHandler {
             return false;
         }
         try {
-            return mCarManager.getBooleanProperty(setting.propertyId, setting.areaId);
+            return mValueCache.getBooleanProperty(setting.propertyId, setting.areaId);
         } catch (SecurityException | IllegalArgumentException e) {
             Log.e(TAG,
                     String.format("Error when change Toggle controller %s for instance %s with exception %s",
@@ -177,22 +183,13 @@ public class CarControlHandler {
             switch (setting.dataType) {
                 case INT:
                     mCarManager.setIntProperty(setting.propertyId, setting.areaId, (int) value);
+                    mValueCache.invalidate(setting.propertyId, setting.areaId);
                     Log.d(TAG,
                             String.format("Set Range Controller for PropertyID: %s at AreaID: %s to %s",
                                     setting.propertyId, setting.areaId, value));
                     return true;
                 case FLOAT:
-                    if (mCarManager.getIntProperty(
-                                VehiclePropertyIds.HVAC_TEMPERATURE_DISPLAY_UNITS, CarControlConstants.AREA_GLOBAL)
-                            == CarControlConstants.CELSIUS_UNIT) {
-                        mCarManager.setFloatProperty(setting.propertyId, setting.areaId, (float) value);
-                    } else if (mCarManager.getIntProperty(VehiclePropertyIds.HVAC_TEMPERATURE_DISPLAY_UNITS,
-                                       CarControlConstants.AREA_GLOBAL)
-                            == CarControlConstants.FAHRENHEIT_UNIT) {
-                        // Need to do conversion here since Android internally uses Celsius
-                        mCarManager.setFloatProperty(
-                                setting.propertyId, setting.areaId, CarControlUtil.celcius((float) value));
-                    }
+                    setTemperatureProperty(setting, (float) value);
                     Log.d(TAG,
                             String.format("Set Range Controller for PropertyID: %s at AreaID: %s to %f",
                                     setting.propertyId, setting.areaId, value));
@@ -230,6 +227,7 @@ public class CarControlHandler {
                 case INT:
                     mCarManager.setIntProperty(
                             setting.propertyId, setting.areaId, (int) (currentRangeControllerValue + delta));
+                    mValueCache.invalidate(setting.propertyId, setting.areaId);
                     Log.d(TAG,
                             String.format("Adjust Range Controller for PropertyID: %s at AreaID: %s by %s",
                                     setting.propertyId, setting.areaId, delta));
@@ -237,6 +235,7 @@ public class CarControlHandler {
                 case FLOAT:
                     mCarManager.setFloatProperty(
                             setting.propertyId, setting.areaId, ((float) currentRangeControllerValue + (float) delta));
+                    mValueCache.invalidate(setting.propertyId, setting.areaId);
                     Log.d(TAG,
                             String.format("Adjust Range Controller for PropertyID: %s at AreaID: %s by %s",
                                     setting.propertyId, setting.areaId, delta));
@@ -269,9 +268,9 @@ public class CarControlHandler {
         try {
             switch (setting.dataType) {
                 case INT:
-                    return (double) mCarManager.getIntProperty(setting.propertyId, setting.areaId);
+                    return (double) mValueCache.getIntProperty(setting.propertyId, setting.areaId);
                 case FLOAT:
-                    return (double) mCarManager.getFloatProperty(setting.propertyId, setting.areaId);
+                    return (double) mValueCache.getFloatProperty(setting.propertyId, setting.areaId);
                 default:
                     Log.e(TAG, "Configuration Setting Type not correct when getRangeControllerValue");
                     return -1.0;
@@ -302,6 +301,7 @@ public class CarControlHandler {
                 switch (setting.dataType) {
                     case INT:
                         mCarManager.setIntProperty(setting.propertyId, setting.areaId, Integer.parseInt(setting.value));
+                        mValueCache.invalidate(setting.propertyId, setting.areaId);
                         Log.d(TAG,
                                 String.format("Set Mode Controller for PropertyID: %s at AreaID: %s to %s",
                                         setting.propertyId, setting.areaId, setting.value));
@@ -309,23 +309,13 @@ public class CarControlHandler {
                     case BOOLEAN:
                         mCarManager.setBooleanProperty(
                                 setting.propertyId, setting.areaId, Boolean.parseBoolean(setting.value));
+                        mValueCache.invalidate(setting.propertyId, setting.areaId);
                         Log.d(TAG,
                                 String.format("Set Mode Controller for PropertyID: %s at AreaID: %s to %s",
                                         setting.propertyId, setting.areaId, setting.value));
                         continue;
                     case FLOAT:
-                        if (mCarManager.getIntProperty(
-                                    VehiclePropertyIds.HVAC_TEMPERATURE_DISPLAY_UNITS, CarControlConstants.AREA_GLOBAL)
-                                == CarControlConstants.CELSIUS_UNIT) {
-                            mCarManager.setFloatProperty(
-                                    setting.propertyId, setting.areaId, Float.parseFloat(setting.value));
-                        } else if (mCarManager.getIntProperty(VehiclePropertyIds.HVAC_TEMPERATURE_DISPLAY_UNITS,
-                                           CarControlConstants.AREA_GLOBAL)
-                                == CarControlConstants.FAHRENHEIT_UNIT) {
-                            // Need to do conversion here since Android internally uses Celsius
-                            mCarManager.setFloatProperty(setting.propertyId, setting.areaId,
-                                    CarControlUtil.celcius(Float.parseFloat(setting.value)));
-                        }
+                        setTemperatureProperty(setting, Float.parseFloat(setting.value));
                         Log.d(TAG,
                                 String.format("Set Mode Controller for PropertyID: %s at AreaID: %s to %s",
                                         setting.propertyId, setting.areaId, setting.value));
@@ -384,6 +374,21 @@ public class CarControlHandler {
         return true;
     }
 
+    /**
+     * Sets a temperature given in the display units of the HVAC, read once per set.
+     */
+    private void setTemperatureProperty(CarControlHelper.PropertySetting setting, float value) {
+        int displayUnits = mValueCache.getIntProperty(
+                VehiclePropertyIds.HVAC_TEMPERATURE_DISPLAY_UNITS, CarControlConstants.AREA_GLOBAL);
+        if (displayUnits == CarControlConstants.CELSIUS_UNIT) {
+            mCarManager.setFloatProperty(setting.propertyId, setting.areaId, value);
+        } else if (displayUnits == CarControlConstants.FAHRENHEIT_UNIT) {
+            // Need to do conversion here since Android internally uses Celsius
+            mCarManager.setFloatProperty(setting.propertyId, setting.areaId, CarControlUtil.celcius(value));
+        }
+        mValueCache.invalidate(setting.propertyId, setting.areaId);
+    }
+
     public String getModeControllerValue(String endpointId, String instance) {
         String value = mHelper.getModeSettings(endpointId, instance);
         if (value.isEmpty()) {
@@ -27,7 +27,10 @@ import org.json.JSONObject;
 import java.io.File;
 import java.io.FileInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CarControlHelper {
     public static final String TAG = CarControlHelper.class.getCanonicalName();
@@ -40,6 +43,11 @@ public class CarControlHelper {
     private SharedPreferences mCapabilityPref;
     private SharedPreferences mAreaPref;
     private SharedPreferences mModePref;
+    // Compiled mapping, keyed by endpointId|interface|instance
+    private Map<String, PropertySetting> mPropertySettings = Collections.emptyMap();
+    // Keyed by endpointId|interface|instance|value
+    private Map<String, List<PropertySetting>> mModePropertySettings = Collections.emptyMap();
+    private Map<String, JSONArray> mSupportedModes = Collections.emptyMap();
 
     public CarControlHelper(Context context) {
         mContext = context;
@@ -88,11 +96,12 @@ public class CarControlHelper {
                 Log.e(TAG, "Error open Car Control mapping asset file " + e);
             }
         }
+        compileMapping();
     }
 
     /**
-     * This method retrieves Android PropertyID, AreaID and Property DataType information from SharedPreference
-     * and assemble into PropertySetting object then return to {@link CarControlHandler} to be used by Set/Adjust
+     * This method retrieves Android PropertyID, AreaID and Property DataType information from the compiled mapping
+     * and returns it as a PropertySetting object to {@link CarControlHandler} to be used by Set/Adjust
      * Controller methods for POWER, TOGGLE and RANGE controller.
      * Note that there is no controllerId present in the payload if the controllerType is "POWER".
      *
@@ -104,46 +113,18 @@ public class CarControlHelper {
      * Instance - ControllerId
      */
     protected PropertySetting getPropertySetting(String endpointId, String capability, String instance) {
-        PropertySetting propertySetting = null;
-        if (mCapabilityPref.getBoolean(AACS_CC_MAPPING, false)) {
-            try {
-                JSONArray capabilitiesArray = new JSONArray(mCapabilityPref.getString(endpointId, ""));
-                for (int i = 0; i < capabilitiesArray.length(); i++) {
-                    if (capability.equals(capabilitiesArray.getJSONObject(i).getString(CarControlConstants.INTERFACE))
-                            && (!capabilitiesArray.getJSONObject(i).has(CarControlConstants.INSTANCE)
-                                    || instance.equals(capabilitiesArray.getJSONObject(i).getString(
-                                            CarControlConstants.INSTANCE)))) {
-                        int areaId = getAreaId(endpointId);
-                        if (capabilitiesArray.getJSONObject(i)
-                                        .getJSONObject(CarControlConstants.CONFIGURATION)
-                                        .has(CarControlConstants.AREA_ID)) {
-                            areaId = Integer.decode(capabilitiesArray.getJSONObject(i)
-                                                            .getJSONObject(CarControlConstants.CONFIGURATION)
-                                                            .getString(CarControlConstants.AREA_ID));
-                        }
-                        int propertyId = (int) VehiclePropertyIds.class
-                                                 .getField(capabilitiesArray.getJSONObject(i)
-                                                                   .getJSONObject(CarControlConstants.CONFIGURATION)
-                                                                   .getString(CarControlConstants.PROPERTY_ID))
-                                                 .get(null);
-                        CarControlConstants.DataType dataType =
-                                CarControlUtil.getDataType(capabilitiesArray.getJSONObject(i)
-                                                                   .getJSONObject(CarControlConstants.CONFIGURATION)
-                                                                   .getString(CarControlConstants.DATA_TYPE));
-                        propertySetting = new PropertySetting(propertyId, areaId, dataType, "");
-                    }
-                }
-            } catch (JSONException | NoSuchFieldException | IllegalAccessException e) {
-                Log.e(TAG, "Could not find Property Setting from AACS CarControl Config " + e);
-            }
+        PropertySetting propertySetting = mPropertySettings.get(getSettingKey(endpointId, capability, instance));
+        if (propertySetting == null) {
+            // Capabilities configured without instance match any instance
+            propertySetting = mPropertySettings.get(getSettingKey(endpointId, capability, ""));
         }
         return propertySetting;
     }
 
     /**
-     * This method retrieves Android PropertyID, AreaID, Property DataType and Setting Value information from
-     * SharedPreference and assemble into PropertySetting list then return to {@link CarControlHandler} to be
-     * used by Set/Adjust Controller methods for MODE controller.
+     * This method retrieves Android PropertyID, AreaID, Property DataType and Setting Value information from the
+     * compiled mapping and returns it as a PropertySetting list to {@link CarControlHandler} to be used by
+     * Set/Adjust Controller methods for MODE controller.
      *
      * @param endpointId
      * @param capability
@@ -155,57 +136,114 @@ public class CarControlHelper {
      */
     protected List<PropertySetting> getPropertySettings(
             String endpointId, String capability, String instance, String value) {
-        List<PropertySetting> propertySettings = new ArrayList<>();
-        if (mCapabilityPref.getBoolean(AACS_CC_MAPPING, false)) {
-            try {
-                JSONArray supportedModes = getSupportedMode(endpointId, capability, instance);
-                for (int i = 0; i < supportedModes.length(); i++) {
-                    if (value.equals(supportedModes.getJSONObject(i).getString(CarControlConstants.VALUE))) {
-                        JSONArray propertySettingsJson =
-                                supportedModes.getJSONObject(i).getJSONArray(CarControlConstants.MODE_SETTINGS);
-                        for (int j = 0; j < propertySettingsJson.length(); j++) {
-                            int propertyId = (int) VehiclePropertyIds.class
-                                                     .getField(propertySettingsJson.getJSONObject(j).getString(
-                                                             CarControlConstants.PROPERTY_ID))
-                                                     .get(null);
-                            int areaId = getAreaId(endpointId);
-                            if (propertySettingsJson.getJSONObject(j).has(CarControlConstants.AREA_ID)) {
-                                areaId = Integer.decode(
-                                        propertySettingsJson.getJSONObject(j).getString(CarControlConstants.AREA_ID));
-                            }
-                            CarControlConstants.DataType dataType = CarControlUtil.getDataType(
-                                    propertySettingsJson.getJSONObject(j).getString(CarControlConstants.DATA_TYPE));
-                            String setValue =
-                                    propertySettingsJson.getJSONObject(j).getString(CarControlConstants.VALUE);
-                            propertySettings.add(new PropertySetting(propertyId, areaId, dataType, setValue));
-                        }
-                    }
-                }
-            } catch (JSONException | NoSuchFieldException | IllegalAccessException e) {
-                Log.e(TAG, "Could not find Property Settings for Mode Controller from AACS CarControl Config " + e);
-            }
-        }
-        return propertySettings;
+        List<PropertySetting> propertySettings =
+                mModePropertySettings.get(getSettingKey(endpointId, capability, instance) + "|" + value);
+        return propertySettings != null ? propertySettings : Collections.emptyList();
     }
 
+    /**
+     * Returns the supported modes of a MODE controller. The array is shared and must not be modified.
+     */
     protected JSONArray getSupportedMode(String endpointId, String capability, String instance) {
-        if (mCapabilityPref.getBoolean(AACS_CC_MAPPING, false)) {
+        JSONArray supportedModes = mSupportedModes.get(getSettingKey(endpointId, capability, instance));
+        return supportedModes != null ? supportedModes : new JSONArray();
+    }
+
+    /**
+     * Compiles the mapping stored in SharedPreference once, so that commands do not parse JSON or resolve
+     * {@link VehiclePropertyIds} through reflection.
+     */
+    private void compileMapping() {
+        if (!mCapabilityPref.getBoolean(AACS_CC_MAPPING, false)) {
+            return;
+        }
+        Map<String, PropertySetting> propertySettings = new HashMap<>();
+        Map<String, List<PropertySetting>> modePropertySettings = new HashMap<>();
+        Map<String, JSONArray> supportedModes = new HashMap<>();
+        Map<String, Integer> propertyIds = new HashMap<>();
+        for (Map.Entry<String, ?> endpoint : mCapabilityPref.getAll().entrySet()) {
+            if (!(endpoint.getValue() instanceof String)) {
+                continue;
+            }
+            String endpointId = endpoint.getKey();
+            int endpointAreaId = getAreaId(endpointId);
             try {
-                JSONArray capabilitiesArray = new JSONArray(mCapabilityPref.getString(endpointId, ""));
+                JSONArray capabilitiesArray = new JSONArray((String) endpoint.getValue());
                 for (int i = 0; i < capabilitiesArray.length(); i++) {
-                    if (capability.equals(capabilitiesArray.getJSONObject(i).getString(CarControlConstants.INTERFACE))
-                            && instance.equals(
-                                    capabilitiesArray.getJSONObject(i).getString(CarControlConstants.INSTANCE))) {
-                        return capabilitiesArray.getJSONObject(i)
-                                .getJSONObject(CarControlConstants.CONFIGURATION)
-                                .getJSONArray(CarControlConstants.SUPPORTED_MODE);
+                    JSONObject capability = capabilitiesArray.getJSONObject(i);
+                    try {
+                        String key = getSettingKey(endpointId, capability.getString(CarControlConstants.INTERFACE),
+                                capability.optString(CarControlConstants.INSTANCE, ""));
+                        JSONObject configuration = capability.getJSONObject(CarControlConstants.CONFIGURATION);
+                        if (configuration.has(CarControlConstants.PROPERTY_ID)) {
+                            propertySettings.put(key,
+                                    compilePropertySetting(configuration, endpointAreaId, propertyIds, ""));
+                        }
+                        if (configuration.has(CarControlConstants.SUPPORTED_MODE)) {
+                            JSONArray modes = configuration.getJSONArray(CarControlConstants.SUPPORTED_MODE);
+                            supportedModes.put(key, modes);
+                            compileModes(key, modes, endpointAreaId, propertyIds, modePropertySettings);
+                        }
+                    } catch (JSONException | NoSuchFieldException | IllegalAccessException
+                            | NumberFormatException e) {
+                        Log.e(TAG, "Could not compile capability " + i + " of " + endpointId + " " + e);
                     }
                 }
             } catch (JSONException e) {
-                Log.e(TAG, "Could not find PropertyID from AACS CarControl Config " + e);
+                Log.e(TAG, "Could not parse capabilities of " + endpointId + " from AACS CarControl Config " + e);
             }
         }
-        return new JSONArray();
+        mPropertySettings = Collections.unmodifiableMap(propertySettings);
+        mModePropertySettings = Collections.unmodifiableMap(modePropertySettings);
+        mSupportedModes = Collections.unmodifiableMap(supportedModes);
+        Log.i(TAG,
+                "Compiled " + propertySettings.size() + " property settings and " + supportedModes.size()
+                        + " mode controllers");
+    }
+
+    private static void compileModes(String key, JSONArray modes, int endpointAreaId,
+            Map<String, Integer> propertyIds, Map<String, List<PropertySetting>> modePropertySettings)
+            throws JSONException, NoSuchFieldException, IllegalAccessException {
+        Map<String, List<PropertySetting>> settingsByValue = new HashMap<>();
+        for (int i = 0; i < modes.length(); i++) {
+            String value = modes.getJSONObject(i).getString(CarControlConstants.VALUE);
+            JSONArray propertySettingsJson = modes.getJSONObject(i).getJSONArray(CarControlConstants.MODE_SETTINGS);
+            List<PropertySetting> settings = settingsByValue.get(value);
+            if (settings == null) {
+                settings = new ArrayList<>();
+                settingsByValue.put(value, settings);
+            }
+            for (int j = 0; j < propertySettingsJson.length(); j++) {
+                JSONObject propertySettingJson = propertySettingsJson.getJSONObject(j);
+                settings.add(compilePropertySetting(propertySettingJson, endpointAreaId, propertyIds,
+                        propertySettingJson.getString(CarControlConstants.VALUE)));
+            }
+        }
+        for (Map.Entry<String, List<PropertySetting>> settings : settingsByValue.entrySet()) {
+            modePropertySettings.put(key + "|" + settings.getKey(), Collections.unmodifiableList(settings.getValue()));
+        }
+    }
+
+    private static PropertySetting compilePropertySetting(JSONObject setting, int endpointAreaId,
+            Map<String, Integer> propertyIds, String value)
+            throws JSONException, NoSuchFieldException, IllegalAccessException {
+        int areaId = endpointAreaId;
+        if (setting.has(CarControlConstants.AREA_ID)) {
+            areaId = Integer.decode(setting.getString(CarControlConstants.AREA_ID));
+        }
+        String propertyName = setting.getString(CarControlConstants.PROPERTY_ID);
+        Integer propertyId = propertyIds.get(propertyName);
+        if (propertyId == null) {
+            propertyId = (int) VehiclePropertyIds.class.getField(propertyName).get(null);
+            propertyIds.put(propertyName, propertyId);
+        }
+        CarControlConstants.DataType dataType =
+                CarControlUtil.getDataType(setting.getString(CarControlConstants.DATA_TYPE));
+        return new PropertySetting(propertyId, areaId, dataType, value);
+    }
+
+    private static String getSettingKey(String endpointId, String capability, String instance) {
+        return endpointId + "|" + capability + "|" + instance;
     }
 
     protected void saveModeSettings(String endpointId, String instance, String value) {
@@ -235,10 +273,10 @@ public class CarControlHelper {
     }
 
     protected static class PropertySetting {
-        public int propertyId;
-        public int areaId;
-        public CarControlConstants.DataType dataType;
-        public String value;
+        public final int propertyId;
+        public final int areaId;
+        public final CarControlConstants.DataType dataType;
+        public final String value;
 
         public PropertySetting(int propertyId, int areaId, CarControlConstants.DataType dataType, String value) {
             this.propertyId = propertyId;
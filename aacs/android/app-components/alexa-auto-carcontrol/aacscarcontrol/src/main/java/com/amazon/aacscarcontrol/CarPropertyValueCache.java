@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.aacscarcontrol;
+
+import android.car.hardware.CarPropertyValue;
+import android.car.hardware.property.CarPropertyManager;
+import android.util.Log;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the values of the properties read by {@link CarControlHandler}.
+ *
+ * The cache subscribes to the changes of a property the first time the property is read, and keeps the values it is
+ * notified of, so later reads do not make a synchronous call to the vehicle HAL. A value is read synchronously when it
+ * is not known yet, after it is invalidated by a set, or when the subscription to its property failed.
+ */
+class CarPropertyValueCache {
+    private static final String TAG = CarPropertyValueCache.class.getCanonicalName();
+
+    private final CarPropertyManager mCarManager;
+    // Keyed by getKey(propertyId, areaId)
+    private final Map<Long, Object> mValues = new ConcurrentHashMap<>();
+    private final Set<Integer> mRegisteredProperties = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> mUncachedProperties = ConcurrentHashMap.newKeySet();
+
+    private final CarPropertyManager.CarPropertyEventCallback mCallback =
+            new CarPropertyManager.CarPropertyEventCallback() {
+                @Override
+                public void onChangeEvent(CarPropertyValue value) {
+                    long key = getKey(value.getPropertyId(), value.getAreaId());
+                    if (value.getStatus() == CarPropertyValue.STATUS_AVAILABLE && value.getValue() != null) {
+                        mValues.put(key, value.getValue());
+                    } else {
+                        mValues.remove(key);
+                    }
+                }
+
+                @Override
+                public void onErrorEvent(int propertyId, int areaId) {
+                    Log.w(TAG, String.format("Error event for PropertyID: %s at AreaID: %s", propertyId, areaId));
+                    mValues.remove(getKey(propertyId, areaId));
+                }
+            };
+
+    CarPropertyValueCache(CarPropertyManager carManager) {
+        mCarManager = carManager;
+    }
+
+    boolean getBooleanProperty(int propertyId, int areaId) {
+        Object value = getCachedValue(propertyId, areaId);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        boolean readValue = mCarManager.getBooleanProperty(propertyId, areaId);
+        cacheReadValue(propertyId, areaId, readValue);
+        return readValue;
+    }
+
+    int getIntProperty(int propertyId, int areaId) {
+        Object value = getCachedValue(propertyId, areaId);
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        int readValue = mCarManager.getIntProperty(propertyId, areaId);
+        cacheReadValue(propertyId, areaId, readValue);
+        return readValue;
+    }
+
+    float getFloatProperty(int propertyId, int areaId) {
+        Object value = getCachedValue(propertyId, areaId);
+        if (value instanceof Float) {
+            return (Float) value;
+        }
+        float readValue = mCarManager.getFloatProperty(propertyId, areaId);
+        cacheReadValue(propertyId, areaId, readValue);
+        return readValue;
+    }
+
+    /**
+     * Drops the cached value of a property that was just set, until the change is notified or the value is read again.
+     */
+    void invalidate(int propertyId, int areaId) {
+        mValues.remove(getKey(propertyId, areaId));
+    }
+
+    private Object getCachedValue(int propertyId, int areaId) {
+        registerIfNeeded(propertyId);
+        return mValues.get(getKey(propertyId, areaId));
+    }
+
+    private void cacheReadValue(int propertyId, int areaId, Object value) {
+        if (!mUncachedProperties.contains(propertyId)) {
+            // A value notified meanwhile is newer than the one read
+            mValues.putIfAbsent(getKey(propertyId, areaId), value);
+        }
+    }
+
+    private void registerIfNeeded(int propertyId) {
+        if (!mRegisteredProperties.add(propertyId)) {
+            return;
+        }
+        boolean registered;
+        try {
+            registered = mCarManager.registerCallback(mCallback, propertyId, CarPropertyManager.SENSOR_RATE_ONCHANGE);
+        } catch (SecurityException | IllegalArgumentException e) {
+            Log.w(TAG, String.format("Error when registering for PropertyID: %s with exception %s", propertyId, e));
+            registered = false;
+        }
+        if (!registered) {
+            // Without change events the values of the property would go stale
+            Log.w(TAG, String.format("Values of PropertyID: %s are not cached", propertyId));
+            mUncachedProperties.add(propertyId);
+        }
+    }
+
+    private static long getKey(int propertyId, int areaId) {
+        return ((long) propertyId << 32) | (areaId & 0xffffffffL);
+    }
+}
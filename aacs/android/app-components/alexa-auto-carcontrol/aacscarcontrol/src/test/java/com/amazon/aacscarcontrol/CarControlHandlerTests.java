@@ -167,6 +167,47 @@ public class CarControlHandlerTests {
         Mockito.verify(mMockedCarManager, Mockito.times(1)).setIntProperty(PROPERTY_ID_HVAC_FAN_SPEED, AREA_ID_FULL, 3);
     }
 
+    @Test
+    public void getPowerControllerValueFromCache() {
+        PowerMockito
+                .when(mMockedHelper.getPropertySetting(Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenReturn(new CarControlHelper.PropertySetting(
+                        PROPERTY_ID_HVAC_POWER_ON, AREA_ID_FULL, CarControlConstants.DataType.BOOLEAN, ""));
+        PowerMockito
+                .when(mMockedCarManager.registerCallback(Mockito.any(CarPropertyManager.CarPropertyEventCallback.class),
+                        Mockito.anyInt(), Mockito.anyFloat()))
+                .thenReturn(true);
+        PowerMockito.when(mMockedCarManager.getBooleanProperty(PROPERTY_ID_HVAC_POWER_ON, AREA_ID_FULL))
+                .thenReturn(true);
+
+        // Test value is read once, then served from the cache
+        Assert.assertTrue(mCarControlHandler.isPowerControllerOn(DEFAULT_FAN_ENDPOINT));
+        Assert.assertTrue(mCarControlHandler.isPowerControllerOn(DEFAULT_FAN_ENDPOINT));
+        Mockito.verify(mMockedCarManager, Mockito.times(1)).getBooleanProperty(PROPERTY_ID_HVAC_POWER_ON, AREA_ID_FULL);
+
+        // Test value is read again after it is set
+        PowerMockito.when(mMockedCarManager.getBooleanProperty(PROPERTY_ID_HVAC_POWER_ON, AREA_ID_FULL))
+                .thenReturn(false);
+        Assert.assertTrue(mCarControlHandler.changePowerController(DEFAULT_FAN_ENDPOINT, false));
+        Assert.assertFalse(mCarControlHandler.isPowerControllerOn(DEFAULT_FAN_ENDPOINT));
+        Mockito.verify(mMockedCarManager, Mockito.times(2)).getBooleanProperty(PROPERTY_ID_HVAC_POWER_ON, AREA_ID_FULL);
+    }
+
+    @Test
+    public void getPowerControllerValueWithoutRegistration() {
+        PowerMockito
+                .when(mMockedHelper.getPropertySetting(Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenReturn(new CarControlHelper.PropertySetting(
+                        PROPERTY_ID_HVAC_POWER_ON, AREA_ID_FULL, CarControlConstants.DataType.BOOLEAN, ""));
+        PowerMockito.when(mMockedCarManager.getBooleanProperty(PROPERTY_ID_HVAC_POWER_ON, AREA_ID_FULL))
+                .thenReturn(true);
+
+        // Test value is read every time when change events are not available
+        Assert.assertTrue(mCarControlHandler.isPowerControllerOn(DEFAULT_FAN_ENDPOINT));
+        Assert.assertTrue(mCarControlHandler.isPowerControllerOn(DEFAULT_FAN_ENDPOINT));
+        Mockito.verify(mMockedCarManager, Mockito.times(2)).getBooleanProperty(PROPERTY_ID_HVAC_POWER_ON, AREA_ID_FULL);
+    }
+
     @Test
     public void setControllerWithInvalidParam() {
         // Test Set Power Controller
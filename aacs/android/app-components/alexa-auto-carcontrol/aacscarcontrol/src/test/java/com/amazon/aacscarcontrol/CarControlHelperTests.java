@@ -112,6 +112,19 @@ public class CarControlHelperTests {
         Assert.assertEquals(settingList.get(2).value, "61.0");
     }
 
+    @Test
+    public void testMappingIsCompiledOnce() {
+        Assert.assertSame(mHelper.getPropertySetting(DEFAULT_FAN_ENDPOINT, CarControlConstants.POWER_CONTROLLER, ""),
+                mHelper.getPropertySetting(DEFAULT_FAN_ENDPOINT, CarControlConstants.POWER_CONTROLLER, ""));
+        Assert.assertSame(mHelper.getSupportedMode(
+                                  DEFAULT_AC_ENDPOINT, CarControlConstants.MODE_CONTROLLER, INTENSITY_INSTANCE),
+                mHelper.getSupportedMode(DEFAULT_AC_ENDPOINT, CarControlConstants.MODE_CONTROLLER, INTENSITY_INSTANCE));
+        Assert.assertTrue(
+                mHelper.getSupportedMode(DEFAULT_AC_ENDPOINT, CarControlConstants.MODE_CONTROLLER, INTENSITY_INSTANCE)
+                        .length()
+                > 0);
+    }
+
     @Test
     public void testGetPropertySettingWithInvalidParam() {
         // Power Controller Type
@@ -36,11 +36,13 @@ import com.amazon.aacsconstants.Action;
 import com.amazon.aacsconstants.ContactsConstants;
 import com.amazon.aacsipc.IPCConstants;
 import com.amazon.alexa.auto.aacs.common.AACSMessageBuilder;
+import com.amazon.alexa.auto.aacs.common.AACSReplyDispatcher;
 import com.amazon.alexa.auto.aacs.common.AACSReplyMessage;
 
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AACSContactsService extends Service {
     private final String TAG = AACSConstants.AACS + "-" + AACSContactsService.class.getSimpleName();
@@ -48,6 +50,8 @@ public class AACSContactsService extends Service {
     private static final String CONTACTS_CHANNEL_NAME = "AACSContacts";
     private PhoneBookController mPhoneBookController;
     private static ExecutorService mExecutor;
+    // Address book requests in flight, the service stops once all of them completed
+    private final AtomicInteger mPendingSyncCount = new AtomicInteger();
 
     @Override
     public void onCreate() {
@@ -100,23 +104,13 @@ public class AACSContactsService extends Service {
                     Log.i(TAG,
                             String.format(
                                     "AddressBook Adding %s with ReplyToId: %s", message.payload, message.replyToId));
-                    if (message.payload.contains("true")) {
-                        mPhoneBookController.completeAddressBookUpdate(message.replyToId, true);
-                    } else {
-                        mPhoneBookController.completeAddressBookUpdate(message.replyToId, false);
-                    }
-                    stopAACSContactsService();
+                    AACSReplyDispatcher.getInstance().dispatch(message);
                     break;
                 case Action.AddressBook.REMOVE_ADDRESS_BOOK:
                     Log.i(TAG,
                             String.format(
                                     "AddressBook Removing %s with ReplyToId: %s", message.payload, message.replyToId));
-                    if (message.payload.contains("true")) {
-                        mPhoneBookController.completeAddressBookUpdate(message.replyToId, true);
-                    } else {
-                        mPhoneBookController.completeAddressBookUpdate(message.replyToId, false);
-                    }
-                    stopAACSContactsService();
+                    AACSReplyDispatcher.getInstance().dispatch(message);
                     break;
             }
         }
@@ -129,11 +123,17 @@ public class AACSContactsService extends Service {
                     Log.w(TAG, " Executor has shutdown, recreate executor");
                     mExecutor = Executors.newSingleThreadExecutor();
                 }
+                mPendingSyncCount.incrementAndGet();
                 mExecutor.submit(() -> {
                     Log.i(TAG,
                             String.format(
                                     "Adding %s AddressBook expecting confirmation from engine.", addressBookSourceId));
-                    mPhoneBookController.addAddressBook(addressBookSourceId, addressBookName);
+                    // An unchanged address book is not sent, its sync completes without any reply
+                    mPhoneBookController.addAddressBook(addressBookSourceId, addressBookName)
+                            .whenComplete((success, throwable) -> {
+                                Log.i(TAG, String.format("AddressBook %s added: %s", addressBookSourceId, success));
+                                onSyncCompleted();
+                            });
                     mExecutor.shutdown();
                 });
             }
@@ -149,11 +149,16 @@ public class AACSContactsService extends Service {
                     Log.w(TAG, " Executor has shutdown, recreate executor");
                     mExecutor = Executors.newSingleThreadExecutor();
                 }
+                mPendingSyncCount.incrementAndGet();
                 mExecutor.submit(() -> {
                     Log.i(TAG,
                             String.format("Removing %s AddressBook expecting confirmation from engine.",
                                     addressBookSourceId));
-                    mPhoneBookController.removeAddressBook(addressBookSourceId);
+                    mPhoneBookController.removeAddressBook(addressBookSourceId)
+                            .whenComplete((success, throwable) -> {
+                                Log.i(TAG, String.format("AddressBook %s removed: %s", addressBookSourceId, success));
+                                onSyncCompleted();
+                            });
                     mExecutor.shutdown();
                 });
             }
@@ -187,6 +192,12 @@ public class AACSContactsService extends Service {
         startForeground(Constants.CONTACTS_SERVICE_NOTIFICATION, notification);
     }
 
+    private void onSyncCompleted() {
+        if (mPendingSyncCount.decrementAndGet() == 0) {
+            stopAACSContactsService();
+        }
+    }
+
     private void stopAACSContactsService() {
         Log.i(TAG, "Stopping AACS Contacts Service");
         stopSelf();
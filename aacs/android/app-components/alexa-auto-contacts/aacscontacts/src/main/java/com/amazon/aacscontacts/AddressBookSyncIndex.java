@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.aacscontacts;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.amazon.aacsconstants.AACSConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fingerprints of the contacts of every address book that was last uploaded successfully, by address book source id.
+ *
+ * A fingerprint is a hash of the names and phone numbers of one contact. Comparing the fingerprints of the contacts
+ * read from the Contacts Provider with the indexed ones tells which contacts were added, updated or deleted since
+ * the last upload.
+ *
+ * The index describes the address books that the engine holds, so it is kept in memory only and cleared when AACS
+ * starts or stops: the engine does not keep address books across restarts. The index is shared by the process, so
+ * that it survives the contacts service, which stops after every upload.
+ */
+class AddressBookSyncIndex {
+    private static final String TAG = AACSConstants.AACS + "-" + AddressBookSyncIndex.class.getSimpleName();
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static AddressBookSyncIndex sInstance;
+
+    private final HashMap<String, Map<String, Long>> mFingerprints = new HashMap<>();
+
+    private final BroadcastReceiver mAACSStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onAACSStateChanged(intent.getStringExtra("state"));
+        }
+    };
+
+    private AddressBookSyncIndex() {}
+
+    /**
+     * @param context Context used to listen to the AACS state changes.
+     * @return The sync index of the process.
+     */
+    @NonNull
+    static synchronized AddressBookSyncIndex getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new AddressBookSyncIndex();
+            Context applicationContext = context.getApplicationContext();
+            if (applicationContext != null) {
+                applicationContext.registerReceiver(sInstance.mAACSStateReceiver,
+                        new IntentFilter(AACSConstants.ACTION_STATE_CHANGE), AACSConstants.AACS_PERMISSION, null);
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Changes between two versions of an address book.
+     */
+    static class Delta {
+        final int added;
+        final int updated;
+        final int deleted;
+
+        Delta(int added, int updated, int deleted) {
+            this.added = added;
+            this.updated = updated;
+            this.deleted = deleted;
+        }
+
+        boolean isEmpty() {
+            return added == 0 && updated == 0 && deleted == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("added=%d, updated=%d, deleted=%d", added, updated, deleted);
+        }
+    }
+
+    /**
+     * @param addressBookSourceId Address book source id.
+     * @return Fingerprints by contact id of the last successful upload of the address book, or {@code null} if it
+     * has not been uploaded.
+     */
+    @Nullable
+    synchronized Map<String, Long> get(@NonNull String addressBookSourceId) {
+        return mFingerprints.get(addressBookSourceId);
+    }
+
+    synchronized void put(@NonNull String addressBookSourceId, @NonNull Map<String, Long> fingerprints) {
+        mFingerprints.put(addressBookSourceId, fingerprints);
+    }
+
+    synchronized void remove(@NonNull String addressBookSourceId) {
+        mFingerprints.remove(addressBookSourceId);
+    }
+
+    synchronized void clear() {
+        mFingerprints.clear();
+    }
+
+    /**
+     * Clears the index when AACS starts or stops, since the engine then no longer holds any address book.
+     */
+    void onAACSStateChanged(String state) {
+        if (AACSConstants.State.STARTED.name().equals(state) || AACSConstants.State.STOPPED.name().equals(state)) {
+            Log.i(TAG, "AACS state changed to " + state + ", clearing sync index");
+            clear();
+        }
+    }
+
+    /**
+     * @param previous Fingerprints of the last upload.
+     * @param current Fingerprints of the contacts to upload.
+     * @return The contacts added, updated and deleted from {@code previous} to {@code current}.
+     */
+    @NonNull
+    static Delta diff(@NonNull Map<String, Long> previous, @NonNull Map<String, Long> current) {
+        int added = 0;
+        int updated = 0;
+        for (Map.Entry<String, Long> contact : current.entrySet()) {
+            Long fingerprint = previous.get(contact.getKey());
+            if (fingerprint == null) {
+                added++;
+            } else if (!fingerprint.equals(contact.getValue())) {
+                updated++;
+            }
+        }
+        int deleted = previous.size() - (current.size() - added);
+        return new Delta(added, updated, deleted);
+    }
+
+    /**
+     * @param fields Names and phone numbers of a contact, in a stable order.
+     * @return 64-bit FNV-1a hash of the fields.
+     */
+    static long fingerprint(@NonNull Iterable<String> fields) {
+        long hash = FNV_OFFSET_BASIS;
+        for (String field : fields) {
+            if (field != null) {
+                for (int i = 0; i < field.length(); i++) {
+                    hash = (hash ^ field.charAt(i)) * FNV_PRIME;
+                }
+            }
+            // Separate the fields so that moving characters from one field to the next changes the hash
+            hash = (hash ^ 0xffff) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -20,6 +20,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.provider.ContactsContract;
+import android.util.JsonWriter;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -31,20 +32,22 @@ import com.amazon.aacsconstants.Topic;
 import com.amazon.aacsipc.AACSSender;
 import com.amazon.aacsipc.TargetComponent;
 import com.amazon.alexa.auto.aacs.common.AACSMessageSender;
+import com.amazon.alexa.auto.aacs.common.AACSReplyMessage;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 public class PhoneBookController {
     private static final String TAG = AACSConstants.AACS + "-" + PhoneBookController.class.getSimpleName();
@@ -52,24 +55,41 @@ public class PhoneBookController {
     private AACSSender mAACSSender;
     private final TargetComponent mTarget;
     private AACSMessageSender mAACSMessageSender;
-    public static HashMap<String, CompletableFuture<Boolean>> mAddressBookUpdateToFutureMap = new HashMap<>();
     private final int REPLY_WAIT_DURATION = 5000;
-    private ExecutorService mExecutor;
+    private final AddressBookSyncIndex mSyncIndex;
+
+    private static final String[] CONTACTS_PROJECTION = {ContactsContract.Data.CONTACT_ID,
+            ContactsContract.Data.MIMETYPE, ContactsContract.CommonDataKinds.StructuredName.GIVEN_NAME,
+            ContactsContract.CommonDataKinds.StructuredName.FAMILY_NAME,
+            ContactsContract.CommonDataKinds.Nickname.NAME, ContactsContract.CommonDataKinds.Phone.NUMBER,
+            ContactsContract.CommonDataKinds.Phone.TYPE, ContactsContract.CommonDataKinds.Phone.LABEL};
+    private static final int COLUMN_CONTACT_ID = 0;
+    private static final int COLUMN_MIMETYPE = 1;
+    private static final int COLUMN_GIVEN_NAME = 2;
+    private static final int COLUMN_FAMILY_NAME = 3;
+    private static final int COLUMN_NICKNAME = 4;
+    private static final int COLUMN_PHONE_NUMBER = 5;
+    private static final int COLUMN_PHONE_TYPE = 6;
+    private static final int COLUMN_PHONE_LABEL = 7;
+    private static final String CONTACTS_SELECTION = ContactsContract.RawContacts.ACCOUNT_NAME + " = ? AND "
+            + ContactsContract.Data.MIMETYPE + " IN (?, ?, ?)";
 
     public PhoneBookController(@NonNull Context context) {
         mAACSSender = new AACSSender();
         mContext = context;
-        mExecutor = Executors.newSingleThreadExecutor();
         mTarget = TargetComponent.withComponent(new ComponentName("com.amazon.alexaautoclientservice",
                                                         "com.amazon.alexaautoclientservice.AlexaAutoClientService"),
                 TargetComponent.Type.SERVICE);
-        mAACSMessageSender = new AACSMessageSender(new WeakReference<>(context), new AACSSender());
+        AACSSender messageSender = new AACSSender();
+        messageSender.setSharedMemoryTransportEnabled(true);
+        mAACSMessageSender = new AACSMessageSender(new WeakReference<>(context), messageSender);
+        mSyncIndex = AddressBookSyncIndex.getInstance(context);
     }
 
     PhoneBookController(@NonNull Context context, AACSMessageSender messageSender) {
         mAACSMessageSender = messageSender;
+        mSyncIndex = AddressBookSyncIndex.getInstance(context);
         mContext = context;
-        mExecutor = Executors.newSingleThreadExecutor();
         mTarget = TargetComponent.withComponent(new ComponentName("com.amazon.alexaautoclientservice",
                                                         "com.amazon.alexaautoclientservice.AlexaAutoClientService"),
                 TargetComponent.Type.SERVICE);
@@ -86,19 +106,9 @@ public class PhoneBookController {
         // Retrieving a list of contacts stored in Contacts Provider through PBAP connection
         // Parsing the contacts data and wrap it into AASB intent payload
         // Sending the message to AACS with contacts.
-        CompletableFuture<Boolean> waitForAddressBookAdd = new CompletableFuture<>();
-        String messageId = addAddressBook(addressBookSourceId, addressBookName);
-        mAddressBookUpdateToFutureMap.put(messageId, waitForAddressBookAdd);
-        try {
-            if (mAddressBookUpdateToFutureMap.get(messageId).get(REPLY_WAIT_DURATION, TimeUnit.MILLISECONDS)) {
-                mAddressBookUpdateToFutureMap.remove(messageId);
-                Log.i(TAG, Topic.ADDRESS_BOOK + addressBookSourceId + " added successful");
-                return true;
-            }
-        } catch (ExecutionException | InterruptedException e) {
-            Log.e(TAG, "Error occurred during wait task execution: " + e.getMessage());
-        } catch (CancellationException | TimeoutException e) {
-            Log.e(TAG, "Stopping wait for " + addressBookSourceId + " addressBook adding");
+        if (waitForResult(syncAddressBook(addressBookSourceId, addressBookName))) {
+            Log.i(TAG, Topic.ADDRESS_BOOK + addressBookSourceId + " added successful");
+            return true;
         }
         return false;
     }
@@ -110,19 +120,9 @@ public class PhoneBookController {
      */
     public boolean removeContacts(String addressBookSourceId) {
         Log.d(TAG, "removeContacts");
-        CompletableFuture<Boolean> waitForAddressBookAdd = new CompletableFuture<>();
-        String messageId = removeAddressBook(addressBookSourceId);
-        mAddressBookUpdateToFutureMap.put(messageId, waitForAddressBookAdd);
-        try {
-            if (mAddressBookUpdateToFutureMap.get(messageId).get(REPLY_WAIT_DURATION, TimeUnit.MILLISECONDS)) {
-                mAddressBookUpdateToFutureMap.remove(messageId);
-                Log.i(TAG, Topic.ADDRESS_BOOK + addressBookSourceId + " removed successful");
-                return true;
-            }
-        } catch (ExecutionException | InterruptedException e) {
-            Log.e(TAG, "Error occurred during wait task execution: " + e.getMessage());
-        } catch (CancellationException | TimeoutException e) {
-            Log.e(TAG, "Stopping wait for " + addressBookSourceId + " addressBook removing");
+        if (waitForResult(removeAddressBook(addressBookSourceId))) {
+            Log.i(TAG, Topic.ADDRESS_BOOK + addressBookSourceId + " removed successful");
+            return true;
         }
         return false;
     }
@@ -132,129 +132,150 @@ public class PhoneBookController {
      *
      * @param addressBookSourceId A unique identifier for an address book.
      * @param addressBookName Friendly name of the address book, or an empty string if not available.
+     * @return Future completed with whether the address book is uploaded.
      */
-    String addAddressBook(String addressBookSourceId, String addressBookName) {
-        Log.d(TAG, "addAddressBook");
+    CompletableFuture<Boolean> addAddressBook(String addressBookSourceId, String addressBookName) {
+        return syncAddressBook(addressBookSourceId, addressBookName);
+    }
 
-        Boolean hasContacts = false;
-        JSONObject addrBookData = new JSONObject();
-        JSONArray contactsNames = new JSONArray();
-        JSONArray phoneData = new JSONArray();
-        JSONObject payload = new JSONObject();
-        String messageId = "";
+    /**
+     * Uploads the address book if it changed since its last successful upload.
+     *
+     * The engine does not accept changes to an address book it already has, so a changed address book is removed
+     * and added again. An address book that did not change is not sent at all. The sync index is updated with the
+     * reply of the engine, a request that is not answered in time is not indexed.
+     *
+     * @return Future completed with whether the address book is uploaded.
+     */
+    private CompletableFuture<Boolean> syncAddressBook(String addressBookSourceId, String addressBookName) {
+        Log.d(TAG, "addAddressBook");
         Log.i(TAG, "Start Retrieving Contacts");
 
-        ContentResolver contentResolver = mContext.getContentResolver();
-        Cursor nameCur =
-                contentResolver.query(ContactsContract.Data.CONTENT_URI, null, ContactsContract.Data.MIMETYPE + " = ?",
-                        new String[] {ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE}, null);
-        Cursor nickCur =
-                contentResolver.query(ContactsContract.Data.CONTENT_URI, null, ContactsContract.Data.MIMETYPE + " = ?",
-                        new String[] {ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE}, null);
-
-        if ((nameCur != null ? nameCur.getCount() : 0) > 0) {
-            hasContacts = true;
-            while (nameCur != null && nameCur.moveToNext()) {
-                String contacts_source =
-                        nameCur.getString(nameCur.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_NAME));
-                if (!contacts_source.equals(addressBookSourceId)) {
-                    // Skip contacts without matching source id
-                    continue;
-                }
-                JSONObject contact = new JSONObject();
-                String id = nameCur.getString(nameCur.getColumnIndex(ContactsContract.Data.CONTACT_ID));
-                String firstName = nameCur.getString(
-                        nameCur.getColumnIndex(ContactsContract.CommonDataKinds.StructuredName.GIVEN_NAME));
-                String lastName = nameCur.getString(
-                        nameCur.getColumnIndex(ContactsContract.CommonDataKinds.StructuredName.FAMILY_NAME));
-                Cursor phoneCur = contentResolver.query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI, null,
-                        ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " = ?", new String[] {id}, null);
+        LinkedHashMap<String, Contact> contacts = queryContacts(addressBookSourceId);
+        if (contacts == null) {
+            Log.w(TAG, "No contacts to be uploaded");
+            return CompletableFuture.completedFuture(false);
+        }
 
-                if (firstName == null) {
-                    firstName = "";
-                }
-                if (lastName == null) {
-                    lastName = "";
-                }
-                try {
-                    contact.put(Constants.ENTRY, id);
-                    contact.put(Constants.FIRST_NAME, firstName);
-                    contact.put(Constants.LAST_NAME, lastName);
-                } catch (JSONException e) {
-                    Log.e(TAG, "Error while creating contactNames payload.");
-                }
+        Map<String, Long> fingerprints = new HashMap<>();
+        for (Contact contact : contacts.values()) {
+            fingerprints.put(contact.mId, contact.fingerprint());
+        }
+        Map<String, Long> previous = mSyncIndex.get(addressBookSourceId);
+        if (previous != null) {
+            AddressBookSyncIndex.Delta delta = AddressBookSyncIndex.diff(previous, fingerprints);
+            if (delta.isEmpty()) {
+                Log.i(TAG, "AddressBook " + addressBookSourceId + " is unchanged since its last upload");
+                return CompletableFuture.completedFuture(true);
+            }
+            Log.i(TAG, "AddressBook " + addressBookSourceId + " changed since its last upload: " + delta);
+            removeAddressBook(addressBookSourceId);
+        }
 
-                if (nickCur != null && nickCur.moveToNext()) {
-                    String nickName =
-                            nickCur.getString(nickCur.getColumnIndex(ContactsContract.CommonDataKinds.Nickname.NAME));
-                    if (nickName == null) {
-                        nickName = "";
-                    }
-                    try {
-                        contact.put(Constants.NICK_NAME, nickName);
-                    } catch (JSONException e) {
-                        Log.e(TAG, "Error while creating nickName payload.");
+        // The payload is written straight to the IPC transport, the address book is never held as a string
+        List<Contact> contactList = new ArrayList<>(contacts.values());
+        return mAACSMessageSender
+                .sendRequest(Topic.ADDRESS_BOOK, Action.AddressBook.ADD_ADDRESS_BOOK,
+                        writer
+                        -> writeAddressBook(writer, addressBookSourceId, addressBookName, contactList),
+                        REPLY_WAIT_DURATION)
+                .handle((reply, throwable) -> {
+                    boolean success = isSuccessful(reply, throwable);
+                    if (success) {
+                        mSyncIndex.put(addressBookSourceId, fingerprints);
+                    } else {
+                        mSyncIndex.remove(addressBookSourceId);
                     }
-                } else {
-                    try {
-                        contact.put(Constants.NICK_NAME, "");
-                    } catch (JSONException e) {
-                        Log.e(TAG, "Error while creating nickName payload.");
-                    }
-                }
-
-                contactsNames.put(contact);
-
-                while (phoneCur != null && phoneCur.moveToNext()) {
-                    JSONObject phone = new JSONObject();
-                    String phoneNumber =
-                            phoneCur.getString(phoneCur.getColumnIndex(ContactsContract.CommonDataKinds.Phone.NUMBER));
-                    int phoneType =
-                            phoneCur.getInt(phoneCur.getColumnIndex(ContactsContract.CommonDataKinds.Phone.TYPE));
-                    String typeLabel =
-                            Integer.toString(ContactsContract.CommonDataKinds.Phone.getTypeLabelResource(phoneType));
-                    CharSequence phoneLabel = ContactsContract.CommonDataKinds.Phone.getTypeLabel(
-                            mContext.getResources(), phoneType, typeLabel);
+                    return success;
+                });
+    }
 
-                    try {
-                        phone.put(Constants.ENTRY, id);
-                        phone.put(Constants.LABEL, phoneLabel);
-                        phone.put(Constants.NUMBER, phoneNumber);
-                    } catch (JSONException e) {
-                        Log.e(TAG, "Error while creating phoneData payload.");
-                    }
-                    phoneData.put(phone);
+    /**
+     * Reads the names, nicknames and phone numbers of all contacts of the address book in a single query.
+     *
+     * @return Contacts by contact id, or {@code null} if the address book has no contacts.
+     */
+    private LinkedHashMap<String, Contact> queryContacts(String addressBookSourceId) {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        Cursor cursor = contentResolver.query(ContactsContract.Data.CONTENT_URI, CONTACTS_PROJECTION,
+                CONTACTS_SELECTION,
+                new String[] {addressBookSourceId, ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE,
+                        ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE,
+                        ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE},
+                ContactsContract.Data.CONTACT_ID);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            if (cursor.getCount() <= 0) {
+                return null;
+            }
+            LinkedHashMap<String, Contact> contacts = new LinkedHashMap<>();
+            while (cursor.moveToNext()) {
+                String id = cursor.getString(COLUMN_CONTACT_ID);
+                Contact contact = contacts.get(id);
+                if (contact == null) {
+                    contact = new Contact(id);
+                    contacts.put(id, contact);
+                }
+                String mimeType = cursor.getString(COLUMN_MIMETYPE);
+                if (ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                    contact.mHasName = true;
+                    contact.mFirstName = nonNull(cursor.getString(COLUMN_GIVEN_NAME));
+                    contact.mLastName = nonNull(cursor.getString(COLUMN_FAMILY_NAME));
+                } else if (ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                    contact.mNickName = nonNull(cursor.getString(COLUMN_NICKNAME));
+                } else if (ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                    CharSequence label = ContactsContract.CommonDataKinds.Phone.getTypeLabel(mContext.getResources(),
+                            cursor.getInt(COLUMN_PHONE_TYPE), cursor.getString(COLUMN_PHONE_LABEL));
+                    contact.mPhones.add(new String[] {
+                            label != null ? label.toString() : "", nonNull(cursor.getString(COLUMN_PHONE_NUMBER))});
                 }
-                phoneCur.close();
             }
+            // Only contacts with a name can be resolved by voice
+            contacts.values().removeIf(contact -> !contact.mHasName);
+            return contacts;
+        } finally {
+            cursor.close();
         }
+    }
 
-        if (nameCur != null) {
-            nameCur.close();
+    private static void writeAddressBook(JsonWriter writer, String addressBookSourceId, String addressBookName,
+            List<Contact> contacts) throws IOException {
+        writer.beginObject();
+        writer.name(ContactsConstants.ADDRESS_BOOK_SOURCE_ID).value(addressBookSourceId);
+        writer.name(Constants.NAME).value(addressBookName);
+        writer.name(Constants.TYPE).value(Constants.CONTACT_TYPE);
+        writer.name(Constants.ADDRESS_BOOK_DATA).beginObject();
+        writer.name(Constants.NAV_NAMES).beginArray().endArray();
+        writer.name(Constants.CONTACT_NAMES).beginArray();
+        for (Contact contact : contacts) {
+            writer.beginObject();
+            writer.name(Constants.ENTRY).value(contact.mId);
+            writer.name(Constants.FIRST_NAME).value(contact.mFirstName);
+            writer.name(Constants.LAST_NAME).value(contact.mLastName);
+            writer.name(Constants.NICK_NAME).value(contact.mNickName);
+            writer.endObject();
         }
-        if (nickCur != null) {
-            nickCur.close();
-        }
-
-        if (hasContacts) {
-            try {
-                addrBookData.put(Constants.NAV_NAMES, new JSONArray());
-                addrBookData.put(Constants.CONTACT_NAMES, contactsNames);
-                addrBookData.put(Constants.PHONE_DATA, phoneData);
-                addrBookData.put(Constants.POSTAL_ADDR, new JSONArray());
-                payload.put(ContactsConstants.ADDRESS_BOOK_SOURCE_ID, addressBookSourceId);
-                payload.put(Constants.NAME, addressBookName);
-                payload.put(Constants.TYPE, Constants.CONTACT_TYPE);
-                payload.put(Constants.ADDRESS_BOOK_DATA, addrBookData);
-                messageId = mAACSMessageSender.sendMessageReturnID(
-                        Topic.ADDRESS_BOOK, Action.AddressBook.ADD_ADDRESS_BOOK, payload.toString());
-            } catch (JSONException e) {
-                Log.e(TAG, "Error while creating contacts message payload.");
+        writer.endArray();
+        writer.name(Constants.PHONE_DATA).beginArray();
+        for (Contact contact : contacts) {
+            for (String[] phone : contact.mPhones) {
+                writer.beginObject();
+                writer.name(Constants.ENTRY).value(contact.mId);
+                writer.name(Constants.LABEL).value(phone[0]);
+                writer.name(Constants.NUMBER).value(phone[1]);
+                writer.endObject();
             }
-        } else {
-            Log.w(TAG, "No contacts to be uploaded");
         }
-        return messageId;
+        writer.endArray();
+        writer.name(Constants.POSTAL_ADDR).beginArray().endArray();
+        writer.endObject();
+        writer.endObject();
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
     }
 
     /**
@@ -263,41 +284,60 @@ public class PhoneBookController {
      *
      * @param addressBookSourceId The corresponding address book to be removed from cloud.
      */
-    String removeAddressBook(String addressBookSourceId) {
+    CompletableFuture<Boolean> removeAddressBook(String addressBookSourceId) {
         Log.d(TAG, "removeAddressBook");
+        mSyncIndex.remove(addressBookSourceId);
 
         JSONObject payload = new JSONObject();
-        String messageId = "";
         try {
             payload.put(ContactsConstants.ADDRESS_BOOK_SOURCE_ID, addressBookSourceId);
-            messageId = mAACSMessageSender.sendMessageReturnID(
-                    Topic.ADDRESS_BOOK, Action.AddressBook.REMOVE_ADDRESS_BOOK, payload.toString());
         } catch (JSONException e) {
             Log.e(TAG, "Error while creating removeAddressBook message payload.");
+            return CompletableFuture.completedFuture(false);
         }
-        return messageId;
+        return mAACSMessageSender
+                .sendRequest(Topic.ADDRESS_BOOK, Action.AddressBook.REMOVE_ADDRESS_BOOK, payload.toString(),
+                        REPLY_WAIT_DURATION)
+                .handle(PhoneBookController::isSuccessful);
     }
 
-    /**
-     * Resolve CompletableFuture set by Contacts Service
-     * This method is not designed to be called by client application.
-     *
-     */
-    void completeAddressBookUpdate(String id, boolean success) {
-        Log.d(TAG, "completeAddressBookUpdate");
+    private static boolean isSuccessful(AACSReplyMessage reply, Throwable throwable) {
+        if (throwable != null) {
+            Log.e(TAG, "AddressBook request failed: " + throwable.getMessage());
+            return false;
+        }
+        return reply.payload != null && reply.payload.contains("true");
+    }
 
-        synchronized (PhoneBookController.class) {
-            if (mExecutor.isShutdown()) {
-                Log.w(TAG, " Executor has shutdown, recreate executor");
-                mExecutor = Executors.newSingleThreadExecutor();
-            }
-            mExecutor.submit(() -> {
-                if (mAddressBookUpdateToFutureMap.containsKey(id)) {
-                    mAddressBookUpdateToFutureMap.get(id).complete(success);
-                } else {
-                    Log.e(TAG, String.format("AddressBook Updating with replyToId: %s not found.", id));
-                }
-            });
+    private static boolean waitForResult(CompletableFuture<Boolean> result) {
+        try {
+            // The request completes when AACS replies or after REPLY_WAIT_DURATION
+            return result.get();
+        } catch (ExecutionException | InterruptedException e) {
+            Log.e(TAG, "Error occurred during wait task execution: " + e.getMessage());
+        } catch (CancellationException e) {
+            Log.e(TAG, "Stopping wait for addressBook request");
+        }
+        return false;
+    }
+
+    private static class Contact {
+        final String mId;
+        boolean mHasName;
+        String mFirstName = "";
+        String mLastName = "";
+        String mNickName = "";
+        final List<String[]> mPhones = new ArrayList<>();
+
+        Contact(String id) {
+            mId = id;
+        }
+
+        long fingerprint() {
+            List<String> fields = new ArrayList<>(Arrays.asList(mFirstName, mLastName, mNickName));
+            // The order of the phone numbers of a contact is not significant
+            mPhones.stream().map(phone -> phone[0] + "\u0000" + phone[1]).sorted().forEach(fields::add);
+            return AddressBookSyncIndex.fingerprint(fields);
         }
     }
-}
\ No newline at end of file
+}
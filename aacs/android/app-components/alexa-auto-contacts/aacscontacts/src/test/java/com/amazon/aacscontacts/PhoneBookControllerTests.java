@@ -10,6 +10,8 @@ import android.provider.ContactsContract;
 import com.amazon.aacsconstants.Action;
 import com.amazon.aacsconstants.Topic;
 import com.amazon.alexa.auto.aacs.common.AACSMessageSender;
+import com.amazon.alexa.auto.aacs.common.AACSMessageWriter;
+import com.amazon.alexa.auto.aacs.common.AACSReplyMessage;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -19,6 +21,10 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Unit tests for {@link PhoneBookController}
@@ -27,7 +33,9 @@ import org.powermock.modules.junit4.PowerMockRunner;
 public class PhoneBookControllerTests {
     private final String TEST_ADDRESS_BOOK_SOURCE_ID = "74:B5:87:33:79:98";
     private final String TEST_ADDRESS_BOOK_NAME = "TestAddressBookName";
+    private final String TEST_MESSAGE_ID = "TestMessageId";
     private PhoneBookController mPhoneBookController;
+    private CompletableFuture<AACSReplyMessage> mAddReply;
 
     @Mock
     private AACSMessageSender mAACSMessageSender;
@@ -36,13 +44,7 @@ public class PhoneBookControllerTests {
     private Context mMockedContext;
 
     @Mock
-    private Cursor mMockedNameCursor;
-
-    @Mock
-    private Cursor mMockedNickCursor;
-
-    @Mock
-    private Cursor mMockedPhoneCursor;
+    private Cursor mMockedDataCursor;
 
     @Mock
     private ContentResolver mMockedContentResolver;
@@ -50,6 +52,7 @@ public class PhoneBookControllerTests {
     @Before
     public void setUp() {
         mPhoneBookController = new PhoneBookController(mMockedContext, mAACSMessageSender);
+        AddressBookSyncIndex.getInstance(mMockedContext).clear();
     }
 
     @Test
@@ -57,30 +60,19 @@ public class PhoneBookControllerTests {
         PowerMockito.when(mMockedContext.getContentResolver()).thenReturn(mMockedContentResolver);
         Assert.assertNotNull(mMockedContentResolver);
         PowerMockito
-                .when(mMockedContentResolver.query(ContactsContract.Data.CONTENT_URI, null,
-                        ContactsContract.Data.MIMETYPE + " = ?",
-                        new String[] {ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE}, null))
-                .thenReturn(mMockedNameCursor);
-        PowerMockito
-                .when(mMockedContentResolver.query(ContactsContract.Data.CONTENT_URI, null,
-                        ContactsContract.Data.MIMETYPE + " = ?",
-                        new String[] {ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE}, null))
-                .thenReturn(mMockedNickCursor);
-        PowerMockito
-                .when(mMockedContentResolver.query(eq(ContactsContract.CommonDataKinds.Phone.CONTENT_URI), eq(null),
-                        eq(ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " = ?"),
-                        new String[] {Mockito.anyString()}, eq(null)))
-                .thenReturn(mMockedPhoneCursor);
-        PowerMockito.when(mMockedNameCursor.getCount()).thenReturn(1);
-        PowerMockito
-                .when(mMockedNameCursor.getString(
-                        mMockedNameCursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_NAME)))
-                .thenReturn(TEST_ADDRESS_BOOK_SOURCE_ID);
-        String messageId = mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
-        Assert.assertNotEquals("", messageId);
+                .when(mMockedContentResolver.query(eq(ContactsContract.Data.CONTENT_URI), Mockito.any(String[].class),
+                        Mockito.anyString(), Mockito.any(String[].class), Mockito.anyString()))
+                .thenReturn(mMockedDataCursor);
+        PowerMockito.when(mMockedDataCursor.getCount()).thenReturn(1);
+        mockRequests();
+        CompletableFuture<Boolean> result =
+                mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        Assert.assertFalse(result.isDone());
+        mAddReply.complete(buildReply(true));
+        Assert.assertTrue(result.join());
         Mockito.verify(mAACSMessageSender, Mockito.times(1))
-                .sendMessageReturnID(
-                        eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK), Mockito.anyString());
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK),
+                        Mockito.any(AACSMessageWriter.PayloadWriter.class), Mockito.anyLong());
     }
 
     @Test
@@ -88,38 +80,159 @@ public class PhoneBookControllerTests {
         PowerMockito.when(mMockedContext.getContentResolver()).thenReturn(mMockedContentResolver);
         Assert.assertNotNull(mMockedContentResolver);
         PowerMockito
-                .when(mMockedContentResolver.query(ContactsContract.Data.CONTENT_URI, null,
-                        ContactsContract.Data.MIMETYPE + " = ?",
-                        new String[] {ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE}, null))
-                .thenReturn(mMockedNameCursor);
+                .when(mMockedContentResolver.query(eq(ContactsContract.Data.CONTENT_URI), Mockito.any(String[].class),
+                        Mockito.anyString(), Mockito.any(String[].class), Mockito.anyString()))
+                .thenReturn(mMockedDataCursor);
+        PowerMockito.when(mMockedDataCursor.getCount()).thenReturn(0);
+        CompletableFuture<Boolean> result =
+                mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        Assert.assertFalse(result.join());
+        Mockito.verify(mAACSMessageSender, Mockito.times(0))
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK),
+                        Mockito.any(AACSMessageWriter.PayloadWriter.class), Mockito.anyLong());
+    }
+
+    @Test
+    public void upload_unchanged_AddressBook_isSkipped() {
+        mockContact("Jane");
+        mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        mAddReply.complete(buildReply(true));
+
+        mockContact("Jane");
+        CompletableFuture<Boolean> result =
+                mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        Assert.assertTrue(result.join());
+        Mockito.verify(mAACSMessageSender, Mockito.times(1))
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK),
+                        Mockito.any(AACSMessageWriter.PayloadWriter.class), Mockito.anyLong());
+        Mockito.verify(mAACSMessageSender, Mockito.times(0))
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.REMOVE_ADDRESS_BOOK), Mockito.anyString(),
+                        Mockito.anyLong());
+    }
+
+    @Test
+    public void upload_changed_AddressBook_isReplaced() {
+        mockContact("Jane");
+        mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        mAddReply.complete(buildReply(true));
+
+        mockContact("Janet");
+        CompletableFuture<Boolean> result =
+                mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        Assert.assertFalse(result.isDone());
+        Mockito.verify(mAACSMessageSender, Mockito.times(1))
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.REMOVE_ADDRESS_BOOK), Mockito.anyString(),
+                        Mockito.anyLong());
+        Mockito.verify(mAACSMessageSender, Mockito.times(2))
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK),
+                        Mockito.any(AACSMessageWriter.PayloadWriter.class), Mockito.anyLong());
+    }
+
+    @Test
+    public void upload_failed_AddressBook_isNotSkipped() {
+        mockContact("Jane");
+        CompletableFuture<Boolean> result =
+                mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        mAddReply.complete(buildReply(false));
+        Assert.assertFalse(result.join());
+
+        mockContact("Jane");
+        mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        Mockito.verify(mAACSMessageSender, Mockito.times(2))
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK),
+                        Mockito.any(AACSMessageWriter.PayloadWriter.class), Mockito.anyLong());
+    }
+
+    @Test
+    public void upload_unanswered_AddressBook_isNotSkipped() {
+        mockContact("Jane");
+        CompletableFuture<Boolean> result =
+                mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        mAddReply.completeExceptionally(new TimeoutException());
+        Assert.assertFalse(result.join());
+
+        mockContact("Jane");
+        mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        Mockito.verify(mAACSMessageSender, Mockito.times(2))
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK),
+                        Mockito.any(AACSMessageWriter.PayloadWriter.class), Mockito.anyLong());
+    }
+
+    @Test
+    public void upload_AddressBook_afterAACSRestart_isNotSkipped() {
+        mockContact("Jane");
+        mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        mAddReply.complete(buildReply(true));
+
+        // The engine does not keep address books across restarts of AACS
+        AddressBookSyncIndex.getInstance(mMockedContext).onAACSStateChanged("STARTED");
+
+        mockContact("Jane");
+        mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
+        Mockito.verify(mAACSMessageSender, Mockito.times(2))
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK),
+                        Mockito.any(AACSMessageWriter.PayloadWriter.class), Mockito.anyLong());
+    }
+
+    /**
+     * Returns a single contact with the given first name from the contacts query.
+     */
+    private void mockContact(String firstName) {
+        Cursor cursor = Mockito.mock(Cursor.class);
+        PowerMockito.when(mMockedContext.getContentResolver()).thenReturn(mMockedContentResolver);
         PowerMockito
-                .when(mMockedContentResolver.query(ContactsContract.Data.CONTENT_URI, null,
-                        ContactsContract.Data.MIMETYPE + " = ?",
-                        new String[] {ContactsContract.CommonDataKinds.Nickname.CONTENT_ITEM_TYPE}, null))
-                .thenReturn(mMockedNickCursor);
+                .when(mMockedContentResolver.query(eq(ContactsContract.Data.CONTENT_URI), Mockito.any(String[].class),
+                        Mockito.anyString(), Mockito.any(String[].class), Mockito.anyString()))
+                .thenReturn(cursor);
+        PowerMockito.when(cursor.getCount()).thenReturn(1);
+        PowerMockito.when(cursor.moveToNext()).thenReturn(true, false);
+        PowerMockito.when(cursor.getString(0)).thenReturn("1");
+        PowerMockito.when(cursor.getString(1))
+                .thenReturn(ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE);
+        PowerMockito.when(cursor.getString(2)).thenReturn(firstName);
+        PowerMockito.when(cursor.getString(3)).thenReturn("Doe");
+        mockRequests();
+    }
+
+    /**
+     * Answers each request with a new pending reply, completed by the test.
+     */
+    private void mockRequests() {
         PowerMockito
-                .when(mMockedContentResolver.query(eq(ContactsContract.CommonDataKinds.Phone.CONTENT_URI), eq(null),
-                        eq(ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " = ?"),
-                        new String[] {Mockito.anyString()}, eq(null)))
-                .thenReturn(mMockedPhoneCursor);
-        PowerMockito.when(mMockedNameCursor.getCount()).thenReturn(0);
+                .when(mAACSMessageSender.sendRequest(
+                        eq(Topic.ADDRESS_BOOK), Mockito.anyString(), Mockito.anyString(), Mockito.anyLong()))
+                .thenAnswer(invocation -> new CompletableFuture<AACSReplyMessage>());
         PowerMockito
-                .when(mMockedNameCursor.getString(
-                        mMockedNameCursor.getColumnIndex(ContactsContract.RawContacts.ACCOUNT_NAME)))
-                .thenReturn(TEST_ADDRESS_BOOK_SOURCE_ID);
-        String messageId = mPhoneBookController.addAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID, TEST_ADDRESS_BOOK_NAME);
-        Assert.assertEquals("", messageId);
-        Mockito.verify(mAACSMessageSender, Mockito.times(0))
-                .sendMessageReturnID(
-                        eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.ADD_ADDRESS_BOOK), Mockito.anyString());
+                .when(mAACSMessageSender.sendRequest(eq(Topic.ADDRESS_BOOK), Mockito.anyString(),
+                        Mockito.any(AACSMessageWriter.PayloadWriter.class), Mockito.anyLong()))
+                .thenAnswer(invocation -> {
+                    mAddReply = new CompletableFuture<>();
+                    return mAddReply;
+                });
+    }
+
+    private AACSReplyMessage buildReply(boolean success) {
+        try {
+            return Whitebox.invokeConstructor(AACSReplyMessage.class, "TestReplyId", TEST_MESSAGE_ID,
+                    Topic.ADDRESS_BOOK, Action.AddressBook.ADD_ADDRESS_BOOK, "{\"success\":" + success + "}");
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
     }
 
     @Test
     public void remove_valid_AddressBook() {
-        String messageId = mPhoneBookController.removeAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID);
-        Assert.assertNotEquals("", messageId);
+        CompletableFuture<AACSReplyMessage> removeReply = new CompletableFuture<>();
+        PowerMockito
+                .when(mAACSMessageSender.sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.REMOVE_ADDRESS_BOOK),
+                        Mockito.anyString(), Mockito.anyLong()))
+                .thenReturn(removeReply);
+        CompletableFuture<Boolean> result = mPhoneBookController.removeAddressBook(TEST_ADDRESS_BOOK_SOURCE_ID);
+        Assert.assertFalse(result.isDone());
+        removeReply.complete(buildReply(true));
+        Assert.assertTrue(result.join());
         Mockito.verify(mAACSMessageSender, Mockito.times(1))
-                .sendMessageReturnID(
-                        eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.REMOVE_ADDRESS_BOOK), Mockito.anyString());
+                .sendRequest(eq(Topic.ADDRESS_BOOK), eq(Action.AddressBook.REMOVE_ADDRESS_BOOK), Mockito.anyString(),
+                        Mockito.anyLong());
     }
 }
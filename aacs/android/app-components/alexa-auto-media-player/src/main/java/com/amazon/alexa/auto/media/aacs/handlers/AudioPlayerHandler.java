@@ -15,6 +15,7 @@
 package com.amazon.alexa.auto.media.aacs.handlers;
 
 import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -32,6 +33,8 @@ import com.amazon.alexa.auto.apps.common.util.Preconditions;
 import com.amazon.alexa.auto.media.MusicStreamAttributeUpdater;
 import com.amazon.alexa.auto.media.player.MediaPlayerAudioFocusController;
 import com.amazon.alexa.auto.media.player.MediaPlayerExo;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
 
 import org.json.JSONObject;
 import org.json.JSONStringer;
@@ -58,6 +61,8 @@ public class AudioPlayerHandler implements AutoCloseable, IMediaDuckingObserver
     // Internal Dependencies.
     @NonNull
     private final AudioFocusPlaybackController mAudioFocusPlaybackController;
+    @NonNull
+    private final PlaybackSnapshotPublisher mPlaybackSnapshotPublisher;
 
     // State.
     private String currentSourceToken;
@@ -83,10 +88,14 @@ public class AudioPlayerHandler implements AutoCloseable, IMediaDuckingObserver
 
         mAudioFocusPlaybackController = new AudioFocusPlaybackController();
         mAudioFocusController.setPlaybackController(mAudioFocusPlaybackController);
+
+        mPlaybackSnapshotPublisher = new PlaybackSnapshotPublisher();
+        mTargetMediaPlayer.getPlayer().addListener(mPlaybackSnapshotPublisher);
     }
 
     @Override
     public void close() throws Exception {
+        mTargetMediaPlayer.getPlayer().removeListener(mPlaybackSnapshotPublisher);
         mAudioFocusController.close();
     }
 
@@ -289,6 +298,39 @@ public class AudioPlayerHandler implements AutoCloseable, IMediaDuckingObserver
         }
     }
 
+    /**
+     * Publish the current position, playback rate and buffer state to AACS, so that AACS can answer
+     * position queries from the Engine without asking the player.
+     */
+    private void publishPlaybackSnapshot() {
+        if (this.currentSourceToken == null) {
+            return;
+        }
+        try {
+            float playbackRate = mTargetMediaPlayer.isPlaying() ? mTargetMediaPlayer.getPlaybackSpeed() : 0;
+            String payload = new JSONStringer()
+                                     .object()
+                                     .key(AASBConstants.AudioOutput.CHANNEL)
+                                     .value(AUDIO_PLAYER_CHANNEL)
+                                     .key(AASBConstants.AudioOutput.TOKEN)
+                                     .value(this.currentSourceToken)
+                                     .key(AASBConstants.AudioOutput.POSITION)
+                                     .value(mTargetMediaPlayer.getPosition())
+                                     .key(AASBConstants.AudioOutput.PLAYBACK_RATE)
+                                     .value(playbackRate)
+                                     .key(AASBConstants.AudioOutput.TIMESTAMP)
+                                     .value(SystemClock.elapsedRealtime())
+                                     .key(AASBConstants.AudioOutput.BUFFERED_BYTES)
+                                     .value(mTargetMediaPlayer.getBufferedBytes())
+                                     .endObject()
+                                     .toString();
+
+            mAACSSender.sendMessage(Topic.AUDIO_OUTPUT, Action.AudioOutput.PLAYBACK_SNAPSHOT, payload);
+        } catch (Exception e) {
+            Log.e(TAG, "failed to create playbackSnapshot JSON payload. Error: " + e);
+        }
+    }
+
     private void handleSetPosition(@NonNull String messageId, @Nullable String payload) {
         Preconditions.checkArgument(payload != null && !payload.isEmpty());
 
@@ -329,6 +371,32 @@ public class AudioPlayerHandler implements AutoCloseable, IMediaDuckingObserver
         }
     }
 
+    /**
+     * Publishes a playback snapshot whenever the position stops advancing linearly.
+     */
+    private class PlaybackSnapshotPublisher implements Player.Listener {
+        @Override
+        public void onIsPlayingChanged(boolean isPlaying) {
+            publishPlaybackSnapshot();
+        }
+
+        @Override
+        public void onPlaybackStateChanged(int playbackState) {
+            publishPlaybackSnapshot();
+        }
+
+        @Override
+        public void onPositionDiscontinuity(
+                Player.PositionInfo oldPosition, Player.PositionInfo newPosition, int reason) {
+            publishPlaybackSnapshot();
+        }
+
+        @Override
+        public void onPlaybackParametersChanged(PlaybackParameters playbackParameters) {
+            publishPlaybackSnapshot();
+        }
+    }
+
     /**
      * Playback controller for Audio Focus.
      */
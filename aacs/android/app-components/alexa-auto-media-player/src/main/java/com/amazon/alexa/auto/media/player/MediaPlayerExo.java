@@ -22,6 +22,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 
 import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.PlaybackException;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.SimpleExoPlayer;
@@ -191,6 +192,38 @@ public class MediaPlayerExo {
         return positionMs;
     }
 
+    /**
+     * Tells if the player is currently advancing the playback position.
+     *
+     * @return true if the player is playing.
+     */
+    public boolean isPlaying() {
+        return mMainPlayer.isPlaying();
+    }
+
+    /**
+     * Gets the playback speed, 1 being the normal speed.
+     *
+     * @return Playback speed.
+     */
+    public float getPlaybackSpeed() {
+        return mMainPlayer.getPlaybackParameters().speed;
+    }
+
+    /**
+     * Gets an estimate of the number of bytes buffered ahead of the current position.
+     *
+     * @return Number of bytes buffered, or 0 if the bitrate of the media is unknown.
+     */
+    public long getBufferedBytes() {
+        Format audioFormat = mMainPlayer.getAudioFormat();
+        if (audioFormat == null || audioFormat.bitrate == Format.NO_VALUE) {
+            return 0;
+        }
+        long bufferMs = mMainPlayer.getBufferedPosition() - mMainPlayer.getCurrentPosition();
+        return bufferMs > 0 ? bufferMs * audioFormat.bitrate / 1000 / 8 : 0;
+    }
+
     /**
      * Gets duration of current playback.
      *
@@ -23,6 +23,7 @@ import androidx.annotation.Nullable;
 
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.MediaSourceEventListener;
 import com.google.android.exoplayer2.source.ProgressiveMediaSource;
@@ -34,25 +35,60 @@ import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DefaultHttpDataSource;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 import com.google.android.exoplayer2.util.Util;
 
+import java.io.File;
+
 /**
  * Factory class to get the media source based on the URI received from Alexa service
+ *
+ * Media is read through a bounded on-disk cache shared by all sources, so that replaying a track or seeking back
+ * into a part of it that was already played does not download it again. The least recently used media is evicted
+ * when the cache is full.
  */
 public class MediaSourceFactory {
     private static final String TAG = "MediaSourceFactory";
     private static final String USER_AGENT = "ShowcaseMediaUA";
     private static final int CONNECTION_TIMEOUT_MS = 8000;
     private static final int READ_TIMEOUT_MS = 20000;
+    private static final String MEDIA_CACHE_DIRECTORY = "media";
+    private static final long MAX_MEDIA_CACHE_SIZE_BYTES = 64 * 1024 * 1024;
+    // Only one SimpleCache may use a directory at a time
+    private static Cache sMediaCache;
     private final Context mContext;
     private final Handler mMainHandler = new Handler();
     private final PlaylistParser mPlaylistParser = new PlaylistParser();
     private final MediaSourceListener mMediaSourceListener = new MediaSourceListener();
-    private DataSource.Factory mOkHttpDataSourceFactory;
+    private DataSource.Factory mDataSourceFactory;
 
     public MediaSourceFactory(Context context) {
         mContext = context;
-        mOkHttpDataSourceFactory = buildOkHttpDataSourceFactory(mContext);
+        mDataSourceFactory = buildCacheDataSourceFactory(mContext, buildOkHttpDataSourceFactory(mContext));
+    }
+
+    private static synchronized Cache getMediaCache(Context context) {
+        if (sMediaCache == null) {
+            File cacheDirectory = new File(context.getCacheDir(), MEDIA_CACHE_DIRECTORY);
+            sMediaCache = new SimpleCache(cacheDirectory,
+                    new LeastRecentlyUsedCacheEvictor(MAX_MEDIA_CACHE_SIZE_BYTES), new ExoDatabaseProvider(context));
+        }
+        return sMediaCache;
+    }
+
+    private DataSource.Factory buildCacheDataSourceFactory(Context context, DataSource.Factory upstreamFactory) {
+        try {
+            return new CacheDataSource.Factory()
+                    .setCache(getMediaCache(context.getApplicationContext()))
+                    .setUpstreamDataSourceFactory(upstreamFactory)
+                    .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to create media cache. Media will not be cached. " + e);
+            return upstreamFactory;
+        }
     }
 
     private HttpDataSource.Factory buildOkHttpDataSourceFactory(Context context) {
@@ -68,7 +104,7 @@ public class MediaSourceFactory {
     }
 
     public MediaSource createHttpMediaSource(final Uri uri) throws Exception {
-        return createMediaSource(uri, mOkHttpDataSourceFactory, mMediaSourceListener, mMainHandler, mPlaylistParser);
+        return createMediaSource(uri, mDataSourceFactory, mMediaSourceListener, mMainHandler, mPlaylistParser);
     }
 
     private MediaSource createMediaSource(final Uri uri, final DataSource.Factory dataSourceFactory,
@@ -18,6 +18,7 @@ import static com.amazon.alexa.auto.apps.common.util.NaviFavoritesSettingsProvid
 
 import android.content.Context;
 import android.os.Handler;
+import android.util.JsonWriter;
 import android.util.Log;
 import android.util.Pair;
 
@@ -39,11 +40,12 @@ import com.amazon.alexa.auto.navigation.util.AnnotationScanner;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
@@ -389,59 +391,68 @@ public class GenericNaviProvider implements NaviProvider, NaviResponseReporter {
 
     @Override
     public void reportNaviFavorites(@NotNull List<NavigationEntry> navigationEntry) {
-        JSONObject payload = new JSONObject();
-        JSONArray navigationNames = new JSONArray();
-        JSONArray postalAddresses = new JSONArray();
+        List<NavigationEntry> entries = new ArrayList<>();
         for (NavigationEntry entry : navigationEntry) {
             if (entry == null)
                 continue;
-            try {
-                JSONObject naviName = new JSONObject();
-                naviName.put(ENTRY_ID, entry.getEntryId());
-                naviName.put(NAME, entry.getName());
-                naviName.put(PHONETIC_NAME, entry.getPhoneticName() == null ? "" : entry.getPhoneticName());
-
-                JSONObject postalAddress = new JSONObject();
-                postalAddress.put(ENTRY_ID, entry.getEntryId());
-                postalAddress.put(LABEL, entry.getLabel());
-
-                postalAddress.put(ADDRESS_LINE_1, entry.getAddressLine1());
-                postalAddress.put(ADDRESS_LINE_2, entry.getAddressLine2() == null ? "" : entry.getAddressLine2());
-                postalAddress.put(ADDRESS_LINE_3, entry.getAddressLine3() == null ? "" : entry.getAddressLine3());
-
-                postalAddress.put(CITY, entry.getCity() == null ? "" : entry.getCity());
-                postalAddress.put(STATE_OR_REGION, entry.getStateOrRegion() == null ? "" : entry.getStateOrRegion());
-                postalAddress.put(
-                        DISTRICT_OR_COUNTY, entry.getDistrictOrCounty() == null ? "" : entry.getDistrictOrCounty());
-                postalAddress.put(POSTAL_CODE, entry.getPostalCode() == null ? "" : entry.getPostalCode());
-                postalAddress.put(COUNTRY, entry.getCountry() == null ? "" : entry.getCountry());
-                postalAddress.put(LATITUDE_IN_DEGREES, entry.getLatitudeInDegrees());
-                postalAddress.put(LONGITUDE_IN_DEGREES, entry.getLongitudeInDegrees());
-                postalAddress.put(
-                        ACCURACY_IN_METERS, entry.getAccuracyInMeters() == null ? 0f : entry.getAccuracyInMeters());
-
-                navigationNames.put(naviName);
-                postalAddresses.put(postalAddress);
-            } catch (JSONException e) {
-                e.printStackTrace();
+            if (!Float.isFinite(entry.getLatitudeInDegrees()) || !Float.isFinite(entry.getLongitudeInDegrees())) {
+                Log.e(TAG, "Skipping navigation favorite with invalid coordinates: " + entry.getEntryId());
+                continue;
             }
+            entries.add(entry);
         }
-        try {
-            JSONObject addressBookData = new JSONObject();
-            addressBookData.put(NAVIGATION_NAMES, navigationNames);
-            addressBookData.put(CONTACT_NAMES, new JSONArray());
-            addressBookData.put(PHONE_DATA, new JSONArray());
-            addressBookData.put(POSTAL_ADDRESSES, postalAddresses);
-            mAddressBookSourceId = String.valueOf(new Random().nextInt());
-            payload.put(ADDRESS_BOOK_SOURCE_ID_KEY, mAddressBookSourceId);
-            payload.put(NAME, ADDRESS_BOOK_SOURCE_NAME);
-            payload.put(TYPE, NAVIGATION);
-            payload.put(ADDRESS_BOOK_DATA, addressBookData);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to construct JSON object");
+        mAddressBookSourceId = String.valueOf(new Random().nextInt());
+        String addressBookSourceId = mAddressBookSourceId;
+        // The payload is written straight to the IPC transport, the favorites are never held as a string
+        mFavoritesMessageId = mAACSMessageSender.sendMessageReturnID(Topic.ADDRESS_BOOK,
+                Action.AddressBook.ADD_ADDRESS_BOOK,
+                writer -> writeNaviFavorites(writer, addressBookSourceId, entries));
+    }
+
+    private static void writeNaviFavorites(JsonWriter writer, String addressBookSourceId,
+            List<NavigationEntry> entries) throws IOException {
+        writer.beginObject();
+        writer.name(ADDRESS_BOOK_SOURCE_ID_KEY).value(addressBookSourceId);
+        writer.name(NAME).value(ADDRESS_BOOK_SOURCE_NAME);
+        writer.name(TYPE).value(NAVIGATION);
+        writer.name(ADDRESS_BOOK_DATA).beginObject();
+        writer.name(NAVIGATION_NAMES).beginArray();
+        for (NavigationEntry entry : entries) {
+            writer.beginObject();
+            writer.name(ENTRY_ID).value(entry.getEntryId());
+            writer.name(NAME).value(entry.getName());
+            writer.name(PHONETIC_NAME).value(nonNull(entry.getPhoneticName()));
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name(CONTACT_NAMES).beginArray().endArray();
+        writer.name(PHONE_DATA).beginArray().endArray();
+        writer.name(POSTAL_ADDRESSES).beginArray();
+        for (NavigationEntry entry : entries) {
+            writer.beginObject();
+            writer.name(ENTRY_ID).value(entry.getEntryId());
+            writer.name(LABEL).value(entry.getLabel());
+            writer.name(ADDRESS_LINE_1).value(entry.getAddressLine1());
+            writer.name(ADDRESS_LINE_2).value(nonNull(entry.getAddressLine2()));
+            writer.name(ADDRESS_LINE_3).value(nonNull(entry.getAddressLine3()));
+            writer.name(CITY).value(nonNull(entry.getCity()));
+            writer.name(STATE_OR_REGION).value(nonNull(entry.getStateOrRegion()));
+            writer.name(DISTRICT_OR_COUNTY).value(nonNull(entry.getDistrictOrCounty()));
+            writer.name(POSTAL_CODE).value(nonNull(entry.getPostalCode()));
+            writer.name(COUNTRY).value(nonNull(entry.getCountry()));
+            writer.name(LATITUDE_IN_DEGREES).value(entry.getLatitudeInDegrees());
+            writer.name(LONGITUDE_IN_DEGREES).value(entry.getLongitudeInDegrees());
+            writer.name(ACCURACY_IN_METERS)
+                    .value(entry.getAccuracyInMeters() == null ? 0f : entry.getAccuracyInMeters());
+            writer.endObject();
         }
-        mFavoritesMessageId = mAACSMessageSender.sendMessageReturnID(
-                Topic.ADDRESS_BOOK, Action.AddressBook.ADD_ADDRESS_BOOK, payload.toString());
+        writer.endArray();
+        writer.endObject();
+        writer.endObject();
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
     }
 
     @Override
@@ -21,6 +21,7 @@ import static com.amazon.aacstts.TTSConstants.DEFAULT_PROVIDER;
 
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
 import android.os.Bundle;
 import android.os.Message;
 import android.speech.tts.SynthesisCallback;
@@ -45,6 +46,7 @@ import com.amazon.aacstts.models.PrepareSpeechMessagePayload;
 import com.amazon.aacstts.models.ProviderVoiceItem;
 import com.amazon.alexa.auto.aacs.common.AACSMessageBuilder;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +58,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * AmazonTextToSpeechService implements the abstract Android TextToSpeechService interfaces. It communciates
@@ -71,6 +74,7 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
      * 3) > 100 for higher pitches.
      */
     private static final Integer DEFAULT_PITCH = 100;
+    private static final Integer DEFAULT_SPEECH_RATE = 100;
 
     /**
      * The speech rate can have following values in Android
@@ -86,6 +90,16 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
     private static final String SSML_FORMAT = "<speak><prosody rate='%d%%' pitch='%d%%'>%s</prosody></speak>";
     private static final String LOCALE_FORMAT = "%s-%s";
 
+    /**
+     * Synthesizes a list of phrases into the speech cache ahead of time, so that they are spoken without a request to
+     * AACS. The phrases are given by {@link #EXTRA_PHRASES} and their locale, for example "en-US", by
+     * {@link #EXTRA_LOCALE}. Phrases are synthesized at the default speech rate and pitch.
+     */
+    public static final String ACTION_PRESYNTHESIZE = "com.amazon.aacstts.action.PRESYNTHESIZE";
+    public static final String EXTRA_PHRASES = "com.amazon.aacstts.extra.PHRASES";
+    public static final String EXTRA_LOCALE = "com.amazon.aacstts.extra.LOCALE";
+    private static final String SPEECH_CACHE_DIRECTORY = "tts-cache";
+
     private MessageHandler mMessageHandler;
     private AlexaClientHandler mAlexaClientHandler;
     private AASBHandler mAASBHandler;
@@ -95,7 +109,12 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
     private AACSPinger mAACSPinger;
     protected static TargetComponent mTarget;
     private SynthesizeTextUtil mSynthesizeTextUtil;
+    private SpeechCache mSpeechCache;
     ExecutorService mExecutorService;
+    private ExecutorService mPresynthesisExecutor;
+    // SynthesizeTextUtil handles one request at a time, so presynthesis takes turns with synthesis. The lock is fair:
+    // an utterance waits at most for the phrase being presynthesized.
+    private final ReentrantLock mSynthesisLock = new ReentrantLock(true);
     private static final long GET_AACS_STATUS_DEFAULT_TIMEOUT = 1000;
 
     private CompletableFuture<Boolean> mIsAACSRunningPingResponse;
@@ -106,6 +125,9 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
         initializeIPC();
         initializeMessageHandlers();
         mExecutorService = Executors.newSingleThreadExecutor();
+        mPresynthesisExecutor = Executors.newSingleThreadExecutor();
+        mSpeechCache = new SpeechCache(
+                new File(getFilesDir(), SPEECH_CACHE_DIRECTORY), SpeechCache.DEFAULT_MAX_SIZE_BYTES);
         mIsAACSRunningPingResponse = new CompletableFuture<>();
         super.onCreate();
         Log.i(TAG, "TTS package name = " + getPackageName());
@@ -124,6 +146,10 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
             mExecutorService.shutdown();
             mExecutorService = null;
         }
+        if (mPresynthesisExecutor != null) {
+            mPresynthesisExecutor.shutdownNow();
+            mPresynthesisExecutor = null;
+        }
 
         if (mAACSPinger != null) {
             mAACSPinger.shutdown();
@@ -134,6 +160,20 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
         mSynthesizeTextUtil.cleanUp();
     }
 
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_PRESYNTHESIZE.equals(intent.getAction())) {
+            String[] phrases = intent.getStringArrayExtra(EXTRA_PHRASES);
+            String locale = intent.getStringExtra(EXTRA_LOCALE);
+            if (phrases == null || TextUtils.isEmpty(locale)) {
+                Log.w(TAG, "onStartCommand: Phrases or locale missing, nothing to presynthesize");
+            } else {
+                mPresynthesisExecutor.submit(() -> presynthesize(phrases, locale));
+            }
+        }
+        return START_NOT_STICKY;
+    }
+
     @Override
     protected int onIsLanguageAvailable(String lang, String country, String variant) {
         Optional<String> iso2Language = ISO3CodeUtil.getISO2LangCode(lang);
@@ -193,6 +233,16 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
     protected void onSynthesizeText(SynthesisRequest synthesisRequest, SynthesisCallback synthesisCallback) {
         Log.d(TAG, "onSynthesizeText");
 
+        Optional<PrepareSpeechMessagePayload> payload = constructPrepareSpeechPayload(synthesisRequest);
+
+        // A cached speech is played without AACS
+        String cacheKey = payload.map(p -> SpeechCache.getKey(p.getSpeechKey())).orElse(null);
+        if (cacheKey != null && mSpeechCache.play(cacheKey, synthesisCallback)) {
+            Log.d(TAG, "onSynthesizeText: Speech played from the cache");
+            synthesisCallback.done();
+            return;
+        }
+
         CompletableFuture<Boolean> isAACSConnected =
                 checkIfAACSIsConnected(mAlexaClientHandler.isAlexaClientConnected(), mIsAACSRunningPingResponse,
                         mExecutorService, mAACSPinger);
@@ -208,8 +258,6 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
             return;
         }
 
-        Optional<PrepareSpeechMessagePayload> payload = constructPrepareSpeechPayload(synthesisRequest);
-
         if (!payload.isPresent()) {
             Log.w(TAG, "onSynthesizeText: The construction of payload for the prepare speech failed");
             synthesisCallback.error(TextToSpeech.ERROR_INVALID_REQUEST);
@@ -224,23 +272,75 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
         int networkTimeout =
                 getNetworkTimeoutInMs(bundle.getString(TextToSpeech.Engine.KEY_FEATURE_NETWORK_TIMEOUT_MS));
 
+        // Record the speech to add it to the cache once it is synthesized
+        SynthesisCallback cachingCallback = mSpeechCache.cacheTo(cacheKey, synthesisCallback);
+        mSynthesisLock.lock();
         try {
             mSynthesizeTextUtil.sendPrepareSpeechMessage(networkTimeout, payload.get(), TTSConstants.TOPIC,
-                    TTSConstants.Action.PREPARE_SPEECH, synthesisCallback);
+                    TTSConstants.Action.PREPARE_SPEECH, cachingCallback);
         } catch (Exception e) {
-            synthesisCallback.error(TextToSpeech.ERROR_SYNTHESIS);
+            cachingCallback.error(TextToSpeech.ERROR_SYNTHESIS);
             Log.e(TAG, "onSynthesizeText: Exception occurred while trying to synthesize the text", e);
+        } finally {
+            mSynthesisLock.unlock();
         }
-        synthesisCallback.done();
+        cachingCallback.done();
+    }
+
+    /**
+     * Synthesizes the phrases that are not in the speech cache yet into the cache, one at a time and never at the
+     * same time as {@link #onSynthesizeText}. A phrase interrupted by {@link #onStop()} is not cached.
+     */
+    private void presynthesize(String[] phrases, String locale) {
+        CompletableFuture<Boolean> isAACSConnected =
+                checkIfAACSIsConnected(mAlexaClientHandler.isAlexaClientConnected(), mIsAACSRunningPingResponse,
+                        mExecutorService, mAACSPinger);
+        try {
+            if (!isAACSConnected.get(GET_AACS_STATUS_DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("AACS was not in connected state");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, String.format("presynthesize: Exception encountered: %s. Exiting", e.getMessage()));
+            return;
+        }
+
+        for (String phrase : phrases) {
+            String ssmlText = String.format(
+                    SSML_FORMAT, getSpeechRateForSSML(DEFAULT_SPEECH_RATE), getPitchForSSML(DEFAULT_PITCH), phrase);
+            Optional<PrepareSpeechMessagePayload> payload = constructPrepareSpeechPayload(ssmlText, locale);
+            if (!payload.isPresent()) {
+                Log.w(TAG, "presynthesize: The construction of payload for the prepare speech failed");
+                return;
+            }
+            String cacheKey = SpeechCache.getKey(payload.get().getSpeechKey());
+            if (mSpeechCache.contains(cacheKey)) {
+                continue;
+            }
+            try {
+                mSynthesisLock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                Log.w(TAG, "presynthesize: Interrupted, remaining phrases are not synthesized");
+                return;
+            }
+            SynthesisCallback cachingCallback = mSpeechCache.cacheTo(cacheKey, null);
+            try {
+                mSynthesizeTextUtil.sendPrepareSpeechMessage(NETWORK_DEFAULT_TIMEOUT_MS, payload.get(),
+                        TTSConstants.TOPIC, TTSConstants.Action.PREPARE_SPEECH, cachingCallback);
+            } catch (Exception e) {
+                cachingCallback.error(TextToSpeech.ERROR_SYNTHESIS);
+                Log.e(TAG, "presynthesize: Exception occurred while trying to synthesize the text", e);
+            } finally {
+                mSynthesisLock.unlock();
+            }
+            cachingCallback.done();
+        }
+        Log.i(TAG, String.format("presynthesize: %d phrases for locale %s done", phrases.length, locale));
     }
 
     /**
      * Construct the {@link PrepareSpeechMessagePayload} to be included in the synthesize request.
      */
     private Optional<PrepareSpeechMessagePayload> constructPrepareSpeechPayload(SynthesisRequest synthesisRequest) {
-        final String ssmlText = generateSSMLDocument(synthesisRequest);
-        final String speechId = UUID.randomUUID().toString();
-
         Optional<String> iso2Language = ISO3CodeUtil.getISO2LangCode(synthesisRequest.getLanguage());
         Optional<String> iso2Country = ISO3CodeUtil.getISO2CountryCode(synthesisRequest.getCountry());
 
@@ -255,6 +355,15 @@ public class AmazonTextToSpeechService extends TextToSpeechService {
             return Optional.empty();
         }
 
+        return constructPrepareSpeechPayload(generateSSMLDocument(synthesisRequest), locale);
+    }
+
+    /**
+     * Construct the {@link PrepareSpeechMessagePayload} to synthesize an SSML document in a locale.
+     */
+    private Optional<PrepareSpeechMessagePayload> constructPrepareSpeechPayload(String ssmlText, String locale) {
+        final String speechId = UUID.randomUUID().toString();
+
         PrepareSpeechMessageOptions options;
 
         Optional<ProviderVoiceItem> providerVoiceItemOptional = getVoiceItem(locale);
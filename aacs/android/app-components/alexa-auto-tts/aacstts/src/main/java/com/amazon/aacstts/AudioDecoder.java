@@ -22,24 +22,48 @@ import static com.amazon.aacstts.TTSConstants.AACS_TTS_LOG_PREFIX;
 import android.media.AudioFormat;
 import android.media.MediaCodec;
 import android.media.MediaFormat;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 /**
  * Wrapper class over {@link MediaCodec} responsible to decode Audio bytes.
+ *
+ * The codec runs in asynchronous mode. The thread calling {@link #decode(InputStream, BooleanSupplier)} fills the
+ * input buffers as the codec frees them, and the decoded audio is handed to the {@link AudioAvailableCallback} from
+ * the decoder thread as soon as each output buffer is ready. Neither thread spins while the codec is busy, and the
+ * arrays used to copy the data in and out of the codec buffers are reused for the whole stream.
  */
 public class AudioDecoder {
     private String TAG = AACS_TTS_LOG_PREFIX + AudioDecoder.class.getSimpleName();
 
-    private static long TIMEOUT_IN_MICROSECONDS = 10_000; // 10 milliseconds
-    private static int BITS_IN_A_BYTE = 8;
+    private static long POLL_TIMEOUT_IN_MILLISECONDS = 100;
 
     private MediaCodec mDecoder;
+    private HandlerThread mDecoderThread;
     private FormatChangedCallback mCallback;
+    private AudioAvailableCallback mAudioCallback;
+
+    private final BlockingQueue<Integer> mFreeInputBuffers = new LinkedBlockingQueue<>();
+    private final CountDownLatch mEndOfStream = new CountDownLatch(1);
+    private volatile boolean mFailed;
+
+    // Used by the thread that decodes the stream
+    private byte[] mReadArray = new byte[0];
+    // Used by the decoder thread
+    private byte[] mDecodedArray = new byte[0];
 
     /**
      * Configuring the Audio Decoder to be used to decoding.
@@ -47,24 +71,35 @@ public class AudioDecoder {
      * @param sampleRateInHz : The sampling rate of the content.
      * @param channelCount : the audio channel count.
      * @param callback: The callback handler to specify the action to be performed when Audio Format changes.
+     * @param audioCallback: The callback handler that receives the decoded audio.
      * @return boolean: True if the decoder was configured successfully else False.
      */
-    public boolean configureDecoder(
-            @NonNull String mimeType, int sampleRateInHz, int channelCount, @NonNull FormatChangedCallback callback) {
+    public boolean configureDecoder(@NonNull String mimeType, int sampleRateInHz, int channelCount,
+            @NonNull FormatChangedCallback callback, @NonNull AudioAvailableCallback audioCallback) {
         try {
             final MediaFormat format = MediaFormat.createAudioFormat(mimeType, sampleRateInHz, channelCount);
             mDecoder = MediaCodec.createDecoderByType(mimeType);
+            mCallback = callback;
+            mAudioCallback = audioCallback;
+            mDecoderThread = new HandlerThread("AudioDecoderThread");
+            mDecoderThread.start();
+            // The callback must be set before configuring the codec to run it in asynchronous mode.
+            mDecoder.setCallback(new DecoderCallback(), new Handler(mDecoderThread.getLooper()));
             mDecoder.configure(format,
                     null, // surface : required only for video encoding
                     null, // crypto : required for encrypted data
                     0 // 0 indicates that we are configuring to use this as decoder, whereas 1 would have indicated that
                       // we want to use this as an encoder.
             );
-            mCallback = callback;
             return true;
         } catch (final Exception e) {
-            mDecoder = null; // clearing the decoder as its not configured correctly.
-            Log.e(TAG, "Exception occurred while trying to configure the decoder. for ");
+            // clearing the decoder as its not configured correctly.
+            if (mDecoder != null) {
+                mDecoder.release();
+                mDecoder = null;
+            }
+            quitDecoderThread();
+            Log.e(TAG, "Exception occurred while trying to configure the decoder. for " + mimeType, e);
             return false;
         }
     }
@@ -82,68 +117,70 @@ public class AudioDecoder {
     }
 
     /**
-     *  Takes in the byte array with the data that needs to be decoded.
+     * Decodes the stream until its end. It blocks until all the decoded audio is handed to the
+     * {@link AudioAvailableCallback}.
      *
-     * @param inputData - the byte array which is filled with data to be decoded.
-     * @param bytesToDecode - the total amount of data to be decoded.
-     * @return the byte array which consists of the decoded data.
+     * @param stream - the stream of the data to be decoded.
+     * @param isDecoding - returns false when decoding should be cancelled.
+     * @return true if the whole stream was decoded, false if decoding failed or was cancelled.
      */
-    public byte[] decode(byte[] inputData, int bytesToDecode) {
-        // The decoder is not able to provide an input buffer if the
-        // byte array is not in the multiples of 8.
-        if (inputData.length % BITS_IN_A_BYTE != 0)
-            return null;
-
-        while (true) {
-            /*
-             * Loading the input data into the input buffers.
-             */
-            int inputBufferIndex = mDecoder.dequeueInputBuffer(TIMEOUT_IN_MICROSECONDS);
-            if (inputBufferIndex >= 0) {
-                mDecoder.getInputBuffer(inputBufferIndex).put(inputData);
-                if (bytesToDecode < 0) {
-                    mDecoder.queueInputBuffer(inputBufferIndex, 0, 0, 0, BUFFER_FLAG_END_OF_STREAM);
-                } else {
-                    int presentationTime = 0; // Only required if we are synchronizing audio and video.
-                    mDecoder.queueInputBuffer(inputBufferIndex, 0, bytesToDecode, presentationTime, 0);
+    public boolean decode(@NonNull InputStream stream, @NonNull BooleanSupplier isDecoding) throws IOException {
+        try {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                if (mFailed || !isDecoding.getAsBoolean()) {
+                    return false;
+                }
+                Integer inputBufferIndex = mFreeInputBuffers.poll(POLL_TIMEOUT_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+                if (inputBufferIndex == null) {
+                    continue;
                 }
-            } else {
-                Log.e(TAG, "Input Buffer is not available");
+                int bytesRead = fill(stream, mDecoder.getInputBuffer(inputBufferIndex));
+                endOfInput = bytesRead < 0;
+                int presentationTime = 0; // Only required if we are synchronizing audio and video.
+                mDecoder.queueInputBuffer(inputBufferIndex, 0, Math.max(bytesRead, 0), presentationTime,
+                        endOfInput ? BUFFER_FLAG_END_OF_STREAM : 0);
             }
 
-            /*
-             * Checking if output buffers are ready with the decoded data
-             * and returning when they are ready
-             */
-            MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
-            int outputBufferIndex = mDecoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_IN_MICROSECONDS);
-
-            if (outputBufferIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-                MediaFormat outputFormat = mDecoder.getOutputFormat();
-                int sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
-                int channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
-                int encoding = AudioFormat.ENCODING_PCM_16BIT;
-                if (outputFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
-                    encoding = outputFormat.getInteger(MediaFormat.KEY_PCM_ENCODING);
-                }
-                mCallback.onOutputFormatChanged(sampleRate, encoding, channelCount);
-            } else if (outputBufferIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
-                return null;
-            } else if (outputBufferIndex > 0) {
-                if (bufferInfo.flags == BUFFER_FLAG_END_OF_STREAM) {
-                    stopDecode();
-                    return null;
+            // Wait until the last output buffer is handed out
+            while (!mEndOfStream.await(POLL_TIMEOUT_IN_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                if (mFailed || !isDecoding.getAsBoolean()) {
+                    return false;
                 }
+            }
+            return !mFailed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
-                mDecoder.getOutputBuffer(outputBufferIndex).position(0);
-                ByteBuffer outputDataBuffer = mDecoder.getOutputBuffer(outputBufferIndex);
-                byte[] decodedData = new byte[bufferInfo.size];
-                // transfer the data from the output buffers to the byte array to be returned.
-                outputDataBuffer.get(decodedData);
-                mDecoder.releaseOutputBuffer(outputBufferIndex, false);
-                return decodedData;
+    /**
+     * Fills an input buffer from the stream. It blocks until some data is available, then takes everything the
+     * stream already has, up to the capacity of the buffer, so that the start of the speech is not held back until
+     * a whole buffer is received.
+     *
+     * @return the number of bytes put in the buffer, or -1 at the end of the stream.
+     */
+    private int fill(InputStream stream, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        if (mReadArray.length < buffer.capacity()) {
+            mReadArray = new byte[buffer.capacity()];
+        }
+        int bytesRead = 0;
+        while (buffer.hasRemaining()) {
+            int bytesToRead = bytesRead == 0 ? buffer.remaining() : Math.min(buffer.remaining(), stream.available());
+            if (bytesToRead == 0) {
+                break;
+            }
+            int read = stream.read(mReadArray, 0, bytesToRead);
+            if (read < 0) {
+                return bytesRead > 0 ? bytesRead : -1;
             }
+            buffer.put(mReadArray, 0, read);
+            bytesRead += read;
         }
+        return bytesRead;
     }
 
     /**
@@ -151,10 +188,72 @@ public class AudioDecoder {
      */
     public void stopDecode() {
         if (mDecoder != null) {
-            mDecoder.stop();
+            try {
+                mDecoder.stop();
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "Decoder could not be stopped, releasing it.");
+            }
             mDecoder.release();
             mDecoder = null;
         }
+        quitDecoderThread();
+    }
+
+    private void quitDecoderThread() {
+        if (mDecoderThread != null) {
+            mDecoderThread.quitSafely();
+            mDecoderThread = null;
+        }
+    }
+
+    private class DecoderCallback extends MediaCodec.Callback {
+        @Override
+        public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+            mFreeInputBuffers.offer(index);
+        }
+
+        @Override
+        public void onOutputBufferAvailable(
+                @NonNull MediaCodec codec, int index, @NonNull MediaCodec.BufferInfo bufferInfo) {
+            try {
+                int size = bufferInfo.size;
+                if (size > 0) {
+                    ByteBuffer outputDataBuffer = codec.getOutputBuffer(index);
+                    outputDataBuffer.position(bufferInfo.offset);
+                    if (mDecodedArray.length < size) {
+                        mDecodedArray = new byte[size];
+                    }
+                    outputDataBuffer.get(mDecodedArray, 0, size);
+                }
+                // Give the buffer back before handing out the audio, which may block until it is played
+                codec.releaseOutputBuffer(index, false);
+                if (size > 0) {
+                    mAudioCallback.onAudioAvailable(mDecodedArray, 0, size);
+                }
+                if ((bufferInfo.flags & BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    mEndOfStream.countDown();
+                }
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "Output buffer dropped, the decoder was stopped.");
+            }
+        }
+
+        @Override
+        public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+            Log.e(TAG, "Decoder failed.", e);
+            mFailed = true;
+        }
+
+        @Override
+        public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat outputFormat) {
+            int sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            int encoding = AudioFormat.ENCODING_PCM_16BIT;
+            if (outputFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
+                encoding = outputFormat.getInteger(MediaFormat.KEY_PCM_ENCODING);
+            }
+            mCallback.onOutputFormatChanged(sampleRate, encoding, channelCount);
+        }
     }
 
     /**
@@ -169,4 +268,18 @@ public class AudioDecoder {
          */
         void onOutputFormatChanged(int sampleRateInHz, int audioFormat, @IntRange(from = 1, to = 2) int channelCount);
     }
+
+    /**
+     * Interface to receive the decoded audio.
+     */
+    public interface AudioAvailableCallback {
+        /**
+         * This is called on the decoder thread for every decoded output buffer.
+         * @param buffer - the array with the decoded audio. It is reused for the next output buffer, so the audio
+         *         must be copied before returning.
+         * @param offset - the offset of the audio in the array.
+         * @param length - the length of the audio.
+         */
+        void onAudioAvailable(byte[] buffer, int offset, int length);
+    }
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.aacstts;
+
+import static com.amazon.aacstts.TTSConstants.AACS_TTS_LOG_PREFIX;
+
+import android.speech.tts.SynthesisCallback;
+import android.speech.tts.TextToSpeech;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of synthesized speech, stored as PCM audio on disk.
+ *
+ * Speech is keyed by everything that determines it: the text with its prosody, the locale, the voice and the provider,
+ * see {@link com.amazon.aacstts.models.PrepareSpeechMessagePayload#getSpeechKey()}. The least recently used speech is
+ * evicted when the cache exceeds its size. A cached speech is written to the {@link SynthesisCallback} straight from
+ * disk, without any request to AACS.
+ */
+public class SpeechCache {
+    private static final String TAG = AACS_TTS_LOG_PREFIX + SpeechCache.class.getSimpleName();
+
+    public static final long DEFAULT_MAX_SIZE_BYTES = 32 * 1024 * 1024;
+    // Speech longer than this, about 20 seconds of 24 kHz stereo audio, is not cached
+    private static final int MAX_SPEECH_SIZE_BYTES = 2 * 1024 * 1024;
+    private static final String SPEECH_FILE_SUFFIX = ".pcm";
+
+    private final File mDirectory;
+    private final long mMaxSizeBytes;
+    // Size of the cached speech by key, in access order
+    private LinkedHashMap<String, Long> mIndex;
+    private long mSizeBytes;
+
+    /**
+     * @param directory - the directory of the cache.
+     * @param maxSizeBytes - the size of the cache.
+     */
+    public SpeechCache(@NonNull File directory, long maxSizeBytes) {
+        mDirectory = directory;
+        mMaxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * @param speechKey - everything that determines the speech.
+     * @return the key of the speech in the cache.
+     */
+    @NonNull
+    public static String getKey(@NonNull String speechKey) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(speechKey.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true if the speech is cached.
+     */
+    public synchronized boolean contains(@NonNull String key) {
+        return getIndex().containsKey(key);
+    }
+
+    /**
+     * Writes a cached speech to a synthesis callback.
+     *
+     * @param key - the key of the speech.
+     * @param callback - the callback to write the speech to.
+     * @return true if the speech was cached and written, false if it should be synthesized.
+     */
+    public boolean play(@NonNull String key, @NonNull SynthesisCallback callback) {
+        File file;
+        synchronized (this) {
+            if (getIndex().get(key) == null) {
+                return false;
+            }
+            file = getFile(key);
+        }
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int sampleRateInHz = stream.readInt();
+            int audioFormat = stream.readInt();
+            int channelCount = stream.readInt();
+            if (callback.start(sampleRateInHz, audioFormat, channelCount) != TextToSpeech.SUCCESS) {
+                return true;
+            }
+            byte[] buffer = new byte[callback.getMaxBufferSize()];
+            int bytesRead;
+            while ((bytesRead = stream.read(buffer)) >= 0) {
+                if (bytesRead > 0 && callback.audioAvailable(buffer, 0, bytesRead) != TextToSpeech.SUCCESS) {
+                    break;
+                }
+            }
+            // Keep the most recently used speech when the index is rebuilt
+            file.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read cached speech " + key, e);
+            remove(key);
+            return callback.hasStarted();
+        }
+    }
+
+    /**
+     * Adds a speech to the cache, evicting the least recently used speech if needed.
+     */
+    public synchronized void put(@NonNull String key, int sampleRateInHz, int audioFormat, int channelCount,
+            @NonNull byte[] audio, int length) {
+        if (length > MAX_SPEECH_SIZE_BYTES || length > mMaxSizeBytes) {
+            return;
+        }
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Failed to create speech cache " + mDirectory);
+            return;
+        }
+        // Write to a temporary file first so that a speech is never read partially written
+        File temporary = new File(mDirectory, key + ".tmp");
+        try (DataOutputStream stream =
+                        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            stream.writeInt(sampleRateInHz);
+            stream.writeInt(audioFormat);
+            stream.writeInt(channelCount);
+            stream.write(audio, 0, length);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to cache speech " + key, e);
+            temporary.delete();
+            return;
+        }
+        File file = getFile(key);
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            return;
+        }
+        Long previousSize = getIndex().put(key, file.length());
+        mSizeBytes += file.length() - (previousSize != null ? previousSize : 0);
+        trim();
+    }
+
+    /**
+     * @return a callback that writes to {@code callback}, and adds the speech to the cache when it is done without
+     * error.
+     *
+     * @param key - the key of the speech.
+     * @param callback - the callback that receives the speech, or null to only cache it.
+     */
+    @NonNull
+    public SynthesisCallback cacheTo(@NonNull String key, @Nullable SynthesisCallback callback) {
+        return new CachingSynthesisCallback(key, callback);
+    }
+
+    private synchronized void remove(String key) {
+        Long size = getIndex().remove(key);
+        if (size != null) {
+            mSizeBytes -= size;
+            getFile(key).delete();
+        }
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> itr = mIndex.entrySet().iterator();
+        while (mSizeBytes > mMaxSizeBytes && itr.hasNext()) {
+            Map.Entry<String, Long> eldest = itr.next();
+            Log.d(TAG, "Evicting speech " + eldest.getKey());
+            getFile(eldest.getKey()).delete();
+            mSizeBytes -= eldest.getValue();
+            itr.remove();
+        }
+    }
+
+    /**
+     * Loads the index from the files of the cache the first time it is used, in order of use.
+     */
+    private LinkedHashMap<String, Long> getIndex() {
+        if (mIndex == null) {
+            mIndex = new LinkedHashMap<>(16, 0.75f, true);
+            File[] files = mDirectory.listFiles((directory, name) -> name.endsWith(SPEECH_FILE_SUFFIX));
+            if (files != null) {
+                Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+                for (File file : files) {
+                    String name = file.getName();
+                    mIndex.put(name.substring(0, name.length() - SPEECH_FILE_SUFFIX.length()), file.length());
+                    mSizeBytes += file.length();
+                }
+            }
+            trim();
+        }
+        return mIndex;
+    }
+
+    private File getFile(String key) {
+        return new File(mDirectory, key + SPEECH_FILE_SUFFIX);
+    }
+
+    /**
+     * Records the speech written to a synthesis callback.
+     */
+    private class CachingSynthesisCallback implements SynthesisCallback {
+        private final String mKey;
+        @Nullable
+        private final SynthesisCallback mCallback;
+        private final ByteArrayOutputStream mAudio = new ByteArrayOutputStream();
+        private int mSampleRateInHz;
+        private int mAudioFormat;
+        private int mChannelCount;
+        private boolean mStarted;
+        private boolean mFailed;
+        private boolean mDone;
+
+        CachingSynthesisCallback(String key, @Nullable SynthesisCallback callback) {
+            mKey = key;
+            mCallback = callback;
+        }
+
+        @Override
+        public int getMaxBufferSize() {
+            return mCallback != null ? mCallback.getMaxBufferSize() : 8192;
+        }
+
+        @Override
+        public int start(int sampleRateInHz, int audioFormat, int channelCount) {
+            mSampleRateInHz = sampleRateInHz;
+            mAudioFormat = audioFormat;
+            mChannelCount = channelCount;
+            mStarted = true;
+            return mCallback != null ? mCallback.start(sampleRateInHz, audioFormat, channelCount)
+                                     : TextToSpeech.SUCCESS;
+        }
+
+        @Override
+        public int audioAvailable(byte[] buffer, int offset, int length) {
+            if (mAudio.size() + length <= MAX_SPEECH_SIZE_BYTES) {
+                mAudio.write(buffer, offset, length);
+            } else {
+                mFailed = true;
+            }
+            return mCallback != null ? mCallback.audioAvailable(buffer, offset, length) : TextToSpeech.SUCCESS;
+        }
+
+        @Override
+        public int done() {
+            if (!mDone && mStarted && !mFailed && mAudio.size() > 0) {
+                put(mKey, mSampleRateInHz, mAudioFormat, mChannelCount, mAudio.toByteArray(), mAudio.size());
+            }
+            mDone = true;
+            return mCallback != null ? mCallback.done() : TextToSpeech.SUCCESS;
+        }
+
+        @Override
+        public void error() {
+            mFailed = true;
+            if (mCallback != null) {
+                mCallback.error();
+            }
+        }
+
+        @Override
+        public void error(int errorCode) {
+            mFailed = true;
+            if (mCallback != null) {
+                mCallback.error(errorCode);
+            }
+        }
+
+        @Override
+        public boolean hasStarted() {
+            return mCallback != null ? mCallback.hasStarted() : mStarted;
+        }
+
+        @Override
+        public boolean hasFinished() {
+            return mCallback != null ? mCallback.hasFinished() : mDone;
+        }
+
+        @Override
+        public void rangeStart(int markerInFrames, int start, int end) {
+            if (mCallback != null) {
+                mCallback.rangeStart(markerInFrames, start, end);
+            }
+        }
+    }
+}
@@ -43,20 +43,24 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
  * Utility class to handle sending and handling the prepare speech request.
+ *
+ * Only one prepare speech request may be sent at a time: {@link #stopSynthesis()} and the fetched audio apply to the
+ * request in progress.
  */
 public class SynthesizeTextUtil {
     private static final String TAG = AACS_TTS_LOG_PREFIX + SynthesizeTextUtil.class.getSimpleName();
@@ -72,20 +76,12 @@ public class SynthesizeTextUtil {
     protected Map<String, TTSSynthesisFutureResponse> mMessageIdToFutureMap;
 
     @VisibleForTesting
-    protected boolean mIsStreamingEnabled;
+    protected volatile boolean mIsStreamingEnabled;
 
     private static final int DEFAULT_PROVIDER_SAMPLE_RATE_IN_HZ = 24000;
     private static final int DEFAULT_PROVIDER_AUDIO_CHANNEL_COUNT = 2;
     private static final int THREAD_JOIN_TIMEOUT_IN_MILLIS = 2000;
 
-    // This value is used for setting the size of the byte_array while reading the data from the stream.
-    // If the byte array is decoded to PCM, the size of the bytes to write is inflated 8 times by the MediaCodec.
-    // To avoid an overflow in the audioAvailable method the byte-array length should be selected low enough
-    // so that it would not exceed the max-buffer-size that is permitted by the synthesisCallback.
-    // Note: We have also employed chunking technique to handle the buffer
-    //       overflows in the audioAvailable method.
-    private static final int STREAM_READ_BYTE_ARRAY_SIZE = 144;
-
     private static final String AUDIO_FORMAT_MP3 = "MP3";
     private static final String AUDIO_FORMAT_PCM = "PCM";
 
@@ -116,7 +112,8 @@ public class SynthesizeTextUtil {
         mAACSSender = aacsSender;
         mTarget = target;
         mContext = context;
-        mMessageIdToFutureMap = new HashMap<>();
+        // Written by the synthesis thread and read by the thread handling the replies
+        mMessageIdToFutureMap = new ConcurrentHashMap<>();
         mFetchAudioHandlerThread = new HandlerThread("FetchAudioHandlerThread");
         mFetchAudioHandlerThread.start();
         mFetchAudioHandler = new Handler(mFetchAudioHandlerThread.getLooper());
@@ -260,58 +257,37 @@ public class SynthesizeTextUtil {
                     ParcelFileDescriptor.AutoCloseInputStream stream =
                             new ParcelFileDescriptor.AutoCloseInputStream(readPipe);
                     try (ParcelFileDescriptor.AutoCloseInputStream inputStream = stream) {
-                        AudioDecoder decoder = null;
+                        boolean isStreamWritten;
                         if (requiresMP3Encoding) {
                             Optional<AudioDecoder> audioDecoderOptional =
                                     constructAudioDecoderForMP3(synthesisCallback);
-                            if (audioDecoderOptional.isPresent()) {
-                                decoder = audioDecoderOptional.get();
-                            } else {
+                            if (!audioDecoderOptional.isPresent()) {
                                 stream.close();
                                 ttsSynthesisFutureResponse.cancelFuture(WAIT_FOR_STREAM);
                                 return;
                             }
-                        }
-
-                        boolean isReading = true;
-
-                        while (isReading && mIsStreamingEnabled) {
-                            byte[] byteArray = new byte[STREAM_READ_BYTE_ARRAY_SIZE];
-                            int bytesAvailable = Math.max(1, Math.min(inputStream.available(), byteArray.length));
-                            int bytesRead = inputStream.read(byteArray, 0, bytesAvailable);
-                            Log.v(TAG, String.format(" reading [%s] bytes", bytesRead));
-                            byte[] bytesToBeWritten;
-                            if (requiresMP3Encoding) {
-                                bytesToBeWritten = decoder.decode(byteArray, bytesRead);
-                            } else {
-                                bytesToBeWritten = byteArray;
-                            }
-                            if (bytesToBeWritten != null && bytesToBeWritten.length > 0) {
-                                Log.d(TAG,
-                                        String.format("Bytes to be written: [%s], bytes read: [%s]",
-                                                bytesToBeWritten.length, bytesRead));
-                                int offset = 0;
-                                while (offset < bytesToBeWritten.length) {
-                                    int bytesToWrite = Math.min(
-                                            synthesisCallback.getMaxBufferSize(), bytesToBeWritten.length - offset);
-                                    Log.d(TAG, String.format("offset:[%s] and writing: [%s]", offset, bytesToWrite));
-                                    synthesisCallback.audioAvailable(bytesToBeWritten, offset, bytesToWrite);
-                                    offset += bytesToWrite;
-                                }
-                            }
-
-                            if (bytesRead < 0) {
-                                isReading = false;
+                            AudioDecoder decoder = audioDecoderOptional.get();
+                            try {
+                                isStreamWritten = decoder.decode(inputStream, () -> mIsStreamingEnabled);
+                            } finally {
+                                decoder.stopDecode();
                             }
+                        } else {
+                            isStreamWritten = writeStream(inputStream, synthesisCallback);
+                        }
 
-                            // cancel fetching from the stream.
-                            if (!mIsStreamingEnabled) {
-                                mAACSSender.cancelFetch(streamId, mTarget, mContext);
-                                ttsSynthesisFutureResponse.cancelFuture(WAIT_FOR_STREAM);
-                                return;
-                            }
+                        // cancel fetching from the stream.
+                        if (!mIsStreamingEnabled) {
+                            mAACSSender.cancelFetch(streamId, mTarget, mContext);
+                            ttsSynthesisFutureResponse.cancelFuture(WAIT_FOR_STREAM);
+                            return;
                         }
                         closePipe(readPipe);
+                        if (!isStreamWritten) {
+                            Log.e(TAG, "onStreamFetchedFromServer: FAILED to decode the stream.");
+                            ttsSynthesisFutureResponse.cancelFuture(WAIT_FOR_STREAM);
+                            return;
+                        }
                         ttsSynthesisFutureResponse.completeFuture(WAIT_FOR_STREAM);
                     } catch (IOException e) {
                         Log.e(TAG, "onStreamFetchedFromServer: FAILED to read from stream.", e);
@@ -381,6 +357,37 @@ public class SynthesizeTextUtil {
         }
     }
 
+    /**
+     * Writes the audio of a stream that does not need to be decoded.
+     * @param inputStream - the stream of the audio.
+     * @param synthesisCallback - the callback to write the audio to.
+     * @return true if the whole stream was written.
+     */
+    private boolean writeStream(InputStream inputStream, SynthesisCallback synthesisCallback) throws IOException {
+        // The array is reused for every read, the synthesis callback copies the audio
+        byte[] byteArray = new byte[synthesisCallback.getMaxBufferSize()];
+        int bytesRead;
+        while (mIsStreamingEnabled && (bytesRead = inputStream.read(byteArray)) >= 0) {
+            Log.v(TAG, String.format(" reading [%s] bytes", bytesRead));
+            if (bytesRead > 0) {
+                synthesisCallback.audioAvailable(byteArray, 0, bytesRead);
+            }
+        }
+        return mIsStreamingEnabled;
+    }
+
+    /**
+     * Writes decoded audio in chunks that the synthesis callback accepts.
+     */
+    private static void writeAudio(SynthesisCallback synthesisCallback, byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            int bytesToWrite = Math.min(synthesisCallback.getMaxBufferSize(), end - offset);
+            synthesisCallback.audioAvailable(buffer, offset, bytesToWrite);
+            offset += bytesToWrite;
+        }
+    }
+
     /**
      * Constructs the {@link AudioDecoder} to decode MP3 data.
      * @param synthesisCallback - to be called when the format of data is changed.
@@ -400,8 +407,11 @@ public class SynthesizeTextUtil {
             }
         };
 
+        AudioDecoder.AudioAvailableCallback audioAvailableCallback =
+                (buffer, offset, length) -> writeAudio(synthesisCallback, buffer, offset, length);
+
         if (!decoder.configureDecoder(MediaFormat.MIMETYPE_AUDIO_MPEG, DEFAULT_PROVIDER_SAMPLE_RATE_IN_HZ,
-                    DEFAULT_PROVIDER_AUDIO_CHANNEL_COUNT, formatChangedCallback)) {
+                    DEFAULT_PROVIDER_AUDIO_CHANNEL_COUNT, formatChangedCallback, audioAvailableCallback)) {
             Log.e(TAG, "Decoder could not be configured.");
             return Optional.empty();
         }
@@ -35,6 +35,13 @@ public class PrepareSpeechMessagePayload {
         return mSpeechId;
     }
 
+    /**
+     * @return everything in the payload that determines the synthesized speech, that is everything but the speech id.
+     */
+    public String getSpeechKey() {
+        return mText + "\n" + mProvider + "\n" + options.toJsonString();
+    }
+
     @Override
     public String toString() {
         return "PrepareSpeechMessagePayload{"
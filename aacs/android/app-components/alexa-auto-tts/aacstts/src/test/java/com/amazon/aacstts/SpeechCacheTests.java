@@ -0,0 +1,163 @@
+package com.amazon.aacstts;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.speech.tts.SynthesisCallback;
+import android.speech.tts.TextToSpeech;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Class to unit test the {@link SpeechCache} class
+ */
+public class SpeechCacheTests {
+    private static final int TEST_SAMPLE_RATE = 24000;
+    private static final int TEST_AUDIO_FORMAT = 2;
+    private static final int TEST_CHANNEL_COUNT = 1;
+    // Each cached speech has a 12 byte header
+    private static final int TEST_AUDIO_SIZE = 40;
+    private static final int TEST_SPEECH_FILE_SIZE = TEST_AUDIO_SIZE + 12;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mDirectory;
+
+    @Before
+    public void setup() throws Exception {
+        mDirectory = mTemporaryFolder.newFolder("tts-cache");
+    }
+
+    @Test
+    public void testKeyDependsOnlyOnSpeechKey() {
+        String key = SpeechCache.getKey("<speak>hello</speak>|en-US|voice|provider");
+
+        Assert.assertEquals(key, SpeechCache.getKey("<speak>hello</speak>|en-US|voice|provider"));
+        Assert.assertFalse(key.equals(SpeechCache.getKey("<speak>hello</speak>|en-GB|voice|provider")));
+        // SHA-256 in hex, usable as a file name
+        Assert.assertTrue(key.matches("[0-9a-f]{64}"));
+    }
+
+    @Test
+    public void testCachedSpeechIsPlayed() {
+        SpeechCache cache = new SpeechCache(mDirectory, SpeechCache.DEFAULT_MAX_SIZE_BYTES);
+        byte[] audio = audio(1);
+        cache.put("key", TEST_SAMPLE_RATE, TEST_AUDIO_FORMAT, TEST_CHANNEL_COUNT, audio, audio.length);
+
+        ByteArrayOutputStream played = new ByteArrayOutputStream();
+        SynthesisCallback callback = recordingCallback(played);
+        Assert.assertTrue(cache.play("key", callback));
+
+        verify(callback, times(1)).start(TEST_SAMPLE_RATE, TEST_AUDIO_FORMAT, TEST_CHANNEL_COUNT);
+        Assert.assertTrue(Arrays.equals(audio, played.toByteArray()));
+    }
+
+    @Test
+    public void testSpeechNotCachedIsNotPlayed() {
+        SpeechCache cache = new SpeechCache(mDirectory, SpeechCache.DEFAULT_MAX_SIZE_BYTES);
+        SynthesisCallback callback = recordingCallback(new ByteArrayOutputStream());
+
+        Assert.assertFalse(cache.play("key", callback));
+        verify(callback, times(0)).start(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSpeechIsEvicted() {
+        SpeechCache cache = new SpeechCache(mDirectory, TEST_SPEECH_FILE_SIZE * 2);
+        cache.put("first", TEST_SAMPLE_RATE, TEST_AUDIO_FORMAT, TEST_CHANNEL_COUNT, audio(1), TEST_AUDIO_SIZE);
+        cache.put("second", TEST_SAMPLE_RATE, TEST_AUDIO_FORMAT, TEST_CHANNEL_COUNT, audio(2), TEST_AUDIO_SIZE);
+
+        // Playing the first speech makes the second one the least recently used
+        Assert.assertTrue(cache.play("first", recordingCallback(new ByteArrayOutputStream())));
+        cache.put("third", TEST_SAMPLE_RATE, TEST_AUDIO_FORMAT, TEST_CHANNEL_COUNT, audio(3), TEST_AUDIO_SIZE);
+
+        Assert.assertTrue(cache.contains("first"));
+        Assert.assertFalse(cache.contains("second"));
+        Assert.assertTrue(cache.contains("third"));
+        Assert.assertFalse(new File(mDirectory, "second.pcm").exists());
+    }
+
+    @Test
+    public void testIndexIsLoadedFromDisk() {
+        SpeechCache cache = new SpeechCache(mDirectory, SpeechCache.DEFAULT_MAX_SIZE_BYTES);
+        cache.put("key", TEST_SAMPLE_RATE, TEST_AUDIO_FORMAT, TEST_CHANNEL_COUNT, audio(1), TEST_AUDIO_SIZE);
+
+        SpeechCache reloaded = new SpeechCache(mDirectory, SpeechCache.DEFAULT_MAX_SIZE_BYTES);
+        Assert.assertTrue(reloaded.contains("key"));
+    }
+
+    @Test
+    public void testCachingCallbackCachesSynthesizedSpeech() {
+        SpeechCache cache = new SpeechCache(mDirectory, SpeechCache.DEFAULT_MAX_SIZE_BYTES);
+        ByteArrayOutputStream forwarded = new ByteArrayOutputStream();
+        SynthesisCallback callback = recordingCallback(forwarded);
+        byte[] audio = audio(1);
+
+        SynthesisCallback cachingCallback = cache.cacheTo("key", callback);
+        cachingCallback.start(TEST_SAMPLE_RATE, TEST_AUDIO_FORMAT, TEST_CHANNEL_COUNT);
+        cachingCallback.audioAvailable(audio, 0, 16);
+        cachingCallback.audioAvailable(audio, 16, audio.length - 16);
+        Assert.assertFalse(cache.contains("key"));
+        cachingCallback.done();
+
+        Assert.assertTrue(cache.contains("key"));
+        Assert.assertTrue(Arrays.equals(audio, forwarded.toByteArray()));
+        verify(callback, times(1)).done();
+
+        ByteArrayOutputStream played = new ByteArrayOutputStream();
+        Assert.assertTrue(cache.play("key", recordingCallback(played)));
+        Assert.assertTrue(Arrays.equals(audio, played.toByteArray()));
+    }
+
+    @Test
+    public void testCachingCallbackDoesNotCacheFailedSpeech() {
+        SpeechCache cache = new SpeechCache(mDirectory, SpeechCache.DEFAULT_MAX_SIZE_BYTES);
+        byte[] audio = audio(1);
+
+        SynthesisCallback cachingCallback = cache.cacheTo("key", null);
+        cachingCallback.start(TEST_SAMPLE_RATE, TEST_AUDIO_FORMAT, TEST_CHANNEL_COUNT);
+        cachingCallback.audioAvailable(audio, 0, audio.length);
+        cachingCallback.error(TextToSpeech.ERROR_NETWORK_TIMEOUT);
+        cachingCallback.done();
+
+        Assert.assertFalse(cache.contains("key"));
+    }
+
+    private static byte[] audio(int seed) {
+        byte[] audio = new byte[TEST_AUDIO_SIZE];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) (seed * 31 + i);
+        }
+        return audio;
+    }
+
+    /**
+     * Returns a synthesis callback that appends the audio it receives to {@code audio}.
+     */
+    private static SynthesisCallback recordingCallback(ByteArrayOutputStream audio) {
+        SynthesisCallback callback = mock(SynthesisCallback.class);
+        when(callback.getMaxBufferSize()).thenReturn(16);
+        when(callback.start(anyInt(), anyInt(), anyInt())).thenReturn(TextToSpeech.SUCCESS);
+        doAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            audio.write((byte[]) args[0], (int) args[1], (int) args[2]);
+            return TextToSpeech.SUCCESS;
+        }).when(callback).audioAvailable(any(byte[].class), anyInt(), anyInt());
+        return callback;
+    }
+}
@@ -43,6 +43,8 @@ public class AACSMessageSender {
     private AACSSender mAACSSender;
     @NonNull
     private TargetComponent mAACSTarget;
+    @NonNull
+    private AACSReplyDispatcher mReplyDispatcher;
 
     /**
      * Constructs an instance of @c AACSMessageSender.
@@ -52,6 +54,20 @@ public class AACSMessageSender {
      * @param sender AACS Sender.
      */
     public AACSMessageSender(@NonNull WeakReference<Context> contextWk, @NonNull AACSSender sender) {
+        this(contextWk, sender, AACSReplyDispatcher.getInstance());
+    }
+
+    /**
+     * Constructs an instance of @c AACSMessageSender.
+     *
+     * @param contextWk Android Context which will be used for sending intents
+     *                  to AACS.
+     * @param sender AACS Sender.
+     * @param replyDispatcher Dispatcher used to correlate replies with requests.
+     */
+    public AACSMessageSender(@NonNull WeakReference<Context> contextWk, @NonNull AACSSender sender,
+            @NonNull AACSReplyDispatcher replyDispatcher) {
+        this.mReplyDispatcher = replyDispatcher;
         this.mContextWk = contextWk;
         this.mAACSSender = sender;
         this.mAACSTarget = TargetComponent.withComponent(
@@ -117,6 +133,102 @@ public class AACSMessageSender {
         return message.get()[1];
     }
 
+    /**
+     * Send message to AACS with a payload that is written straight to the IPC transport when the message is sent,
+     * without building it in memory. See {@link AACSMessageWriter}.
+     *
+     * @param topic Topic of the message (typically capability name).
+     * @param action Action of the message.
+     * @param payloadWriter Writer of the payload of the message.
+     *
+     * @return Id of the message, or an empty string if it could not be sent.
+     */
+    public String sendMessageReturnID(@NonNull String topic, @NonNull String action,
+            @NonNull AACSMessageWriter.PayloadWriter payloadWriter) {
+        Context context = mContextWk.get();
+        if (context == null) {
+            Log.w(TAG, "Invalid context found while sending message. Topic: " + topic + " Action: " + action);
+            return "";
+        }
+
+        AACSMessageWriter message = new AACSMessageWriter(topic, action, payloadWriter);
+        this.mAACSSender.sendAASBMessageAnySize(message, action, topic, this.mAACSTarget, context);
+        return message.getMessageId();
+    }
+
+    /**
+     * Send request message to AACS and wait for its reply.
+     *
+     * The reply must be handed to the {@link AACSReplyDispatcher} used by this sender (by default
+     * {@link AACSReplyDispatcher#getInstance()}) by the component that receives it from AACS.
+     *
+     * @param topic Topic of the message (typically capability name).
+     * @param action Action of the message.
+     * @param payload Optional payload of the message.
+     * @param timeoutMs Time to wait for the reply.
+     *
+     * @return Future completed with the reply, or exceptionally with a @c TimeoutException if no
+     * reply is received in time.
+     */
+    public CompletableFuture<AACSReplyMessage> sendRequest(
+            @NonNull String topic, @NonNull String action, @Nullable String payload, long timeoutMs) {
+        CompletableFuture<AACSReplyMessage> failedFuture = new CompletableFuture<>();
+        Context context = mContextWk.get();
+        if (context == null) {
+            Log.w(TAG, "Invalid context found while sending request. Topic: " + topic + " Action: " + action);
+            failedFuture.completeExceptionally(new IllegalStateException("Invalid context"));
+            return failedFuture;
+        }
+
+        Optional<String[]> message = AACSMessageBuilder.buildMessageReturnID(topic, action, payload);
+        if (!message.isPresent()) {
+            Log.w(TAG,
+                    "Failed to build AACS payload for request. Topic: " + topic + " Action: " + action
+                            + " Message payload: " + payload);
+            failedFuture.completeExceptionally(new IllegalArgumentException("Failed to build request"));
+            return failedFuture;
+        }
+
+        String messageId = message.get()[1];
+        CompletableFuture<AACSReplyMessage> replyFuture =
+                mReplyDispatcher.register(messageId, topic, action, timeoutMs);
+        if (!replyFuture.isDone()) {
+            this.mAACSSender.sendAASBMessageAnySize(message.get()[0], action, topic, this.mAACSTarget, context);
+        }
+        return replyFuture;
+    }
+
+    /**
+     * Send request message to AACS with a payload that is written straight to the IPC transport, see
+     * {@link AACSMessageWriter}, and wait for its reply. See {@link #sendRequest(String, String, String, long)}.
+     *
+     * @param topic Topic of the message (typically capability name).
+     * @param action Action of the message.
+     * @param payloadWriter Writer of the payload of the message.
+     * @param timeoutMs Time to wait for the reply.
+     *
+     * @return Future completed with the reply, or exceptionally with a @c TimeoutException if no
+     * reply is received in time.
+     */
+    public CompletableFuture<AACSReplyMessage> sendRequest(@NonNull String topic, @NonNull String action,
+            @NonNull AACSMessageWriter.PayloadWriter payloadWriter, long timeoutMs) {
+        Context context = mContextWk.get();
+        if (context == null) {
+            Log.w(TAG, "Invalid context found while sending request. Topic: " + topic + " Action: " + action);
+            CompletableFuture<AACSReplyMessage> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(new IllegalStateException("Invalid context"));
+            return failedFuture;
+        }
+
+        AACSMessageWriter message = new AACSMessageWriter(topic, action, payloadWriter);
+        CompletableFuture<AACSReplyMessage> replyFuture =
+                mReplyDispatcher.register(message.getMessageId(), topic, action, timeoutMs);
+        if (!replyFuture.isDone()) {
+            this.mAACSSender.sendAASBMessageAnySize(message, action, topic, this.mAACSTarget, context);
+        }
+        return replyFuture;
+    }
+
     /**
      * Send reply message to AACS.
      *
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazon.alexa.auto.aacs.common;
+
+import android.util.JsonWriter;
+
+import androidx.annotation.NonNull;
+
+import com.amazon.aacsconstants.AASBConstants;
+import com.amazon.aacsipc.AACSSender;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.UUID;
+
+/**
+ * Writes an AASB message with its envelope straight to the IPC transport.
+ *
+ * The payload is written by a {@link PayloadWriter} with a streaming {@link JsonWriter} when the message is sent, so
+ * neither the payload nor the message is built in memory as a {@code JSONObject} or a string. Use it for large
+ * payloads such as address books, and {@link AACSMessageBuilder} for everything else.
+ */
+public class AACSMessageWriter implements AACSSender.MessageWriter {
+    private static final String VERSION = "4.0";
+    private static final String MESSAGE_TYPE_PUBLISH = "Publish";
+
+    /**
+     * Writes the payload of a message.
+     */
+    public interface PayloadWriter {
+        /**
+         * Writes the payload as a single JSON value, typically an object. It may be called more than once, and from
+         * different threads at the same time, so it must write the same payload every time.
+         *
+         * @param writer Writer positioned at the value of the {@code payload} field of the message. Do not close it.
+         */
+        void writePayload(@NonNull JsonWriter writer) throws IOException;
+    }
+
+    @NonNull
+    private final String mMessageId;
+    @NonNull
+    private final String mTopic;
+    @NonNull
+    private final String mAction;
+    @NonNull
+    private final PayloadWriter mPayloadWriter;
+
+    /**
+     * Constructs a message with a new unique message id.
+     *
+     * @param topic Topic of the message.
+     * @param action Action of the message.
+     * @param payloadWriter Writer of the payload of the message.
+     */
+    public AACSMessageWriter(@NonNull String topic, @NonNull String action, @NonNull PayloadWriter payloadWriter) {
+        mMessageId = UUID.randomUUID().toString();
+        mTopic = topic;
+        mAction = action;
+        mPayloadWriter = payloadWriter;
+    }
+
+    @NonNull
+    public String getMessageId() {
+        return mMessageId;
+    }
+
+    @Override
+    public void writeTo(@NonNull Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+        json.name(AASBConstants.HEADER).beginObject();
+        json.name("version").value(VERSION);
+        json.name("messageType").value(MESSAGE_TYPE_PUBLISH);
+        json.name(AASBConstants.ID).value(mMessageId);
+        json.name(AASBConstants.MESSAGE_DESCRIPTION).beginObject();
+        json.name(AASBConstants.TOPIC).value(mTopic);
+        json.name(AASBConstants.ACTION).value(mAction);
+        json.endObject();
+        json.endObject();
+        json.name(AASBConstants.PAYLOAD);
+        mPayloadWriter.writePayload(json);
+        json.endObject();
+        // Flush instead of close, the writer belongs to the transport
+        json.flush();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazon.alexa.auto.aacs.common;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Correlates AACS replies with the requests sent through
+ * {@link AACSMessageSender#sendRequest(String, String, String, long)}.
+ *
+ * Pending requests are kept in a bounded table keyed on message id. Components that receive AASB
+ * messages hand replies to {@link #dispatch(String)}, which completes the matching request. Requests
+ * that are not answered in time are removed from the table and completed with a
+ * {@link TimeoutException}. The round trip time of every request is logged with its topic and action.
+ */
+public class AACSReplyDispatcher {
+    private static final String TAG = AACSReplyDispatcher.class.getSimpleName();
+    public static final int DEFAULT_MAX_PENDING_REPLIES = 128;
+
+    private static AACSReplyDispatcher sInstance;
+
+    private final int mMaxPendingReplies;
+    private final ConcurrentHashMap<String, PendingReply> mPendingReplies = new ConcurrentHashMap<>();
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+    private final ScheduledExecutorService mTimeoutExecutor;
+
+    /**
+     * @return Dispatcher shared by all the components of the process.
+     */
+    public static synchronized AACSReplyDispatcher getInstance() {
+        if (sInstance == null) {
+            sInstance = new AACSReplyDispatcher(DEFAULT_MAX_PENDING_REPLIES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a dispatcher with its own pending reply table.
+     *
+     * @param maxPendingReplies Maximum number of requests awaiting a reply.
+     */
+    public AACSReplyDispatcher(int maxPendingReplies) {
+        mMaxPendingReplies = maxPendingReplies;
+        mTimeoutExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return Number of requests awaiting a reply.
+     */
+    public int getPendingCount() {
+        return mPendingCount.get();
+    }
+
+    /**
+     * Registers a request that is about to be sent. The request must be registered before it is
+     * sent so that a fast reply cannot arrive ahead of its registration.
+     *
+     * @param messageId Id of the request message.
+     * @param topic Topic of the request.
+     * @param action Action of the request.
+     * @param timeoutMs Time to wait for the reply.
+     * @return Future completed with the reply, or exceptionally if the request expires or the
+     * pending reply table is full.
+     */
+    CompletableFuture<AACSReplyMessage> register(
+            @NonNull String messageId, @NonNull String topic, @NonNull String action, long timeoutMs) {
+        CompletableFuture<AACSReplyMessage> future = new CompletableFuture<>();
+        if (mPendingCount.incrementAndGet() > mMaxPendingReplies) {
+            mPendingCount.decrementAndGet();
+            Log.w(TAG, "Pending reply table is full. Rejecting request Topic: " + topic + " Action: " + action);
+            future.completeExceptionally(new IllegalStateException("Too many requests awaiting reply"));
+            return future;
+        }
+
+        PendingReply pendingReply = new PendingReply(topic, action, future);
+        mPendingReplies.put(messageId, pendingReply);
+        pendingReply.timeout = mTimeoutExecutor.schedule(() -> expire(messageId), timeoutMs, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    /**
+     * Completes the request that the given message replies to.
+     *
+     * @param message AASB message received from AACS.
+     * @return true if the message was a reply to a pending request.
+     */
+    public boolean dispatch(@Nullable String message) {
+        if (message == null || mPendingCount.get() == 0) {
+            return false;
+        }
+        Optional<AACSReplyMessage> reply = AACSMessageBuilder.parseReplyMessage(message);
+        return reply.isPresent() && dispatch(reply.get());
+    }
+
+    /**
+     * Completes the request that the given reply answers.
+     *
+     * @param reply Reply received from AACS.
+     * @return true if the reply matched a pending request.
+     */
+    public boolean dispatch(@NonNull AACSReplyMessage reply) {
+        PendingReply pendingReply = remove(reply.replyToId);
+        if (pendingReply == null) {
+            return false;
+        }
+        Log.d(TAG,
+                "Reply received in " + pendingReply.getElapsedTimeMs() + "ms. Topic: " + pendingReply.topic
+                        + " Action: " + pendingReply.action);
+        pendingReply.future.complete(reply);
+        return true;
+    }
+
+    private void expire(String messageId) {
+        PendingReply pendingReply = remove(messageId);
+        if (pendingReply != null) {
+            Log.w(TAG,
+                    "Timed out waiting for reply after " + pendingReply.getElapsedTimeMs()
+                            + "ms. Topic: " + pendingReply.topic + " Action: " + pendingReply.action
+                            + " MessageId: " + messageId);
+            pendingReply.future.completeExceptionally(new TimeoutException("No reply for message " + messageId));
+        }
+    }
+
+    @Nullable
+    private PendingReply remove(String messageId) {
+        PendingReply pendingReply = mPendingReplies.remove(messageId);
+        if (pendingReply != null) {
+            mPendingCount.decrementAndGet();
+            if (pendingReply.timeout != null) {
+                pendingReply.timeout.cancel(false);
+            }
+        }
+        return pendingReply;
+    }
+
+    private static class PendingReply {
+        final String topic;
+        final String action;
+        final CompletableFuture<AACSReplyMessage> future;
+        final long sentTimeMs = SystemClock.elapsedRealtime();
+        volatile ScheduledFuture<?> timeout;
+
+        PendingReply(String topic, String action, CompletableFuture<AACSReplyMessage> future) {
+            this.topic = topic;
+            this.action = action;
+            this.future = future;
+        }
+
+        long getElapsedTimeMs() {
+            return SystemClock.elapsedRealtime() - sentTimeMs;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.amazon.alexa.auto.aacs.common;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -24,10 +25,14 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 
+import java.io.StringWriter;
 import java.lang.ref.WeakReference;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RunWith(RobolectricTestRunner.class)
 public class AACSMessageSenderTest {
@@ -73,6 +78,34 @@ public class AACSMessageSenderTest {
         assertEquals(targetArgCaptor.getValue().component.getClassName(), AACSConstants.AACS_CLASS_NAME);
     }
 
+    @Test
+    @SuppressWarnings("ConstantConditions")
+    public void testCanSendWrittenMessage() throws Exception {
+        String topic = "test-topic";
+        String action = "test-action";
+
+        String messageId = classUnderTest.sendMessageReturnID(topic, action, writer -> {
+            writer.beginObject();
+            writer.name("entries").beginArray().value("first").value("second").endArray();
+            writer.endObject();
+        });
+
+        ArgumentCaptor<AACSSender.MessageWriter> messageArgCaptor =
+                ArgumentCaptor.forClass(AACSSender.MessageWriter.class);
+        Mockito.verify(mockSender, Mockito.times(1))
+                .sendAASBMessageAnySize(messageArgCaptor.capture(), Mockito.eq(action), Mockito.eq(topic),
+                        any(TargetComponent.class), Mockito.eq(mockContext));
+
+        StringWriter rawMessage = new StringWriter();
+        messageArgCaptor.getValue().writeTo(rawMessage);
+        Optional<AACSMessage> message = AACSMessageBuilder.parseMessage(rawMessage.toString());
+        assertTrue(message.isPresent());
+        assertEquals(messageId, message.get().messageId);
+        assertEquals(topic, message.get().topic);
+        assertEquals(action, message.get().action);
+        assertEquals("{\"entries\":[\"first\",\"second\"]}", message.get().payload);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testMessageSendFailsOnInvalidContext() throws Exception {
@@ -143,4 +176,62 @@ public class AACSMessageSenderTest {
         Future<Boolean> sendFuture = classUnderTest.sendReplyMessage("replyId", "topic", "action", invalidJsonPayload);
         assertFalse(sendFuture.get());
     }
+
+    @Test
+    @SuppressWarnings("ConstantConditions")
+    public void testRequestCompletesWithReply() throws Exception {
+        AACSReplyDispatcher dispatcher = new AACSReplyDispatcher(4);
+        classUnderTest = new AACSMessageSender(new WeakReference<>(mockContext), mockSender, dispatcher);
+
+        CompletableFuture<AACSReplyMessage> replyFuture =
+                classUnderTest.sendRequest("test-topic", "test-action", null, 5000);
+
+        ArgumentCaptor<String> rawMsgArgCaptor = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(mockSender, Mockito.times(1))
+                .sendAASBMessageAnySize(rawMsgArgCaptor.capture(), Mockito.eq("test-action"),
+                        Mockito.eq("test-topic"), any(TargetComponent.class), Mockito.eq(mockContext));
+        String requestId = AACSMessageBuilder.parseMessage(rawMsgArgCaptor.getValue()).get().messageId;
+        assertEquals(1, dispatcher.getPendingCount());
+
+        String reply = AACSMessageBuilder.buildReplyMessage(requestId, "test-topic", "test-action", "{\"value\":1}")
+                               .get();
+        assertTrue(dispatcher.dispatch(reply));
+
+        assertTrue(replyFuture.isDone());
+        assertEquals(requestId, replyFuture.get().replyToId);
+        assertEquals(0, dispatcher.getPendingCount());
+        assertFalse(dispatcher.dispatch(reply));
+    }
+
+    @Test
+    public void testRequestTimesOutWithoutReply() throws Exception {
+        AACSReplyDispatcher dispatcher = new AACSReplyDispatcher(4);
+        classUnderTest = new AACSMessageSender(new WeakReference<>(mockContext), mockSender, dispatcher);
+
+        CompletableFuture<AACSReplyMessage> replyFuture =
+                classUnderTest.sendRequest("test-topic", "test-action", null, 10);
+
+        try {
+            replyFuture.get(5, TimeUnit.SECONDS);
+            fail("Request should have timed out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    public void testRequestRejectedWhenPendingTableIsFull() {
+        AACSReplyDispatcher dispatcher = new AACSReplyDispatcher(1);
+        classUnderTest = new AACSMessageSender(new WeakReference<>(mockContext), mockSender, dispatcher);
+
+        CompletableFuture<AACSReplyMessage> first = classUnderTest.sendRequest("topic", "action", null, 5000);
+        CompletableFuture<AACSReplyMessage> second = classUnderTest.sendRequest("topic", "action", null, 5000);
+
+        assertFalse(first.isDone());
+        assertTrue(second.isCompletedExceptionally());
+        Mockito.verify(mockSender, Mockito.times(1))
+                .sendAASBMessageAnySize(anyString(), anyString(), anyString(), any(TargetComponent.class),
+                        Mockito.eq(mockContext));
+    }
 }
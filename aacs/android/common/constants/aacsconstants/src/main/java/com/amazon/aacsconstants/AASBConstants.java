@@ -75,6 +75,11 @@ public class AASBConstants {
         // Parameters of VolumeChangedMessage
         public static final String VOLUME = "volume";
 
+        // Parameters of PlaybackSnapshot and GetNumBytesBuffered reply
+        public static final String PLAYBACK_RATE = "playbackRate";
+        public static final String TIMESTAMP = "timestamp";
+        public static final String BUFFERED_BYTES = "bufferedBytes";
+
         public static final int TIME_UNKNOWN = -1;
     }
 
@@ -209,6 +209,8 @@ public class Action {
         public static final String MUTED_STATE_CHANGED = "MutedStateChanged";
         public static final String PAUSE = "Pause";
         public static final String PLAY = "Play";
+        // Sent by a player to AACS only, not an AASB message
+        public static final String PLAYBACK_SNAPSHOT = "PlaybackSnapshot";
         public static final String PREPARE = "Prepare";
         public static final String RESUME = "Resume";
         public static final String SET_POSITION = "SetPosition";
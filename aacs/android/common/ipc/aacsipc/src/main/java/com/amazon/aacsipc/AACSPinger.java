@@ -20,15 +20,49 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.util.Log;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Pings AACS to check that it is running and to get its state.
+ *
+ * Every ping is tagged with the id of the pinger and an id that AACS echoes in its reply, and the reply completes
+ * the {@link Future} of that ping directly, so any number of pings can be in flight without tying up a thread each.
+ * AACS sends the reply only to the package of the pinger, and replies to pings of other pingers are ignored. A ping
+ * that is not answered within its timeout completes with an {@link AACSPingResponse} without response. Versions of
+ * AACS that do not echo the pinger id have their replies matched by ping id alone, and replies without any id are
+ * attributed to the oldest ping in flight.
+ *
+ * Response times of answered pings are kept in a rolling window, see {@link #getPingStats()}. The pinger can also
+ * ping AACS periodically as a health probe, see {@link #startHealthProbe(long, long)}.
+ */
 public class AACSPinger {
     private static final String TAG = "AACS-" + AACSPinger.class.getSimpleName();
-    private ExecutorService mExecutorService;
+    private static final String PING_ID_EXTRA = "pingId";
+    private static final String PINGER_ID_EXTRA = "pingerId";
+    private static final int DEFAULT_PING_TIMEOUT_MS = 1000;
+    private static final int PING_STATS_WINDOW_SIZE = 128;
+
+    private final ScheduledExecutorService mScheduler;
+    private final String mPingerId = UUID.randomUUID().toString();
+    private final AtomicInteger mNextPingId = new AtomicInteger(new Random().nextInt());
+    private final Map<Integer, PendingPing> mPendingPings = new ConcurrentHashMap<>();
+    private final long[] mResponseTimes = new long[PING_STATS_WINDOW_SIZE];
+    private int mResponseCount;
+    private int mTimeoutCount;
+    private ScheduledFuture<?> mHealthProbe;
 
     public AACSPinger(Context context, String androidPermission) {
         mBroadcastReceiver = new ClientPingReceiver();
@@ -36,7 +70,11 @@ public class AACSPinger {
         IntentFilter filter = new IntentFilter();
         filter.addAction("com.amazon.aacs.pingreply");
         mContext = context;
-        mExecutorService = Executors.newSingleThreadExecutor();
+        mScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
         mContext.registerReceiver(mBroadcastReceiver, filter, androidPermission, null);
     }
 
@@ -44,26 +82,46 @@ public class AACSPinger {
         this(context, null);
     }
 
-    private Context mContext;
+    private volatile Context mContext;
     private ClientPingReceiver mBroadcastReceiver;
-    private int pingId = 0;
 
     private class ClientPingReceiver extends BroadcastReceiver {
-        private AACSPingResponse lastPingResponse;
-
         @Override
         public void onReceive(Context context, Intent intent) {
+            if (!"com.amazon.aacs.pingreply".equals(intent.getAction())) {
+                return;
+            }
+            PendingPing ping;
+            if (intent.hasExtra(PINGER_ID_EXTRA)) {
+                if (!mPingerId.equals(intent.getStringExtra(PINGER_ID_EXTRA)) || !intent.hasExtra(PING_ID_EXTRA)) {
+                    Log.d(TAG, "Ignoring ping reply for another pinger");
+                    return;
+                }
+                ping = mPendingPings.remove(intent.getIntExtra(PING_ID_EXTRA, 0));
+            } else if (intent.hasExtra(PING_ID_EXTRA)) {
+                // AACS that does not echo the pinger id. Ping ids start at a random value, so a reply to another
+                // pinger is unlikely to match one of our pings
+                ping = mPendingPings.remove(intent.getIntExtra(PING_ID_EXTRA, 0));
+            } else {
+                // AACS that does not echo any id
+                ping = pollOldestPing();
+            }
+            if (ping == null) {
+                Log.d(TAG, "Ignoring ping reply for a ping that already completed");
+                return;
+            }
+
             AACSPingResponse response = new AACSPingResponse();
             response.timestamp = System.currentTimeMillis();
-            if ("com.amazon.aacs.pingreply".equals(intent.getAction())) {
-                response.pingId = pingId;
-                response.hasResponse = true;
-                Log.d(TAG, "Ping reply received for ping transaction #" + pingId);
-                if (intent.hasExtra("state")) {
-                    response.AACSState = intent.getStringExtra("state");
-                }
-                lastPingResponse = response;
+            response.pingId = ping.mPingId;
+            response.hasResponse = true;
+            response.responseTimeInMS = response.timestamp - ping.mStartTime;
+            if (intent.hasExtra("state")) {
+                response.AACSState = intent.getStringExtra("state");
             }
+            Log.i(TAG, "Ping #" + ping.mPingId + " response was received in " + response.responseTimeInMS + "ms.");
+            recordResponseTime(response.responseTimeInMS);
+            ping.complete(response);
         }
     }
 
@@ -75,6 +133,43 @@ public class AACSPinger {
         public int pingId;
     }
 
+    /**
+     * Response times of the most recent answered pings.
+     */
+    public static class AACSPingStats {
+        public final int responseCount;
+        public final int timeoutCount;
+        public final long p50InMS;
+        public final long p95InMS;
+        public final long p99InMS;
+
+        private AACSPingStats(long[] sortedResponseTimes, int responseCount, int timeoutCount) {
+            this.responseCount = responseCount;
+            this.timeoutCount = timeoutCount;
+            p50InMS = percentile(sortedResponseTimes, 50);
+            p95InMS = percentile(sortedResponseTimes, 95);
+            p99InMS = percentile(sortedResponseTimes, 99);
+        }
+
+        private static long percentile(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("responses=%d, timeouts=%d, p50=%dms, p95=%dms, p99=%dms", responseCount,
+                    timeoutCount, p50InMS, p95InMS, p99InMS);
+        }
+    }
+
+    /**
+     * Sends a ping and waits for its response. Prefer {@link #pingAACS(long)}, which does not block a thread while
+     * the ping is in flight.
+     */
     public class PingTask implements Callable<AACSPingResponse> {
         private long timeoutInMS;
 
@@ -88,54 +183,162 @@ public class AACSPinger {
 
         @Override
         public AACSPingResponse call() throws Exception {
-            Intent intent = new Intent();
-            intent.setAction("com.amazon.aacs.ping");
-            intent.addCategory("com.amazon.aacs.pingtopic");
-            intent.putExtra("replyType", "RECEIVER");
-            long startTime = System.currentTimeMillis();
-            mContext.sendBroadcast(intent, "com.amazon.alexaautoclientservice.ping");
-
-            long expireTime = startTime + this.timeoutInMS;
-            while (System.currentTimeMillis() < expireTime) {
-                AACSPingResponse lastResponse = mBroadcastReceiver.lastPingResponse;
-                if (lastResponse != null && lastResponse.pingId == pingId) {
-                    lastResponse.responseTimeInMS = lastResponse.timestamp - startTime;
-                    Log.i(TAG,
-                            "Ping #" + pingId + " response was received in " + lastResponse.responseTimeInMS + "ms.");
-                    return lastResponse;
-                }
-                try {
-                    TimeUnit.MILLISECONDS.sleep(10);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-            Log.w(TAG, "No ping response received for ping id " + pingId);
-            return new AACSPingResponse();
+            Future<AACSPingResponse> response = pingAACS(timeoutInMS);
+            return response != null ? response.get() : new AACSPingResponse();
         }
     }
 
-    private static final int DEFAULT_PING_TIMEOUT_MS = 1000;
     public Future<AACSPingResponse> pingAACS() {
         return pingAACS(DEFAULT_PING_TIMEOUT_MS);
     }
 
+    /**
+     * Sends a ping to AACS.
+     *
+     * @param timeoutInMS Time to wait for the response.
+     * @return Future completed with the response, or with an {@link AACSPingResponse} without response if AACS
+     * does not answer in time. {@code null} if the pinger has been shut down.
+     */
     public Future<AACSPingResponse> pingAACS(long timeoutInMS) {
-        pingId++;
+        Context context = mContext;
+        if (context == null || mScheduler.isShutdown()) {
+            Log.w(TAG, "Cannot send ping request. AACSPinger has already been shutdown!");
+            return null;
+        }
+        int pingId = mNextPingId.incrementAndGet();
+        PendingPing ping = new PendingPing(pingId);
+        mPendingPings.put(pingId, ping);
+        ping.mTimeout = mScheduler.schedule(() -> onPingTimeout(pingId), timeoutInMS, TimeUnit.MILLISECONDS);
+
         Log.i(TAG, "Sending ping #" + pingId);
-        if (!mExecutorService.isShutdown()) {
-            return mExecutorService.submit(new PingTask(timeoutInMS));
+        Intent intent = new Intent();
+        intent.setAction("com.amazon.aacs.ping");
+        intent.addCategory("com.amazon.aacs.pingtopic");
+        intent.putExtra("replyType", "RECEIVER");
+        intent.putExtra("replyToPackage", context.getPackageName());
+        intent.putExtra(PINGER_ID_EXTRA, mPingerId);
+        intent.putExtra(PING_ID_EXTRA, pingId);
+        context.sendBroadcast(intent, "com.amazon.alexaautoclientservice.ping");
+        return ping;
+    }
+
+    /**
+     * Pings AACS every {@code intervalInMS} until {@link #stopHealthProbe()} or {@link #shutdown()} is called. The
+     * response times are available from {@link #getPingStats()}. Replaces a health probe that is already running.
+     *
+     * @param intervalInMS Time between two pings.
+     * @param timeoutInMS Time to wait for the response to each ping.
+     */
+    public synchronized void startHealthProbe(long intervalInMS, long timeoutInMS) {
+        if (mScheduler.isShutdown()) {
+            Log.w(TAG, "Cannot start health probe. AACSPinger has already been shutdown!");
+            return;
+        }
+        stopHealthProbe();
+        AtomicReference<Future<AACSPingResponse>> probePing = new AtomicReference<>();
+        mHealthProbe = mScheduler.scheduleAtFixedRate(() -> {
+            // Skip this ping while the previous probe ping is still in flight to avoid piling up pings on a stalled
+            // AACS. That ping completes by its own timeout at the latest, so a lost reply only delays the next ping.
+            // Pings sent by pingAACS callers do not hold up the probe.
+            Future<AACSPingResponse> previous = probePing.get();
+            if (previous == null || previous.isDone()) {
+                probePing.set(pingAACS(timeoutInMS));
+            }
+        }, 0, intervalInMS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopHealthProbe() {
+        if (mHealthProbe != null) {
+            mHealthProbe.cancel(false);
+            mHealthProbe = null;
+            Log.i(TAG, "Health probe stopped: " + getPingStats());
+        }
+    }
+
+    /**
+     * @return Response time percentiles over the last {@value #PING_STATS_WINDOW_SIZE} answered pings, and the
+     * number of pings answered and timed out since the pinger was created.
+     */
+    public AACSPingStats getPingStats() {
+        long[] responseTimes;
+        int responseCount;
+        int timeoutCount;
+        synchronized (mResponseTimes) {
+            responseCount = mResponseCount;
+            timeoutCount = mTimeoutCount;
+            responseTimes = Arrays.copyOf(mResponseTimes, Math.min(responseCount, PING_STATS_WINDOW_SIZE));
         }
-        Log.w(TAG, "Cannot send ping request. AACSPinger has already been shutdown!");
-        return null;
+        Arrays.sort(responseTimes);
+        return new AACSPingStats(responseTimes, responseCount, timeoutCount);
     }
 
     public void shutdown() {
+        stopHealthProbe();
         Context context = mContext;
         if (context != null && mBroadcastReceiver != null) {
             context.unregisterReceiver(mBroadcastReceiver);
         }
-        mExecutorService.shutdown();
+        mScheduler.shutdownNow();
         mContext = null;
+        // Do not leave callers waiting for timeouts that will never fire
+        for (PendingPing ping : mPendingPings.values()) {
+            mPendingPings.remove(ping.mPingId);
+            ping.complete(new AACSPingResponse());
+        }
+    }
+
+    private void onPingTimeout(int pingId) {
+        PendingPing ping = mPendingPings.remove(pingId);
+        if (ping == null) {
+            return;
+        }
+        Log.w(TAG, "No ping response received for ping id " + pingId);
+        synchronized (mResponseTimes) {
+            mTimeoutCount++;
+        }
+        AACSPingResponse response = new AACSPingResponse();
+        response.pingId = pingId;
+        ping.complete(response);
+    }
+
+    private PendingPing pollOldestPing() {
+        while (true) {
+            PendingPing oldest = null;
+            for (PendingPing ping : mPendingPings.values()) {
+                // Ping ids are sequential, compare the difference so that the order survives overflow
+                if (oldest == null || ping.mPingId - oldest.mPingId < 0) {
+                    oldest = ping;
+                }
+            }
+            if (oldest == null || mPendingPings.remove(oldest.mPingId, oldest)) {
+                return oldest;
+            }
+        }
+    }
+
+    private void recordResponseTime(long responseTimeInMS) {
+        synchronized (mResponseTimes) {
+            mResponseTimes[mResponseCount % PING_STATS_WINDOW_SIZE] = responseTimeInMS;
+            mResponseCount++;
+        }
+    }
+
+    private class PendingPing extends CompletableFuture<AACSPingResponse> {
+        private final int mPingId;
+        private final long mStartTime = System.currentTimeMillis();
+        private volatile ScheduledFuture<?> mTimeout;
+
+        PendingPing(int pingId) {
+            mPingId = pingId;
+        }
+
+        @Override
+        public boolean complete(AACSPingResponse response) {
+            ScheduledFuture<?> timeout = mTimeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            return super.complete(response);
+        }
     }
 }
@@ -17,6 +17,8 @@ package com.amazon.aacsipc;
 
 import android.content.BroadcastReceiver;
 import android.content.Intent;
+import android.os.Binder;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
@@ -25,27 +27,38 @@ import android.os.Message;
 import android.os.Messenger;
 import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
-import java.io.ByteArrayOutputStream;
-import java.io.FileDescriptor;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class AACSReceiver {
     public static class Builder {
         private MessageReceivedCallback mAASBReceivedCallback = null;
+        private MessageReaderCallback mAASBReaderCallback = null;
         private MessageReceivedCallback mConfigReceivedCallback = null;
         private FetchStreamCallback mFetchStreamCallback = null;
         private StreamPushedFromSenderCallback mStreamPushedFromSenderCallback = null;
         private Looper mLooper = Looper.getMainLooper();
+        private int mMaxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
 
         public Builder() {}
 
@@ -54,6 +67,18 @@ public class AACSReceiver {
             return this;
         }
 
+        /**
+         * Receive streamed AASB messages through a {@link Reader} instead of a {@link String}, so that large
+         * messages can be parsed without holding the whole message in memory. The callback is called on a worker
+         * thread, not on the looper of the receiver, and must read the message to the end before returning.
+         * Messages that are not streamed are still delivered to the callback set with {@link #withAASBCallback},
+         * or to this callback on the looper of the receiver if there is none.
+         */
+        public Builder withAASBReaderCallback(MessageReaderCallback aasbReaderCallback) {
+            mAASBReaderCallback = aasbReaderCallback;
+            return this;
+        }
+
         public Builder withConfigCallback(MessageReceivedCallback configCallback) {
             mConfigReceivedCallback = configCallback;
             return this;
@@ -74,34 +99,65 @@ public class AACSReceiver {
             return this;
         }
 
+        /**
+         * Maximum size in bytes of a streamed message. Larger messages are dropped. Defaults to
+         * {@value #DEFAULT_MAX_MESSAGE_SIZE}.
+         */
+        public Builder withMaxMessageSize(int maxMessageSize) {
+            mMaxMessageSize = maxMessageSize;
+            return this;
+        }
+
         public AACSReceiver build() {
-            AACSReceiver receiver = new AACSReceiver(mAASBReceivedCallback, mConfigReceivedCallback,
-                    mFetchStreamCallback, mStreamPushedFromSenderCallback, mLooper);
+            AACSReceiver receiver = new AACSReceiver(mAASBReceivedCallback, mAASBReaderCallback,
+                    mConfigReceivedCallback, mFetchStreamCallback, mStreamPushedFromSenderCallback, mLooper,
+                    mMaxMessageSize);
             return receiver;
         }
     }
 
     private static final String TAG = "AACS-" + AACSReceiver.class.getSimpleName();
-    private static final int READ_BUFFER_CHUNK_SIZE = 32;
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    // Each executor thread reuses its own read buffers for every streamed message it reads
+    private static final ThreadLocal<ReadBuffers> sReadBuffers = new ThreadLocal<ReadBuffers>() {
+        @Override
+        protected ReadBuffers initialValue() {
+            return new ReadBuffers();
+        }
+    };
     private MessageReceivedCallback mAASBReceivedCallback;
+    private MessageReaderCallback mAASBReaderCallback;
     private MessageReceivedCallback mConfigReceivedCallback;
     private FetchStreamCallback mFetchStreamCallback;
     private StreamPushedFromSenderCallback mStreamPushedFromSenderCallback;
     private Looper mLooper;
     private Handler mHandler;
+    private final int mMaxMessageSize;
     private boolean mIsShutdown = false; // this member is only ever read/written on the same thread as mLooper.
     private final ExecutorService mExecutor = Executors.newFixedThreadPool(5);
 
     // Constructor
-    private AACSReceiver(MessageReceivedCallback messageReceivedCallbacks,
+    private AACSReceiver(MessageReceivedCallback messageReceivedCallbacks, MessageReaderCallback messageReaderCallback,
             MessageReceivedCallback configReceivedCallback, FetchStreamCallback fetchStreamCallback,
-            StreamPushedFromSenderCallback streamPushedFromSenderCallback, Looper looper) {
+            StreamPushedFromSenderCallback streamPushedFromSenderCallback, Looper looper, int maxMessageSize) {
         mAASBReceivedCallback = messageReceivedCallbacks;
+        if (mAASBReceivedCallback == null && messageReaderCallback != null) {
+            mAASBReceivedCallback = message -> {
+                try {
+                    messageReaderCallback.onMessageReceived(new StringReader(message));
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "IPC: Reader callback FAILED to read message. " + e);
+                }
+            };
+        }
+        mAASBReaderCallback = messageReaderCallback;
         mConfigReceivedCallback = configReceivedCallback;
         mFetchStreamCallback = fetchStreamCallback;
         mStreamPushedFromSenderCallback = streamPushedFromSenderCallback;
         mLooper = looper;
         mHandler = new Handler(mLooper);
+        mMaxMessageSize = maxMessageSize;
     }
 
     public void shutdown() {
@@ -141,20 +197,21 @@ public class AACSReceiver {
             handlePush(bundle);
         } else if (IPCConstants.ACTION_CONFIG.equals(intent.getAction())) {
             if (mConfigReceivedCallback != null) {
-                handleSend(bundle, mConfigReceivedCallback, result);
+                handleSend(bundle, mConfigReceivedCallback, null, result);
             } else {
                 Log.e(TAG, "IPC: received called on config message but mConfigReceivedCallback is null");
             }
         } else {
             if (mAASBReceivedCallback != null) {
-                handleSend(bundle, mAASBReceivedCallback, result);
+                handleSend(bundle, mAASBReceivedCallback, mAASBReaderCallback, result);
             } else {
                 Log.e(TAG, "IPC: received called on config message but mAASBReceivedCallback is null");
             }
         }
     }
 
-    private void handleSend(Bundle bundle, MessageReceivedCallback callback, BroadcastReceiver.PendingResult result) {
+    private void handleSend(Bundle bundle, MessageReceivedCallback callback,
+            @Nullable MessageReaderCallback readerCallback, BroadcastReceiver.PendingResult result) {
         if (bundle == null) {
             return;
         }
@@ -162,8 +219,11 @@ public class AACSReceiver {
         final String type = bundle.getString(IPCConstants.AACS_IPC_MESSAGE_TYPE);
         if (type.equals(IPCConstants.AacsIpcMessageType.EMBEDDED.getTypeAsString())) {
             handleSendEmbedded(bundle, callback, result);
+        } else if (type.equals(IPCConstants.AacsIpcMessageType.SHARED_MEMORY.getTypeAsString())
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            handleSendSharedMemory(bundle, callback, readerCallback, result);
         } else {
-            handleSendStreamed(bundle, callback, result);
+            handleSendStreamed(bundle, callback, readerCallback, result);
         }
     }
 
@@ -178,8 +238,8 @@ public class AACSReceiver {
         }
     }
 
-    private void handleSendStreamed(
-            Bundle bundle, MessageReceivedCallback callback, BroadcastReceiver.PendingResult result) {
+    private void handleSendStreamed(Bundle bundle, MessageReceivedCallback callback,
+            @Nullable MessageReaderCallback readerCallback, BroadcastReceiver.PendingResult result) {
         String messageTransferId = bundle.getString(IPCConstants.AACS_IPC_MESSAGE_TRANSFER_ID);
         final String resourceId = bundle.getString(IPCConstants.AACS_IPC_RESOURCE_ID);
         final IBinder msgBinder = bundle.getBinder(IPCConstants.AACS_IPC_MESSENGER);
@@ -217,67 +277,215 @@ public class AACSReceiver {
             return;
         }
 
-        Thread readerThread = new Thread() {
-            @Override
-            public void run() {
-                Log.i(TAG, "IPC: STARTING read stream.");
-                boolean isReading = true;
-                byte[] byteArray = new byte[READ_BUFFER_CHUNK_SIZE];
-                StringBuilder stringBuilder = new StringBuilder();
-                try (ParcelFileDescriptor.AutoCloseInputStream stream =
-                                new ParcelFileDescriptor.AutoCloseInputStream(readPipe)) {
-                    while (isReading) {
-                        int bytesRead = stream.read(byteArray);
-                        if (bytesRead > 0) {
-                            String subString =
-                                    new String(Arrays.copyOfRange(byteArray, 0, bytesRead), StandardCharsets.UTF_8);
-                            Log.i(TAG,
-                                    "IPC: Substring received.  Bytes read: " + bytesRead + ", Substring: " + subString);
-                            stringBuilder.append(subString);
-                            if (bytesRead < byteArray.length || stream.available() == 0) {
-                                isReading = false;
-                            }
-                        } else {
-                            isReading = false;
-                        }
-                    }
+        if (!(msgBinder instanceof Binder)) {
+            // The sender received its own copy of the write pipe. Close ours so that the stream ends when the sender
+            // closes its copy. A sender in this process shares our write pipe and closes it itself.
+            closePipe(writePipe);
+        }
 
-                    String completeString = stringBuilder.toString();
-                    Log.i(TAG, "IPC: Received complete message: " + completeString);
-
-                    Message msg = Message.obtain();
-                    Bundle bundleAck = new Bundle();
-                    bundleAck.putString(IPCConstants.AACS_IPC_ACK_STATE, IPCConstants.AACS_IPC_ACK_SUCCESS);
-                    bundleAck.putString(IPCConstants.AACS_IPC_RESOURCE_ID, resourceId);
-                    msg.setData(bundleAck);
-
-                    Messenger messenger = new Messenger(msgBinder);
-                    messenger.send(msg);
-                    Log.i(TAG, "IPC: Confirmation message sent.");
-
-                    readPipe.close();
-                    writePipe.close();
-
-                    mHandler.post(() -> {
-                        if (!mIsShutdown) {
-                            callback.onMessageReceived(completeString);
-                            if (result != null) {
-                                Log.i(TAG,
-                                        "Calling finish() on the PendingResult to inform the system the broadcast receiver can be recycled.");
-                                result.finish();
-                            }
-                        }
-                    });
-                } catch (IOException | RemoteException e) {
-                    Log.i(TAG, "IPC: FAILED to read from stream." + e);
-                }
+        Runnable readMessage = () -> {
+            try {
+                receiveMessage(new ParcelFileDescriptor.AutoCloseInputStream(readPipe), resourceId, msgBinder,
+                        callback, readerCallback, result);
+            } finally {
+                closePipe(writePipe);
             }
         };
         if (!mExecutor.isShutdown()) {
-            mExecutor.submit(readerThread);
+            mExecutor.submit(readMessage);
+        }
+    }
+
+    /**
+     * Reads a message on an executor thread and hands it to the reader callback if there is one, or to the message
+     * callback on the looper. Messages larger than the maximum message size are dropped. The sender is acknowledged
+     * once the message is read, and the PendingResult is finished in every case.
+     */
+    private void receiveMessage(InputStream source, String resourceId, IBinder msgBinder,
+            MessageReceivedCallback callback, @Nullable MessageReaderCallback readerCallback,
+            BroadcastReceiver.PendingResult result) {
+        try (BoundedInputStream stream = new BoundedInputStream(source, mMaxMessageSize)) {
+            String message = null;
+            if (readerCallback != null) {
+                try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+                    readerCallback.onMessageReceived(reader);
+                } catch (IOException | RuntimeException e) {
+                    // The sender is still acknowledged so that it releases the transfer
+                    Log.e(TAG, "IPC: Reader callback FAILED to read message. " + e);
+                }
+            } else {
+                message = readMessage(stream);
+            }
+            Log.i(TAG, "IPC: Received message. Bytes read: " + stream.getBytesRead());
+
+            sendAck(resourceId, msgBinder);
+            if (message != null) {
+                deliverMessage(message, callback, result);
+            } else {
+                finishResult(result);
+            }
+        } catch (IOException | RemoteException | RuntimeException e) {
+            Log.e(TAG, "IPC: FAILED to read message. " + e);
+            finishResult(result);
+        }
+    }
+
+    /**
+     * Reads a UTF-8 message until the end of the stream.
+     */
+    private static String readMessage(InputStream stream) throws IOException {
+        ReadBuffers buffers = sReadBuffers.get();
+        ByteBuffer bytes = buffers.mBytes;
+        CharBuffer chars = buffers.mChars;
+        CharsetDecoder decoder = buffers.mDecoder;
+        bytes.clear();
+        chars.clear();
+        decoder.reset();
+
+        StringBuilder message = new StringBuilder();
+        int bytesRead;
+        while ((bytesRead = stream.read(bytes.array(), bytes.position(), bytes.remaining())) >= 0) {
+            bytes.position(bytes.position() + bytesRead);
+            bytes.flip();
+            decode(decoder, bytes, chars, message, false);
+            // Keeps the bytes of a character split between two reads
+            bytes.compact();
+        }
+        bytes.flip();
+        decode(decoder, bytes, chars, message, true);
+        while (decoder.flush(chars).isOverflow()) {
+            drain(chars, message);
+        }
+        drain(chars, message);
+        return message.toString();
+    }
+
+    private static void decode(
+            CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, StringBuilder message, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            drain(chars, message);
+        } while (result.isOverflow());
+    }
+
+    private static void drain(CharBuffer chars, StringBuilder message) {
+        chars.flip();
+        message.append(chars);
+        chars.clear();
+    }
+
+    private static void closePipe(ParcelFileDescriptor pipe) {
+        try {
+            pipe.close();
+        } catch (IOException e) {
+            Log.e(TAG, "IPC: Error while closing pipe " + e);
+        }
+    }
+
+    private void finishResult(BroadcastReceiver.PendingResult result) {
+        if (result != null) {
+            mHandler.post(result::finish);
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.O_MR1)
+    private void handleSendSharedMemory(Bundle bundle, MessageReceivedCallback callback,
+            @Nullable MessageReaderCallback readerCallback, BroadcastReceiver.PendingResult result) {
+        final String resourceId = bundle.getString(IPCConstants.AACS_IPC_RESOURCE_ID);
+        final IBinder msgBinder = bundle.getBinder(IPCConstants.AACS_IPC_MESSENGER);
+
+        if (msgBinder == null) {
+            Log.e(TAG, "IPC: msgBinder is null. Aborting AACSReceiver::handleSendSharedMemory");
+            finishResult(result);
+            return;
+        }
+
+        // The sender replies on this looper with the shared memory region holding the message
+        Messenger replyMessenger = new Messenger(new Handler(mLooper) {
+            @Override
+            public void handleMessage(Message reply) {
+                SharedMemory sharedMemory = reply.getData().getParcelable(IPCConstants.AACS_IPC_SHARED_MEMORY);
+                if (sharedMemory == null) {
+                    Log.w(TAG, "IPC: Sender did not provide shared memory. Falling back to streamed transfer.");
+                    handleSendStreamed(bundle, callback, readerCallback, result);
+                    return;
+                }
+                if (!mExecutor.isShutdown()) {
+                    mExecutor.submit(() -> readSharedMemory(
+                            sharedMemory, resourceId, msgBinder, callback, readerCallback, result));
+                } else {
+                    sharedMemory.close();
+                    finishResult(result);
+                }
+            }
+        });
+
+        Bundle bundleRequest = new Bundle();
+        bundleRequest.putString(IPCConstants.AACS_IPC_MESSAGE_TRANSFER_ID,
+                bundle.getString(IPCConstants.AACS_IPC_MESSAGE_TRANSFER_ID));
+        bundleRequest.putString(IPCConstants.AACS_IPC_RESOURCE_ID, resourceId);
+        bundleRequest.putBoolean(IPCConstants.AACS_IPC_SHARED_MEMORY_REQUEST, true);
+
+        Message msg = Message.obtain();
+        msg.setData(bundleRequest);
+        msg.replyTo = replyMessenger;
+
+        try {
+            new Messenger(msgBinder).send(msg);
+        } catch (RemoteException e) {
+            Log.e(TAG, "IPC: RemoteException encountered on messenger.send() in handleSendSharedMemory. " + e);
+            finishResult(result);
         }
     }
 
+    @RequiresApi(api = Build.VERSION_CODES.O_MR1)
+    private void readSharedMemory(SharedMemory sharedMemory, String resourceId, IBinder msgBinder,
+            MessageReceivedCallback callback, @Nullable MessageReaderCallback readerCallback,
+            BroadcastReceiver.PendingResult result) {
+        try {
+            ByteBuffer buffer = sharedMemory.mapReadOnly();
+            try {
+                // The callbacks are done with the message when receiveMessage returns
+                receiveMessage(new ByteBufferInputStream(buffer), resourceId, msgBinder, callback, readerCallback,
+                        result);
+            } finally {
+                SharedMemory.unmap(buffer);
+            }
+        } catch (ErrnoException e) {
+            Log.e(TAG, "IPC: FAILED to read from shared memory. " + e);
+            finishResult(result);
+        } finally {
+            sharedMemory.close();
+        }
+    }
+
+    private void sendAck(String resourceId, IBinder msgBinder) throws RemoteException {
+        Message msg = Message.obtain();
+        Bundle bundleAck = new Bundle();
+        bundleAck.putString(IPCConstants.AACS_IPC_ACK_STATE, IPCConstants.AACS_IPC_ACK_SUCCESS);
+        bundleAck.putString(IPCConstants.AACS_IPC_RESOURCE_ID, resourceId);
+        msg.setData(bundleAck);
+
+        Messenger messenger = new Messenger(msgBinder);
+        messenger.send(msg);
+        Log.i(TAG, "IPC: Confirmation message sent.");
+    }
+
+    private void deliverMessage(
+            String message, MessageReceivedCallback callback, BroadcastReceiver.PendingResult result) {
+        mHandler.post(() -> {
+            if (!mIsShutdown) {
+                callback.onMessageReceived(message);
+            }
+            if (result != null) {
+                Log.i(TAG,
+                        "Calling finish() on the PendingResult to inform the system the broadcast receiver can be recycled.");
+                result.finish();
+            }
+        });
+    }
+
     private void handleFetch(Bundle bundle) {
         if (mFetchStreamCallback == null) {
             Log.e(TAG, "IPC: mFetchStreamCallback is null.  Unable to call fetch handler");
@@ -398,6 +606,8 @@ public class AACSReceiver {
 
     public interface MessageReceivedCallback { void onMessageReceived(String message); }
 
+    public interface MessageReaderCallback { void onMessageReceived(Reader message) throws IOException; }
+
     public interface FetchStreamCallback {
         void onStreamRequested(String streamId, ParcelFileDescriptor writePipe);
         void onStreamFetchCancelled(String streamId);
@@ -406,4 +616,88 @@ public class AACSReceiver {
     public interface StreamPushedFromSenderCallback {
         void onStreamPushedFromSenderCallback(String streamId, ParcelFileDescriptor readPipe);
     }
+
+    private static class ReadBuffers {
+        final ByteBuffer mBytes = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        final CharBuffer mChars = CharBuffer.allocate(READ_BUFFER_SIZE);
+        final CharsetDecoder mDecoder = StandardCharsets.UTF_8.newDecoder()
+                                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Reads the bytes remaining in a buffer, such as a mapped shared memory region.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int bytesRead = Math.min(length, mBuffer.remaining());
+            mBuffer.get(buffer, offset, bytesRead);
+            return bytesRead;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+
+    /**
+     * Fails the read once more than the maximum message size has been read.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private final int mMaxSize;
+        private long mBytesRead;
+
+        BoundedInputStream(InputStream in, int maxSize) {
+            super(in);
+            mMaxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int bytesRead = super.read(buffer, offset, length);
+            if (bytesRead > 0) {
+                count(bytesRead);
+            }
+            return bytesRead;
+        }
+
+        long getBytesRead() {
+            return mBytesRead;
+        }
+
+        private void count(int bytesRead) throws IOException {
+            mBytesRead += bytesRead;
+            if (mBytesRead > mMaxSize) {
+                throw new IOException("Message exceeds the maximum size of " + mMaxSize + " bytes");
+            }
+        }
+    }
 }
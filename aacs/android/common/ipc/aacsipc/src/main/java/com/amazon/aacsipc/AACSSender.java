@@ -24,9 +24,13 @@ import android.os.Looper;
 import android.os.Message;
 import android.os.Messenger;
 import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
 import android.util.Log;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -53,6 +57,7 @@ public class AACSSender {
     private ConcurrentHashMap<String, StreamFetchedFromReceiverCallback> mStreamFetchCallbackMap;
     private ConcurrentHashMap<String, PushToStreamIdCallback> mStreamPushCallbackMap;
     private final ExecutorService mExecutor = Executors.newFixedThreadPool(5);
+    private volatile boolean mSharedMemoryTransportEnabled = false;
 
     public interface StreamFetchedFromReceiverCallback {
         /**
@@ -70,6 +75,20 @@ public class AACSSender {
         void onPushToStreamId(String streamId, ParcelFileDescriptor writePipe);
     }
 
+    /**
+     * Writes a message when it is sent, instead of holding it in memory as a string.
+     */
+    public interface MessageWriter {
+        /**
+         * Writes the message as JSON. It is called once to measure the message, and then once for every receiver
+         * that reads it, possibly from different threads at the same time, so it must write the same message
+         * every time.
+         *
+         * <p> Note: Do not close the writer.</P>
+         */
+        void writeTo(Writer writer) throws IOException;
+    }
+
     public int getMaxEmbeddedMessageSize() {
         return MAX_NUM_BYTES_IN_EMBEDDED_MESSAGE_INTENT;
     }
@@ -79,6 +98,21 @@ public class AACSSender {
         return (messageSizeInBytes <= MAX_NUM_BYTES_IN_EMBEDDED_MESSAGE_INTENT);
     }
 
+    /**
+     * Enables handing messages that are too large to be embedded to the receiver in a sealed shared memory
+     * region instead of writing them through a pipe. Receivers that do not support the shared memory transport,
+     * or devices where it is unavailable, fall back to the streamed transport.
+     *
+     * @param enabled Whether the shared memory transport should be used for large messages
+     */
+    public void setSharedMemoryTransportEnabled(boolean enabled) {
+        mSharedMemoryTransportEnabled = enabled;
+    }
+
+    private boolean isSharedMemoryTransportAvailable() {
+        return mSharedMemoryTransportEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1;
+    }
+
     public AACSSender() {
         this(Looper.getMainLooper(), IPCConstants.DEFAULT_CACHE_CAPACITY);
     }
@@ -189,6 +223,47 @@ public class AACSSender {
         return sendMessage(message, intentAction, intentCategory, target, context);
     }
 
+    /**
+     * Sends a message that is written by {@code message} only when it is sent, so that no string of a large message
+     * is kept in memory. A message small enough to be embedded in the intent is embedded as a string.
+     *
+     * @return Future with status of send, or {@code null} if the message was embedded.
+     */
+    public Future<Boolean> sendAASBMessageAnySize(
+            MessageWriter message, String action, String topic, TargetComponent target, Context context) {
+        checkLogArgNonNull(message, "message", "sendAASBMessageAnySize");
+        checkLogStringValid(action, "action", "sendAASBMessageAnySize");
+        checkLogStringValid(topic, "topic", "sendAASBMessageAnySize");
+        checkLogArgNonNull(target, "target", "sendAASBMessageAnySize");
+        checkLogArgNonNull(context, "context", "sendAASBMessageAnySize");
+
+        String intentAction = IPCConstants.AASB_INTENT_PREFIX + action;
+        String intentCategory = IPCConstants.AASB_INTENT_PREFIX + topic;
+
+        long messageSizeInBytes;
+        try {
+            messageSizeInBytes = SenderMap.measure(message);
+        } catch (IOException e) {
+            Log.e(TAG, "IPC: FAILED to write message. " + e);
+            return CompletableFuture.completedFuture(false);
+        }
+        if (messageSizeInBytes <= MAX_NUM_BYTES_IN_EMBEDDED_MESSAGE_INTENT) {
+            try {
+                return sendMessage(SenderMap.render(message), intentAction, intentCategory, target, context);
+            } catch (IOException e) {
+                Log.e(TAG, "IPC: FAILED to write message. " + e);
+                return CompletableFuture.completedFuture(false);
+            }
+        }
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        int resourceId = mMap.put(message, future, 1);
+        Bundle bundle = constructStreamingMessageBundle(resourceId);
+        Intent intent = constructIntent(intentAction, intentCategory, target, bundle);
+        sendIntent(intent, target, context);
+        return future;
+    }
+
     public void sendConfigMessageEmbedded(String message, TargetComponent target, Context context) {
         checkLogStringValid(message, "message", "sendConfigMessage");
         checkLogArgNonNull(target, "target", "sendConfigMessage");
@@ -308,8 +383,10 @@ public class AACSSender {
     private Bundle constructStreamingMessageBundle(int resourceId) {
         Bundle bundle = new Bundle();
         bundle.putString(IPCConstants.AACS_IPC_MESSAGE_TRANSFER_ID, UUID.randomUUID().toString());
-        bundle.putString(
-                IPCConstants.AACS_IPC_MESSAGE_TYPE, IPCConstants.AacsIpcMessageType.STREAMED.getTypeAsString());
+        IPCConstants.AacsIpcMessageType type = isSharedMemoryTransportAvailable()
+                ? IPCConstants.AacsIpcMessageType.SHARED_MEMORY
+                : IPCConstants.AacsIpcMessageType.STREAMED;
+        bundle.putString(IPCConstants.AACS_IPC_MESSAGE_TYPE, type.getTypeAsString());
         bundle.putString(IPCConstants.AACS_IPC_RESOURCE_ID, Integer.toString(resourceId));
         bundle.putBinder(IPCConstants.AACS_IPC_MESSENGER, mSendMessenger.getBinder());
         return bundle;
@@ -394,6 +471,14 @@ public class AACSSender {
             final int resourceId = Integer.parseInt((String) msg.getData().get(IPCConstants.AACS_IPC_RESOURCE_ID));
             final SenderMap.ResourceBundle resource = mMap.get(resourceId);
 
+            if (msg.getData().getBoolean(IPCConstants.AACS_IPC_SHARED_MEMORY_REQUEST)) {
+                final Messenger replyTo = msg.replyTo;
+                if (!mExecutor.isShutdown()) {
+                    mExecutor.submit(() -> replyWithSharedMemory(resourceId, resource, replyTo));
+                }
+                return;
+            }
+
             final ParcelFileDescriptor writePipe =
                     (ParcelFileDescriptor) msg.getData().get(IPCConstants.AACS_IPC_WRITE_TO);
 
@@ -404,11 +489,9 @@ public class AACSSender {
                     @Override
                     public void run() {
                         Log.i(TAG, "IPC: STARTING write stream");
-                        String message = resource.getMessage();
-
                         try (ParcelFileDescriptor.AutoCloseOutputStream stream =
                                         new ParcelFileDescriptor.AutoCloseOutputStream(writePipe)) {
-                            stream.write(message.getBytes(StandardCharsets.UTF_8));
+                            resource.writeMessageTo(stream);
                             stream.flush();
                         } catch (IOException e) {
                             Log.e(TAG, "IPC: FAILED to write to stream: IOException." + e);
@@ -433,6 +516,32 @@ public class AACSSender {
         }
     }
 
+    private void replyWithSharedMemory(int resourceId, SenderMap.ResourceBundle resource, Messenger replyTo) {
+        if (replyTo == null) {
+            Log.e(TAG, "IPC: shared memory request has no reply messenger. ResourceId=" + resourceId);
+            return;
+        }
+        Bundle bundleReply = new Bundle();
+        bundleReply.putString(IPCConstants.AACS_IPC_RESOURCE_ID, Integer.toString(resourceId));
+        if (resource != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            try {
+                SharedMemory sharedMemory = resource.getSharedMemory();
+                bundleReply.putParcelable(IPCConstants.AACS_IPC_SHARED_MEMORY, sharedMemory);
+            } catch (ErrnoException e) {
+                // The receiver falls back to the streamed transport when no region is provided
+                Log.e(TAG, "IPC: FAILED to create shared memory region. " + e);
+            }
+        }
+
+        Message msg = Message.obtain();
+        msg.setData(bundleReply);
+        try {
+            replyTo.send(msg);
+        } catch (RemoteException e) {
+            Log.e(TAG, "IPC: RemoteException encountered while replying with shared memory. " + e);
+        }
+    }
+
     private class FetchHandler extends Handler {
         FetchHandler(Looper looper) {
             super(looper);
@@ -40,6 +40,8 @@ public class IPCConstants {
     public static final String AACS_IPC_READ_FROM = "readFrom";
     public static final String AACS_IPC_ACK_STATE = "state";
     public static final String AACS_IPC_ACK_SUCCESS = "success";
+    public static final String AACS_IPC_SHARED_MEMORY = "sharedMemory";
+    public static final String AACS_IPC_SHARED_MEMORY_REQUEST = "sharedMemoryRequest";
 
     // AACS AAR Check
     public static final String AACS_IPC_PACKAGE_NAME_MATCHES = "aacsIncludedAsAAR";
@@ -47,7 +49,8 @@ public class IPCConstants {
     // AACS IPC protocol enum values
     public enum AacsIpcMessageType {
         EMBEDDED("embedded"),
-        STREAMED("streamed");
+        STREAMED("streamed"),
+        SHARED_MEMORY("sharedMemory");
 
         private String typeAsString;
 
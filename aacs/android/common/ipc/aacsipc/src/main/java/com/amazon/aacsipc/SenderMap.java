@@ -15,8 +15,22 @@
 
 package com.amazon.aacsipc;
 
+import android.os.Build;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
 import android.util.Log;
 
+import androidx.annotation.RequiresApi;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -27,6 +41,7 @@ class SenderMap {
     private LinkedBlockingDeque<Integer> mQueue;
     private int mResourceId;
     private int mCapacity;
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
 
     SenderMap(int capacity) {
         mMap = new HashMap<>(capacity);
@@ -37,7 +52,14 @@ class SenderMap {
     }
 
     synchronized int put(String message, CompletableFuture<Boolean> future, int targetCount) {
-        ResourceBundle resource = new ResourceBundle(mResourceId, message, future, targetCount);
+        return put(new ResourceBundle(mResourceId, message, null, future, targetCount));
+    }
+
+    synchronized int put(AACSSender.MessageWriter message, CompletableFuture<Boolean> future, int targetCount) {
+        return put(new ResourceBundle(mResourceId, null, message, future, targetCount));
+    }
+
+    private int put(ResourceBundle resource) {
         if (!mQueue.isEmpty() && mQueue.size() == mCapacity) {
             int evictedId = mQueue.poll();
             ResourceBundle evictedResource = mMap.get(evictedId);
@@ -48,6 +70,7 @@ class SenderMap {
                                 + "\n| Message = " + evictedResource.getMessage()
                                 + "\n| Future isDone = " + evictedResource.getFuture().isDone());
                 mMap.remove(evictedId);
+                evictedResource.release();
             } else {
                 Log.e(TAG, "IPC: Trying to evict an invalid resource from cache");
             }
@@ -64,6 +87,7 @@ class SenderMap {
         ResourceBundle resource = mMap.remove(resourceId);
         if (resource != null) {
             mQueue.remove(resourceId);
+            resource.release();
             Log.i(TAG,
                     "IPC: Removed ResourceId " + resourceId + " | Message = " + resource.getMessage()
                             + " | Future isDone = " + resource.getFuture().isDone());
@@ -104,21 +128,61 @@ class SenderMap {
         }
     }
 
+    /**
+     * @return Number of bytes of the UTF-8 encoded message written by {@code message}.
+     */
+    static long measure(AACSSender.MessageWriter message) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        write(message, counter);
+        return counter.mCount;
+    }
+
+    static String render(AACSSender.MessageWriter message) throws IOException {
+        StringWriter writer = new StringWriter();
+        message.writeTo(writer);
+        return writer.toString();
+    }
+
+    private static void write(AACSSender.MessageWriter message, OutputStream stream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        message.writeTo(writer);
+        writer.flush();
+    }
+
     public static class ResourceBundle {
         int mResourceId;
         String mMessage;
+        AACSSender.MessageWriter mMessageWriter;
         CompletableFuture<Boolean> mFuture;
         int mTargetCount;
+        SharedMemory mSharedMemory;
 
-        ResourceBundle(int resourceId, String message, CompletableFuture<Boolean> future, int targetCount) {
+        ResourceBundle(int resourceId, String message, AACSSender.MessageWriter messageWriter,
+                CompletableFuture<Boolean> future, int targetCount) {
             mResourceId = resourceId;
             mMessage = message;
+            mMessageWriter = messageWriter;
             mFuture = future;
             mTargetCount = targetCount;
         }
 
+        /**
+         * @return The message, or a placeholder for logs if the message is written when it is sent.
+         */
         synchronized String getMessage() {
-            return mMessage;
+            return mMessage != null ? mMessage : "[written on send]";
+        }
+
+        /**
+         * Writes the UTF-8 encoded message to {@code stream}. A message writer writes straight to the stream, without
+         * building the message in memory.
+         */
+        void writeMessageTo(OutputStream stream) throws IOException {
+            if (mMessageWriter != null) {
+                write(mMessageWriter, stream);
+            } else {
+                stream.write(getMessage().getBytes(StandardCharsets.UTF_8));
+            }
         }
 
         synchronized CompletableFuture<Boolean> getFuture() {
@@ -133,5 +197,85 @@ class SenderMap {
             mTargetCount -= 1;
             Log.v(TAG, "IPC: decrement target count by 1. Current value: " + mTargetCount);
         }
+
+        /**
+         * Returns a read-only shared memory region holding the UTF-8 encoded message. The region is created on
+         * first use and shared by every target of the message, so the payload is copied only once regardless of
+         * the number of receivers.
+         *
+         * @return The sealed shared memory region
+         * @throws ErrnoException if the region could not be created
+         */
+        @RequiresApi(api = Build.VERSION_CODES.O_MR1)
+        synchronized SharedMemory getSharedMemory() throws ErrnoException {
+            if (mSharedMemory == null) {
+                byte[] bytes = mMessageWriter == null ? mMessage.getBytes(StandardCharsets.UTF_8) : null;
+                int size;
+                try {
+                    size = bytes != null ? bytes.length : (int) measure(mMessageWriter);
+                } catch (IOException e) {
+                    throw new ErrnoException("measure", OsConstants.EIO, e);
+                }
+                SharedMemory sharedMemory = SharedMemory.create("aacs-ipc-" + mResourceId, size);
+                try {
+                    ByteBuffer buffer = sharedMemory.mapReadWrite();
+                    if (bytes != null) {
+                        buffer.put(bytes);
+                    } else {
+                        write(mMessageWriter, new ByteBufferOutputStream(buffer));
+                    }
+                    SharedMemory.unmap(buffer);
+                    // Seal the region so receivers can only map it read-only
+                    sharedMemory.setProtect(OsConstants.PROT_READ);
+                } catch (ErrnoException e) {
+                    sharedMemory.close();
+                    throw e;
+                } catch (IOException | RuntimeException e) {
+                    sharedMemory.close();
+                    throw new ErrnoException("write", OsConstants.EIO, e);
+                }
+                mSharedMemory = sharedMemory;
+            }
+            return mSharedMemory;
+        }
+
+        synchronized void release() {
+            if (mSharedMemory != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                mSharedMemory.close();
+            }
+            mSharedMemory = null;
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long mCount;
+
+        @Override
+        public void write(int b) {
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            mCount += len;
+        }
+    }
+
+    private static class ByteBufferOutputStream extends OutputStream {
+        private final ByteBuffer mBuffer;
+
+        ByteBufferOutputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            mBuffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            mBuffer.put(b, off, len);
+        }
     }
 }
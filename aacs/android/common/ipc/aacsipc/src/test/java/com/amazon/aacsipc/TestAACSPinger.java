@@ -0,0 +1,167 @@
+package com.amazon.aacsipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.annotation.LooperMode.Mode.LEGACY;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LEGACY)
+public class TestAACSPinger {
+    private Activity mActivity;
+    private ShadowLooper mShadowLooperMain;
+    private AACSPinger mPinger;
+
+    @Before
+    public void setup() {
+        mActivity = Robolectric.buildActivity(Activity.class).create().start().resume().get();
+        mShadowLooperMain = Shadows.shadowOf(Looper.getMainLooper());
+        mPinger = new AACSPinger(mActivity);
+    }
+
+    @After
+    public void tearDown() {
+        mPinger.shutdown();
+    }
+
+    private Intent lastPing() {
+        List<Intent> broadcasts = Shadows.shadowOf(mActivity.getApplication()).getBroadcastIntents();
+        for (int i = broadcasts.size() - 1; i >= 0; i--) {
+            if ("com.amazon.aacs.ping".equals(broadcasts.get(i).getAction())) {
+                return broadcasts.get(i);
+            }
+        }
+        throw new AssertionError("No ping was sent");
+    }
+
+    private void reply(Intent ping, String state) {
+        Intent reply = new Intent("com.amazon.aacs.pingreply");
+        reply.putExtra("state", state);
+        reply.putExtra("pingId", ping.getIntExtra("pingId", 0));
+        reply.putExtra("pingerId", ping.getStringExtra("pingerId"));
+        mActivity.sendBroadcast(reply);
+        mShadowLooperMain.idle();
+    }
+
+    @Test
+    public void ping_repliesCompleteMatchingPings() throws Exception {
+        Future<AACSPinger.AACSPingResponse> first = mPinger.pingAACS();
+        Intent firstPing = lastPing();
+        Future<AACSPinger.AACSPingResponse> second = mPinger.pingAACS();
+        Intent secondPing = lastPing();
+        assertEquals(mActivity.getPackageName(), secondPing.getStringExtra("replyToPackage"));
+
+        reply(secondPing, "CONNECTED");
+        assertFalse(first.isDone());
+        AACSPinger.AACSPingResponse secondResponse = second.get(1, TimeUnit.SECONDS);
+        assertTrue(secondResponse.hasResponse);
+        assertEquals(secondPing.getIntExtra("pingId", 0), secondResponse.pingId);
+        assertEquals("CONNECTED", secondResponse.AACSState);
+
+        reply(firstPing, "STARTED");
+        AACSPinger.AACSPingResponse firstResponse = first.get(1, TimeUnit.SECONDS);
+        assertTrue(firstResponse.hasResponse);
+        assertEquals(firstPing.getIntExtra("pingId", 0), firstResponse.pingId);
+        assertEquals("STARTED", firstResponse.AACSState);
+        assertEquals(2, mPinger.getPingStats().responseCount);
+    }
+
+    @Test
+    public void ping_repliesToOtherPingerAreIgnored() throws Exception {
+        AACSPinger otherPinger = new AACSPinger(mActivity);
+        try {
+            Future<AACSPinger.AACSPingResponse> ping = mPinger.pingAACS();
+            Intent sentPing = lastPing();
+            Future<AACSPinger.AACSPingResponse> otherPing = otherPinger.pingAACS();
+            Intent otherSentPing = lastPing();
+            assertNotEquals(sentPing.getStringExtra("pingerId"), otherSentPing.getStringExtra("pingerId"));
+
+            reply(otherSentPing, "CONNECTED");
+            assertTrue(otherPing.get(1, TimeUnit.SECONDS).hasResponse);
+            assertFalse(ping.isDone());
+
+            reply(sentPing, "STARTED");
+            assertEquals("STARTED", ping.get(1, TimeUnit.SECONDS).AACSState);
+            assertEquals(1, mPinger.getPingStats().responseCount);
+            assertEquals(1, otherPinger.getPingStats().responseCount);
+        } finally {
+            otherPinger.shutdown();
+        }
+    }
+
+    @Test
+    public void ping_replyWithoutPingerIdMatchesPingId() throws Exception {
+        Future<AACSPinger.AACSPingResponse> first = mPinger.pingAACS();
+        Future<AACSPinger.AACSPingResponse> second = mPinger.pingAACS();
+        Intent secondPing = lastPing();
+
+        // Reply of an AACS that does not echo the pinger id
+        Intent reply = new Intent("com.amazon.aacs.pingreply");
+        reply.putExtra("pingId", secondPing.getIntExtra("pingId", 0));
+        mActivity.sendBroadcast(reply);
+        mShadowLooperMain.idle();
+
+        assertTrue(second.get(1, TimeUnit.SECONDS).hasResponse);
+        assertFalse(first.isDone());
+    }
+
+    @Test
+    public void ping_replyWithoutIdCompletesOldestPing() throws Exception {
+        Future<AACSPinger.AACSPingResponse> first = mPinger.pingAACS();
+        Intent firstPing = lastPing();
+        Future<AACSPinger.AACSPingResponse> second = mPinger.pingAACS();
+
+        // Reply of an AACS that does not echo any id
+        mActivity.sendBroadcast(new Intent("com.amazon.aacs.pingreply"));
+        mShadowLooperMain.idle();
+
+        assertEquals(firstPing.getIntExtra("pingId", 0), first.get(1, TimeUnit.SECONDS).pingId);
+        assertFalse(second.isDone());
+    }
+
+    @Test
+    public void healthProbe_keepsPingingWhilePingsArePending() throws Exception {
+        // Neither a ping of another caller nor unanswered probe pings stop the probe
+        mPinger.pingAACS(5000);
+        mPinger.startHealthProbe(20, 20);
+        Thread.sleep(500);
+        mPinger.stopHealthProbe();
+
+        assertTrue(mPinger.getPingStats().timeoutCount >= 2);
+    }
+
+    @Test
+    public void ping_timesOutWithoutResponse() throws Exception {
+        Future<AACSPinger.AACSPingResponse> ping = mPinger.pingAACS(50);
+        assertNotNull(ping);
+        Intent sentPing = lastPing();
+
+        AACSPinger.AACSPingResponse response = ping.get(1, TimeUnit.SECONDS);
+        assertFalse(response.hasResponse);
+        assertEquals(1, mPinger.getPingStats().timeoutCount);
+
+        // A late reply is ignored
+        reply(sentPing, "CONNECTED");
+        assertEquals(0, mPinger.getPingStats().responseCount);
+    }
+}
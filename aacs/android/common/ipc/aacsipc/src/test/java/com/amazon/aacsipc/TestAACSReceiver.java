@@ -1,8 +1,13 @@
 package com.amazon.aacsipc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.robolectric.annotation.LooperMode.Mode.LEGACY;
 
+import android.content.BroadcastReceiver;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
@@ -19,6 +24,8 @@ import org.robolectric.Shadows;
 import org.robolectric.annotation.LooperMode;
 import org.robolectric.shadows.ShadowLooper;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.CompletableFuture;
 
@@ -129,9 +136,8 @@ public class TestAACSReceiver {
                 if (state == null) {
                     checkResourceId.complete(msg.getData().getString("resourceId"));
                     ParcelFileDescriptor writeTo = (ParcelFileDescriptor) msg.getData().get("writeTo");
-                    ParcelFileDescriptor.AutoCloseOutputStream stream =
-                            new ParcelFileDescriptor.AutoCloseOutputStream(writeTo);
-                    try {
+                    try (ParcelFileDescriptor.AutoCloseOutputStream stream =
+                                    new ParcelFileDescriptor.AutoCloseOutputStream(writeTo)) {
                         stream.write(verifyAASBMessageHuge.getBytes(StandardCharsets.UTF_8));
                     } catch (Exception e) {
                         throw new RuntimeException(e);
@@ -161,4 +167,88 @@ public class TestAACSReceiver {
         assertEquals(mVerifyResourceId, checkResourceId.get());
         assertEquals(verifyAASBMessageHuge, checkMessage);
     }
+
+    @Test
+    public void receive_streamedAASBIntentAsReader() throws Exception {
+        // Initialize
+        String verifyAASBMessageHuge = TestUtils.generateTestString(100000) + "\u00e9\u4e2d";
+        CompletableFuture<String> ackState = new CompletableFuture<>();
+        mTestBundleStreamed.putBinder("messenger", createStreamingSender(verifyAASBMessageHuge, ackState).getBinder());
+        mTestIntent.putExtra("payload", mTestBundleStreamed);
+
+        final CompletableFuture<String> resultMessage = new CompletableFuture<>();
+
+        AACSReceiver.Builder builder = new AACSReceiver.Builder();
+        AACSReceiver receiver = builder.withAASBReaderCallback((reader) -> {
+                                           resultMessage.complete(readFully(reader));
+                                       }).build();
+
+        // Execute
+        receiver.receive(mTestIntent, null);
+        while (!ackState.isDone()) {
+            mLooper.runToEndOfTasks();
+        }
+
+        // Verify
+        assertEquals(verifyAASBMessageHuge, resultMessage.get());
+        assertEquals("success", ackState.get());
+    }
+
+    @Test
+    public void receive_streamedAASBIntentExceedingMaxSizeIsDropped() throws Exception {
+        // Initialize
+        CompletableFuture<String> ackState = new CompletableFuture<>();
+        mTestBundleStreamed.putBinder(
+                "messenger", createStreamingSender(TestUtils.generateTestString(1000), ackState).getBinder());
+        mTestIntent.putExtra("payload", mTestBundleStreamed);
+
+        final CompletableFuture<String> resultMessage = new CompletableFuture<>();
+        BroadcastReceiver.PendingResult pendingResult = mock(BroadcastReceiver.PendingResult.class);
+
+        AACSReceiver.Builder builder = new AACSReceiver.Builder();
+        AACSReceiver receiver = builder.withAASBCallback((message) -> { resultMessage.complete(message); })
+                                        .withMaxMessageSize(100)
+                                        .build();
+
+        // Execute
+        receiver.receive(mTestIntent, pendingResult);
+        for (int i = 0; i < 100; i++) {
+            mLooper.runToEndOfTasks();
+            Thread.sleep(10);
+        }
+
+        // Verify
+        verify(pendingResult, timeout(1000)).finish();
+        assertFalse(resultMessage.isDone());
+        assertFalse(ackState.isDone());
+    }
+
+    private Messenger createStreamingSender(String message, CompletableFuture<String> ackState) {
+        return new Messenger(new Handler() {
+            public void handleMessage(Message msg) {
+                String state = msg.getData().getString("state");
+                if (state == null) {
+                    ParcelFileDescriptor writeTo = (ParcelFileDescriptor) msg.getData().get("writeTo");
+                    try (ParcelFileDescriptor.AutoCloseOutputStream stream =
+                                    new ParcelFileDescriptor.AutoCloseOutputStream(writeTo)) {
+                        stream.write(message.getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        // The receiver stops reading messages that are too large
+                    }
+                } else {
+                    ackState.complete(state);
+                }
+            }
+        });
+    }
+
+    private static String readFully(Reader reader) throws IOException {
+        StringBuilder stringBuilder = new StringBuilder();
+        char[] buffer = new char[4096];
+        int charsRead;
+        while ((charsRead = reader.read(buffer)) >= 0) {
+            stringBuilder.append(buffer, 0, charsRead);
+        }
+        return stringBuilder.toString();
+    }
 }
@@ -151,6 +151,22 @@ public class TestAACSSender {
         assertEquals("streamed", sentIntent.getExtras().getBundle("payload").getString("type"));
     }
 
+    @Test
+    public void send_verifySharedMemoryAASBIntentToActivityLarge() {
+        // Initialize
+        mAACSSender.setSharedMemoryTransportEnabled(true);
+
+        // Execute
+        String testMessage = TestUtils.generateTestString(1000000);
+        Intent sentIntent = sendMessage(testMessage, "test action", "test topic").sentIntent;
+
+        // Verify
+        Bundle payload = sentIntent.getExtras().getBundle("payload");
+        assertEquals("sharedMemory", payload.getString("type"));
+        assertNotNull(payload.getString("resourceId"));
+        assertNotNull(payload.getBinder("messenger"));
+    }
+
     @Test
     public void send_verifyStreamedMessageSentToActivity() throws IOException, RemoteException, InterruptedException {
         // Initialize
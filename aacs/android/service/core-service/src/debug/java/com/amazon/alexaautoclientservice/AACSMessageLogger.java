@@ -15,10 +15,11 @@
 
 package com.amazon.alexaautoclientservice;
 
-import static java.lang.System.currentTimeMillis;
-
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.amazon.aacsconstants.AACSConstants;
@@ -28,28 +29,85 @@ import com.amazon.aacsconstants.Action;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Writes AASB messages to the instrumentation log without blocking the threads that dispatch them.
+ *
+ * {@link #buffer} only captures the message fields into a preallocated slot of a bounded lock-free ring. A
+ * single writer thread drains the ring in batches, formats the log entries and appends them to the log file,
+ * which it keeps open for the whole instrumentation session. The writer also measures the time between each
+ * request and its reply and aggregates it in a {@link LatencyHistogram} per topic and action, which can be
+ * dumped with {@link #dumpLatencyHistograms()}. Entries that arrive while the ring is full are dropped and
+ * counted rather than stalling the caller.
+ */
 public class AACSMessageLogger {
-    private final String TAG = AACSConstants.AACS + "-" + AACSMessageLogger.class.getSimpleName();
-    private HashMap<String, String> mReplyMessageIdActionMap;
-    private HashSet<String> mReplyActionList;
-    private HashMap<String, Long> mReplyMessageTimeMap;
-    private String mFileLocation;
+    private static final String TAG = AACSConstants.AACS + "-" + AACSMessageLogger.class.getSimpleName();
     public static final String FROM_ENGINE = "FROM_ENGINE";
     public static final String TO_ENGINE = "TO_ENGINE";
-    private final int sTimeout = 500;
-    private final SimpleDateFormat sTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
 
-    public AACSMessageLogger() {
+    private static final int RING_CAPACITY = 4096;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final int MAX_PENDING_REPLIES = 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int TYPE_MESSAGE = 0;
+    private static final int TYPE_START = 1;
+    private static final int TYPE_STOP = 2;
+    private static final int TYPE_DUMP = 3;
+
+    private static AACSMessageLogger sInstance;
+
+    private final HashSet<String> mReplyActionList;
+    private final Slot[] mSlots;
+    private final int mMask;
+    private final AtomicLong mTail = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final Thread mWriterThread;
+    private volatile boolean mWriterWaiting;
+
+    // Owned by the writer thread
+    private long mHead;
+    private Writer mLogWriter;
+    private boolean mHasUnflushedEntries;
+    private final StringBuilder mEntryBuilder = new StringBuilder(1024);
+    private final SimpleDateFormat mTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+    private final Date mTimeStamp = new Date();
+    private final LinkedHashMap<String, PendingReply> mPendingReplies =
+            new LinkedHashMap<String, PendingReply>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PendingReply> eldest) {
+                    return size() > MAX_PENDING_REPLIES;
+                }
+            };
+    private final HashMap<String, LatencyHistogram> mLatencyHistograms = new HashMap<>();
+
+    public static synchronized AACSMessageLogger getInstance() {
+        if (sInstance == null) {
+            sInstance = new AACSMessageLogger();
+        }
+        return sInstance;
+    }
+
+    private AACSMessageLogger() {
         // Init HashSet to store all actions that need response
         String[] replyList = {Action.AddressBook.ADD_ADDRESS_BOOK, Action.AddressBook.REMOVE_ADDRESS_BOOK,
                 Action.AlexaConnectivity.CONNECTIVITY_STATE_CHANGE, Action.AlexaConnectivity.GET_CONNECTIVITY_STATE,
@@ -67,68 +125,311 @@ public class AACSMessageLogger {
         mReplyActionList = new HashSet<>();
         mReplyActionList.addAll(Arrays.asList(replyList));
 
-        // HashMap to record MessageID and its corresponding Action
-        mReplyMessageIdActionMap = new HashMap<>();
+        mSlots = new Slot[RING_CAPACITY];
+        for (int i = 0; i < RING_CAPACITY; i++) {
+            mSlots[i] = new Slot(i);
+        }
+        mMask = RING_CAPACITY - 1;
+
+        mWriterThread = new Thread(this::runWriter, TAG);
+        mWriterThread.setDaemon(true);
+        mWriterThread.start();
+    }
+
+    /**
+     * Starts a new instrumentation session. Log entries buffered after this call are appended to the given file.
+     */
+    public void start(@NonNull String fileLocation) {
+        Slot slot = claimSlotBlocking();
+        slot.type = TYPE_START;
+        slot.payload = fileLocation;
+        publish(slot);
+    }
 
-        // HashMap to record messageId with its time of receive
-        mReplyMessageTimeMap = new HashMap<>();
+    /**
+     * Ends the instrumentation session once every entry buffered before this call has been written.
+     */
+    public void stop() {
+        Slot slot = claimSlotBlocking();
+        slot.type = TYPE_STOP;
+        publish(slot);
     }
 
-    public void setLogFileLocation(String filePath) {
-        mFileLocation = filePath;
+    /**
+     * Writes the request/reply latency histograms collected in the current session to Logcat and to the log file.
+     */
+    public void dumpLatencyHistograms() {
+        Slot slot = claimSlotBlocking();
+        slot.type = TYPE_DUMP;
+        publish(slot);
     }
 
     public void buffer(String direction, String topic, String action, String payload, @Nullable String messageId,
             @Nullable String replyToId) {
-        JSONObject logJSON = new JSONObject();
-        Date currentTime = Calendar.getInstance().getTime();
-        Long currentTimeMill = currentTimeMillis();
-        try {
-            logJSON.put("timeStamp", sTimeFormat.format(currentTime));
-            logJSON.put("MessageDirection", direction);
-            logJSON.put("topic", topic);
-            logJSON.put("action", action);
-
-            // Add MessageId to hashMap when topic is expected to have a reply
-            if (mReplyActionList.contains(action) && messageId != null && replyToId.isEmpty()) {
-                mReplyMessageIdActionMap.put(messageId, action);
-                mReplyMessageTimeMap.put(messageId, currentTimeMill);
-                logJSON.put("replyExpected", true);
-            } else if (mReplyActionList.contains(action) && messageId != null && !replyToId.isEmpty()) {
-                // Remove MessageId and Log the ReplyToId when expected message reply received
-                if (mReplyMessageIdActionMap.containsKey(replyToId) && mReplyMessageTimeMap.containsKey(replyToId)) {
-                    if (currentTimeMill - mReplyMessageTimeMap.get(replyToId) <= sTimeout) {
-                        logJSON.put("replyReceivedTimeout", false);
-                    } else {
-                        logJSON.put("replyReceivedTimeout", true);
-                    }
-                    logJSON.put("replyToId", replyToId);
-                    mReplyMessageIdActionMap.remove(replyToId);
-                    mReplyMessageTimeMap.remove(replyToId);
+        Slot slot = claimSlot();
+        if (slot == null) {
+            if (mDroppedCount.getAndIncrement() == 0) {
+                Log.w(TAG, "Instrumentation log buffer is full. Dropping entries");
+            }
+            return;
+        }
+        slot.type = TYPE_MESSAGE;
+        slot.wallTimeMs = System.currentTimeMillis();
+        slot.elapsedNanos = SystemClock.elapsedRealtimeNanos();
+        slot.direction = direction;
+        slot.topic = topic;
+        slot.action = action;
+        slot.payload = payload;
+        slot.messageId = messageId;
+        slot.replyToId = replyToId;
+        publish(slot);
+    }
+
+    @Nullable
+    private Slot claimSlot() {
+        while (true) {
+            long tail = mTail.get();
+            Slot slot = mSlots[(int) (tail & mMask)];
+            long available = slot.sequence - tail;
+            if (available == 0) {
+                if (mTail.compareAndSet(tail, tail + 1)) {
+                    return slot;
                 }
-            } else {
-                logJSON.put("replyExpected", false);
+            } else if (available < 0) {
+                return null;
             }
-            if (messageId != null) {
-                // Log regular messageId
-                logJSON.put("messageId", messageId);
+        }
+    }
+
+    private Slot claimSlotBlocking() {
+        Slot slot;
+        while ((slot = claimSlot()) == null) {
+            Thread.yield();
+        }
+        return slot;
+    }
+
+    private void publish(Slot slot) {
+        // The claimer owns the slot until this write, so sequence still holds the claimed position
+        slot.sequence = slot.sequence + 1;
+        if (mWriterWaiting) {
+            LockSupport.unpark(mWriterThread);
+        }
+    }
+
+    private void runWriter() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        while (true) {
+            int drained = 0;
+            Slot slot;
+            while (drained < MAX_BATCH_SIZE && (slot = nextPublishedSlot()) != null) {
+                handleSlot(slot);
+                slot.clear();
+                slot.sequence = mHead + RING_CAPACITY;
+                mHead++;
+                drained++;
             }
-            if (payload != null && !payload.isEmpty()) {
-                logJSON.put(AASBConstants.PAYLOAD, new JSONObject(payload).toString());
-            } else {
-                logJSON.put(AASBConstants.PAYLOAD, "None");
+            if (drained > 0) {
+                continue;
             }
 
+            mWriterWaiting = true;
+            if (nextPublishedSlot() == null) {
+                LockSupport.parkNanos(this, mHasUnflushedEntries ? FLUSH_DELAY_NANOS : IDLE_PARK_NANOS);
+                if (mHasUnflushedEntries && nextPublishedSlot() == null) {
+                    flushLogFile();
+                }
+            }
+            mWriterWaiting = false;
+        }
+    }
+
+    @Nullable
+    private Slot nextPublishedSlot() {
+        Slot slot = mSlots[(int) (mHead & mMask)];
+        return slot.sequence == mHead + 1 ? slot : null;
+    }
+
+    private void handleSlot(Slot slot) {
+        switch (slot.type) {
+            case TYPE_MESSAGE:
+                writeEntry(slot);
+                break;
+            case TYPE_START:
+                closeLogFile();
+                mPendingReplies.clear();
+                mLatencyHistograms.clear();
+                mDroppedCount.set(0);
+                openLogFile(slot.payload);
+                writeToLogFile("[");
+                break;
+            case TYPE_STOP:
+                writeToLogFile("{}]");
+                closeLogFile();
+                break;
+            case TYPE_DUMP:
+                writeLatencyHistograms();
+                break;
+        }
+    }
+
+    private void writeEntry(Slot slot) {
+        StringBuilder entry = mEntryBuilder;
+        entry.setLength(0);
+        mTimeStamp.setTime(slot.wallTimeMs);
+        entry.append("{\"timeStamp\":").append(JSONObject.quote(mTimeFormat.format(mTimeStamp)));
+        entry.append(",\"MessageDirection\":").append(JSONObject.quote(slot.direction));
+        entry.append(",\"topic\":").append(JSONObject.quote(slot.topic));
+        entry.append(",\"action\":").append(JSONObject.quote(slot.action));
+
+        boolean replyAction = mReplyActionList.contains(slot.action) && slot.messageId != null;
+        if (replyAction && (slot.replyToId == null || slot.replyToId.isEmpty())) {
+            // Remember when the request was seen so the latency of its reply can be measured
+            mPendingReplies.put(slot.messageId, new PendingReply(slot.topic, slot.action, slot.elapsedNanos));
+            entry.append(",\"replyExpected\":true");
+        } else if (replyAction) {
+            PendingReply pendingReply = mPendingReplies.remove(slot.replyToId);
+            if (pendingReply != null) {
+                long latencyMicros = TimeUnit.NANOSECONDS.toMicros(slot.elapsedNanos - pendingReply.elapsedNanos);
+                recordLatency(pendingReply.topic, pendingReply.action, latencyMicros);
+                entry.append(",\"replyLatencyMs\":").append(latencyMicros / 1000.0);
+                entry.append(",\"replyToId\":").append(JSONObject.quote(slot.replyToId));
+            }
+        } else {
+            entry.append(",\"replyExpected\":false");
+        }
+        if (slot.messageId != null) {
+            entry.append(",\"messageId\":").append(JSONObject.quote(slot.messageId));
+        }
+        entry.append(",\"" + AASBConstants.PAYLOAD + "\":");
+        if (slot.payload != null && !slot.payload.isEmpty()) {
+            entry.append(JSONObject.quote(slot.payload));
+        } else {
+            entry.append("\"None\"");
+        }
+        entry.append("},\n");
+        writeToLogFile(entry);
+    }
+
+    private void recordLatency(String topic, String action, long latencyMicros) {
+        String key = topic + "." + action;
+        LatencyHistogram histogram = mLatencyHistograms.get(key);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            mLatencyHistograms.put(key, histogram);
+        }
+        histogram.recordMicros(latencyMicros);
+    }
+
+    private void writeLatencyHistograms() {
+        try {
+            JSONObject histograms = new JSONObject();
+            for (Map.Entry<String, LatencyHistogram> entry : mLatencyHistograms.entrySet()) {
+                JSONObject histogram = entry.getValue().toJSON();
+                histograms.put(entry.getKey(), histogram);
+                Log.i(TAG, String.format("Reply latency %s: %s", entry.getKey(), histogram.toString()));
+            }
+            Log.i(TAG, String.format("Pending replies: %d, dropped log entries: %d", mPendingReplies.size(),
+                    mDroppedCount.get()));
+
+            JSONObject dump = new JSONObject();
+            mTimeStamp.setTime(System.currentTimeMillis());
+            dump.put("timeStamp", mTimeFormat.format(mTimeStamp));
+            dump.put("latencyHistograms", histograms);
+            dump.put("pendingReplies", mPendingReplies.size());
+            dump.put("droppedEntries", mDroppedCount.get());
+            writeToLogFile(dump.toString() + ",\n");
         } catch (JSONException e) {
-            Log.e(TAG, "Error creating instrumentation JSON: ", e);
+            Log.e(TAG, "Error creating latency histogram JSON: ", e);
+        }
+    }
+
+    private void openLogFile(String fileLocation) {
+        try {
+            mLogWriter = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(fileLocation, true), StandardCharsets.UTF_8),
+                    WRITE_BUFFER_SIZE);
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening log file: ", e);
         }
+    }
 
+    private void writeToLogFile(CharSequence text) {
+        if (mLogWriter == null) {
+            return;
+        }
         try {
-            FileWriter logFile = new FileWriter(mFileLocation, true);
-            logFile.write(logJSON.toString() + ",\n");
-            logFile.close();
+            mLogWriter.append(text);
+            mHasUnflushedEntries = true;
         } catch (IOException e) {
             Log.e(TAG, "Error Writing Log entry to file: ", e);
         }
     }
+
+    private void flushLogFile() {
+        mHasUnflushedEntries = false;
+        if (mLogWriter == null) {
+            return;
+        }
+        try {
+            mLogWriter.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Error flushing log file: ", e);
+        }
+    }
+
+    private void closeLogFile() {
+        mHasUnflushedEntries = false;
+        if (mLogWriter == null) {
+            return;
+        }
+        try {
+            mLogWriter.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing log file: ", e);
+        }
+        mLogWriter = null;
+    }
+
+    /**
+     * Ring slot. {@code sequence} equals the ring position the slot can next be claimed at, and is advanced
+     * past that position once the slot's fields have been filled in.
+     */
+    private static class Slot {
+        volatile long sequence;
+        int type;
+        long wallTimeMs;
+        long elapsedNanos;
+        String direction;
+        String topic;
+        String action;
+        String payload;
+        String messageId;
+        String replyToId;
+
+        Slot(int index) {
+            sequence = index;
+        }
+
+        void clear() {
+            direction = null;
+            topic = null;
+            action = null;
+            payload = null;
+            messageId = null;
+            replyToId = null;
+        }
+    }
+
+    private static class PendingReply {
+        final String topic;
+        final String action;
+        final long elapsedNanos;
+
+        PendingReply(String topic, String action, long elapsedNanos) {
+            this.topic = topic;
+            this.action = action;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
 }
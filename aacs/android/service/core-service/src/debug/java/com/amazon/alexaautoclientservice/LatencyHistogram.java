@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.alexaautoclientservice;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Fixed-size log-linear latency histogram in the style of HdrHistogram.
+ *
+ * Values are recorded in microseconds. Values below {@link #SUB_BUCKET_COUNT} are counted exactly; every
+ * power-of-two range above that is split into {@link #SUB_BUCKET_HALF_COUNT} linear sub-buckets, so a recorded
+ * value is reported with a relative error below 1 / {@link #SUB_BUCKET_HALF_COUNT}. Recording never allocates.
+ * Instances are not thread safe.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_BUCKET = 63 - SUB_BUCKET_BITS;
+
+    private final long[] mCounts = new long[SUB_BUCKET_HALF_COUNT * (MAX_BUCKET + 2)];
+    private long mTotalCount;
+    private long mTotalMicros;
+    private long mMinMicros = Long.MAX_VALUE;
+    private long mMaxMicros;
+
+    void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        mCounts[indexOf(micros)]++;
+        mTotalCount++;
+        mTotalMicros += micros;
+        mMinMicros = Math.min(mMinMicros, micros);
+        mMaxMicros = Math.max(mMaxMicros, micros);
+    }
+
+    long getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * @param percentile Percentile in the range [0, 100].
+     * @return The highest value, in microseconds, of the bucket holding the given percentile.
+     */
+    long getValueAtPercentile(double percentile) {
+        if (mTotalCount == 0) {
+            return 0;
+        }
+        long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100.0 * mTotalCount));
+        long runningCount = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            runningCount += mCounts[i];
+            if (runningCount >= countAtPercentile) {
+                return Math.min(highestValueAt(i), mMaxMicros);
+            }
+        }
+        return mMaxMicros;
+    }
+
+    JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", mTotalCount);
+        json.put("minMs", toMillis(mTotalCount == 0 ? 0 : mMinMicros));
+        json.put("meanMs", toMillis(mTotalCount == 0 ? 0 : mTotalMicros / mTotalCount));
+        json.put("p50Ms", toMillis(getValueAtPercentile(50)));
+        json.put("p90Ms", toMillis(getValueAtPercentile(90)));
+        json.put("p99Ms", toMillis(getValueAtPercentile(99)));
+        json.put("maxMs", toMillis(mMaxMicros));
+        return json;
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // Bucket b >= 1 holds [2^(b + SUB_BUCKET_BITS - 1), 2^(b + SUB_BUCKET_BITS)) in steps of 2^b
+        int bucket = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> bucket);
+        return SUB_BUCKET_HALF_COUNT * bucket + subBucket;
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int bucket = (index - SUB_BUCKET_HALF_COUNT) / SUB_BUCKET_HALF_COUNT;
+        long subBucket = index - (long) SUB_BUCKET_HALF_COUNT * bucket;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+}
@@ -18,5 +18,6 @@ package com.amazon.alexaautoclientservice.constants;
 public class MessageLoggerConstants {
     public static final String START_INSTRUMENTATION = "com.amazon.aacs.startinstrumentation";
     public static final String STOP_INSTRUMENTATION = "com.amazon.aacs.stopinstrumentation";
+    public static final String DUMP_INSTRUMENTATION = "com.amazon.aacs.dumpinstrumentation";
     public static final String LOG_FILE_LOCATION = "fileLocation";
 }
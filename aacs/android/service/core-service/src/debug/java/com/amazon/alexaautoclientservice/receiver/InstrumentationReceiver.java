@@ -23,49 +23,32 @@ import android.content.Intent;
 import android.util.Log;
 
 import com.amazon.aacsconstants.AACSConstants;
+import com.amazon.alexaautoclientservice.AACSMessageLogger;
 import com.amazon.alexaautoclientservice.constants.MessageLoggerConstants;
 
-import java.io.FileWriter;
-import java.io.IOException;
-
 public class InstrumentationReceiver extends BroadcastReceiver {
     private final String TAG = AACSConstants.AACS + "-" + InstrumentationReceiver.class.getSimpleName();
-    public static boolean mIsLogEnabled;
+    public static volatile boolean mIsLogEnabled;
     public static String mFileLocation;
 
-    public InstrumentationReceiver() {
-        super();
-        mIsLogEnabled = false;
-    }
-
     @Override
     public void onReceive(Context context, Intent intent) {
         Log.i(TAG, "Instrumentation Intent Received: " + intent.toString());
         Long currentTimeMill = currentTimeMillis();
         if (MessageLoggerConstants.START_INSTRUMENTATION.equals(intent.getAction())) {
-            mIsLogEnabled = true;
             if (intent.hasExtra(MessageLoggerConstants.LOG_FILE_LOCATION)) {
                 Log.i(TAG, "FileLocation: " + intent.getStringExtra(MessageLoggerConstants.LOG_FILE_LOCATION));
                 mFileLocation = intent.getStringExtra(MessageLoggerConstants.LOG_FILE_LOCATION);
             } else {
                 mFileLocation = "/sdcard/" + currentTimeMill.toString() + ".log";
             }
-            try {
-                FileWriter logFile = new FileWriter(mFileLocation, true);
-                logFile.write("[");
-                logFile.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Error Writing Log entry to file: ", e);
-            }
+            AACSMessageLogger.getInstance().start(mFileLocation);
+            mIsLogEnabled = true;
         } else if (MessageLoggerConstants.STOP_INSTRUMENTATION.equals(intent.getAction())) {
-            try {
-                FileWriter logFile = new FileWriter(mFileLocation, true);
-                logFile.write("{}]");
-                logFile.close();
-            } catch (IOException e) {
-                Log.e(TAG, "Error Writing Log entry to file: ", e);
-            }
             mIsLogEnabled = false;
+            AACSMessageLogger.getInstance().stop();
+        } else if (MessageLoggerConstants.DUMP_INSTRUMENTATION.equals(intent.getAction())) {
+            AACSMessageLogger.getInstance().dumpLatencyHistograms();
         }
     }
 }
@@ -44,8 +44,10 @@ import com.amazon.alexaautoclientservice.modules.alexaClient.ConnectionStateObse
 import com.amazon.alexaautoclientservice.modules.audioInput.AudioInputFocusManager;
 import com.amazon.alexaautoclientservice.modules.audioInput.AudioInputMessageHandler;
 import com.amazon.alexaautoclientservice.modules.audioOutput.AudioOutputMessageHandler;
+import com.amazon.alexaautoclientservice.modules.audioOutput.PlaybackSnapshotCache;
 import com.amazon.alexaautoclientservice.modules.customDomain.CustomDomainMessageDispatcher;
 import com.amazon.alexaautoclientservice.receiver.InstrumentationReceiver;
+import com.amazon.alexaautoclientservice.util.AASBMessage;
 import com.amazon.alexaautoclientservice.util.AASBUtil;
 import com.amazon.alexaautoclientservice.util.FileUtil;
 import com.amazon.alexaautoclientservice.util.PropertyUtil;
@@ -69,6 +71,7 @@ public class AASBHandler {
     private CustomDomainMessageDispatcher mCustomDomainMessageDispatcher;
     private HashMap<String, String> mAudioInputStreamMap;
     private long mCachedBufferedBytes;
+    private final PlaybackSnapshotCache mPlaybackSnapshots = new PlaybackSnapshotCache();
     private static AACSMessageLogger mAACSMessageLogger;
 
     public AASBHandler(@NonNull Context context, @NonNull MessageBroker messageBroker) {
@@ -79,13 +82,14 @@ public class AASBHandler {
         mMessageBroker.subscribe(this::messageReceived, "*", "*");
 
         mAACSSender = new AACSSender(cacheCapacity);
+        mAACSSender.setSharedMemoryTransportEnabled(true);
         mAlexaClient = new AlexaClientMessageHandler();
         mAudioInputFocusManager = new AudioInputFocusManager(context, mAlexaClient);
         mAudioOutput = new AudioOutputMessageHandler(context, mAlexaClient);
         mAudioInput = new AudioInputMessageHandler(context, mAACSSender, mAudioInputFocusManager);
         mAudioInputStreamMap = new HashMap<>();
         if (BuildConfig.DEBUG) {
-            mAACSMessageLogger = new AACSMessageLogger();
+            mAACSMessageLogger = AACSMessageLogger.getInstance();
         }
 
         if (FileUtil.isDefaultImplementationEnabled(FileUtil.AACS_CONFIG_CUSTOM_DOMAIN_MESSAGE_DISPATCHER)) {
@@ -104,27 +108,9 @@ public class AASBHandler {
 
     public void handleMessage(boolean isToEngine, String message) {
         try {
-            JSONObject aasbMessage = new JSONObject(message);
-            String topic = aasbMessage.getJSONObject(AASBConstants.HEADER)
-                                   .getJSONObject(AASBConstants.MESSAGE_DESCRIPTION)
-                                   .getString(AASBConstants.TOPIC);
-            String action = aasbMessage.getJSONObject(AASBConstants.HEADER)
-                                    .getJSONObject(AASBConstants.MESSAGE_DESCRIPTION)
-                                    .getString(AASBConstants.ACTION);
-            String replyToId = "";
-            if (aasbMessage.getJSONObject(AASBConstants.HEADER)
-                            .getJSONObject(AASBConstants.MESSAGE_DESCRIPTION)
-                            .has(AASBConstants.REPLY_TO_ID)) {
-                replyToId = aasbMessage.getJSONObject(AASBConstants.HEADER)
-                                    .getJSONObject(AASBConstants.MESSAGE_DESCRIPTION)
-                                    .getString(AASBConstants.REPLY_TO_ID);
-            }
-
-            String messageId = aasbMessage.getJSONObject(AASBConstants.HEADER).getString(AASBConstants.ID);
-            String payload = "";
-            if (aasbMessage.has(AASBConstants.PAYLOAD) && !aasbMessage.isNull(AASBConstants.PAYLOAD)) {
-                payload = aasbMessage.getJSONObject(AASBConstants.PAYLOAD).toString();
-            }
+            AASBMessage aasbMessage = AASBMessage.parse(message);
+            String topic = aasbMessage.getTopic();
+            String action = aasbMessage.getAction();
 
             if (!action.equals(Action.AudioOutput.GET_NUM_BYTES_BUFFERED)) {
                 Log.v(TAG, String.format("Receiving AASBMessage: Topic: %s, Action: %s", topic, action));
@@ -132,20 +118,14 @@ public class AASBHandler {
 
             if (BuildConfig.DEBUG) {
                 if (InstrumentationReceiver.mIsLogEnabled && !message.isEmpty()) {
-                    mAACSMessageLogger.setLogFileLocation(InstrumentationReceiver.mFileLocation);
-                    if (isToEngine) {
-                        mAACSMessageLogger.buffer(
-                                AACSMessageLogger.TO_ENGINE, topic, action, payload, messageId, replyToId);
-                    } else {
-                        mAACSMessageLogger.buffer(
-                                AACSMessageLogger.FROM_ENGINE, topic, action, payload, messageId, replyToId);
-                    }
+                    mAACSMessageLogger.buffer(isToEngine ? AACSMessageLogger.TO_ENGINE : AACSMessageLogger.FROM_ENGINE,
+                            topic, action, aasbMessage.getPayload(), aasbMessage.getId(), aasbMessage.getReplyToId());
                 }
             }
             if (isToEngine) {
-                publishMessage(messageId, topic, action, payload, message);
+                publishMessage(aasbMessage);
             } else {
-                sendDirective(messageId, topic, action, payload, message);
+                sendDirective(aasbMessage);
             }
 
         } catch (Exception e) {
@@ -153,10 +133,11 @@ public class AASBHandler {
         }
     }
 
-    private void publishMessage(String messageId, String topic, String action, String payload, String message) {
-        if (Topic.AUDIO_OUTPUT.equals(topic) && Action.AudioOutput.MEDIA_STATE_CHANGED.equals(action)) {
+    private void publishMessage(AASBMessage aasbMessage) {
+        if (Topic.AUDIO_OUTPUT.equals(aasbMessage.getTopic())
+                && Action.AudioOutput.MEDIA_STATE_CHANGED.equals(aasbMessage.getAction())) {
             try {
-                JSONObject jsonPayload = new JSONObject(payload);
+                JSONObject jsonPayload = aasbMessage.getPayloadJson();
                 String channel = jsonPayload.optString(MediaConstants.CHANNEL);
                 String state = jsonPayload.optString(MediaConstants.STATE);
                 mAudioInputFocusManager.setMediaState(channel, state);
@@ -164,13 +145,17 @@ public class AASBHandler {
                 Log.e(TAG, e.getMessage());
             }
         }
-        mMessageBroker.publish(message);
+        mMessageBroker.publish(aasbMessage.getMessage());
     }
 
-    private void sendDirective(String messageId, String topic, String action, String payload, String message) {
+    private void sendDirective(AASBMessage aasbMessage) {
+        String messageId = aasbMessage.getId();
+        String topic = aasbMessage.getTopic();
+        String action = aasbMessage.getAction();
+        String message = aasbMessage.getMessage();
         if (topic.equals(Topic.AUDIO_OUTPUT)) {
             try {
-                JSONObject payloadJSON = new JSONObject(payload);
+                JSONObject payloadJSON = aasbMessage.getPayloadJson();
                 String channel = payloadJSON.getString(AudioOutput.CHANNEL);
                 String type = AudioOutputMessageHandler.convertAudioChannelToAudioType(channel);
                 if (isAudioOutputTypeEnabled(type)) {
@@ -178,7 +163,10 @@ public class AASBHandler {
                             String.format("Default audio output implementation for type=%s is enabled. "
                                             + "Routing the message to AACS-AudioOutputMessageHandler.",
                                     type));
-                    mAudioOutput.handleAudioOutputMessage(messageId, topic, action, payload, this);
+                    mAudioOutput.handleAudioOutputMessage(messageId, topic, action, payloadJSON, this);
+                    return;
+                }
+                if (replyFromPlaybackSnapshot(messageId, action, channel, payloadJSON.optString(AudioOutput.TOKEN))) {
                     return;
                 }
                 if (action.equals(Action.AudioOutput.GET_NUM_BYTES_BUFFERED)) {
@@ -191,7 +179,7 @@ public class AASBHandler {
             }
         } else if (topic.equals(Topic.AUDIO_INPUT)) {
             try {
-                JSONObject payloadJSON = new JSONObject(payload);
+                JSONObject payloadJSON = aasbMessage.getPayloadJson();
                 String streamId = payloadJSON.getString(AudioInput.STREAM_ID);
                 String type = "";
                 if (payloadJSON.has(AudioInput.TYPE)) {
@@ -206,7 +194,7 @@ public class AASBHandler {
                             String.format("Default audio input implementation for audioType=%s is enabled. "
                                             + "Routing the message to AACS-AudioInputMessageHandler.",
                                     type));
-                    mAudioInput.handleAudioInputMessage(messageId, topic, action, payload, this);
+                    mAudioInput.handleAudioInputMessage(messageId, topic, action, payloadJSON, this);
                     return;
                 }
             } catch (Exception e) {
@@ -215,16 +203,20 @@ public class AASBHandler {
                                 messageId, e.getMessage()));
             }
         } else if (topic.equals(Topic.ALEXA_CLIENT)) {
-            mAlexaClient.handleAlexaClientMessage(messageId, topic, action, payload);
+            mAlexaClient.handleAlexaClientMessage(messageId, topic, action, aasbMessage.getPayload());
         } else if (topic.equals(Topic.CUSTOM_DOMAIN)) {
             if (isDefaultImplementationEnabled(FileUtil.AACS_CONFIG_CUSTOM_DOMAIN_MESSAGE_DISPATCHER)) {
-                mCustomDomainMessageDispatcher.handleCustomDomainMessage(message, messageId, topic, action, payload);
+                mCustomDomainMessageDispatcher.handleCustomDomainMessage(
+                        message, messageId, topic, action, aasbMessage.getPayload());
                 return;
             }
         } else if (topic.equals(Topic.PROPERTY_MANAGER) && action.equals(Action.PropertyManager.PROPERTY_CHANGED)) {
             if (FileUtil.isEnabledInAACSGeneralConfig(UPDATE_SYSTEM_PROPERTY_ALLOWED)) {
                 try {
-                    JSONObject payloadJSON = new JSONObject(payload);
+                    JSONObject payloadJSON = aasbMessage.getPayloadJson();
+                    if (payloadJSON == null) {
+                        throw new JSONException("propertyChanged message has no payload");
+                    }
                     PropertyUtil.updateSystemProperty(mContext,
                             payloadJSON.getString(AASBConstants.PropertyManager.PROPERTY_NAME),
                             payloadJSON.getString(AASBConstants.PropertyManager.PROPERTY_NEW_VALUE));
@@ -264,7 +256,6 @@ public class AASBHandler {
 
             if (BuildConfig.DEBUG) {
                 if (InstrumentationReceiver.mIsLogEnabled && !message.isEmpty()) {
-                    mAACSMessageLogger.setLogFileLocation(InstrumentationReceiver.mFileLocation);
                     mAACSMessageLogger.buffer(
                             AACSMessageLogger.TO_ENGINE, topic, action, payload, messageID, replyToId);
                 }
@@ -297,7 +288,51 @@ public class AASBHandler {
         mCachedBufferedBytes = Long.parseLong(value);
     }
 
+    /**
+     * Caches the playback state pushed by a player, so that its position can be answered without a round trip to
+     * the player.
+     *
+     * @param payload Payload of the {@code PlaybackSnapshot} message.
+     */
+    public void updatePlaybackSnapshot(@NonNull JSONObject payload) throws JSONException {
+        mPlaybackSnapshots.update(payload);
+    }
+
+    /**
+     * Answers a position or buffer query from the latest snapshot of the player of the channel.
+     *
+     * @return true if the query was answered.
+     */
+    private boolean replyFromPlaybackSnapshot(String messageId, String action, String channel, String token) {
+        Long value;
+        String key;
+        if (action.equals(Action.AudioOutput.GET_POSITION)) {
+            value = mPlaybackSnapshots.getPosition(channel, token);
+            key = AudioOutput.POSITION;
+        } else if (action.equals(Action.AudioOutput.GET_NUM_BYTES_BUFFERED)) {
+            value = mPlaybackSnapshots.getBufferedBytes(channel, token);
+            key = AudioOutput.BUFFERED_BYTES;
+        } else {
+            return false;
+        }
+        if (value == null) {
+            return false;
+        }
+
+        JSONObject payload = new JSONObject();
+        try {
+            payload.put(key, value.longValue());
+        } catch (JSONException e) {
+            Log.e(TAG, String.format("Failed to create %s reply payload.", action));
+            return false;
+        }
+        publish(messageId, Topic.AUDIO_OUTPUT, action, payload.toString());
+        return true;
+    }
+
     public void cleanUp() {
+        mPlaybackSnapshots.clear();
+
         if (mAACSSender != null) {
             mAACSSender.shutDown();
             mAACSSender = null;
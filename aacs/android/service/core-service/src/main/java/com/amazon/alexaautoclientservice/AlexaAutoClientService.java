@@ -76,7 +76,9 @@ import com.amazon.alexaautoclientservice.receiver.SystemPropertyChangeReceiver;
 import com.amazon.alexaautoclientservice.util.AACSStateObserver;
 import com.amazon.alexaautoclientservice.util.FileUtil;
 import com.amazon.alexaautoclientservice.util.LVCUtil;
+import com.amazon.alexaautoclientservice.util.MessageStreamPump;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
@@ -103,9 +105,6 @@ public class AlexaAutoClientService extends Service implements AACSContext {
     private static final double CURRENT_VERSION = 2.0;
 
     private static final int THREAD_JOIN_TIMEOUT_IN_MILLIS = 2000;
-    private static final int FETCH_READ_BUFFER_CHUNK_SIZE = 4096;
-    private static final int PUSH_WRITE_BUFFER_CHUNK_SIZE = 300;
-    private static final int PUSH_WRITE_BUFFER_MIN_CHUNK_SIZE = 20;
     private static final String AACS_CHANNEL_ID = "com.amazon.alexaautoclientservice";
     private static final String AACS_CHANNEL_NAME = "AACS";
     private static final int AACS_SERVICE_STARTED_NOTIFICATION_ID = 1;
@@ -127,6 +126,7 @@ public class AlexaAutoClientService extends Service implements AACSContext {
     private ContentProviderClient mAPCP;
     private ExecutorService mIPCStreamReadExecutor = Executors.newFixedThreadPool(2);
     private ExecutorService mIPCStreamWriteExecutor = Executors.newFixedThreadPool(2);
+    private volatile MessageStreamPump mStreamPump;
     private PingReceiver mPingReceiver;
     private SystemPropertyChangeReceiver mSystemPropertyChangeReceiver;
     private ServiceMetadataRequestReceiver mServiceMetadataRequestReceiver;
@@ -158,6 +158,7 @@ public class AlexaAutoClientService extends Service implements AACSContext {
 
         initPingReceiver();
         initShutdownReceiver();
+        initPackageChangeReceiver();
         initServiceMetadataRequestReceiver();
         initContextBroadcastReceiver();
 
@@ -228,6 +229,9 @@ public class AlexaAutoClientService extends Service implements AACSContext {
             if (intent.getAction().equals(
                         IPCConstants.AASB_INTENT_PREFIX + Action.AudioOutput.GET_NUM_BYTES_BUFFERED)) {
                 updateBytesBuffered(intent);
+            } else if (intent.getAction().equals(
+                               IPCConstants.AASB_INTENT_PREFIX + Action.AudioOutput.PLAYBACK_SNAPSHOT)) {
+                updatePlaybackSnapshot(intent);
             } else {
                 Log.i(TAG, "Received intent: " + intent);
                 mAACSReceiver.receive(intent, null);
@@ -255,6 +259,16 @@ public class AlexaAutoClientService extends Service implements AACSContext {
         registerReceiver(mShutdownActionReceiver, intentFilter);
     }
 
+    private void initPackageChangeReceiver() {
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        intentFilter.addDataScheme("package");
+        registerReceiver(mPackageChangeReceiver, intentFilter);
+    }
+
     private void initContextBroadcastReceiver() {
         if (mBroadcastReceiverScanner == null) {
             mBroadcastReceiverScanner = new BroadcastReceiverScanner();
@@ -300,6 +314,18 @@ public class AlexaAutoClientService extends Service implements AACSContext {
         }
     };
 
+    /**
+     * Installed components and their permissions may change with any package, so the routing table of
+     * ComponentRegistry is rebuilt on the next message.
+     */
+    private BroadcastReceiver mPackageChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.d(TAG, "Package changed, invalidating routing table. Action: " + intent.getAction());
+            ComponentRegistry.getInstance().invalidate();
+        }
+    };
+
     private void initSystemPropertyChangeReceiver() {
         mSystemPropertyChangeReceiver = new SystemPropertyChangeReceiver(
                 this, mAASBHandler, isDefaultImplementationEnabled(FileUtil.AACS_CONFIG_PROPERTY_MANAGER));
@@ -327,7 +353,12 @@ public class AlexaAutoClientService extends Service implements AACSContext {
         if (messageBroker == null) {
             return false;
         }
+        mStreamPump = new MessageStreamPump(
+                FileUtil.getIPCIntConfig("fetchChunkSize", MessageStreamPump.DEFAULT_FETCH_CHUNK_SIZE),
+                FileUtil.getIPCIntConfig("pushFrameSize", MessageStreamPump.DEFAULT_PUSH_FRAME_SIZE),
+                FileUtil.getIPCIntConfig("pushFramesPerChunk", MessageStreamPump.DEFAULT_PUSH_FRAMES_PER_CHUNK));
         mAASBHandler = new AASBHandler(this, messageBroker);
+        ComponentRegistry.getInstance().buildRoutingTable(this);
         return true;
     }
 
@@ -378,13 +409,8 @@ public class AlexaAutoClientService extends Service implements AACSContext {
                     Log.i(TAG,
                             "onStreamRequested handler's post Begin.  Getting MessageStream by streamId: " + streamId);
                     try (ParcelFileDescriptor.AutoCloseOutputStream autoCloseOutputStream = stream) {
-                        byte[] buffer = new byte[FETCH_READ_BUFFER_CHUNK_SIZE];
-                        int size;
-                        while (mOutputStreamMap.containsKey(streamId) && !messageStream.isClosed()) {
-                            size = messageStream.read(buffer);
-                            if (size > 0)
-                                autoCloseOutputStream.write(buffer, 0, size);
-                        }
+                        mStreamPump.pumpToPipe(streamId, messageStream, autoCloseOutputStream,
+                                () -> mOutputStreamMap.containsKey(streamId));
                         Log.i(TAG, "onStreamRequested: Finished copying from messageStream");
                     } catch (IOException e) {
                         Log.e(TAG, "onStreamRequested: exception when writing to fetch stream.  e = " + e);
@@ -438,20 +464,7 @@ public class AlexaAutoClientService extends Service implements AACSContext {
                             return;
                         }
 
-                        byte[] buffer = new byte[PUSH_WRITE_BUFFER_CHUNK_SIZE];
-                        boolean isReading = true;
-
-                        while (isReading) {
-                            int bytesAvailable = Math.max(Math.min(autoCloseInputStream.available(), buffer.length),
-                                    PUSH_WRITE_BUFFER_MIN_CHUNK_SIZE);
-                            int bytesRead = autoCloseInputStream.read(buffer, 0, bytesAvailable);
-                            if (bytesRead > 0) {
-                                messageStream.write(buffer, 0, bytesRead);
-                            }
-                            if (bytesRead < 0) {
-                                isReading = false;
-                            }
-                        }
+                        mStreamPump.pumpFromPipe(streamId, autoCloseInputStream, messageStream);
                     } catch (IOException e) {
                         Log.e(TAG,
                                 "onStreamPushedFromSenderCallback: exception when writing to fetch stream.  e = " + e);
@@ -676,17 +689,7 @@ public class AlexaAutoClientService extends Service implements AACSContext {
 
     private void updateBytesBuffered(Intent intent) {
         try {
-            Bundle bundle = intent.getExtras().getBundle("payload");
-            String message = bundle.getString(IPCConstants.AACS_IPC_EMBEDDED_MESSAGE);
-            JSONObject aasbMessage = new JSONObject(message);
-            String payload = "";
-            if (aasbMessage.has(AASBConstants.PAYLOAD) && !aasbMessage.isNull(AASBConstants.PAYLOAD)) {
-                payload = aasbMessage.getJSONObject(AASBConstants.PAYLOAD).toString();
-            }
-
-            JSONObject payloadJson;
-            payloadJson = new JSONObject(payload);
-            String bytes = payloadJson.getString("bufferedBytes");
+            String bytes = getEmbeddedPayload(intent).getString("bufferedBytes");
             mAASBHandler.updateBytesBuffered(bytes);
 
         } catch (Exception e) {
@@ -694,6 +697,28 @@ public class AlexaAutoClientService extends Service implements AACSContext {
         }
     }
 
+    private void updatePlaybackSnapshot(Intent intent) {
+        if (mAASBHandler == null) {
+            return;
+        }
+        try {
+            mAASBHandler.updatePlaybackSnapshot(getEmbeddedPayload(intent));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to parse playback snapshot payload");
+        }
+    }
+
+    private JSONObject getEmbeddedPayload(Intent intent) throws JSONException {
+        Bundle bundle = intent.getExtras().getBundle("payload");
+        String message = bundle.getString(IPCConstants.AACS_IPC_EMBEDDED_MESSAGE);
+        JSONObject aasbMessage = new JSONObject(message);
+        String payload = "";
+        if (aasbMessage.has(AASBConstants.PAYLOAD) && !aasbMessage.isNull(AASBConstants.PAYLOAD)) {
+            payload = aasbMessage.getJSONObject(AASBConstants.PAYLOAD).toString();
+        }
+        return new JSONObject(payload);
+    }
+
     private void closePipe(ParcelFileDescriptor pipe) {
         try {
             if (pipe != null)
@@ -739,6 +764,7 @@ public class AlexaAutoClientService extends Service implements AACSContext {
         mContext.unregisterReceiver(mPingReceiver);
         mContext.unregisterReceiver(mServiceMetadataRequestReceiver);
         mContext.unregisterReceiver(mShutdownActionReceiver);
+        mContext.unregisterReceiver(mPackageChangeReceiver);
         unregisterBroadcastReceivers();
 
         synchronized (mAACSStateObservers) {
@@ -30,23 +30,42 @@ import org.json.JSONArray;
 import org.json.JSONException;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Resolves the components that messages sent by AACS are delivered to.
+ *
+ * Targets specified in the "intentTargets" configuration are compiled into an immutable routing table when AACS is
+ * configured.
+ * Targets of other topics are resolved through the package manager and cached, including the absence of targets.
+ * Both are discarded by {@link #invalidate()}, which is called when packages are added, removed or changed, so that
+ * permission checks and package manager queries are not repeated for every message.
+ */
 public class ComponentRegistry {
     private static final String TAG = AACSConstants.AACS + "-" + ComponentRegistry.class.getSimpleName();
 
     private static final ComponentRegistry COMPONENT_REGISTRY_INSTANCE = new ComponentRegistry();
+    private static final List<TargetComponent> NO_TARGETS = Collections.emptyList();
 
-    private Map<String, List<TargetComponent>> mTargetCache;
+    // Topic to config targets, or null until compiled
+    private volatile Map<String, List<TargetComponent>> mConfigRoutes;
+    private final ConcurrentHashMap<String, List<TargetComponent>> mTargetCache;
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
 
     public static ComponentRegistry getInstance() {
         return COMPONENT_REGISTRY_INSTANCE;
     }
 
     private ComponentRegistry() {
-        mTargetCache = new HashMap<>();
+        mTargetCache = new ConcurrentHashMap<>();
     }
 
     List<TargetComponent> findAASBMessageTargets(Context context, String topic, String action) {
@@ -68,46 +87,102 @@ public class ComponentRegistry {
         List<TargetComponent> targets;
 
         // Query config
-        targets = queryConfig(context, shortCategory);
+        Map<String, List<TargetComponent>> configRoutes = mConfigRoutes;
+        if (configRoutes == null) {
+            configRoutes = compileConfigRoutes(context);
+        }
+        targets = configRoutes.get(shortCategory);
         if (targets != null) {
+            mHitCount.incrementAndGet();
             return targets;
         }
 
-        String cacheKey = shortCategory + "+" + shortAction;
-
         // Query mTargetCache
-        Log.v(TAG,
-                String.format(
-                        "No target specified in config for shortCategory=%s, checking mTargetCache", shortCategory));
+        String cacheKey = intentPrefix + shortCategory + "+" + shortAction;
         targets = mTargetCache.get(cacheKey);
         if (targets != null) {
-            Log.i(TAG,
-                    String.format("Found targets=%s for shortCategory=%s shortAction=%s in mTargetcache", targets,
-                            shortCategory, shortAction));
-            return targets;
+            mHitCount.incrementAndGet();
+            return targets == NO_TARGETS ? null : targets;
         }
 
         // Query package manager
+        mMissCount.incrementAndGet();
         Log.v(TAG,
                 String.format(
                         "No targets found in mTargetCache for shortCategory=%s shortAction=%s, querying package manager",
                         shortCategory, shortAction));
+        int generation = mGeneration.get();
         final Intent queryIntent = new Intent(intentPrefix + shortAction);
         queryIntent.addCategory(intentPrefix + shortCategory);
         targets = AACSComponentRegistryUtil.queryPackageManager(context, queryIntent, AACSConstants.AACS_PERMISSION);
         if (targets == null) {
             Log.e(TAG,
                     String.format("No targets found for shortCategory=%s shortAction=%s ", shortCategory, shortAction));
-            return null;
+        } else {
+            targets = Collections.unmodifiableList(targets);
+            Log.v(TAG,
+                    String.format("Caching shortCategory=%s, shortAction=%s with targets=%s", shortCategory,
+                            shortAction, targets));
         }
 
-        Log.v(TAG,
-                String.format("Caching shortCategory=%s, shortAction=%s with targets=%s", shortCategory, shortAction,
-                        targets));
-        mTargetCache.put(cacheKey, targets);
+        // Do not keep a result that may predate an invalidation
+        mTargetCache.put(cacheKey, targets == null ? NO_TARGETS : targets);
+        if (generation != mGeneration.get()) {
+            mTargetCache.remove(cacheKey);
+        }
         return targets;
     }
 
+    /**
+     * Rebuilds the routing table from the current configuration and discards cached package manager results.
+     *
+     * @param context An Android context used to check the permission of the configured targets.
+     */
+    public synchronized void buildRoutingTable(Context context) {
+        invalidate();
+        compileConfigRoutes(context);
+    }
+
+    /**
+     * Discards the routing table and cached package manager results. They are rebuilt on the next lookup.
+     */
+    public synchronized void invalidate() {
+        mGeneration.incrementAndGet();
+        mConfigRoutes = null;
+        mTargetCache.clear();
+        Log.v(TAG, "Routing table in Component Registry is invalidated");
+    }
+
+    /**
+     * @return Number of lookups answered from the routing table or the target cache.
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return Number of lookups that had to query the package manager.
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    private synchronized Map<String, List<TargetComponent>> compileConfigRoutes(Context context) {
+        if (mConfigRoutes != null) {
+            return mConfigRoutes;
+        }
+        Map<String, List<TargetComponent>> configRoutes = new HashMap<>();
+        for (String topic : FileUtil.getIntentTargetTopics()) {
+            List<TargetComponent> targets = queryConfig(context, topic);
+            if (targets != null) {
+                configRoutes.put(topic, Collections.unmodifiableList(targets));
+            }
+        }
+        Log.i(TAG, String.format("Compiled routing table for %d topics specified in config", configRoutes.size()));
+        mConfigRoutes = Collections.unmodifiableMap(configRoutes);
+        return mConfigRoutes;
+    }
+
     private List<TargetComponent> queryConfig(Context context, String topic) {
         JSONArray packageNames = FileUtil.getIntentTargets(topic, "package");
         JSONArray classNames = FileUtil.getIntentTargets(topic, "class");
@@ -184,9 +259,9 @@ public class ComponentRegistry {
     }
 
     public void cleanUp() {
-        if (mTargetCache != null) {
-            mTargetCache.clear();
-            Log.v(TAG, "Target Cache in Component Registry is cleaned");
-        }
+        invalidate();
+        Log.v(TAG,
+                String.format("Target Cache in Component Registry is cleaned, hits=%d misses=%d", mHitCount.get(),
+                        mMissCount.get()));
     }
 }
\ No newline at end of file
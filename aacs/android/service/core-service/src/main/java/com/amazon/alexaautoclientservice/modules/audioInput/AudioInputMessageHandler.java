@@ -26,6 +26,7 @@ import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 
 import com.amazon.aace.core.MessageStream;
@@ -36,33 +37,47 @@ import com.amazon.aacsipc.AACSSender;
 import com.amazon.aacsipc.TargetComponent;
 import com.amazon.alexaautoclientservice.AASBHandler;
 import com.amazon.alexaautoclientservice.ComponentRegistry;
+import com.amazon.alexaautoclientservice.util.DirectBufferPool;
 import com.amazon.alexaautoclientservice.util.FileUtil;
 
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 public class AudioInputMessageHandler {
     private static final String TAG = AACSConstants.AACS + "-" + AudioInputMessageHandler.class.getSimpleName();
     private static final int FETCH_READ_BUFFER_MIN_CHUNK_SIZE = 20;
     private static final int SAMPLE_RATE_HZ = 16000;
     private static final int AUDIO_RECORD_BUFFER_SIZE = 1024;
-    private static final int AUDIO_READER_BUFFER_SIZE = 300;
+    private static final int AUDIO_READER_BUFFER_SIZE = 320;
+    private static final int AUDIO_FRAME_SIZE = 2;
+    private static final int AUDIO_RING_BUFFER_SIZE = 32768;
+    private static final int AUDIO_CONSUMER_BUFFER_SIZE = 4096;
+    // One for each audio type that can be streamed at the same time
+    private static final int MAX_POOLED_CONSUMER_BUFFERS = 2;
+    private static final long CONSUMER_WRITE_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
     private Context mContext;
     private AudioRecord mAudioInput;
     private AASBHandler mAASBHandler;
     private final ExecutorService mExecutor = Executors.newFixedThreadPool(1);
     private final ExecutorService mExternalExecutor = Executors.newFixedThreadPool(2);
+    private final ExecutorService mConsumerExecutor = Executors.newCachedThreadPool();
+    private final AudioRingBuffer mAudioBuffer = new AudioRingBuffer(AUDIO_RING_BUFFER_SIZE, AUDIO_FRAME_SIZE);
+    private final ConcurrentHashMap<String, AudioConsumer> mAudioConsumers = new ConcurrentHashMap<>();
     private AACSSender mAACSSender;
     private TargetComponent mCommsExternalSourceTarget;
     private TargetComponent mVoiceExternalSourceTarget;
-    private MessageStream mCommsStream;
-    private MessageStream mVoiceStream;
+    private volatile MessageStream mCommsStream;
+    private volatile MessageStream mVoiceStream;
     private AudioReader mReader;
     private HashMap<String, String> mStreamIdToTypeMap;
     private HashMap<String, AudioReader> mStreamIdToReaderMap; // EXTERNAL case only
@@ -80,15 +95,13 @@ public class AudioInputMessageHandler {
     }
 
     public void handleAudioInputMessage(@NonNull String messageId, @NonNull String topic, @NonNull String action,
-            @NonNull String payload, @NonNull AASBHandler aasbHandler) {
-        Log.d(TAG, "handleAudioInputMessage " + action + payload);
+            @Nullable JSONObject payloadJson, @NonNull AASBHandler aasbHandler) {
+        Log.d(TAG, "handleAudioInputMessage " + action);
         mAASBHandler = aasbHandler;
-        JSONObject payloadJson;
         String audioType = "";
         String streamId = "";
-        if (!payload.isEmpty()) {
+        if (payloadJson != null) {
             try {
-                payloadJson = new JSONObject(payload);
                 streamId = payloadJson.getString(AASBConstants.AudioInput.STREAM_ID);
                 if (payloadJson.has(AASBConstants.AudioInput.TYPE)) {
                     audioType = payloadJson.getString(AASBConstants.AudioInput.TYPE);
@@ -175,6 +188,7 @@ public class AudioInputMessageHandler {
             mStreamIdToReaderMap.put(streamId, reader);
             return reader;
         } else {
+            startAudioConsumer(audioType);
             if (mReader == null || !mReader.isRunning()) {
                 mReader = new AudioReader(sourceType);
                 mExecutor.submit((Runnable) mReader);
@@ -183,6 +197,32 @@ public class AudioInputMessageHandler {
         return mReader;
     }
 
+    private void startAudioConsumer(String audioType) {
+        MessageStream stream = getStreamByType(audioType);
+        if (stream == null || mAudioConsumers.containsKey(audioType)) {
+            return;
+        }
+        AudioConsumer consumer = new AudioConsumer(audioType, stream, mAudioBuffer.newReader());
+        mAudioConsumers.put(audioType, consumer);
+        mConsumerExecutor.submit(consumer);
+    }
+
+    private void stopAudioConsumer(String audioType) {
+        AudioConsumer consumer = mAudioConsumers.remove(audioType);
+        if (consumer != null) {
+            consumer.cancel();
+        }
+    }
+
+    private MessageStream getStreamByType(String audioType) {
+        if (audioType.equals(AASBConstants.AudioInput.AudioType.COMMUNICATION)) {
+            return mCommsStream;
+        } else if (audioType.equals(AASBConstants.AudioInput.AudioType.VOICE)) {
+            return mVoiceStream;
+        }
+        return null;
+    }
+
     private AudioRecord createAudioInput(String audioType) {
         Log.d(TAG, "createAudioInput");
         AudioRecord audioRecord = null;
@@ -234,22 +274,19 @@ public class AudioInputMessageHandler {
     private void handleStopAudioInput(String streamId) {
         Log.d(TAG, "handleStopAudioInput");
 
-        boolean noStreams = mVoiceStream == null && mCommsStream == null;
-        if (mStreamIdToReaderMap.containsKey(streamId)) {
-            // EXTERNAL case only
+        boolean isExternal = mStreamIdToReaderMap.containsKey(streamId);
+        if (isExternal) {
             AudioReader reader = mStreamIdToReaderMap.get(streamId);
             if (reader != null) {
                 reader.cancel();
             }
             mStreamIdToReaderMap.remove(streamId);
-        } else if (mReader != null && noStreams) {
-            mReader.cancel();
-            stopAudioRecord();
         }
 
         if (mStreamIdToTypeMap.containsKey(streamId)) {
             String type = mStreamIdToTypeMap.get(streamId);
             if (type != null) {
+                stopAudioConsumer(type);
                 if (type.equals(AASBConstants.AudioInput.AudioType.COMMUNICATION)) {
                     mCommsStream = null;
                 } else if (type.equals(AASBConstants.AudioInput.AudioType.VOICE)) {
@@ -258,6 +295,12 @@ public class AudioInputMessageHandler {
             }
             mStreamIdToTypeMap.remove(streamId);
         }
+
+        // Keep recording while any other stream still consumes the microphone
+        if (!isExternal && mReader != null && mReader.isRunning() && mAudioConsumers.isEmpty()) {
+            mReader.cancel();
+            stopAudioRecord();
+        }
     }
 
     private void stopAudioRecord() {
@@ -283,6 +326,11 @@ public class AudioInputMessageHandler {
             mReader = null;
         }
 
+        for (AudioConsumer consumer : mAudioConsumers.values()) {
+            consumer.cancel();
+        }
+        mAudioConsumers.clear();
+
         if (mVoiceStream != null)
             mVoiceStream = null;
 
@@ -327,11 +375,8 @@ public class AudioInputMessageHandler {
             while (mRunning) {
                 size = mAudioInput.read(mBuffer, 0, mBuffer.length);
                 if (size > 0 && mRunning) {
-                    if (mCommsStream != null)
-                        mCommsStream.write(mBuffer);
-
-                    if (mVoiceStream != null)
-                        mVoiceStream.write(mBuffer);
+                    // Consumers drain the ring on their own threads so a slow stream cannot hold up the microphone
+                    mAudioBuffer.write(mBuffer, 0, size);
                 }
             }
         }
@@ -401,4 +446,69 @@ public class AudioInputMessageHandler {
             return mReaderType.equals(AudioSourceType.EXTERNAL);
         }
     }
+
+    /**
+     * AudioConsumer class is used to copy microphone audio from the shared ring buffer to the stream of one audio
+     * type.
+     */
+    private static class AudioConsumer implements Runnable {
+        // Direct buffers, so that audio is written to the stream without another copy
+        private static final DirectBufferPool sConsumerBufferPool =
+                new DirectBufferPool(AUDIO_CONSUMER_BUFFER_SIZE, MAX_POOLED_CONSUMER_BUFFERS);
+
+        private final String mAudioType;
+        private final MessageStream mStream;
+        private final AudioRingBuffer.Reader mReader;
+
+        AudioConsumer(String audioType, MessageStream stream, AudioRingBuffer.Reader reader) {
+            mAudioType = audioType;
+            mStream = stream;
+            mReader = reader;
+        }
+
+        @Override
+        public void run() {
+            Log.d(TAG, "AudioConsumer run() for " + mAudioType);
+            ByteBuffer buffer = sConsumerBufferPool.acquire();
+            try {
+                while (mReader.read(buffer) > 0) {
+                    buffer.flip();
+                    if (!writeFully(buffer)) {
+                        Log.w(TAG, "AudioConsumer for " + mAudioType + " stopped, the stream does not accept audio");
+                        break;
+                    }
+                    buffer.clear();
+                }
+            } finally {
+                sConsumerBufferPool.release(buffer);
+            }
+            if (mReader.getOverrunCount() > 0) {
+                Log.w(TAG,
+                        String.format("AudioConsumer for %s fell behind the microphone %d times, skipping %d bytes",
+                                mAudioType, mReader.getOverrunCount(), mReader.getOverrunBytes()));
+            }
+        }
+
+        /**
+         * Writes the remaining audio of {@code buffer} to the stream, waiting while the stream does not accept it.
+         *
+         * @return false if the stream failed or is closed, or if the consumer was cancelled.
+         */
+        private boolean writeFully(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                int written = mStream.write(buffer);
+                if (written < 0 || mStream.isClosed() || mReader.isClosed()) {
+                    return false;
+                }
+                if (written == 0) {
+                    LockSupport.parkNanos(CONSUMER_WRITE_RETRY_NANOS);
+                }
+            }
+            return true;
+        }
+
+        void cancel() {
+            mReader.close();
+        }
+    }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.alexaautoclientservice.modules.audioInput;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer, multi-consumer ring buffer of audio bytes.
+ *
+ * The producer never waits for consumers. Each consumer reads through its own {@link Reader} cursor, so a slow
+ * consumer only falls behind itself. A reader that falls more than the capacity of the buffer behind the producer
+ * has overrun: it skips ahead to the oldest audio still in the buffer and counts the overrun. Reader positions are
+ * kept aligned to {@code frameSize} so a reader never resumes in the middle of a sample.
+ *
+ * {@link #write} must only be called from one thread at a time. Each {@link Reader} must only be read from one
+ * thread at a time.
+ */
+public class AudioRingBuffer {
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final byte[] mBuffer;
+    private final int mMask;
+    private final int mFrameSize;
+    private final CopyOnWriteArrayList<Reader> mReaders = new CopyOnWriteArrayList<>();
+    // Total number of bytes ever written. Published after the bytes are copied in.
+    private volatile long mWritePosition;
+    // Write position at the end of the write in progress. Published before the bytes are copied in, so readers
+    // can tell which positions may be being overwritten.
+    private volatile long mWriteLimit;
+
+    /**
+     * @param capacity Capacity in bytes. Must be a power of two and a multiple of {@code frameSize}.
+     * @param frameSize Size in bytes of the smallest unit of audio, for example 2 for 16-bit mono PCM.
+     */
+    public AudioRingBuffer(int capacity, int frameSize) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1 || frameSize <= 0 || capacity % frameSize != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two and a multiple of the frame size");
+        }
+        mBuffer = new byte[capacity];
+        mMask = capacity - 1;
+        mFrameSize = frameSize;
+    }
+
+    /**
+     * Appends audio to the buffer and wakes up waiting readers. Never blocks.
+     */
+    public void write(@NonNull byte[] data, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        if (length > mBuffer.length) {
+            // Only the most recent audio would survive
+            offset += length - mBuffer.length;
+            length = mBuffer.length;
+        }
+        long writePosition = mWritePosition;
+        mWriteLimit = writePosition + length;
+        int start = (int) (writePosition & mMask);
+        int firstPart = Math.min(length, mBuffer.length - start);
+        System.arraycopy(data, offset, mBuffer, start, firstPart);
+        if (firstPart < length) {
+            System.arraycopy(data, offset + firstPart, mBuffer, 0, length - firstPart);
+        }
+        mWritePosition = writePosition + length;
+
+        for (Reader reader : mReaders) {
+            reader.wakeUp();
+        }
+    }
+
+    /**
+     * Creates a reader that starts with the next audio written to the buffer.
+     */
+    @NonNull
+    public Reader newReader() {
+        Reader reader = new Reader(mWritePosition);
+        mReaders.add(reader);
+        return reader;
+    }
+
+    /**
+     * Independent read cursor over the buffer.
+     */
+    public class Reader {
+        private long mReadPosition;
+        private volatile boolean mClosed;
+        private volatile Thread mWaitingThread;
+        private volatile long mOverrunCount;
+        private volatile long mOverrunBytes;
+
+        private Reader(long readPosition) {
+            mReadPosition = readPosition;
+        }
+
+        /**
+         * Reads the audio available to this reader, waiting until some is written if none is.
+         *
+         * @return Number of bytes read, or -1 once the reader is closed.
+         */
+        public int read(@NonNull byte[] data, int offset, int length) {
+            while (!mClosed) {
+                int bytesRead = tryRead(data, offset, length);
+                if (bytesRead > 0) {
+                    return bytesRead;
+                }
+                waitForWrite();
+            }
+            return -1;
+        }
+
+        /**
+         * Reads the audio available to this reader into {@code data}, from its position up to its limit, waiting
+         * until some is written if none is. The position of {@code data} is advanced by the number of bytes read.
+         *
+         * @return Number of bytes read, or -1 once the reader is closed.
+         */
+        public int read(@NonNull ByteBuffer data) {
+            while (!mClosed) {
+                int bytesRead = tryRead(data);
+                if (bytesRead > 0) {
+                    return bytesRead;
+                }
+                waitForWrite();
+            }
+            return -1;
+        }
+
+        /**
+         * Reads the audio available to this reader without waiting.
+         *
+         * @return Number of bytes read, possibly 0.
+         */
+        public int tryRead(@NonNull byte[] data, int offset, int length) {
+            while (true) {
+                int available = getAvailable(length);
+                if (available <= 0) {
+                    return 0;
+                }
+                int start = (int) (mReadPosition & mMask);
+                int firstPart = Math.min(available, mBuffer.length - start);
+                System.arraycopy(mBuffer, start, data, offset, firstPart);
+                if (firstPart < available) {
+                    System.arraycopy(mBuffer, 0, data, offset + firstPart, available - firstPart);
+                }
+                if (commitRead(available)) {
+                    return available;
+                }
+            }
+        }
+
+        /**
+         * Reads the audio available to this reader into {@code data} without waiting.
+         *
+         * @return Number of bytes read, possibly 0.
+         */
+        public int tryRead(@NonNull ByteBuffer data) {
+            int position = data.position();
+            while (true) {
+                int available = getAvailable(data.limit() - position);
+                if (available <= 0) {
+                    return 0;
+                }
+                int start = (int) (mReadPosition & mMask);
+                int firstPart = Math.min(available, mBuffer.length - start);
+                data.position(position);
+                data.put(mBuffer, start, firstPart);
+                if (firstPart < available) {
+                    data.put(mBuffer, 0, available - firstPart);
+                }
+                if (commitRead(available)) {
+                    return available;
+                }
+            }
+        }
+
+        /**
+         * Stops the reader. A thread waiting in {@link #read} returns -1.
+         */
+        public void close() {
+            mClosed = true;
+            mReaders.remove(this);
+            wakeUp();
+        }
+
+        public boolean isClosed() {
+            return mClosed;
+        }
+
+        /**
+         * @return Number of times this reader fell too far behind and skipped audio.
+         */
+        public long getOverrunCount() {
+            return mOverrunCount;
+        }
+
+        /**
+         * @return Number of bytes of audio this reader skipped.
+         */
+        public long getOverrunBytes() {
+            return mOverrunBytes;
+        }
+
+        /**
+         * @return Number of bytes that can be read, up to {@code length}, after skipping any overrun audio.
+         */
+        private int getAvailable(int length) {
+            long writePosition = mWritePosition;
+            skipOverrun(mWriteLimit);
+            return (int) Math.min(writePosition - mReadPosition, length);
+        }
+
+        /**
+         * Advances the reader past {@code length} bytes just copied, unless the producer may have started
+         * overwriting them while they were being copied.
+         *
+         * @return Whether the copied bytes are valid.
+         */
+        private boolean commitRead(int length) {
+            if (mWriteLimit - mReadPosition <= mBuffer.length) {
+                mReadPosition += length;
+                return true;
+            }
+            return false;
+        }
+
+        private void waitForWrite() {
+            mWaitingThread = Thread.currentThread();
+            if (mWritePosition <= mReadPosition && !mClosed) {
+                LockSupport.parkNanos(this, MAX_WAIT_NANOS);
+            }
+            mWaitingThread = null;
+        }
+
+        private void skipOverrun(long writeLimit) {
+            long behind = writeLimit - mReadPosition;
+            if (behind <= mBuffer.length) {
+                return;
+            }
+            // Skip to the oldest complete frame the producer cannot overwrite before it is read
+            long skipped = behind - mBuffer.length + mFrameSize;
+            skipped += (mFrameSize - skipped % mFrameSize) % mFrameSize;
+            mReadPosition += skipped;
+            mOverrunCount++;
+            mOverrunBytes += skipped;
+        }
+
+        private void wakeUp() {
+            Thread waitingThread = mWaitingThread;
+            if (waitingThread != null) {
+                LockSupport.unpark(waitingThread);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import com.amazon.aace.core.MessageStream;
@@ -78,12 +79,10 @@ public class AudioOutputMessageHandler {
 
     @RequiresApi(api = Build.VERSION_CODES.O)
     public void handleAudioOutputMessage(@NonNull String messageId, @NonNull String topic, @NonNull String action,
-            @NonNull String payload, @NonNull AASBHandler aasbHandler) {
-        Log.d(TAG, "handleAudioOutputMessage " + action + payload);
-        JSONObject payloadJson;
-        if (!payload.isEmpty()) {
+            @Nullable JSONObject payloadJson, @NonNull AASBHandler aasbHandler) {
+        Log.d(TAG, "handleAudioOutputMessage " + action);
+        if (payloadJson != null) {
             try {
-                payloadJson = new JSONObject(payload);
                 Handler mainHandler = new Handler(Looper.getMainLooper());
                 mainHandler.post(() -> {
                     mCurrentMediaPlayer = getMediaPlayer(payloadJson, aasbHandler);
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.alexaautoclientservice.modules.audioOutput;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.amazon.aacsconstants.AASBConstants.AudioOutput;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Latest playback state pushed by players that are not implemented in AACS, by audio channel.
+ *
+ * A player sends a {@code PlaybackSnapshot} whenever its playback state changes, for example when it starts, pauses,
+ * seeks, buffers or changes its playback rate. A snapshot records the position at a point in time of
+ * {@link SystemClock#elapsedRealtime()}, which is shared by all processes, so AACS can extrapolate the current
+ * position from it and answer {@code GetPosition} and {@code GetNumBytesBuffered} without asking the player.
+ */
+public class PlaybackSnapshotCache {
+    private final ConcurrentHashMap<String, Snapshot> mSnapshots = new ConcurrentHashMap<>();
+    private final LongSupplier mClock;
+
+    public PlaybackSnapshotCache() {
+        this(SystemClock::elapsedRealtime);
+    }
+
+    @VisibleForTesting
+    public PlaybackSnapshotCache(@NonNull LongSupplier clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Replaces the snapshot of the channel of the given {@code PlaybackSnapshot} payload.
+     *
+     * @param payload Payload with the {@code channel}, {@code token}, {@code position} in milliseconds,
+     * {@code playbackRate} (0 when not playing), {@code timestamp} of the position in milliseconds of
+     * {@link SystemClock#elapsedRealtime()}, and optionally {@code bufferedBytes}.
+     * @throws JSONException if a required field is missing.
+     */
+    public void update(@NonNull JSONObject payload) throws JSONException {
+        String channel = payload.getString(AudioOutput.CHANNEL);
+        mSnapshots.put(channel,
+                new Snapshot(payload.optString(AudioOutput.TOKEN), payload.getLong(AudioOutput.POSITION),
+                        payload.optDouble(AudioOutput.PLAYBACK_RATE, 0), payload.getLong(AudioOutput.TIMESTAMP),
+                        payload.optLong(AudioOutput.BUFFERED_BYTES, 0)));
+    }
+
+    /**
+     * @param channel Audio channel.
+     * @param token Token of the media the position is requested for.
+     * @return Current position in milliseconds, or {@code null} if there is no snapshot of that media.
+     */
+    @Nullable
+    public Long getPosition(@NonNull String channel, @Nullable String token) {
+        Snapshot snapshot = find(channel, token);
+        if (snapshot == null) {
+            return null;
+        }
+        long elapsedMs = Math.max(0, mClock.getAsLong() - snapshot.mTimestamp);
+        return snapshot.mPosition + (long) (elapsedMs * snapshot.mPlaybackRate);
+    }
+
+    /**
+     * @param channel Audio channel.
+     * @param token Token of the media the buffered bytes are requested for.
+     * @return Number of bytes buffered when the snapshot was taken, or {@code null} if there is no snapshot of that
+     * media.
+     */
+    @Nullable
+    public Long getBufferedBytes(@NonNull String channel, @Nullable String token) {
+        Snapshot snapshot = find(channel, token);
+        return snapshot != null ? snapshot.mBufferedBytes : null;
+    }
+
+    public void clear() {
+        mSnapshots.clear();
+    }
+
+    private Snapshot find(String channel, String token) {
+        Snapshot snapshot = mSnapshots.get(channel);
+        if (snapshot == null) {
+            return null;
+        }
+        // A snapshot of the previous media must not be used for the next one
+        if (token != null && !token.isEmpty() && !snapshot.mToken.isEmpty() && !token.equals(snapshot.mToken)) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private static class Snapshot {
+        final String mToken;
+        final long mPosition;
+        final double mPlaybackRate;
+        final long mTimestamp;
+        final long mBufferedBytes;
+
+        Snapshot(String token, long position, double playbackRate, long timestamp, long bufferedBytes) {
+            mToken = token;
+            mPosition = position;
+            mPlaybackRate = playbackRate;
+            mTimestamp = timestamp;
+            mBufferedBytes = bufferedBytes;
+        }
+    }
+}
@@ -50,15 +50,10 @@ import com.google.android.exoplayer2.source.MediaSource;
 
 import org.json.JSONObject;
 
-import java.io.FileOutputStream;
-import java.io.IOException;
-
 @RequiresApi(api = Build.VERSION_CODES.O)
 public class ExoPlayerHandler implements AACSMediaPlayer, AudioManager.OnAudioFocusChangeListener, AuthStateObserver {
     private static final String TAG = AACSConstants.AACS + "-" + ExoPlayerHandler.class.getSimpleName();
-    private static final String ALEXA_MEDIA_FILE = "alexa_media";
     public static final float DUCKING_FACTOR = 0.2f;
-    private static int WRITE_BUFFER_SIZE = 4096;
 
     private final Context mContext;
     private final String mChannel;
@@ -166,19 +161,10 @@ public class ExoPlayerHandler implements AACSMediaPlayer, AudioManager.OnAudioFo
         mRepeating = repeating;
         mCurrentToken = token;
         mMayDuck = false;
-        try (FileOutputStream os = mContext.openFileOutput(ALEXA_MEDIA_FILE, Context.MODE_PRIVATE)) {
-            byte[] buffer = new byte[WRITE_BUFFER_SIZE];
-            int size;
-            while (!stream.isClosed()) {
-                while ((size = stream.read(buffer)) > 0) os.write(buffer, 0, size);
-            }
-        } catch (IOException e) {
-            Log.e(TAG, String.format("Error occurred while writing to output stream. Error=%s", e.getMessage()));
-        }
-
         try {
-            Uri uri = Uri.fromFile(mContext.getFileStreamPath(ALEXA_MEDIA_FILE));
-            MediaSource mediaSource = mMediaSourceFactory.createFileMediaSource(uri);
+            // The stream is read on ExoPlayer's loader thread as data arrives, so playback can start before
+            // the Engine has finished writing it.
+            MediaSource mediaSource = mMediaSourceFactory.createMessageStreamMediaSource(stream);
             mPlayer.setMediaSource(mediaSource, true);
             mPlayer.prepare();
         } catch (Exception e) {
@@ -23,6 +23,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.amazon.aace.core.MessageStream;
 import com.amazon.aacsconstants.AACSConstants;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.MediaItem;
@@ -77,6 +78,15 @@ class MediaSourceFactory {
         return createMediaSource(uri, mFileDataSourceFactory, mMediaSourceListener, mMainHandler, mPlaylistParser);
     }
 
+    MediaSource createMessageStreamMediaSource(@NonNull final MessageStream stream) {
+        Log.v(TAG, "Creating message stream media source.");
+        ProgressiveMediaSource progressiveMediaSource =
+                new ProgressiveMediaSource.Factory(new MessageStreamDataSource.Factory(stream))
+                        .createMediaSource(MediaItem.fromUri(MessageStreamDataSource.MESSAGE_STREAM_URI));
+        progressiveMediaSource.addEventListener(mMainHandler, mMediaSourceListener);
+        return progressiveMediaSource;
+    }
+
     MediaSource createHttpMediaSource(@NonNull final Uri uri) throws Exception {
         Log.v(TAG, String.format("Creating http media source. URI=%s", uri));
         return createMediaSource(uri, mHttpDataSourceFactory, mMediaSourceListener, mMainHandler, mPlaylistParser);
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017-2020 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.alexaautoclientservice.modules.audioOutput.mediaPlayer.exo;
+
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.amazon.aace.core.MessageStream;
+import com.amazon.aacsconstants.AACSConstants;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.BaseDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * ExoPlayer {@link DataSource} that reads media directly from an Engine {@link MessageStream}.
+ *
+ * Data is pulled from the stream on ExoPlayer's loader thread as the extractor asks for it, so playback can
+ * start as soon as the first decodable frames arrive instead of after the whole stream has been written out.
+ * Every byte read from the stream is retained in memory by the owning {@link Factory}, which allows the
+ * player to re-open the source at an earlier position (e.g. for repeating playback or after a load retry)
+ * even though the underlying {@link MessageStream} can only be consumed once.
+ */
+class MessageStreamDataSource extends BaseDataSource {
+    private static final String TAG = AACSConstants.AACS + "-" + MessageStreamDataSource.class.getSimpleName();
+    static final Uri MESSAGE_STREAM_URI = Uri.parse("aacs://messagestream");
+
+    private final StreamBuffer mStreamBuffer;
+
+    @Nullable
+    private DataSpec mDataSpec;
+    private long mReadPosition;
+    private long mBytesRemaining;
+    private volatile boolean mOpened;
+
+    private MessageStreamDataSource(@NonNull StreamBuffer streamBuffer) {
+        super(false);
+        mStreamBuffer = streamBuffer;
+    }
+
+    @Override
+    public long open(@NonNull DataSpec dataSpec) throws IOException {
+        transferInitializing(dataSpec);
+        mDataSpec = dataSpec;
+        mReadPosition = dataSpec.position;
+        mBytesRemaining = dataSpec.length;
+        mOpened = true;
+        transferStarted(dataSpec);
+        // The total length is not known until the Engine closes the stream
+        return C.LENGTH_UNSET;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (mBytesRemaining == 0) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        int bytesToRead = mBytesRemaining == C.LENGTH_UNSET ? length : (int) Math.min(length, mBytesRemaining);
+        int bytesRead = mStreamBuffer.read(mReadPosition, buffer, offset, bytesToRead, this);
+        if (bytesRead == C.RESULT_END_OF_INPUT) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        mReadPosition += bytesRead;
+        if (mBytesRemaining != C.LENGTH_UNSET) {
+            mBytesRemaining -= bytesRead;
+        }
+        bytesTransferred(bytesRead);
+        return bytesRead;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return mDataSpec != null ? mDataSpec.uri : null;
+    }
+
+    @Override
+    public void close() {
+        mDataSpec = null;
+        if (mOpened) {
+            mOpened = false;
+            transferEnded();
+        }
+    }
+
+    private boolean isOpened() {
+        return mOpened;
+    }
+
+    /**
+     * Creates {@link MessageStreamDataSource} instances that share the data read from a single
+     * {@link MessageStream}.
+     */
+    static class Factory implements DataSource.Factory {
+        private final StreamBuffer mStreamBuffer;
+
+        Factory(@NonNull MessageStream stream) {
+            mStreamBuffer = new StreamBuffer(stream);
+        }
+
+        @NonNull
+        @Override
+        public DataSource createDataSource() {
+            return new MessageStreamDataSource(mStreamBuffer);
+        }
+    }
+
+    /**
+     * Growable in-memory copy of everything read so far from a {@link MessageStream}. Readers positioned
+     * past the data that has been buffered pull more from the stream, waiting for the Engine to produce it.
+     */
+    private static class StreamBuffer {
+        private static final int INITIAL_CAPACITY = 16 * 1024;
+        private static final int STREAM_READ_SIZE = 4096;
+        private static final long READ_RETRY_DELAY_MS = 5;
+
+        private final MessageStream mStream;
+        private final byte[] mReadBuffer = new byte[STREAM_READ_SIZE];
+        private byte[] mData = new byte[INITIAL_CAPACITY];
+        private int mSize;
+        private boolean mEndOfStream;
+
+        StreamBuffer(@NonNull MessageStream stream) {
+            mStream = stream;
+        }
+
+        synchronized int read(long position, byte[] buffer, int offset, int length, MessageStreamDataSource reader)
+                throws IOException {
+            while (position >= mSize) {
+                if (mEndOfStream) {
+                    return C.RESULT_END_OF_INPUT;
+                }
+                if (!reader.isOpened()) {
+                    throw new InterruptedIOException("Data source closed while waiting for stream data");
+                }
+                fill();
+            }
+            int available = (int) Math.min(length, mSize - position);
+            System.arraycopy(mData, (int) position, buffer, offset, available);
+            return available;
+        }
+
+        private void fill() throws IOException {
+            int size = mStream.read(mReadBuffer);
+            if (size > 0) {
+                ensureCapacity(mSize + size);
+                System.arraycopy(mReadBuffer, 0, mData, mSize, size);
+                mSize += size;
+            } else if (size < 0) {
+                throw new IOException(String.format("Error occurred while reading message stream. Result=%s", size));
+            } else if (mStream.isClosed()) {
+                Log.v(TAG, String.format("Message stream closed. Total bytes=%s", mSize));
+                mEndOfStream = true;
+            } else {
+                try {
+                    // Data is not available yet. The Engine is still writing to the stream.
+                    wait(READ_RETRY_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for stream data");
+                }
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > mData.length) {
+                mData = Arrays.copyOf(mData, Math.max(capacity, mData.length * 2));
+            }
+        }
+    }
+}
@@ -33,16 +33,23 @@ import com.amazon.aacsconstants.Topic;
 import com.amazon.alexaautoclientservice.modules.audioOutput.mediaPlayer.AACSMediaPlayer;
 import com.amazon.alexaautoclientservice.modules.audioOutput.mediaPlayer.AudioFocusAttributes;
 import com.amazon.alexaautoclientservice.modules.audioOutput.mediaPlayer.EventReceiver;
+import com.amazon.alexaautoclientservice.util.DirectBufferPool;
 import com.amazon.alexaautoclientservice.util.MediaPlayerUtil;
 
 import org.json.JSONObject;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class RawAudioOutputHandler implements AACSMediaPlayer, AudioManager.OnAudioFocusChangeListener {
     private static final String TAG = AACSConstants.AACS + "-" + RawAudioOutputHandler.class.getSimpleName();
 
     private static int WRITE_BUFFER_SIZE = 640;
+    // One for each channel that can play raw audio at the same time
+    private static final int MAX_POOLED_WRITE_BUFFERS = 4;
+    // Direct buffers, so that audio read from the stream is not copied to the Java heap
+    private static final DirectBufferPool sWriteBufferPool =
+            new DirectBufferPool(WRITE_BUFFER_SIZE, MAX_POOLED_WRITE_BUFFERS);
 
     private final String mChannel;
     private final EventReceiver mEventReceiver;
@@ -276,13 +283,15 @@ public class RawAudioOutputHandler implements AACSMediaPlayer, AudioManager.OnAu
             MediaPlayerUtil.sendMediaStateChangedMessage(
                     mEventReceiver, mChannel, mCurrentToken, MediaConstants.MediaState.PLAYING);
 
+            ByteBuffer audioBuffer = sWriteBufferPool.acquire();
             try {
                 Log.d(TAG, String.format("(%s) Audio Playback loop started", mChannel));
-                byte[] audioBuffer = new byte[WRITE_BUFFER_SIZE];
                 while (isPlaying() && !mMediaStream.isClosed()) {
+                    audioBuffer.clear();
                     int dataRead = mMediaStream.read(audioBuffer);
                     if (dataRead > 0) {
-                        int byteWritten = mAudioTrack.write(audioBuffer, 0, dataRead);
+                        audioBuffer.flip();
+                        int byteWritten = mAudioTrack.write(audioBuffer, dataRead, AudioTrack.WRITE_BLOCKING);
                         if (byteWritten > 0) {
                             mBytesWritten.getAndAdd(dataRead);
                         }
@@ -294,6 +303,7 @@ public class RawAudioOutputHandler implements AACSMediaPlayer, AudioManager.OnAu
                 MediaPlayerUtil.sendMediaErrorMessage(mEventReceiver, mCurrentToken,
                         MediaConstants.MediaError.MEDIA_ERROR_UNKNOWN, message, mChannel);
             } finally {
+                sWriteBufferPool.release(audioBuffer);
                 MediaPlayerUtil.sendMediaStateChangedMessage(
                         mEventReceiver, mChannel, mCurrentToken, MediaConstants.MediaState.STOPPED);
             }
@@ -56,12 +56,15 @@ import com.amazon.maccandroid.model.players.DiscoveredPlayer;
 import com.amazon.maccandroid.model.state.ExternalMediaPlayerState;
 import com.amazon.maccandroid.model.state.MediaAppMetaData;
 import com.amazon.maccandroid.model.state.MediaAppPlaybackState;
+import com.amazon.maccandroid.model.state.MediaAppSessionState;
 
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MACCPlayer extends ExternalMediaAdapter implements IDiscoveredPlayerProvider {
     private static final String TAG = MACCPlayer.class.getSimpleName();
@@ -74,6 +77,8 @@ public class MACCPlayer extends ExternalMediaAdapter implements IDiscoveredPlaye
     private int mMediaVolume;
     private MutedState mMutedState = MutedState.UNMUTED;
     private Set<String> mDiscoveredPlayers = new HashSet<>();
+    // Engine state of each player, built again only when the state of the player changes
+    private final Map<String, CachedState> mStates = new ConcurrentHashMap<>();
 
     private final MACCAndroidClientCallback mMACCAndroidClientCallback = new MACCAndroidClientCallback() {
         @Override
@@ -128,6 +133,7 @@ public class MACCPlayer extends ExternalMediaAdapter implements IDiscoveredPlaye
             Log.i(TAG, "onRemovedPlayer: " + localPlayerId);
             removeDiscoveredPlayer(localPlayerId);
             mDiscoveredPlayers.remove(localPlayerId);
+            mStates.remove(localPlayerId);
         }
     };
 
@@ -214,52 +220,104 @@ public class MACCPlayer extends ExternalMediaAdapter implements IDiscoveredPlaye
             Log.i(TAG, "Something went wrong");
             return false;
         }
-        MediaAppMetaData metaData = state.getMediaAppPlaybackState().getMediaAppMetaData();
-        stateToReturn.playbackState = new PlaybackState();
-        stateToReturn.playbackState.state = state.getMediaAppPlaybackState().getPlaybackState() == null
-                ? PlayBackStateFields.State.IDLE.toString()
-                : state.getMediaAppPlaybackState().getPlaybackState().toString();
-        stateToReturn.playbackState.supportedOperations =
-                getSupportedOperations(state.getMediaAppPlaybackState().getSupportedOperations());
-        stateToReturn.playbackState.trackOffset = state.getMediaAppPlaybackState().getPositionMilliseconds();
-        stateToReturn.playbackState.shuffleEnabled = (state.getMediaAppPlaybackState().isShuffleEnabled() == null)
+        CachedState cachedState = mStates.get(localPlayerId);
+        if (cachedState == null || cachedState.mSource != state) {
+            cachedState = new CachedState(state, buildPlaybackState(state.getMediaAppPlaybackState()),
+                    buildSessionState(state.getMediaAppSessionState()));
+            mStates.put(localPlayerId, cachedState);
+        }
+        // The engine copies the state, so the cached state is shared by every request. Only the offset of a playing
+        // track changes between changes of the player state.
+        MediaAppPlaybackState playbackState = state.getMediaAppPlaybackState();
+        stateToReturn.playbackState = playbackState.isPositionAdvancing()
+                ? withTrackOffset(cachedState.mPlaybackState, playbackState.getPositionMilliseconds())
+                : cachedState.mPlaybackState;
+        stateToReturn.sessionState = cachedState.mSessionState;
+        return true;
+    }
+
+    /**
+     * Engine state built from a state of a player.
+     */
+    private static class CachedState {
+        final ExternalMediaPlayerState mSource;
+        final PlaybackState mPlaybackState;
+        final SessionState mSessionState;
+
+        CachedState(ExternalMediaPlayerState source, PlaybackState playbackState, SessionState sessionState) {
+            mSource = source;
+            mPlaybackState = playbackState;
+            mSessionState = sessionState;
+        }
+    }
+
+    private PlaybackState buildPlaybackState(MediaAppPlaybackState state) {
+        MediaAppMetaData metaData = state.getMediaAppMetaData();
+        PlaybackState playbackState = new PlaybackState();
+        playbackState.state = state.getPlaybackState() == null ? PlayBackStateFields.State.IDLE.toString()
+                                                               : state.getPlaybackState().toString();
+        playbackState.supportedOperations = getSupportedOperations(state.getSupportedOperations());
+        playbackState.trackOffset = state.getPositionMilliseconds();
+        playbackState.shuffleEnabled = (state.isShuffleEnabled() == null)
                 ? false
-                : state.getMediaAppPlaybackState().isShuffleEnabled().equals(PlayBackStateFields.shuffle.SHUFFLED);
-        stateToReturn.playbackState.repeatEnabled = (state.getMediaAppPlaybackState().getRepeatMode() == null)
+                : state.isShuffleEnabled().equals(PlayBackStateFields.shuffle.SHUFFLED);
+        playbackState.repeatEnabled = (state.getRepeatMode() == null)
                 ? false
-                : !state.getMediaAppPlaybackState().getRepeatMode().equals(PlayBackStateFields.repeat.NOT_REPEATED);
-        stateToReturn.playbackState.favorites = getFavorites(state.getMediaAppPlaybackState().getFavourite());
-        stateToReturn.playbackState.type = "ExternalMediaPlayerMusicItem";
-        stateToReturn.playbackState.playbackSource =
-                state.getMediaAppPlaybackState().getMediaAppMetaData().getPlaybackSource();
-        stateToReturn.playbackState.playbackSourceId =
-                state.getMediaAppPlaybackState().getMediaAppMetaData().getPlaybackSourceId();
-        stateToReturn.playbackState.trackName = state.getMediaAppPlaybackState().getMediaAppMetaData().getTrackName();
-        stateToReturn.playbackState.trackId = "";
-        stateToReturn.playbackState.trackNumber =
-                state.getMediaAppPlaybackState().getMediaAppMetaData().getTrackNumber();
-        stateToReturn.playbackState.artistName = state.getMediaAppPlaybackState().getMediaAppMetaData().getArtist();
-        stateToReturn.playbackState.artistId = "";
-        stateToReturn.playbackState.albumName = state.getMediaAppPlaybackState().getMediaAppMetaData().getAlbum();
-        stateToReturn.playbackState.albumId = "";
-        stateToReturn.playbackState.mediaProvider =
-                state.getMediaAppPlaybackState().getMediaAppMetaData().getMediaProvider();
-        stateToReturn.playbackState.mediaType =
-                getMediaType(state.getMediaAppPlaybackState().getMediaAppMetaData().getMediaType());
-        stateToReturn.playbackState.duration =
-                state.getMediaAppPlaybackState().getMediaAppMetaData().getDurationInMilliseconds();
-        stateToReturn.sessionState = new SessionState();
-        stateToReturn.sessionState.endpointId = state.getMediaAppSessionState().getPlayerid();
-        stateToReturn.sessionState.loggedIn = true; // irrelevant/non-functional to MACC
-        stateToReturn.sessionState.userName = "";
-        stateToReturn.sessionState.isGuest = false;
-        stateToReturn.sessionState.launched = state.getMediaAppSessionState().isLaunched();
-        stateToReturn.sessionState.active = state.getMediaAppSessionState().isActive();
-        stateToReturn.sessionState.accessToken = "";
-        stateToReturn.sessionState.tokenRefreshInterval = 0;
-        stateToReturn.sessionState.playerCookie = state.getMediaAppSessionState().getPlayerCookie();
-        stateToReturn.sessionState.spiVersion = state.getMediaAppSessionState().getSpiVersion();
-        return true;
+                : !state.getRepeatMode().equals(PlayBackStateFields.repeat.NOT_REPEATED);
+        playbackState.favorites = getFavorites(state.getFavourite());
+        playbackState.type = "ExternalMediaPlayerMusicItem";
+        playbackState.playbackSource = metaData.getPlaybackSource();
+        playbackState.playbackSourceId = metaData.getPlaybackSourceId();
+        playbackState.trackName = metaData.getTrackName();
+        playbackState.trackId = "";
+        playbackState.trackNumber = metaData.getTrackNumber();
+        playbackState.artistName = metaData.getArtist();
+        playbackState.artistId = "";
+        playbackState.albumName = metaData.getAlbum();
+        playbackState.albumId = "";
+        playbackState.mediaProvider = metaData.getMediaProvider();
+        playbackState.mediaType = getMediaType(metaData.getMediaType());
+        playbackState.duration = metaData.getDurationInMilliseconds();
+        return playbackState;
+    }
+
+    private SessionState buildSessionState(MediaAppSessionState state) {
+        SessionState sessionState = new SessionState();
+        sessionState.endpointId = state.getPlayerid();
+        sessionState.loggedIn = true; // irrelevant/non-functional to MACC
+        sessionState.userName = "";
+        sessionState.isGuest = false;
+        sessionState.launched = state.isLaunched();
+        sessionState.active = state.isActive();
+        sessionState.accessToken = "";
+        sessionState.tokenRefreshInterval = 0;
+        sessionState.playerCookie = state.getPlayerCookie();
+        sessionState.spiVersion = state.getSpiVersion();
+        return sessionState;
+    }
+
+    private static PlaybackState withTrackOffset(PlaybackState state, long trackOffset) {
+        PlaybackState playbackState = new PlaybackState();
+        playbackState.state = state.state;
+        playbackState.supportedOperations = state.supportedOperations;
+        playbackState.trackOffset = trackOffset;
+        playbackState.shuffleEnabled = state.shuffleEnabled;
+        playbackState.repeatEnabled = state.repeatEnabled;
+        playbackState.favorites = state.favorites;
+        playbackState.type = state.type;
+        playbackState.playbackSource = state.playbackSource;
+        playbackState.playbackSourceId = state.playbackSourceId;
+        playbackState.trackName = state.trackName;
+        playbackState.trackId = state.trackId;
+        playbackState.trackNumber = state.trackNumber;
+        playbackState.artistName = state.artistName;
+        playbackState.artistId = state.artistId;
+        playbackState.albumName = state.albumName;
+        playbackState.albumId = state.albumId;
+        playbackState.mediaProvider = state.mediaProvider;
+        playbackState.mediaType = state.mediaType;
+        playbackState.duration = state.duration;
+        return playbackState;
     }
 
     private MediaType getMediaType(String mediaType) {
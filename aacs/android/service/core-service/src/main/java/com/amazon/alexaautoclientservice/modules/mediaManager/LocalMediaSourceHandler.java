@@ -20,6 +20,7 @@ import android.media.AudioManager;
 import android.media.session.MediaController;
 import android.os.RemoteException;
 import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.RatingCompat;
 import android.support.v4.media.session.MediaControllerCompat;
 import android.support.v4.media.session.MediaSessionCompat;
@@ -51,6 +52,15 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
     private MediaBrowserConnectionStates mMediaBrowserConnectionStatus = MediaBrowserConnectionStates.DISCONNECTED;
     private MediaBrowserCompat mMediaBrowserCompat;
 
+    // Latest state of the media session, from the callbacks of the controller
+    private volatile PlaybackStateCompat mSessionPlaybackState;
+    private volatile MediaMetadataCompat mSessionMetadata;
+    private volatile boolean mSessionReady;
+    private final ContentSelector[] mContentSelectors;
+    // State returned to the engine, rebuilt whenever the state of the media session changes
+    private volatile LocalMediaSourceState mStateSnapshot;
+    private long mStateVersion;
+
     private static final String PLAYER_EVENT_SESSION_STARTED = "PlaybackSessionStarted";
     private static final String PLAYER_EVENT_SESSION_ENDED = "PlaybackSessionEnded";
     private static final String PLAYER_EVENT_PLAYBACK_STARTED = "PlaybackStarted";
@@ -65,6 +75,7 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
             Log.v(TAG, "onSessionDestroyed");
             mediaSessionEnded();
             mMediaController = null;
+            onMediaControllerChanged();
             createMediaBrowserConnection(mContext, mMediaSource);
         }
 
@@ -91,6 +102,21 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
                 }
             }
             mPlaybackState = state;
+            mSessionPlaybackState = state;
+            updateState();
+        }
+
+        @Override
+        public void onMetadataChanged(MediaMetadataCompat metadata) {
+            mSessionMetadata = metadata;
+            updateState();
+        }
+
+        @Override
+        public void onSessionReady() {
+            MediaControllerCompat controller = mMediaController;
+            mSessionReady = controller != null && controller.isSessionReady();
+            updateState();
         }
     };
 
@@ -128,6 +154,8 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
         mSessionId = null;
         mMediaSource = mediaSource;
         mContext = context;
+        mContentSelectors = getContentSelector();
+        updateState();
         createMediaBrowserConnection(context, mediaSource);
     }
 
@@ -219,31 +247,68 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
                 // called while not connected, if local media app is crashed
                 Log.e(TAG, exe.getMessage());
             }
+            onMediaControllerChanged();
         }
         playerEvent(PLAYER_EVENT_SESSION_STARTED, mSessionId);
     }
 
+    /**
+     * Returns the latest state of the source. The state is rebuilt by {@link #updateState()} when the media session
+     * changes, so the engine reads it without any call to the media session. The engine copies the state, so the same
+     * instance is returned until the state changes.
+     */
     @Override
     public LocalMediaSourceState getState() {
-        Log.v(TAG, "getState");
+        return mStateSnapshot;
+    }
+
+    /**
+     * Rebuilds the state returned by {@link #getState()} from the latest state of the media session. It is called
+     * after every change of the session state, and the calls are serialized, so the last state built reflects every
+     * change.
+     */
+    private synchronized void updateState() {
+        PlaybackStateCompat sessionPlaybackState = mSessionPlaybackState;
+        MediaMetadataCompat metadata = mSessionMetadata;
+        boolean sessionReady = mSessionReady;
+
         LocalMediaSourceState stateToReturn = new LocalMediaSourceState();
         stateToReturn.playbackState = new PlaybackState();
         stateToReturn.playbackState.state = getConvertedState();
-        stateToReturn.playbackState.trackOffset = getOffset();
-        stateToReturn.playbackState.supportedOperations = getSupportedPlaybackOperations();
+        stateToReturn.playbackState.trackOffset =
+                sessionReady && sessionPlaybackState != null ? sessionPlaybackState.getPosition() : 0;
+        stateToReturn.playbackState.supportedOperations =
+                getSupportedPlaybackOperations(sessionPlaybackState, sessionReady);
 
-        stateToReturn.playbackState.trackName = getStringMetadata(mMediaSource.getMetadataTitleKey());
-        stateToReturn.playbackState.trackId = getStringMetadata(mMediaSource.getMetadataTrackIdKey());
+        stateToReturn.playbackState.trackName = getStringMetadata(metadata, mMediaSource.getMetadataTitleKey());
+        stateToReturn.playbackState.trackId = getStringMetadata(metadata, mMediaSource.getMetadataTrackIdKey());
         stateToReturn.playbackState.trackNumber =
-                Long.toString(getLongMetadata(mMediaSource.getMetadataTrackNumberKey()));
-        stateToReturn.playbackState.artistName = getStringMetadata(mMediaSource.getMetadataArtistKey());
-        stateToReturn.playbackState.albumName = getStringMetadata(mMediaSource.getMetadataAlbumKey());
-        stateToReturn.playbackState.duration = getLongMetadata(mMediaSource.getMetadataDurationKey());
+                Long.toString(getLongMetadata(metadata, mMediaSource.getMetadataTrackNumberKey()));
+        stateToReturn.playbackState.artistName = getStringMetadata(metadata, mMediaSource.getMetadataArtistKey());
+        stateToReturn.playbackState.albumName = getStringMetadata(metadata, mMediaSource.getMetadataAlbumKey());
+        stateToReturn.playbackState.duration = getLongMetadata(metadata, mMediaSource.getMetadataDurationKey());
 
         stateToReturn.sessionState = new SessionState();
-        stateToReturn.sessionState.supportedContentSelectors = getContentSelector();
+        stateToReturn.sessionState.supportedContentSelectors = mContentSelectors;
 
-        return stateToReturn;
+        mStateSnapshot = stateToReturn;
+        Log.v(TAG, String.format("updateState version %d", ++mStateVersion));
+    }
+
+    /**
+     * Reads the state of the session of a new media controller once, the callbacks of the controller keep it up to
+     * date afterwards.
+     */
+    private void onMediaControllerChanged() {
+        MediaControllerCompat controller = mMediaController;
+        try {
+            mSessionPlaybackState = controller != null ? controller.getPlaybackState() : null;
+            mSessionMetadata = controller != null ? controller.getMetadata() : null;
+            mSessionReady = controller != null && controller.isSessionReady();
+        } catch (Exception e) {
+            Log.e(TAG, String.format("onMediaControllerChanged %s", e.getMessage()));
+        }
+        updateState();
     }
 
     @Override
@@ -507,14 +572,13 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
         return true;
     }
 
-    private SupportedPlaybackOperation[] getSupportedPlaybackOperations() {
-        if (mMediaController == null || !mMediaController.isSessionReady()
-                || mMediaController.getPlaybackState() == null) {
+    private SupportedPlaybackOperation[] getSupportedPlaybackOperations(
+            PlaybackStateCompat playbackState, boolean isSessionReady) {
+        if (!isSessionReady || playbackState == null) {
             Log.w(TAG, "MediaController or PlaybackState is null");
             return new SupportedPlaybackOperation[] {SupportedPlaybackOperation.PLAY};
         } else {
-            boolean isSessionReady = mMediaController.isSessionReady();
-            long actions = mMediaController.getPlaybackState().getActions();
+            long actions = playbackState.getActions();
             List<SupportedPlaybackOperation> list = new ArrayList<>();
             if (isSessionReady && (actions & PlaybackStateCompat.ACTION_PAUSE) != 0) {
                 list.add(SupportedPlaybackOperation.PAUSE);
@@ -617,26 +681,12 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
         return state;
     }
 
-    private long getOffset() {
-        try {
-            if (mMediaController == null || !mMediaController.isSessionReady()
-                    || mMediaController.getPlaybackState() == null) {
-                return 0;
-            } else {
-                return mMediaController.getPlaybackState().getPosition();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, e.getMessage());
-            return 0;
-        }
-    }
-
-    private long getLongMetadata(String key) {
+    private long getLongMetadata(MediaMetadataCompat metadata, String key) {
         try {
-            if (mMediaController == null || mMediaController.getMetadata() == null) {
+            if (metadata == null) {
                 return 0;
             } else {
-                return mMediaController.getMetadata().getLong(key);
+                return metadata.getLong(key);
             }
         } catch (Exception e) {
             Log.e(TAG, e.getMessage());
@@ -644,13 +694,13 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
         }
     }
 
-    private String getStringMetadata(String key) {
+    private String getStringMetadata(MediaMetadataCompat metadata, String key) {
         try {
-            if (mMediaController == null || mMediaController.getMetadata() == null) {
+            if (metadata == null) {
                 Log.w(TAG, "Metadata is null");
                 return "";
             } else {
-                String value = mMediaController.getMetadata().getString(key);
+                String value = metadata.getString(key);
                 return value != null ? value : "";
             }
         } catch (Exception e) {
@@ -672,6 +722,7 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
         }
         this.mMediaController.registerCallback(mCallback);
         isBinderDied = false;
+        onMediaControllerChanged();
     }
 
     public void cleanup() {
@@ -682,6 +733,7 @@ public class LocalMediaSourceHandler extends LocalMediaSource {
         if (mMediaController != null && !isBinderDied) {
             mMediaController.unregisterCallback(mCallback);
             mMediaController = null;
+            onMediaControllerChanged();
         }
     }
 }
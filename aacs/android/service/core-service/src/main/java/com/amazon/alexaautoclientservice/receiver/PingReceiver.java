@@ -53,10 +53,20 @@ public class PingReceiver extends BroadcastReceiver implements AACSStateObserver
             String pkg = intent.getStringExtra("replyToPackage");
             String cls = intent.getStringExtra("replyToClass");
             reply.setComponent(new ComponentName(pkg, cls));
+        } else if (intent.hasExtra("replyToPackage")) {
+            // Only the app that sent the ping receives the reply
+            reply.setPackage(intent.getStringExtra("replyToPackage"));
         }
 
         reply.setAction("com.amazon.aacs.pingreply");
         reply.putExtra("state", currentState);
+        if (intent.hasExtra("pingId")) {
+            // Lets the client match the reply to its ping
+            reply.putExtra("pingId", intent.getIntExtra("pingId", 0));
+        }
+        if (intent.hasExtra("pingerId")) {
+            reply.putExtra("pingerId", intent.getStringExtra("pingerId"));
+        }
 
         if (intent.hasExtra("replyType")) {
             String type = intent.getStringExtra("replyType");
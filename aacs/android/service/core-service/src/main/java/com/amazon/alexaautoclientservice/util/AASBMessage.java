@@ -0,0 +1,321 @@
+/*
+ * Copyright 2020-2021 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.alexaautoclientservice.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.amazon.aacsconstants.AASBConstants;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Header fields and a lazily parsed payload view of an AASB message.
+ *
+ * The message is scanned once to pull out {@code header.id} and the {@code topic}, {@code action} and
+ * {@code replyToId} of {@code header.messageDescription}. The payload is only located during the scan; its
+ * text is extracted when {@link #getPayload()} is first called and it is parsed into a {@link JSONObject} at most
+ * once, when {@link #getPayloadJson()} is first called.
+ */
+public class AASBMessage {
+    private final String mMessage;
+    private String mId = "";
+    private String mTopic;
+    private String mAction;
+    private String mReplyToId = "";
+    private int mPayloadStart = -1;
+    private int mPayloadEnd = -1;
+    private String mPayload;
+    private JSONObject mPayloadJson;
+
+    private AASBMessage(@NonNull String message) {
+        mMessage = message;
+    }
+
+    /**
+     * Scans the header of an AASB message.
+     *
+     * @param message The AASB message
+     * @return The scanned message
+     * @throws JSONException if the message is malformed or does not contain a topic and action
+     */
+    public static AASBMessage parse(@NonNull String message) throws JSONException {
+        AASBMessage aasbMessage = new AASBMessage(message);
+        new Scanner(message, aasbMessage).scanMessage();
+        if (aasbMessage.mTopic == null || aasbMessage.mAction == null) {
+            throw new JSONException("AASB message header is missing topic or action");
+        }
+        return aasbMessage;
+    }
+
+    @NonNull
+    public String getMessage() {
+        return mMessage;
+    }
+
+    @NonNull
+    public String getId() {
+        return mId;
+    }
+
+    @NonNull
+    public String getTopic() {
+        return mTopic;
+    }
+
+    @NonNull
+    public String getAction() {
+        return mAction;
+    }
+
+    @NonNull
+    public String getReplyToId() {
+        return mReplyToId;
+    }
+
+    /**
+     * @return The payload JSON text, or an empty string if the message has no payload.
+     */
+    @NonNull
+    public String getPayload() {
+        if (mPayload == null) {
+            mPayload = mPayloadStart >= 0 ? mMessage.substring(mPayloadStart, mPayloadEnd) : "";
+        }
+        return mPayload;
+    }
+
+    /**
+     * @return The parsed payload, or {@code null} if the message has no payload.
+     * @throws JSONException if the payload is not a JSON object
+     */
+    @Nullable
+    public JSONObject getPayloadJson() throws JSONException {
+        if (mPayloadJson == null && mPayloadStart >= 0) {
+            mPayloadJson = new JSONObject(getPayload());
+        }
+        return mPayloadJson;
+    }
+
+    /**
+     * Minimal single-pass JSON scanner that reads only the string fields of the AASB header and records the
+     * bounds of the payload object. All other values are skipped without being materialized.
+     */
+    private static class Scanner {
+        private final String mText;
+        private final AASBMessage mResult;
+        private int mPos;
+
+        Scanner(String text, AASBMessage result) {
+            mText = text;
+            mResult = result;
+        }
+
+        void scanMessage() throws JSONException {
+            expect('{');
+            if (consumeIf('}')) {
+                return;
+            }
+            do {
+                String key = readString();
+                expect(':');
+                skipWhitespace();
+                if (AASBConstants.HEADER.equals(key) && peek() == '{') {
+                    scanHeader();
+                } else if (AASBConstants.PAYLOAD.equals(key) && peek() == '{') {
+                    mResult.mPayloadStart = mPos;
+                    skipValue();
+                    mResult.mPayloadEnd = mPos;
+                } else if (AASBConstants.PAYLOAD.equals(key) && peek() != 'n') {
+                    throw syntaxError("Payload is not an object");
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+
+        private void scanHeader() throws JSONException {
+            expect('{');
+            if (consumeIf('}')) {
+                return;
+            }
+            do {
+                String key = readString();
+                expect(':');
+                skipWhitespace();
+                if (AASBConstants.ID.equals(key) && peek() == '"') {
+                    mResult.mId = readString();
+                } else if (AASBConstants.MESSAGE_DESCRIPTION.equals(key) && peek() == '{') {
+                    scanMessageDescription();
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+
+        private void scanMessageDescription() throws JSONException {
+            expect('{');
+            if (consumeIf('}')) {
+                return;
+            }
+            do {
+                String key = readString();
+                expect(':');
+                skipWhitespace();
+                if (peek() != '"') {
+                    skipValue();
+                } else if (AASBConstants.TOPIC.equals(key)) {
+                    mResult.mTopic = readString();
+                } else if (AASBConstants.ACTION.equals(key)) {
+                    mResult.mAction = readString();
+                } else if (AASBConstants.REPLY_TO_ID.equals(key)) {
+                    mResult.mReplyToId = readString();
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+
+        private void skipValue() throws JSONException {
+            skipWhitespace();
+            char c = peek();
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                do {
+                    c = next();
+                    if (c == '"') {
+                        mPos--;
+                        skipString();
+                    } else if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+            } else if (c == '"') {
+                skipString();
+            } else {
+                // number, true, false or null
+                while (mPos < mText.length() && ",}] \t\r\n".indexOf(mText.charAt(mPos)) < 0) {
+                    mPos++;
+                }
+            }
+        }
+
+        private void skipString() throws JSONException {
+            expect('"');
+            while (true) {
+                char c = next();
+                if (c == '\\') {
+                    next();
+                } else if (c == '"') {
+                    return;
+                }
+            }
+        }
+
+        private String readString() throws JSONException {
+            expect('"');
+            int start = mPos;
+            StringBuilder builder = null;
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return builder == null ? mText.substring(start, mPos - 1) : builder.toString();
+                }
+                if (c == '\\') {
+                    if (builder == null) {
+                        builder = new StringBuilder(mText.substring(start, mPos - 1));
+                    }
+                    builder.append(readEscape());
+                } else if (builder != null) {
+                    builder.append(c);
+                }
+            }
+        }
+
+        private char readEscape() throws JSONException {
+            char c = next();
+            switch (c) {
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    if (mPos + 4 > mText.length()) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+                    try {
+                        char unicode = (char) Integer.parseInt(mText.substring(mPos, mPos + 4), 16);
+                        mPos += 4;
+                        return unicode;
+                    } catch (NumberFormatException e) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                default:
+                    return c;
+            }
+        }
+
+        private void expect(char expected) throws JSONException {
+            skipWhitespace();
+            if (next() != expected) {
+                throw syntaxError("Expected '" + expected + "'");
+            }
+        }
+
+        private boolean consumeIf(char expected) {
+            skipWhitespace();
+            if (mPos < mText.length() && mText.charAt(mPos) == expected) {
+                mPos++;
+                return true;
+            }
+            return false;
+        }
+
+        private char peek() throws JSONException {
+            if (mPos >= mText.length()) {
+                throw syntaxError("Unexpected end of message");
+            }
+            return mText.charAt(mPos);
+        }
+
+        private char next() throws JSONException {
+            char c = peek();
+            mPos++;
+            return c;
+        }
+
+        private void skipWhitespace() {
+            while (mPos < mText.length() && Character.isWhitespace(mText.charAt(mPos))) {
+                mPos++;
+            }
+        }
+
+        private JSONException syntaxError(String message) {
+            return new JSONException(message + " at character " + mPos);
+        }
+    }
+}
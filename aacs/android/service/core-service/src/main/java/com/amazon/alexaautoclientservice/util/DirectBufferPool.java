@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.alexaautoclientservice.util;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct {@link ByteBuffer}s of one size.
+ *
+ * Direct buffers let audio cross JNI into the Engine streams without a copy, but they are expensive to allocate and
+ * are freed only by the garbage collector, so they are reused across streams instead of being allocated per stream.
+ */
+public class DirectBufferPool {
+    private final int mBufferSize;
+    private final int mMaxPooledBuffers;
+    private final ConcurrentLinkedQueue<ByteBuffer> mBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mPooledCount = new AtomicInteger();
+
+    /**
+     * @param bufferSize Capacity in bytes of the buffers.
+     * @param maxPooledBuffers Maximum number of released buffers kept for reuse.
+     */
+    public DirectBufferPool(int bufferSize, int maxPooledBuffers) {
+        mBufferSize = bufferSize;
+        mMaxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * @return A cleared buffer, taken from the pool if one is available.
+     */
+    @NonNull
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = mBuffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(mBufferSize);
+        }
+        mPooledCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used after it is released.
+     */
+    public void release(@NonNull ByteBuffer buffer) {
+        if (mPooledCount.incrementAndGet() <= mMaxPooledBuffers) {
+            mBuffers.offer(buffer);
+        } else {
+            mPooledCount.decrementAndGet();
+        }
+    }
+}
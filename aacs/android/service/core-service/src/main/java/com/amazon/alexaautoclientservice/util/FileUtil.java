@@ -667,6 +667,21 @@ public class FileUtil {
         }
     }
 
+    /**
+     * @return The topics that have intent targets specified in "aacs.general.intentTargets".
+     */
+    public static List<String> getIntentTargetTopics() {
+        List<String> topics = new ArrayList<>();
+        Object intentTargets = getLeafNodeValueFromJson(mGeneralConfiguration, "intentTargets");
+        if (intentTargets instanceof JSONObject) {
+            Iterator<String> keys = ((JSONObject) intentTargets).keys();
+            while (keys.hasNext()) {
+                topics.add(keys.next());
+            }
+        }
+        return topics;
+    }
+
     public static JSONArray getIntentTargets(@NonNull String topic, @NonNull String target) {
         Object leafNodeValue = getLeafNodeValueFromJson(mGeneralConfiguration, "intentTargets", topic, target);
         if (leafNodeValue instanceof JSONArray) {
@@ -750,6 +765,22 @@ public class FileUtil {
         }
     }
 
+    /**
+     * Gets an integer field of "aacs.general.ipc"
+     * @param field
+     * @param defaultValue Value returned if the field is missing or is not a positive integer
+     * @return
+     */
+    public static int getIPCIntConfig(@NonNull String field, int defaultValue) {
+        Object leafNodeValue = getLeafNodeValueFromJson(mGeneralConfiguration, "ipc", field);
+        if (leafNodeValue instanceof Integer && (int) leafNodeValue > 0) {
+            return (int) leafNodeValue;
+        }
+        Log.w(TAG,
+                String.format("Defaulting to ipc.%s=%d, since it was not specified in config.", field, defaultValue));
+        return defaultValue;
+    }
+
     public static void copyExternalFileToAACS(
             @NonNull Context context, @NonNull Uri fileUri, @NonNull String module, @NonNull String field) {
         // Create copy file in externalFiles directory
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.alexaautoclientservice.util;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.amazon.aace.core.MessageStream;
+import com.amazon.aacsconstants.AACSConstants;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Copies data between AASB {@link MessageStream}s and IPC pipes.
+ *
+ * Fetched streams are read from the {@link MessageStream} in chunks of up to {@code fetchChunkSize} bytes. Pushed
+ * streams are read from the pipe and written to the {@link MessageStream} in whole audio frames of
+ * {@code pushFrameSize} bytes, batching up to {@code pushFramesPerChunk} frames that are already available into a
+ * single write. Chunk buffers are pooled direct buffers, reused across streams. Data moves between the
+ * {@link MessageStream} and the pipe through them without being copied to the Java heap.
+ *
+ * When a {@link MessageStream} has no data to read or does not accept a write, the pump backs off exponentially
+ * instead of spinning, and counts a stall. A pushed chunk is written in full, the pump keeps backing off until the
+ * {@link MessageStream} accepts it, and drops it only when the stream is closed or fails. Audio that is pushed is
+ * never lost to a slow consumer; the sender is slowed down through the pipe instead. Counters for every active stream
+ * are available from {@link #getStats(String)} and are logged when the stream finishes.
+ */
+public class MessageStreamPump {
+    private static final String TAG = AACSConstants.AACS + "-" + MessageStreamPump.class.getSimpleName();
+
+    public static final int DEFAULT_FETCH_CHUNK_SIZE = 4096;
+    // 10 ms of 16 kHz, 16-bit mono PCM
+    public static final int DEFAULT_PUSH_FRAME_SIZE = 320;
+    public static final int DEFAULT_PUSH_FRAMES_PER_CHUNK = 8;
+
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final int mFetchChunkSize;
+    private final int mPushFrameSize;
+    private final int mPushChunkSize;
+    private final DirectBufferPool mFetchBufferPool;
+    private final DirectBufferPool mPushBufferPool;
+    private final ConcurrentHashMap<String, Stats> mActiveStreams = new ConcurrentHashMap<>();
+
+    /**
+     * @param fetchChunkSize Maximum number of bytes read from a fetched {@link MessageStream} at a time.
+     * @param pushFrameSize Size in bytes of an audio frame of a pushed stream.
+     * @param pushFramesPerChunk Maximum number of frames written to a pushed {@link MessageStream} at a time.
+     */
+    public MessageStreamPump(int fetchChunkSize, int pushFrameSize, int pushFramesPerChunk) {
+        if (fetchChunkSize <= 0 || pushFrameSize <= 0 || pushFramesPerChunk <= 0) {
+            throw new IllegalArgumentException("Chunk and frame sizes must be positive");
+        }
+        mFetchChunkSize = fetchChunkSize;
+        mPushFrameSize = pushFrameSize;
+        mPushChunkSize = pushFrameSize * pushFramesPerChunk;
+        mFetchBufferPool = new DirectBufferPool(mFetchChunkSize, MAX_POOLED_BUFFERS);
+        mPushBufferPool = new DirectBufferPool(mPushChunkSize, MAX_POOLED_BUFFERS);
+    }
+
+    /**
+     * Copies a fetched stream to a pipe until the {@link MessageStream} is closed or {@code isActive} returns false.
+     *
+     * @param streamId Id of the stream, used for its counters.
+     * @param source Stream opened in {@link MessageStream.Mode#READ} mode.
+     * @param sink Write end of the pipe.
+     * @param isActive Checked before every read; the copy stops once it returns false.
+     * @throws IOException if writing to the pipe fails.
+     */
+    public void pumpToPipe(@NonNull String streamId, @NonNull MessageStream source, @NonNull OutputStream sink,
+            @NonNull BooleanSupplier isActive) throws IOException {
+        Stats stats = startStream(streamId);
+        ByteBuffer buffer = mFetchBufferPool.acquire();
+        WritableByteChannel channel = getChannel(sink);
+        try {
+            Backoff backoff = new Backoff();
+            while (isActive.getAsBoolean() && !source.isClosed()) {
+                buffer.clear();
+                int size = source.read(buffer);
+                if (size > 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    stats.onChunk(size);
+                    backoff.reset();
+                } else {
+                    if (backoff.isReset()) {
+                        stats.onStall();
+                    }
+                    backoff.pause();
+                }
+            }
+        } finally {
+            mFetchBufferPool.release(buffer);
+            finishStream(streamId, stats);
+        }
+    }
+
+    /**
+     * Copies a pushed stream from a pipe until the pipe reaches end of stream.
+     *
+     * @param streamId Id of the stream, used for its counters.
+     * @param source Read end of the pipe.
+     * @param sink Stream opened in {@link MessageStream.Mode#WRITE} mode.
+     * @throws IOException if reading from the pipe fails.
+     */
+    public void pumpFromPipe(@NonNull String streamId, @NonNull InputStream source, @NonNull MessageStream sink)
+            throws IOException {
+        Stats stats = startStream(streamId);
+        ByteBuffer buffer = mPushBufferPool.acquire();
+        ReadableByteChannel channel = getChannel(source);
+        try {
+            while (channel.read(buffer) >= 0) {
+                int filled = buffer.position();
+                // Only forward whole frames so that a write never splits a sample
+                int writable = filled - filled % mPushFrameSize;
+                if (writable > 0) {
+                    buffer.flip();
+                    buffer.limit(writable);
+                    write(sink, buffer, stats);
+                    // Keep the partial frame at the start of the buffer
+                    buffer.limit(filled);
+                    buffer.position(writable);
+                    buffer.compact();
+                }
+            }
+            if (buffer.position() > 0) {
+                buffer.flip();
+                write(sink, buffer, stats);
+            }
+        } finally {
+            mPushBufferPool.release(buffer);
+            finishStream(streamId, stats);
+        }
+    }
+
+    /**
+     * @param streamId Id of the stream.
+     * @return Counters of the stream, or {@code null} if the stream is not being pumped.
+     */
+    @Nullable
+    public Stats getStats(@NonNull String streamId) {
+        return mActiveStreams.get(streamId);
+    }
+
+    /**
+     * Writes the remaining bytes of {@code buffer} to {@code sink}, waiting for as long as it does not accept them.
+     * The bytes left are dropped if {@code sink} is closed or fails.
+     */
+    private void write(MessageStream sink, ByteBuffer buffer, Stats stats) {
+        Backoff backoff = new Backoff();
+        int length = buffer.remaining();
+        int offset = 0;
+        while (offset < length) {
+            int written = sink.write(buffer);
+            if (written > 0) {
+                offset += written;
+                backoff.reset();
+                continue;
+            }
+            if (written < 0 || sink.isClosed()) {
+                stats.onDropped(length - offset);
+                break;
+            }
+            if (backoff.isReset()) {
+                stats.onStall();
+            }
+            backoff.pause();
+        }
+        if (offset > 0) {
+            stats.onChunk(offset);
+        }
+    }
+
+    private static WritableByteChannel getChannel(OutputStream stream) {
+        // Pipes are file streams, whose channels write a direct buffer without copying it
+        return stream instanceof FileOutputStream ? ((FileOutputStream) stream).getChannel()
+                                                  : Channels.newChannel(stream);
+    }
+
+    private static ReadableByteChannel getChannel(InputStream stream) {
+        return stream instanceof FileInputStream ? ((FileInputStream) stream).getChannel()
+                                                 : Channels.newChannel(stream);
+    }
+
+    private Stats startStream(String streamId) {
+        Stats stats = new Stats();
+        mActiveStreams.put(streamId, stats);
+        return stats;
+    }
+
+    private void finishStream(String streamId, Stats stats) {
+        mActiveStreams.remove(streamId, stats);
+        Log.i(TAG, String.format("Finished pumping stream %s: %s", streamId, stats));
+    }
+
+    /**
+     * Counters of a pumped stream. They are updated only by the thread pumping the stream.
+     */
+    public static class Stats {
+        private final long mStartTimeMs = System.currentTimeMillis();
+        private volatile long mBytes;
+        private volatile long mChunks;
+        private volatile long mStalls;
+        private volatile long mDroppedBytes;
+
+        public long getBytes() {
+            return mBytes;
+        }
+
+        public long getChunks() {
+            return mChunks;
+        }
+
+        /**
+         * @return Number of times the pump had to wait for the {@link MessageStream} to produce or accept data.
+         */
+        public long getStalls() {
+            return mStalls;
+        }
+
+        /**
+         * @return Number of bytes not written because the {@link MessageStream} was closed or failed.
+         */
+        public long getDroppedBytes() {
+            return mDroppedBytes;
+        }
+
+        /**
+         * @return Average throughput since the stream started, in bytes per second.
+         */
+        public long getBytesPerSecond() {
+            long elapsedMs = Math.max(1, System.currentTimeMillis() - mStartTimeMs);
+            return mBytes * 1000 / elapsedMs;
+        }
+
+        private void onChunk(int bytes) {
+            mBytes += bytes;
+            mChunks++;
+        }
+
+        private void onStall() {
+            mStalls++;
+        }
+
+        private void onDropped(int bytes) {
+            mDroppedBytes += bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("bytes=%d, chunks=%d, bytesPerSecond=%d, stalls=%d, droppedBytes=%d", mBytes,
+                    mChunks, getBytesPerSecond(), mStalls, mDroppedBytes);
+        }
+    }
+
+    private static class Backoff {
+        private long mNextPauseNanos = MIN_BACKOFF_NANOS;
+
+        boolean isReset() {
+            return mNextPauseNanos == MIN_BACKOFF_NANOS;
+        }
+
+        void reset() {
+            mNextPauseNanos = MIN_BACKOFF_NANOS;
+        }
+
+        void pause() {
+            LockSupport.parkNanos(mNextPauseNanos);
+            mNextPauseNanos = Math.min(mNextPauseNanos * 2, MAX_BACKOFF_NANOS);
+        }
+    }
+}
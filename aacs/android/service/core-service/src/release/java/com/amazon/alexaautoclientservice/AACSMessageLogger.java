@@ -21,7 +21,22 @@ public class AACSMessageLogger {
     public static final String TO_ENGINE = "TO_ENGINE";
     public static final String FROM_ENGINE = "FROM_ENGINE";
 
-    public void setLogFileLocation(String filePath) {
+    private static AACSMessageLogger sInstance;
+
+    public static synchronized AACSMessageLogger getInstance() {
+        if (sInstance == null) {
+            sInstance = new AACSMessageLogger();
+        }
+        return sInstance;
+    }
+
+    public void start(String fileLocation) {
+        return;
+    }
+    public void stop() {
+        return;
+    }
+    public void dumpLatencyHistograms() {
         return;
     }
     public void buffer(String direction, String topic, String action, String payload, @Nullable String messageId,
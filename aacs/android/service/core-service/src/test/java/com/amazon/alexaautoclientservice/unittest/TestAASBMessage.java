@@ -0,0 +1,64 @@
+package com.amazon.alexaautoclientservice.unittest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.os.Build;
+
+import com.amazon.aacsconstants.Action;
+import com.amazon.aacsconstants.Topic;
+import com.amazon.alexaautoclientservice.util.AASBMessage;
+import com.amazon.alexaautoclientservice.util.AASBUtil;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = {Build.VERSION_CODES.P})
+public class TestAASBMessage {
+    @Test
+    public void testParseHeaderAndPayload() throws Exception {
+        String payload = "{\"channel\":\"AudioPlayer\",\"nested\":{\"text\":\"}\\\"{\"},\"list\":[1,true,null]}";
+        String message = AASBUtil.constructAASBMessage(
+                "replyId", Topic.AUDIO_OUTPUT, Action.AudioOutput.GET_POSITION, payload);
+        String messageId = new JSONObject(message).getJSONObject("header").getString("id");
+
+        AASBMessage aasbMessage = AASBMessage.parse(message);
+
+        assertEquals(messageId, aasbMessage.getId());
+        assertEquals(Topic.AUDIO_OUTPUT, aasbMessage.getTopic());
+        assertEquals(Action.AudioOutput.GET_POSITION, aasbMessage.getAction());
+        assertEquals("replyId", aasbMessage.getReplyToId());
+        assertEquals("AudioPlayer", aasbMessage.getPayloadJson().getString("channel"));
+        assertEquals("}\"{", aasbMessage.getPayloadJson().getJSONObject("nested").getString("text"));
+        assertEquals(new JSONObject(message).getJSONObject("payload").toString(),
+                new JSONObject(aasbMessage.getPayload()).toString());
+    }
+
+    @Test
+    public void testParseWithoutPayload() throws Exception {
+        String message = AASBUtil.constructAASBMessage(
+                "", Topic.SPEECH_RECOGNIZER, Action.SpeechRecognizer.WAKEWORD_DETECTED, "");
+
+        AASBMessage aasbMessage = AASBMessage.parse(message);
+
+        assertEquals(Topic.SPEECH_RECOGNIZER, aasbMessage.getTopic());
+        assertEquals("", aasbMessage.getReplyToId());
+        assertEquals("", aasbMessage.getPayload());
+        assertNull(aasbMessage.getPayloadJson());
+    }
+
+    @Test(expected = JSONException.class)
+    public void testParseMessageWithoutHeader() throws Exception {
+        AASBMessage.parse("{}");
+    }
+
+    @Test(expected = JSONException.class)
+    public void testParseTruncatedMessage() throws Exception {
+        AASBMessage.parse("{\"header\":{\"id\":\"1\",\"messageDescription\":{\"topic\":\"Alerts\"");
+    }
+}
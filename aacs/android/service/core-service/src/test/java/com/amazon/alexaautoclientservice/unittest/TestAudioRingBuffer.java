@@ -0,0 +1,128 @@
+package com.amazon.alexaautoclientservice.unittest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazon.alexaautoclientservice.modules.audioInput.AudioRingBuffer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class TestAudioRingBuffer {
+    private static byte[] sequence(int start, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (start + i);
+        }
+        return data;
+    }
+
+    @Test
+    public void testEveryReaderReceivesAllAudio() {
+        AudioRingBuffer buffer = new AudioRingBuffer(64, 2);
+        AudioRingBuffer.Reader voice = buffer.newReader();
+        AudioRingBuffer.Reader comms = buffer.newReader();
+
+        buffer.write(sequence(0, 40), 0, 40);
+        byte[] voiceData = new byte[40];
+        assertEquals(40, voice.tryRead(voiceData, 0, 40));
+        buffer.write(sequence(40, 20), 0, 20);
+
+        // Wraps around the end of the buffer
+        byte[] commsData = new byte[60];
+        assertEquals(60, comms.tryRead(commsData, 0, 60));
+        assertArrayEquals(sequence(0, 60), commsData);
+        assertArrayEquals(sequence(0, 40), voiceData);
+        assertEquals(20, voice.tryRead(voiceData, 0, 40));
+        assertArrayEquals(sequence(40, 20), Arrays.copyOf(voiceData, 20));
+    }
+
+    @Test
+    public void testSlowReaderOverrunsWithoutAffectingOthers() {
+        AudioRingBuffer buffer = new AudioRingBuffer(64, 2);
+        AudioRingBuffer.Reader fast = buffer.newReader();
+        AudioRingBuffer.Reader slow = buffer.newReader();
+
+        byte[] data = new byte[16];
+        for (int i = 0; i < 10; i++) {
+            buffer.write(sequence(i * 16, 16), 0, 16);
+            assertEquals(16, fast.tryRead(data, 0, 16));
+            assertArrayEquals(sequence(i * 16, 16), data);
+        }
+        assertEquals(0, fast.getOverrunCount());
+
+        byte[] slowData = new byte[64];
+        int size = slow.tryRead(slowData, 0, 64);
+        assertEquals(1, slow.getOverrunCount());
+        assertEquals(160, slow.getOverrunBytes() + size);
+        assertEquals(0, slow.getOverrunBytes() % 2);
+        assertArrayEquals(sequence(160 - size, size), Arrays.copyOf(slowData, size));
+    }
+
+    @Test
+    public void testReaderReadsIntoDirectBuffer() {
+        AudioRingBuffer buffer = new AudioRingBuffer(64, 2);
+        AudioRingBuffer.Reader reader = buffer.newReader();
+        ByteBuffer data = ByteBuffer.allocateDirect(40);
+
+        buffer.write(sequence(0, 50), 0, 50);
+        assertEquals(40, reader.tryRead(data));
+        assertEquals(40, data.position());
+        buffer.write(sequence(50, 20), 0, 20);
+
+        // Wraps around the end of the buffer
+        data.clear();
+        assertEquals(30, reader.tryRead(data));
+        data.flip();
+        byte[] wrapped = new byte[data.remaining()];
+        data.get(wrapped);
+        assertArrayEquals(sequence(40, 30), wrapped);
+    }
+
+    @Test
+    public void testReaderReadsAtArrayOffset() {
+        AudioRingBuffer buffer = new AudioRingBuffer(64, 2);
+        AudioRingBuffer.Reader reader = buffer.newReader();
+        byte[] data = new byte[40];
+
+        buffer.write(sequence(0, 50), 0, 50);
+        assertEquals(40, reader.tryRead(new byte[40], 0, 40));
+        buffer.write(sequence(50, 20), 0, 20);
+
+        // Wraps around the end of the buffer, and leaves the bytes before the offset untouched
+        assertEquals(30, reader.tryRead(data, 10, 30));
+        assertArrayEquals(new byte[10], Arrays.copyOf(data, 10));
+        assertArrayEquals(sequence(40, 30), Arrays.copyOfRange(data, 10, 40));
+    }
+
+    @Test
+    public void testReaderCreatedLaterStartsWithNewAudio() {
+        AudioRingBuffer buffer = new AudioRingBuffer(64, 2);
+        buffer.write(sequence(0, 10), 0, 10);
+        AudioRingBuffer.Reader reader = buffer.newReader();
+
+        byte[] data = new byte[10];
+        assertEquals(0, reader.tryRead(data, 0, 10));
+        buffer.write(sequence(10, 10), 0, 10);
+        assertEquals(10, reader.tryRead(data, 0, 10));
+        assertArrayEquals(sequence(10, 10), data);
+    }
+
+    @Test
+    public void testCloseReleasesWaitingReader() throws Exception {
+        AudioRingBuffer buffer = new AudioRingBuffer(64, 2);
+        AudioRingBuffer.Reader reader = buffer.newReader();
+
+        CompletableFuture<Integer> result =
+                CompletableFuture.supplyAsync(() -> reader.read(new byte[16], 0, 16));
+        reader.close();
+
+        assertEquals(-1, (int) result.get(1, TimeUnit.SECONDS));
+        assertTrue(reader.isClosed());
+    }
+}
@@ -0,0 +1,75 @@
+package com.amazon.alexaautoclientservice.unittest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.os.Build;
+
+import com.amazon.alexaautoclientservice.modules.audioOutput.PlaybackSnapshotCache;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = {Build.VERSION_CODES.P})
+public class TestPlaybackSnapshotCache {
+    private long mNow;
+    private PlaybackSnapshotCache mCache;
+
+    @Before
+    public void setup() {
+        mNow = 10000;
+        mCache = new PlaybackSnapshotCache(() -> mNow);
+    }
+
+    private static JSONObject snapshot(String token, long position, double playbackRate, long timestamp)
+            throws Exception {
+        return new JSONObject()
+                .put("channel", "AudioPlayer")
+                .put("token", token)
+                .put("position", position)
+                .put("playbackRate", playbackRate)
+                .put("timestamp", timestamp)
+                .put("bufferedBytes", 4096);
+    }
+
+    @Test
+    public void testPositionIsExtrapolatedWhilePlaying() throws Exception {
+        mCache.update(snapshot("token1", 5000, 1.0, 10000));
+        mNow = 12500;
+
+        assertEquals(7500L, (long) mCache.getPosition("AudioPlayer", "token1"));
+        assertEquals(4096L, (long) mCache.getBufferedBytes("AudioPlayer", "token1"));
+    }
+
+    @Test
+    public void testPositionIsFixedWhilePaused() throws Exception {
+        mCache.update(snapshot("token1", 5000, 0, 10000));
+        mNow = 60000;
+
+        assertEquals(5000L, (long) mCache.getPosition("AudioPlayer", "token1"));
+    }
+
+    @Test
+    public void testPositionFollowsPlaybackRate() throws Exception {
+        mCache.update(snapshot("token1", 0, 1.5, 10000));
+        mNow = 12000;
+
+        assertEquals(3000L, (long) mCache.getPosition("AudioPlayer", "token1"));
+    }
+
+    @Test
+    public void testNoPositionForOtherMediaOrChannel() throws Exception {
+        mCache.update(snapshot("token1", 5000, 1.0, 10000));
+
+        assertNull(mCache.getPosition("AudioPlayer", "token2"));
+        assertNull(mCache.getPosition("Alerts", "token1"));
+
+        mCache.clear();
+        assertNull(mCache.getPosition("AudioPlayer", "token1"));
+    }
+}
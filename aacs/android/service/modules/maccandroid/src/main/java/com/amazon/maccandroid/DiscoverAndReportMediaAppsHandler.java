@@ -17,8 +17,10 @@ package com.amazon.maccandroid;
 
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
@@ -27,7 +29,6 @@ import androidx.media.MediaBrowserServiceCompat;
 
 import com.amazon.maccandroid.model.APIConstants;
 import com.amazon.maccandroid.model.PackageMetadata;
-import com.amazon.maccandroid.model.errors.CapabilityAgentError;
 import com.amazon.maccandroid.model.players.DiscoveredPlayer;
 
 import org.json.JSONException;
@@ -40,7 +41,11 @@ import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DiscoverAndReportMediaAppsHandler extends Handler {
     private static final String TAG = DiscoverAndReportMediaAppsHandler.class.getSimpleName();
@@ -49,15 +54,19 @@ public class DiscoverAndReportMediaAppsHandler extends Handler {
     public static final int REPORT_DISCOVERED_MEDIA_APPS = 2;
     public static final int WAIT_FOR_AUTHORIZATION = 3;
     public static final int REPORT_AUTHORIZATION_COMPLETE = 4;
+    public static final int DISCOVER_PACKAGE = 5;
+    public static final int REMOVE_PACKAGE = 6;
     public static final String EMP_METADATA_FLAG = "com.amazon.alexa.externalmediaplayer.metadata";
 
     private Context mContext;
     private PackageManager mPackageManager;
+    private PackageMetadataStore mMetadataStore;
 
     DiscoverAndReportMediaAppsHandler(Looper looper, Context context) {
         super(looper);
         mContext = context;
         mPackageManager = context.getPackageManager();
+        mMetadataStore = new PackageMetadataStore(context);
         Log.d(TAG, "DiscoverAndReportMediaAppsHandler constructor called");
     }
 
@@ -72,20 +81,32 @@ public class DiscoverAndReportMediaAppsHandler extends Handler {
                 break;
             }
 
+            case DISCOVER_PACKAGE:
+                Log.i(TAG, "DISCOVER_PACKAGE " + msg.obj);
+                discoverPackage((String) msg.obj);
+                break;
+
+            case REMOVE_PACKAGE:
+                Log.i(TAG, "REMOVE_PACKAGE " + msg.obj);
+                removePackage((String) msg.obj);
+                break;
+
             case REPORT_DISCOVERED_MEDIA_APPS:
                 Log.i(TAG, "REPORT_DISCOVERED_MEDIA_APPS ");
                 Collection<MediaApp> mediaApps = MediaAppsRepository.getInstance().getDiscoveredMediaApps().values();
+                List<MediaApp> unauthorizedApps = new ArrayList<>();
                 for (MediaApp mediaApp : mediaApps) {
                     if (MediaAppsRepository.getInstance().isAuthorizedApp(mediaApp.getLocalPlayerId())) {
                         Log.i(TAG,
                                 "REPORT_DISCOVERED_MEDIA_APPS | appid: " + mediaApp.getLocalPlayerId()
                                         + " is already authorized no need to report again");
-                        mediaApps.remove(mediaApp);
+                        continue;
                     }
                     Log.i(TAG, "REPORT_DISCOVERED_MEDIA_APPS media apps " + mediaApp.getLocalPlayerId());
+                    unauthorizedApps.add(mediaApp);
                 }
                 MediaAppsStateReporter.getInstance().reportDiscoveredPlayers(
-                        DiscoveredPlayer.convertMediaApps(new ArrayList<MediaApp>(mediaApps)));
+                        DiscoveredPlayer.convertMediaApps(unauthorizedApps));
                 break;
             default:
                 break;
@@ -97,7 +118,7 @@ public class DiscoverAndReportMediaAppsHandler extends Handler {
      */
     private void cleanUpRemovedApps() {
         MediaAppsRepository appsRepository = MediaAppsRepository.getInstance();
-        for (MediaApp app : appsRepository.getAuthorizedMediaApps().values()) {
+        for (MediaApp app : new ArrayList<>(appsRepository.getAuthorizedMediaApps().values())) {
             if (!appsRepository.isDiscoveredApp(app.getLocalPlayerId())) {
                 Log.i(TAG,
                         "cleanUpRemovedApps | appId: " + app.getLocalPlayerId()
@@ -108,12 +129,11 @@ public class DiscoverAndReportMediaAppsHandler extends Handler {
     }
 
     /**
-     * Discovers MACC compliant media apps on the system.
+     * Discovers MACC compliant media apps on the system. Apps that were discovered before are kept as they are, and
+     * the metadata of a package is parsed only if the package changed since it was last parsed. Connections to the
+     * apps are not opened here, they are opened the first time a player is targeted.
      */
     public void discoverMediaApps() {
-        // Clear discovered apps so we don't keep apps that could have been uninstalled or changed
-        MediaAppsRepository.getInstance().clearDiscoveredApps();
-
         // Build an Intent that only has the MediaBrowserService action and query
         // the PackageManager for apps that have services registered that can
         // receive it and get the meta data component associated with it
@@ -121,51 +141,143 @@ public class DiscoverAndReportMediaAppsHandler extends Handler {
         final List<ResolveInfo> services =
                 mPackageManager.queryIntentServices(mediaBrowserIntent, PackageManager.GET_META_DATA);
 
-        if (services == null || services.isEmpty())
-            return;
-
-        Log.i(TAG, "services: " + services);
+        Set<String> servicePackages = new HashSet<>();
+        Set<String> discoveredPackages = new HashSet<>();
+        if (services != null) {
+            Log.i(TAG, "services: " + services);
+            for (final ResolveInfo resolveInfo : services) {
+                if (resolveInfo != null && resolveInfo.serviceInfo != null) {
+                    servicePackages.add(resolveInfo.serviceInfo.packageName);
+                }
+                if (discoverService(resolveInfo)) {
+                    discoveredPackages.add(resolveInfo.serviceInfo.packageName);
+                }
+            }
+        }
 
-        for (final ResolveInfo resolveInfo : services) {
-            Log.i(TAG,
-                    "Discovered app: " + resolveInfo.serviceInfo.packageName
-                            + " | meta data: " + resolveInfo.serviceInfo.metaData);
-            if (resolveInfo == null || resolveInfo.serviceInfo == null
-                    || resolveInfo.serviceInfo.applicationInfo == null || resolveInfo.serviceInfo.metaData == null
-                    || !resolveInfo.serviceInfo.metaData.containsKey(EMP_METADATA_FLAG)) {
+        // Drop the apps that were uninstalled or changed so that they are no longer MACC compliant
+        MediaAppsRepository appsRepository = MediaAppsRepository.getInstance();
+        Iterator<Map.Entry<String, MediaApp>> discoveredApps =
+                appsRepository.getDiscoveredMediaApps().entrySet().iterator();
+        while (discoveredApps.hasNext()) {
+            Map.Entry<String, MediaApp> discoveredApp = discoveredApps.next();
+            if (discoveredPackages.contains(discoveredApp.getKey())) {
                 continue;
             }
+            // An authorized app keeps its connection, it is removed when its package is removed
+            if (!appsRepository.isAuthorizedApp(discoveredApp.getKey())) {
+                discoveredApp.getValue().onDestroy();
+            }
+            discoveredApps.remove();
+        }
+        mMetadataStore.retainAll(servicePackages);
+    }
 
-            String packageName = resolveInfo.serviceInfo.packageName;
-            String className = resolveInfo.serviceInfo.name;
-            Log.i(TAG, "App name " + packageName);
+    /**
+     * Discovers the MACC compliant media app of a package that was added or replaced. The package is parsed again
+     * even if its version code did not change.
+     * @param packageName package name
+     */
+    /*package*/ void discoverPackage(String packageName) {
+        mMetadataStore.remove(packageName);
 
-            PackageMetadata appMetaData = getPlayerMetaData(resolveInfo);
-            if (appMetaData == null) {
-                Log.e(TAG, "Something went wrong when parsing meta data");
-                continue;
-            }
-            // if authorized mediaApp already exists, use it. don't create another new one
-            MediaAppsRepository appsRepository = MediaAppsRepository.getInstance();
-            if (appsRepository.isAuthorizedApp(packageName)) {
-                appsRepository.addDiscoveredMediaApp(appsRepository.getAuthorizedMediaApp(packageName));
-            } else {
-                MediaApp mediaApp = MediaApp.create(
-                        mContext, packageName, className, appMetaData.getSpiVersion(), appMetaData.getPlayerCookie());
-                appsRepository.addDiscoveredMediaApp(mediaApp);
-                mediaApp.connect(new MediaAppsConnectionListener() {
-                    @Override
-                    public void onConnectionSuccessful() {
-                        Log.i(TAG, "onConnectionSuccessful");
-                    }
+        final Intent mediaBrowserIntent = new Intent(MediaBrowserServiceCompat.SERVICE_INTERFACE);
+        mediaBrowserIntent.setPackage(packageName);
+        final List<ResolveInfo> services =
+                mPackageManager.queryIntentServices(mediaBrowserIntent, PackageManager.GET_META_DATA);
 
-                    @Override
-                    public void onConnectionFailure(CapabilityAgentError error) {
-                        Log.e(TAG, "onConnectionFailure | " + error.toString());
-                    }
-                });
+        MediaAppsRepository appsRepository = MediaAppsRepository.getInstance();
+        MediaApp previousApp = appsRepository.getDiscoveredMediaApp(packageName);
+        if (previousApp != null && !appsRepository.isAuthorizedApp(packageName)) {
+            // The package was replaced, the app is created again from its new metadata
+            previousApp.onDestroy();
+            appsRepository.getDiscoveredMediaApps().remove(packageName);
+        }
+
+        if (services != null) {
+            for (final ResolveInfo resolveInfo : services) {
+                if (discoverService(resolveInfo)) {
+                    return;
+                }
             }
         }
+        if (appsRepository.isDiscoveredApp(packageName) || appsRepository.isAuthorizedApp(packageName)) {
+            Log.i(TAG, "discoverPackage | " + packageName + " is no longer MACC compliant removing app");
+            removePackage(packageName);
+        }
+    }
+
+    /**
+     * Removes the media app of a package that was uninstalled.
+     * @param packageName package name
+     */
+    /*package*/ void removePackage(String packageName) {
+        mMetadataStore.remove(packageName);
+        MediaAppsRepository appsRepository = MediaAppsRepository.getInstance();
+        if (appsRepository.isDiscoveredApp(packageName) || appsRepository.isAuthorizedApp(packageName)) {
+            appsRepository.removeMediaApp(packageName);
+        }
+    }
+
+    /**
+     * Adds the media app of a MediaBrowserService to the discovered apps if it is MACC compliant.
+     * @param resolveInfo MediaBrowserService
+     * @return true if the app was discovered
+     */
+    private boolean discoverService(ResolveInfo resolveInfo) {
+        if (resolveInfo == null || resolveInfo.serviceInfo == null || resolveInfo.serviceInfo.applicationInfo == null
+                || resolveInfo.serviceInfo.metaData == null
+                || !resolveInfo.serviceInfo.metaData.containsKey(EMP_METADATA_FLAG)) {
+            return false;
+        }
+
+        String packageName = resolveInfo.serviceInfo.packageName;
+        String className = resolveInfo.serviceInfo.name;
+        Log.i(TAG, "Discovered app: " + packageName + " | meta data: " + resolveInfo.serviceInfo.metaData);
+
+        MediaAppsRepository appsRepository = MediaAppsRepository.getInstance();
+        // if authorized mediaApp already exists, use it. don't create another new one
+        if (appsRepository.isAuthorizedApp(packageName)) {
+            appsRepository.addDiscoveredMediaApp(appsRepository.getAuthorizedMediaApp(packageName));
+            return true;
+        }
+
+        PackageInfo packageInfo = null;
+        try {
+            packageInfo = mPackageManager.getPackageInfo(packageName, PackageManager.GET_SIGNATURES);
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.e(TAG, "discoverService | failed to get package info", e);
+        }
+        if (packageInfo == null) {
+            return false;
+        }
+        long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? packageInfo.getLongVersionCode()
+                                                                           : packageInfo.versionCode;
+
+        MediaApp discoveredApp = appsRepository.getDiscoveredMediaApp(packageName);
+        if (discoveredApp != null && mMetadataStore.contains(packageName, versionCode)) {
+            // Discovered already and not changed since
+            return true;
+        }
+
+        PackageMetadata appMetaData;
+        if (mMetadataStore.contains(packageName, versionCode)) {
+            appMetaData = mMetadataStore.get(packageName, versionCode);
+        } else {
+            appMetaData = getPlayerMetaData(resolveInfo);
+            mMetadataStore.put(packageName, versionCode, appMetaData);
+        }
+        if (appMetaData == null) {
+            Log.e(TAG, "Something went wrong when parsing meta data");
+            return false;
+        }
+
+        if (discoveredApp != null) {
+            discoveredApp.onDestroy();
+        }
+        appsRepository.addDiscoveredMediaApp(MediaApp.create(mContext, packageName, packageInfo, className,
+                appMetaData.getSpiVersion(), appMetaData.getPlayerCookie()));
+        return true;
     }
 
     /**
@@ -88,13 +88,30 @@ public class MACCAndroidClient {
     };
 
     /**
-     * Any time a package gets changed or added we want to rescan for MACC compatible apps
+     * Any time a package gets changed, added or removed we want to rescan that package for a MACC compatible app
      */
     BroadcastReceiver mPackageChangedReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            Log.i(TAG, "mPackageChangedReceiver | running discovery");
-            runDiscovery();
+            if (intent == null || intent.getData() == null) {
+                return;
+            }
+            String packageName = intent.getData().getSchemeSpecificPart();
+            if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())) {
+                if (intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+                    // ACTION_PACKAGE_REPLACED follows
+                    return;
+                }
+                Log.i(TAG, "mPackageChangedReceiver | removing package " + packageName);
+                mDiscoverAndReportMediaAppshandler.obtainMessage(
+                        DiscoverAndReportMediaAppsHandler.REMOVE_PACKAGE, packageName).sendToTarget();
+            } else {
+                Log.i(TAG, "mPackageChangedReceiver | discovering package " + packageName);
+                mDiscoverAndReportMediaAppshandler.obtainMessage(
+                        DiscoverAndReportMediaAppsHandler.DISCOVER_PACKAGE, packageName).sendToTarget();
+            }
+            mDiscoverAndReportMediaAppshandler.sendEmptyMessage(
+                    DiscoverAndReportMediaAppsHandler.REPORT_DISCOVERED_MEDIA_APPS);
         }
     };
 
@@ -113,6 +130,16 @@ public class MACCAndroidClient {
                 APIConstants.Permissions.EMP_CONNECT_PERMISSION, null);
     }
 
+    /**
+     * Sets the window within which the player events of a media app are coalesced before they are reported. Media
+     * apps often send several updates within a few milliseconds, when a track changes for example.
+     * @param windowMs window in milliseconds, 0 to report every event immediately
+     */
+    public void setEventCoalescingWindow(long windowMs) {
+        Log.i(TAG, "setEventCoalescingWindow | " + windowMs);
+        MediaAppsStateReporter.getInstance().setEventCoalescingWindow(windowMs);
+    }
+
     public void cleanup() {
         Log.i(TAG, "unregistering mPackageChangedReceiver & mAppInitiatedBroadcastReceiver");
         try {
@@ -134,7 +161,8 @@ public class MACCAndroidClient {
     }
 
     /**
-     * runs a single instance of the discovery scan, usually good to run at startup
+     * runs a single instance of the discovery scan, usually good to run at startup. After that, packages are
+     * discovered again when they are added, replaced or removed
      */
     public void initAndRunDiscovery() {
         runDiscovery();
@@ -180,9 +208,7 @@ public class MACCAndroidClient {
             return null;
         }
         Log.i(TAG, "getState | playerId:" + playerId);
-        ExternalMediaPlayerState state = new ExternalMediaPlayerState(
-                MediaAppsRepository.getInstance().getAuthorizedMediaApp(playerId), mSupportedOperations);
-        return state;
+        return MediaAppsRepository.getInstance().getAuthorizedMediaApp(playerId).getState(mSupportedOperations);
     }
 
     /**
@@ -24,6 +24,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.RemoteException;
 import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.RatingCompat;
 import android.support.v4.media.session.MediaControllerCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
@@ -31,12 +32,15 @@ import android.util.Base64;
 
 import com.amazon.maccandroid.model.APIConstants;
 import com.amazon.maccandroid.model.PlayerPlaybackInfo;
+import com.amazon.maccandroid.model.SupportedOperations;
 import com.amazon.maccandroid.model.errors.CapabilityAgentError;
+import com.amazon.maccandroid.model.state.ExternalMediaPlayerState;
 import com.amazon.maccandroid.model.state.MediaAppPlaybackState;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
     private static final long MEDIA_SESSION_CONNECTION_TIMEOUT = 3000;
@@ -62,12 +66,26 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
     private MediaControllerCompat mMediaController;
     private MediaAppsConnectionListener mMediaAppsConnectionListener;
     private boolean mSessionReady = false;
+    private int mRatingType = RatingCompat.RATING_NONE;
+
+    // Incremented after every change of the state reported to the engine
+    private final AtomicLong mStateVersion = new AtomicLong();
+    private volatile ExternalMediaPlayerState mState;
 
     public static MediaApp create(
             Context context, String packageName, String className, String spiVersion, String playerCookie) {
         return new MediaApp(context, packageName, className, spiVersion, playerCookie);
     }
 
+    /**
+     * Creates the MediaApp of a package whose signatures were already queried.
+     * @param packageInfo package info queried with {@link PackageManager#GET_SIGNATURES}
+     */
+    public static MediaApp create(Context context, String packageName, PackageInfo packageInfo, String className,
+            String spiVersion, String playerCookie) {
+        return new MediaApp(context, packageName, packageInfo, className, spiVersion, playerCookie);
+    }
+
     // package private for testing
     /*package*/ MediaApp(
             Context context, String packageName, String className, String spiVersion, String playerCookie) {
@@ -79,21 +97,36 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
         initValidationData(context);
     }
 
+    private MediaApp(Context context, String packageName, PackageInfo packageInfo, String className,
+            String spiVersion, String playerCookie) {
+        mContext = context;
+        mLocalPlayerId = packageName;
+        mClassName = className;
+        mSpiVersion = spiVersion;
+        mPlayerCookie = playerCookie;
+        initValidationData(packageInfo);
+    }
+
     // Package private for testing
     /*package*/ void initValidationData(Context context) {
+        validationData = new ArrayList<>();
         try {
-            validationData = new ArrayList<>();
             PackageInfo packageInfo =
                     context.getPackageManager().getPackageInfo(mLocalPlayerId, PackageManager.GET_SIGNATURES);
-            for (Signature signature : packageInfo.signatures) {
-                validationData.add(Base64.encodeToString(signature.toByteArray(), Base64.NO_WRAP));
-            }
-            validationMethod = VALIDATION_METHOD_SIGNING;
+            initValidationData(packageInfo);
         } catch (PackageManager.NameNotFoundException e) {
             Log.e(TAG, "failed init data validation", e);
         }
     }
 
+    private void initValidationData(PackageInfo packageInfo) {
+        validationData = new ArrayList<>();
+        for (Signature signature : packageInfo.signatures) {
+            validationData.add(Base64.encodeToString(signature.toByteArray(), Base64.NO_WRAP));
+        }
+        validationMethod = VALIDATION_METHOD_SIGNING;
+    }
+
     /**
      * Connect to the MediaBrowserService of the MediaApp. We don't want to do this immediately as
      * it means maintaining unnecessary connections. We should only connect when there is an alexa
@@ -127,6 +160,8 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
         MediaSessionCompat.Token token = mMediaBrowser.getSessionToken();
         try {
             mMediaController = new MediaControllerCompat(mContext, token);
+            // The rating type of a session does not change, so it is queried only once
+            mRatingType = mMediaController.getRatingType();
             Bundle extras = mMediaController.getExtras();
             if (extras != null) {
                 if (extras.containsKey(APIConstants.ExtrasKeys.SPI_VERSION_KEY)) {
@@ -140,6 +175,7 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
                 Log.e(TAG, "MediaControllerCompat extras is null");
 
             mSessionReady = true; // mMediaController.isSessionReady();
+            onStateChanged();
 
             if (mMediaAppsConnectionListener != null) {
                 mMediaAppsConnectionListener.onConnectionSuccessful();
@@ -199,6 +235,7 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
                     mMediaController.unregisterCallback(mMediaControllerCallback);
                 }
                 mMediaController = null;
+                onStateChanged();
             }
         }, MEDIA_SESSION_CONNECTION_TIMEOUT);
     }
@@ -258,10 +295,12 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
 
     public void setSpiVersion(String mSpiVersion) {
         this.mSpiVersion = mSpiVersion;
+        onStateChanged();
     }
 
     public void setPlayerCookie(String mPlayerCookie) {
         this.mPlayerCookie = mPlayerCookie;
+        onStateChanged();
     }
 
     public PlayerPlaybackInfo getPlayerPlaybackInfo() {
@@ -270,6 +309,7 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
 
     public void setPlayerPlaybackInfo(PlayerPlaybackInfo playerPlaybackInfo) {
         mPlayerPlaybackInfo = playerPlaybackInfo;
+        onStateChanged();
     }
 
     public void setSkillToken(String skillToken) {
@@ -282,6 +322,7 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
 
     public void setSessionReady(boolean initalized) {
         mSessionReady = initalized;
+        onStateChanged();
         if (initalized) {
             refreshPlaybackState();
         }
@@ -299,6 +340,33 @@ public class MediaApp extends MediaBrowserCompat.ConnectionCallback {
         return mPlayerCookie;
     }
 
+    /**
+     * @return the rating type of the media session, {@link RatingCompat#RATING_NONE} until it is connected
+     */
+    public int getRatingType() {
+        return mRatingType;
+    }
+
+    /**
+     * Returns the state of the app reported to the engine. The state is built again only after it changed, so the
+     * same immutable instance is returned to every request until the media session reports a change.
+     * @param supportedOperations supported operations of the client
+     */
+    public ExternalMediaPlayerState getState(SupportedOperations supportedOperations) {
+        // Read the version first, so a change made while the state is built makes the next request build it again
+        long version = mStateVersion.get();
+        ExternalMediaPlayerState state = mState;
+        if (state == null || state.getVersion() != version) {
+            state = new ExternalMediaPlayerState(this, supportedOperations, version);
+            mState = state;
+        }
+        return state;
+    }
+
+    private void onStateChanged() {
+        mStateVersion.incrementAndGet();
+    }
+
     public void resetUnauthorizedReported() {
         if (mMediaControllerCallback != null)
             mMediaControllerCallback.resetUnauthorizedReported();
@@ -437,8 +437,11 @@ public class MediaAppsDirectivesHandler implements MediaAppsConnectionListener {
                     if ((MediaAppsRepository.getInstance().getAuthorizedMediaApp(player.getLocalPlayerId()) == null)) {
                         MediaAppsRepository.getInstance().addAuthorizedMediaApp(app);
                         // Now that app is authorized, send up any playbackstate events necessary
-                        // for the cloud
-                        app.refreshPlaybackState();
+                        // for the cloud. Apps are connected the first time they are targeted, an app
+                        // that is not connected yet sends its state when it connects.
+                        if (app.getMediaController() != null) {
+                            app.refreshPlaybackState();
+                        }
                     }
                 } else {
                     Log.i(TAG, "Player " + player.getLocalPlayerId() + " was not authorized");
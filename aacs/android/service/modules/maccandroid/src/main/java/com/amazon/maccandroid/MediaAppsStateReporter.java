@@ -26,8 +26,12 @@ import java.util.UUID;
 public class MediaAppsStateReporter {
     private static final String TAG = MediaAppsStateReporter.class.getSimpleName();
 
+    // Player events reported within this window are coalesced, see PlayerEventCoalescer
+    static final long DEFAULT_EVENT_COALESCING_WINDOW_MS = 100;
+
     private static MediaAppsStateReporter sInstance;
     private MACCAndroidClient mMACCAndroidClient;
+    private volatile long mEventCoalescingWindowMs = DEFAULT_EVENT_COALESCING_WINDOW_MS;
 
     private MediaAppsStateReporter() {}
 
@@ -42,6 +46,18 @@ public class MediaAppsStateReporter {
         mMACCAndroidClient = maccAndroidClient;
     }
 
+    /**
+     * Sets the window within which the player events of a media app are coalesced before they are reported.
+     * @param windowMs window in milliseconds, 0 to report every event immediately
+     */
+    void setEventCoalescingWindow(long windowMs) {
+        mEventCoalescingWindowMs = Math.max(0, windowMs);
+    }
+
+    long getEventCoalescingWindow() {
+        return mEventCoalescingWindowMs;
+    }
+
     void reportError(String playerId, CapabilityAgentError error) {
         if (!isInitalized()) {
             Log.e(TAG, "not initialized: " + playerId);
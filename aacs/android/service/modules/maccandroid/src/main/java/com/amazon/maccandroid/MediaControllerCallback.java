@@ -39,12 +39,14 @@ public class MediaControllerCallback extends MediaControllerCompat.Callback {
     private PlaybackStateCompat mPrevState;
     private MediaApp mMediaApp;
     private Set<PlayerEvents> mEventsToSendQueue;
+    private final PlayerEventCoalescer mEventCoalescer;
     private boolean mReportUnauthorized = false;
 
     MediaControllerCallback(String packageName, MediaApp mediaApp) {
         mMediaAppPackageName = packageName;
         mMediaApp = mediaApp;
         mEventsToSendQueue = new HashSet<>();
+        mEventCoalescer = new PlayerEventCoalescer(mediaApp.getLocalPlayerId());
     }
 
     //    @Override
@@ -56,6 +58,7 @@ public class MediaControllerCallback extends MediaControllerCompat.Callback {
     @Override
     public void onSessionDestroyed() {
         super.onSessionDestroyed();
+        mEventCoalescer.flush();
         MediaAppsRepository.getInstance().removeMediaApp(mMediaAppPackageName);
     }
 
@@ -149,7 +152,7 @@ public class MediaControllerCallback extends MediaControllerCompat.Callback {
 
         mPrevState = state;
         if (!mEventsToSendQueue.isEmpty() && MediaAppsRepository.getInstance().isAuthorizedApp(mMediaAppPackageName)) {
-            MediaAppsStateReporter.getInstance().reportPlayerEvent(mMediaApp.getLocalPlayerId(), mEventsToSendQueue);
+            mEventCoalescer.add(mEventsToSendQueue);
             mEventsToSendQueue.clear();
         }
     }
@@ -216,6 +219,8 @@ public class MediaControllerCallback extends MediaControllerCompat.Callback {
     }
 
     private void reportErrorEvent(MediaAppPlayerError error) {
+        // Report the events that happened before the error first
+        mEventCoalescer.flush();
         MediaAppsStateReporter.getInstance().reportError(mMediaApp.getLocalPlayerId(), error);
     }
 
@@ -253,9 +258,7 @@ public class MediaControllerCallback extends MediaControllerCompat.Callback {
                                                 .metadata(metadata)
                                                 .build());
 
-        if (!eventsToSend.isEmpty()) {
-            MediaAppsStateReporter.getInstance().reportPlayerEvent(mMediaApp.getLocalPlayerId(), eventsToSend);
-        }
+        mEventCoalescer.add(eventsToSend);
     }
 
     @Override
@@ -299,7 +302,7 @@ public class MediaControllerCallback extends MediaControllerCompat.Callback {
     private void sendPlayModeChanged() {
         final Set<PlayerEvents> eventsToSend = new HashSet<>();
         eventsToSend.add(PlayerEvents.PlayModeChanged);
-        MediaAppsStateReporter.getInstance().reportPlayerEvent(mMediaApp.getLocalPlayerId(), eventsToSend);
+        mEventCoalescer.add(eventsToSend);
     }
 
     // allow unauthorized to be reported again.
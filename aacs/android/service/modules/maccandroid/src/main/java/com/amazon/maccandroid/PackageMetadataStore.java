@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.maccandroid;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.amazon.maccandroid.model.PackageMetadata;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persists the MACC metadata parsed from media app packages, keyed by package name and version code, so that the
+ * metadata resource of a package is opened and parsed again only when the package changes. Packages whose metadata
+ * could not be parsed are remembered too, with a null metadata, so that they are not parsed again on every discovery.
+ */
+public class PackageMetadataStore {
+    private static final String TAG = PackageMetadataStore.class.getSimpleName();
+
+    private static final String PREFERENCES_NAME = "com.amazon.maccandroid.packageMetadata";
+    private static final String VERSION_CODE_KEY = "versionCode";
+    private static final String SPI_VERSION_KEY = "spiVersion";
+    private static final String PLAYER_COOKIE_KEY = "playerCookie";
+
+    private final Context mContext;
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private SharedPreferences mPreferences;
+    private boolean mLoaded = false;
+
+    private static class Entry {
+        final long mVersionCode;
+        final PackageMetadata mMetadata;
+
+        Entry(long versionCode, PackageMetadata metadata) {
+            mVersionCode = versionCode;
+            mMetadata = metadata;
+        }
+    }
+
+    PackageMetadataStore(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @param packageName package name
+     * @param versionCode version code of the installed package
+     * @return true if the package was parsed at this version code
+     */
+    boolean contains(String packageName, long versionCode) {
+        Entry entry = getEntries().get(packageName);
+        return entry != null && entry.mVersionCode == versionCode;
+    }
+
+    /**
+     * @return the metadata parsed from the package at this version code, or null if it is not stored or could not be
+     * parsed
+     */
+    PackageMetadata get(String packageName, long versionCode) {
+        Entry entry = getEntries().get(packageName);
+        return entry != null && entry.mVersionCode == versionCode ? entry.mMetadata : null;
+    }
+
+    /**
+     * Stores the metadata parsed from a package, null if it could not be parsed.
+     */
+    void put(String packageName, long versionCode, PackageMetadata metadata) {
+        getEntries().put(packageName, new Entry(versionCode, metadata));
+        if (mPreferences == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject();
+            json.put(VERSION_CODE_KEY, versionCode);
+            if (metadata != null) {
+                json.put(SPI_VERSION_KEY, metadata.getSpiVersion());
+                json.putOpt(PLAYER_COOKIE_KEY, metadata.getPlayerCookie());
+            }
+            mPreferences.edit().putString(packageName, json.toString()).apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "put | failed to store metadata of " + packageName, e);
+        }
+    }
+
+    void remove(String packageName) {
+        getEntries().remove(packageName);
+        if (mPreferences != null) {
+            mPreferences.edit().remove(packageName).apply();
+        }
+    }
+
+    /**
+     * Keeps only the packages that are still installed.
+     */
+    void retainAll(Collection<String> packageNames) {
+        for (String packageName : new ArrayList<>(getEntries().keySet())) {
+            if (!packageNames.contains(packageName)) {
+                remove(packageName);
+            }
+        }
+    }
+
+    private Map<String, Entry> getEntries() {
+        if (mLoaded) {
+            return mEntries;
+        }
+        mLoaded = true;
+        mPreferences = mContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (mPreferences == null) {
+            return mEntries;
+        }
+        for (Map.Entry<String, ?> stored : mPreferences.getAll().entrySet()) {
+            try {
+                JSONObject json = new JSONObject((String) stored.getValue());
+                PackageMetadata metadata = json.has(SPI_VERSION_KEY)
+                        ? new PackageMetadata(json.getString(SPI_VERSION_KEY), json.optString(PLAYER_COOKIE_KEY, null))
+                        : null;
+                mEntries.put(stored.getKey(), new Entry(json.getLong(VERSION_CODE_KEY), metadata));
+            } catch (JSONException | ClassCastException e) {
+                Log.w(TAG, "getEntries | dropping invalid metadata of " + stored.getKey());
+            }
+        }
+        Log.i(TAG, "getEntries | loaded metadata of " + mEntries.size() + " packages");
+        return mEntries;
+    }
+}
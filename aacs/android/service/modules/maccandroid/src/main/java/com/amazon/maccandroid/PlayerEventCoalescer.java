@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *     http://aws.amazon.com/apache2.0/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.maccandroid;
+
+import android.os.Handler;
+
+import com.amazon.maccandroid.model.PlayerEvents;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Coalesces the player events of a media app before they are reported, see
+ * {@link MediaAppsStateReporter#setEventCoalescingWindow(long)}.
+ *
+ * Media apps often update their playback state and metadata several times within a few milliseconds, when a track
+ * changes for example. The events reported within the window are merged into as few event sets as possible, and an
+ * event already pending is dropped. {@link PlayerEvents#TrackChanged} and {@link PlayerEvents#PlayModeChanged} only
+ * tell that the state of the player should be read again, so they merge into any pending set. The other events are
+ * state transitions: a set with different transitions than the last pending one is reported after it, so transitions
+ * are always reported in the order they happened. The events are reported at most one window after the first of them.
+ */
+class PlayerEventCoalescer {
+    private static final String TAG = PlayerEventCoalescer.class.getSimpleName();
+
+    // Events that only ask for the state of the player to be read again
+    private static final Set<PlayerEvents> REFRESH_EVENTS =
+            EnumSet.of(PlayerEvents.TrackChanged, PlayerEvents.PlayModeChanged);
+
+    private final String mPlayerId;
+    private final Handler mHandler = new Handler();
+    private final Runnable mFlushRunnable = this::flush;
+    // Event sets to report, in order
+    private final List<Set<PlayerEvents>> mPendingEvents = new ArrayList<>();
+    private long mMergedEventSetCount;
+    private long mDroppedEventCount;
+
+    PlayerEventCoalescer(String playerId) {
+        mPlayerId = playerId;
+    }
+
+    /**
+     * Reports events, once the window of the events pending before them ends.
+     */
+    void add(Set<PlayerEvents> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long windowMs = MediaAppsStateReporter.getInstance().getEventCoalescingWindow();
+        if (windowMs <= 0 && mPendingEvents.isEmpty()) {
+            MediaAppsStateReporter.getInstance().reportPlayerEvent(mPlayerId, EnumSet.copyOf(events));
+            return;
+        }
+        Set<PlayerEvents> lastEvents = mPendingEvents.isEmpty() ? null : mPendingEvents.get(mPendingEvents.size() - 1);
+        if (lastEvents == null || !canMerge(lastEvents, events)) {
+            mPendingEvents.add(EnumSet.copyOf(events));
+            if (mPendingEvents.size() == 1) {
+                mHandler.postDelayed(mFlushRunnable, windowMs);
+            }
+            return;
+        }
+        for (PlayerEvents event : events) {
+            if (!lastEvents.add(event)) {
+                mDroppedEventCount++;
+            }
+        }
+        mMergedEventSetCount++;
+    }
+
+    /**
+     * Reports the pending events now, before an error for example, so that they are not reported after it.
+     */
+    void flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        if (mPendingEvents.isEmpty()) {
+            return;
+        }
+        List<Set<PlayerEvents>> pendingEvents = new ArrayList<>(mPendingEvents);
+        mPendingEvents.clear();
+        Log.d(TAG,
+                "flush | " + mPlayerId + " reporting " + pendingEvents.size() + " event sets, merged "
+                        + mMergedEventSetCount + " dropped " + mDroppedEventCount + " so far");
+        for (Set<PlayerEvents> events : pendingEvents) {
+            MediaAppsStateReporter.getInstance().reportPlayerEvent(mPlayerId, events);
+        }
+    }
+
+    /**
+     * @return the number of event sets merged into a pending set
+     */
+    long getMergedEventSetCount() {
+        return mMergedEventSetCount;
+    }
+
+    /**
+     * @return the number of events dropped because they were already pending
+     */
+    long getDroppedEventCount() {
+        return mDroppedEventCount;
+    }
+
+    private static boolean canMerge(Set<PlayerEvents> pendingEvents, Set<PlayerEvents> events) {
+        Set<PlayerEvents> pendingTransitions = getTransitions(pendingEvents);
+        Set<PlayerEvents> transitions = getTransitions(events);
+        return pendingTransitions.isEmpty() || transitions.isEmpty() || pendingTransitions.equals(transitions);
+    }
+
+    private static Set<PlayerEvents> getTransitions(Set<PlayerEvents> events) {
+        Set<PlayerEvents> transitions = EnumSet.noneOf(PlayerEvents.class);
+        for (PlayerEvents event : events) {
+            if (!REFRESH_EVENTS.contains(event)) {
+                transitions.add(event);
+            }
+        }
+        return transitions;
+    }
+}
@@ -82,7 +82,7 @@ public class SupportedOperations {
             operations.add(PLAY_CONTROL_FASTFORWARD);
         }
         if ((actions & PlaybackStateCompat.ACTION_SET_RATING) != 0
-                && app.getMediaController().getRatingType() == Rating.RATING_THUMB_UP_DOWN) {
+                && app.getRatingType() == Rating.RATING_THUMB_UP_DOWN) {
             operations.add(PLAY_CONTROL_FAVORITE);
             operations.add(PLAY_CONTROL_UNFAVORITE);
         }
@@ -20,10 +20,26 @@ import com.amazon.maccandroid.model.SupportedOperations;
 public class ExternalMediaPlayerState {
     private final MediaAppPlaybackState mMediaAppPlaybackState;
     private final MediaAppSessionState mMediaAppSessionState;
+    private final long mVersion;
 
     public ExternalMediaPlayerState(MediaApp app, SupportedOperations supportedOperations) {
+        this(app, supportedOperations, 0);
+    }
+
+    /**
+     * @param version version of the state of the app the state is built from, see {@link MediaApp#getState}
+     */
+    public ExternalMediaPlayerState(MediaApp app, SupportedOperations supportedOperations, long version) {
         mMediaAppPlaybackState = new MediaAppPlaybackState(app, supportedOperations);
         mMediaAppSessionState = new MediaAppSessionState(app);
+        mVersion = version;
+    }
+
+    /**
+     * @return the version of the state, that changes whenever the state of the app changes
+     */
+    public long getVersion() {
+        return mVersion;
     }
 
     public MediaAppPlaybackState getMediaAppPlaybackState() {
@@ -33,7 +33,10 @@ public class MediaAppPlaybackState {
 
     private final Set<String> mSupportedOperations;
     private final PlayBackStateFields.State mPlaybackState;
+    // Position reported by the session, extrapolated when it is read
     private final long mPositionMilliseconds;
+    private final float mPlaybackSpeed;
+    private final long mLastPositionUpdateTime;
     private final PlayBackStateFields.shuffle mShuffleMode;
     private final PlayBackStateFields.repeat mRepeatMode;
     private final PlayBackStateFields.favorite mFavourite;
@@ -46,6 +49,8 @@ public class MediaAppPlaybackState {
             mSupportedOperations = new HashSet<>(0);
             mPlaybackState = null;
             mPositionMilliseconds = 0;
+            mPlaybackSpeed = 0;
+            mLastPositionUpdateTime = 0;
             mShuffleMode = null;
             mRepeatMode = null;
             mFavourite = null;
@@ -56,7 +61,9 @@ public class MediaAppPlaybackState {
 
         mPlaybackState = getExternalMediaPlayerState(app.getPlayerPlaybackInfo().getPlaybackState().getState());
         mSupportedOperations = supportedOperations.getSupportedOperations(app);
-        mPositionMilliseconds = getPositionMilliseconds(playBackState);
+        mPositionMilliseconds = playBackState.getPosition();
+        mPlaybackSpeed = playBackState.getPlaybackSpeed();
+        mLastPositionUpdateTime = playBackState.getLastPositionUpdateTime();
         mShuffleMode = getShuffleEnabled(app.getPlayerPlaybackInfo().getShuffleMode());
         mRepeatMode = getRepeatEnabled(app.getPlayerPlaybackInfo().getRepeatMode());
         mFavourite = getFavorite(app.getPlayerPlaybackInfo().getMetadata());
@@ -103,15 +110,6 @@ public class MediaAppPlaybackState {
         }
     }
 
-    private long getPositionMilliseconds(PlaybackStateCompat playbackState) {
-        if (playbackState.getLastPositionUpdateTime() > 0) {
-            return (long) (playbackState.getPosition()
-                    + playbackState.getPlaybackSpeed()
-                            * (SystemClock.elapsedRealtime() - playbackState.getLastPositionUpdateTime()));
-        }
-        return 0;
-    }
-
     private PlayBackStateFields.State getExternalMediaPlayerState(int state) {
         switch (state) {
             case PlaybackStateCompat.STATE_NONE:
@@ -140,8 +138,23 @@ public class MediaAppPlaybackState {
         return mPlaybackState;
     }
 
+    /**
+     * @return the current position, extrapolated from the position last reported by the session and its playback
+     * speed
+     */
     public long getPositionMilliseconds() {
-        return mPositionMilliseconds;
+        if (mLastPositionUpdateTime > 0) {
+            return (long) (mPositionMilliseconds
+                    + mPlaybackSpeed * (SystemClock.elapsedRealtime() - mLastPositionUpdateTime));
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the position changes with time, that is if the session is playing at a non-zero speed
+     */
+    public boolean isPositionAdvancing() {
+        return mLastPositionUpdateTime > 0 && mPlaybackSpeed != 0;
     }
 
     public PlayBackStateFields.shuffle isShuffleEnabled() {
@@ -176,7 +189,10 @@ public class MediaAppPlaybackState {
             return false;
         }
 
-        if (!(mPositionMilliseconds == otherPlayBackState.mPositionMilliseconds)) {
+        // Compare the reported position rather than the extrapolated one, which depends on when it is read
+        if (mPositionMilliseconds != otherPlayBackState.mPositionMilliseconds
+                || Float.compare(mPlaybackSpeed, otherPlayBackState.mPlaybackSpeed) != 0
+                || mLastPositionUpdateTime != otherPlayBackState.mLastPositionUpdateTime) {
             return false;
         }
 
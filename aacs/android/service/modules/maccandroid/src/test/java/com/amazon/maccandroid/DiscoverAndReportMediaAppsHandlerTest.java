@@ -1,6 +1,8 @@
 package com.amazon.maccandroid;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import android.content.Context;
 import android.content.Intent;
@@ -40,6 +42,7 @@ public class DiscoverAndReportMediaAppsHandlerTest {
     private List<ResolveInfo> mMockResolveInfo;
     private Bundle mMetaDataBundle;
     private PackageInfo mMockPackageInfo;
+    private int mParsedMetaDataCount;
 
     @Before
     public void setUp() throws Exception {
@@ -50,6 +53,7 @@ public class DiscoverAndReportMediaAppsHandlerTest {
         mClassToTest = new DiscoverAndReportMediaAppsHandler(Looper.getMainLooper(), mMockContext) {
             @Override
             PackageMetadata getPlayerMetaData(ResolveInfo resolveInfo) {
+                mParsedMetaDataCount++;
                 return new PackageMetadata("testSpiVersion", null);
             }
         };
@@ -76,7 +80,9 @@ public class DiscoverAndReportMediaAppsHandlerTest {
     }
 
     @After
-    public void tearDown() throws Exception {}
+    public void tearDown() throws Exception {
+        MediaAppsRepository.getInstance().clearDiscoveredApps();
+    }
 
     @Test
     public void handleMessage() {}
@@ -89,4 +95,42 @@ public class DiscoverAndReportMediaAppsHandlerTest {
         assertEquals(COM_AMAZON_TEST_MACC_APP,
                 MediaAppsRepository.getInstance().getDiscoveredMediaApp(COM_AMAZON_TEST_MACC_APP).getLocalPlayerId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void discoverMediaAppsParsesUnchangedPackagesOnce() {
+        Mockito.when(mMockPackageManager.queryIntentServices(Mockito.any(Intent.class), Mockito.anyInt()))
+                .thenReturn(mMockResolveInfo);
+        mClassToTest.discoverMediaApps();
+        MediaApp mediaApp = MediaAppsRepository.getInstance().getDiscoveredMediaApp(COM_AMAZON_TEST_MACC_APP);
+        mClassToTest.discoverMediaApps();
+        assertEquals(1, mParsedMetaDataCount);
+        assertSame(mediaApp, MediaAppsRepository.getInstance().getDiscoveredMediaApp(COM_AMAZON_TEST_MACC_APP));
+
+        mMockPackageInfo.versionCode = 2;
+        mClassToTest.discoverMediaApps();
+        assertEquals(2, mParsedMetaDataCount);
+    }
+
+    @Test
+    public void discoverPackageReparsesReplacedPackage() {
+        Mockito.when(mMockPackageManager.queryIntentServices(Mockito.any(Intent.class), Mockito.anyInt()))
+                .thenReturn(mMockResolveInfo);
+        mClassToTest.discoverMediaApps();
+        mClassToTest.discoverPackage(COM_AMAZON_TEST_MACC_APP);
+        assertEquals(2, mParsedMetaDataCount);
+        assertEquals(COM_AMAZON_TEST_MACC_APP,
+                MediaAppsRepository.getInstance().getDiscoveredMediaApp(COM_AMAZON_TEST_MACC_APP).getLocalPlayerId());
+    }
+
+    @Test
+    public void removePackage() {
+        Mockito.when(mMockPackageManager.queryIntentServices(Mockito.any(Intent.class), Mockito.anyInt()))
+                .thenReturn(mMockResolveInfo);
+        MACCAndroidClient mockClient = Mockito.mock(MACCAndroidClient.class);
+        MediaAppsStateReporter.getInstance().initalize(mockClient);
+        mClassToTest.discoverMediaApps();
+        mClassToTest.removePackage(COM_AMAZON_TEST_MACC_APP);
+        Mockito.verify(mockClient).reportRemovedApp(COM_AMAZON_TEST_MACC_APP);
+        assertFalse(MediaAppsRepository.getInstance().isDiscoveredApp(COM_AMAZON_TEST_MACC_APP));
+    }
+}
@@ -7,7 +7,9 @@ import android.drm.DrmStore;
 import android.support.v4.media.session.PlaybackStateCompat;
 
 import com.amazon.maccandroid.model.PlayerEvents;
+import com.amazon.maccandroid.model.SupportedOperations;
 import com.amazon.maccandroid.model.errors.MediaAppPlayerError;
+import com.amazon.maccandroid.model.state.ExternalMediaPlayerState;
 
 import org.junit.After;
 import org.junit.Before;
@@ -268,4 +270,22 @@ public class MediaControllerCallbackTest {
         Mockito.verify(mMockMediaAppsStateReporter)
                 .reportError(Mockito.eq(TEST_PACKAGE_NAME), Mockito.eq(MediaAppPlayerError.UNKNOWN_ERROR));
     }
+
+    @Test
+    public void testStateIsBuiltOnlyAfterChange() {
+        SupportedOperations supportedOperations = new SupportedOperations();
+        mClassUnderTest.onPlaybackStateChanged(mPlayingPlaybackState);
+        ExternalMediaPlayerState state = mMediaApp.getState(supportedOperations);
+        assertSame(state, mMediaApp.getState(supportedOperations));
+
+        mClassUnderTest.onPlaybackStateChanged(mPausedPlaybackState);
+        ExternalMediaPlayerState pausedState = mMediaApp.getState(supportedOperations);
+        assertNotSame(state, pausedState);
+        assertTrue(pausedState.getVersion() > state.getVersion());
+        assertSame(pausedState, mMediaApp.getState(supportedOperations));
+
+        mMediaApp.setPlayerCookie("newPlayerCookie");
+        assertEquals(
+                "newPlayerCookie", mMediaApp.getState(supportedOperations).getMediaAppSessionState().getPlayerCookie());
+    }
 }
\ No newline at end of file
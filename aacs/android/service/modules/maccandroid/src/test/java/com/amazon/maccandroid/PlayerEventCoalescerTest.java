@@ -0,0 +1,74 @@
+package com.amazon.maccandroid;
+
+import static org.junit.Assert.*;
+
+import com.amazon.maccandroid.model.PlayerEvents;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.EnumSet;
+
+public class PlayerEventCoalescerTest {
+    public static final String TEST_PLAYER_ID = "testPlayerId";
+    private PlayerEventCoalescer mClassUnderTest;
+    private MediaAppsStateReporter mMockMediaAppsStateReporter;
+
+    @Before
+    public void setUp() throws Exception {
+        mMockMediaAppsStateReporter = Mockito.mock(MediaAppsStateReporter.class);
+        Mockito.when(mMockMediaAppsStateReporter.getEventCoalescingWindow()).thenReturn(100L);
+        MediaAppsStateReporter.setTestStateReporter(mMockMediaAppsStateReporter);
+        mClassUnderTest = new PlayerEventCoalescer(TEST_PLAYER_ID);
+    }
+
+    @Test
+    public void testEventsReportedImmediatelyWithoutWindow() {
+        Mockito.when(mMockMediaAppsStateReporter.getEventCoalescingWindow()).thenReturn(0L);
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.PlaybackStarted));
+        Mockito.verify(mMockMediaAppsStateReporter)
+                .reportPlayerEvent(Mockito.eq(TEST_PLAYER_ID), Mockito.eq(EnumSet.of(PlayerEvents.PlaybackStarted)));
+    }
+
+    @Test
+    public void testRefreshEventsAreMerged() {
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.TrackChanged));
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.PlayModeChanged));
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.TrackChanged));
+        Mockito.verify(mMockMediaAppsStateReporter, Mockito.never())
+                .reportPlayerEvent(Mockito.anyString(), Mockito.anySet());
+
+        mClassUnderTest.flush();
+        Mockito.verify(mMockMediaAppsStateReporter)
+                .reportPlayerEvent(Mockito.eq(TEST_PLAYER_ID),
+                        Mockito.eq(EnumSet.of(PlayerEvents.TrackChanged, PlayerEvents.PlayModeChanged)));
+        assertEquals(2, mClassUnderTest.getMergedEventSetCount());
+        assertEquals(1, mClassUnderTest.getDroppedEventCount());
+    }
+
+    @Test
+    public void testTransitionsKeepTheirOrder() {
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.PlaybackStopped));
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.TrackChanged));
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.PlaybackNext));
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.PlaybackStarted, PlayerEvents.TrackChanged));
+        mClassUnderTest.add(EnumSet.of(PlayerEvents.PlaybackStarted));
+        mClassUnderTest.flush();
+
+        InOrder inOrder = Mockito.inOrder(mMockMediaAppsStateReporter);
+        inOrder.verify(mMockMediaAppsStateReporter)
+                .reportPlayerEvent(Mockito.eq(TEST_PLAYER_ID),
+                        Mockito.eq(EnumSet.of(PlayerEvents.PlaybackStopped, PlayerEvents.TrackChanged)));
+        inOrder.verify(mMockMediaAppsStateReporter)
+                .reportPlayerEvent(Mockito.eq(TEST_PLAYER_ID), Mockito.eq(EnumSet.of(PlayerEvents.PlaybackNext)));
+        inOrder.verify(mMockMediaAppsStateReporter)
+                .reportPlayerEvent(Mockito.eq(TEST_PLAYER_ID),
+                        Mockito.eq(EnumSet.of(PlayerEvents.PlaybackStarted, PlayerEvents.TrackChanged)));
+        Mockito.verify(mMockMediaAppsStateReporter, Mockito.times(3))
+                .reportPlayerEvent(Mockito.anyString(), Mockito.anySet());
+        assertEquals(2, mClassUnderTest.getMergedEventSetCount());
+        assertEquals(1, mClassUnderTest.getDroppedEventCount());
+    }
+}
@@ -78,6 +78,27 @@ JNIEXPORT jint JNICALL Java_com_amazon_aace_audio_AudioStream_read(
     }
 }
 
+JNIEXPORT jint JNICALL Java_com_amazon_aace_audio_AudioStream_readDirect(
+    JNIEnv* env,
+    jobject /* this */,
+    jlong ref,
+    jobject buffer,
+    jint offset,
+    jint size) {
+    try {
+        auto audioStreamBinder = AUDIO_STREAM_BINDER(ref);
+        ThrowIfNull(audioStreamBinder, "invalidAudioStreamBinder");
+
+        auto address = static_cast<char*>(env->GetDirectBufferAddress(buffer));
+        ThrowIfNull(address, "invalidDirectBuffer");
+
+        return static_cast<jint>(audioStreamBinder->getAudioStream()->read(address + offset, size));
+    } catch (const std::exception& ex) {
+        AACE_JNI_ERROR(TAG, "Java_com_amazon_aace_audio_AudioStream_readDirect", ex.what());
+        return 0;
+    }
+}
+
 JNIEXPORT jobject JNICALL
 Java_com_amazon_aace_audio_AudioStream_getEncoding(JNIEnv* env, jobject /* this */, jlong ref) {
     try {
@@ -99,6 +99,48 @@ JNIEXPORT jint JNICALL Java_com_amazon_aace_core_MessageStream_write(
     }
 }
 
+JNIEXPORT jint JNICALL Java_com_amazon_aace_core_MessageStream_readDirect(
+    JNIEnv* env,
+    jobject /* this */,
+    jlong ref,
+    jobject buffer,
+    jint offset,
+    jint size) {
+    try {
+        auto messageStreamBinder = Message_STREAM_BINDER(ref);
+        ThrowIfNull(messageStreamBinder, "invalidMessageStreamBinder");
+
+        auto address = static_cast<char*>(env->GetDirectBufferAddress(buffer));
+        ThrowIfNull(address, "invalidDirectBuffer");
+
+        return static_cast<jint>(messageStreamBinder->getMessageStream()->read(address + offset, size));
+    } catch (const std::exception& ex) {
+        AACE_JNI_ERROR(TAG, "Java_com_amazon_aace_core_MessageStream_readDirect", ex.what());
+        return 0;
+    }
+}
+
+JNIEXPORT jint JNICALL Java_com_amazon_aace_core_MessageStream_writeDirect(
+    JNIEnv* env,
+    jobject /* this */,
+    jlong ref,
+    jobject buffer,
+    jint offset,
+    jint size) {
+    try {
+        auto messageStreamBinder = Message_STREAM_BINDER(ref);
+        ThrowIfNull(messageStreamBinder, "invalidMessageStreamBinder");
+
+        auto address = static_cast<char*>(env->GetDirectBufferAddress(buffer));
+        ThrowIfNull(address, "invalidDirectBuffer");
+
+        return static_cast<jint>(messageStreamBinder->getMessageStream()->write(address + offset, size));
+    } catch (const std::exception& ex) {
+        AACE_JNI_ERROR(TAG, "Java_com_amazon_aace_core_MessageStream_writeDirect", ex.what());
+        return 0;
+    }
+}
+
 JNIEXPORT jobject JNICALL Java_com_amazon_aace_core_MessageStream_getMode(JNIEnv* env, jobject /* this */, jlong ref) {
     try {
         auto messageStreamBinder = Message_STREAM_BINDER(ref);
@@ -17,6 +17,8 @@ package com.amazon.aace.audio;
 
 import com.amazon.aace.core.NativeRef;
 
+import java.nio.ByteBuffer;
+
 final public class AudioStream extends NativeRef {
     /**
      * Describes the playback state of the platform media player
@@ -118,6 +120,28 @@ final public class AudioStream extends NativeRef {
         return read(getNativeRef(), data, offset, size);
     }
 
+    /**
+     * Reads audio data from the @c AudioStream into a direct buffer, without copying it through the Java heap.
+     * Data is read from the position of the buffer up to its limit, and the position is advanced by the number of
+     * bytes read.
+     *
+     * @param  buffer The direct buffer where audio data should be copied, see @c ByteBuffer.allocateDirect()
+     * @return The number of bytes read, 0 if the end of stream is reached or data is not currently available,
+     * or -1 if an error occurred
+     * @throws IllegalArgumentException if @c buffer is not a direct buffer
+     */
+    final public int read(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("AudioStream requires a direct ByteBuffer");
+        }
+        int position = buffer.position();
+        int size = readDirect(getNativeRef(), buffer, position, buffer.remaining());
+        if (size > 0) {
+            buffer.position(position + size);
+        }
+        return size;
+    }
+
     /**
      * @return @c true if the @c AudioStream is closed and no more data is available to read.
      */
@@ -157,6 +181,7 @@ final public class AudioStream extends NativeRef {
     // Native Engine JNI methods
     private native void disposeBinder(long nativeRef);
     private native int read(long nativeObject, byte[] data, long offset, long size);
+    private native int readDirect(long nativeObject, ByteBuffer buffer, int offset, int size);
     private native boolean isClosed(long nativeObject);
     private native Encoding getEncoding(long nativeObject);
     private native AudioFormat getAudioFormat(long nativeObject);
@@ -17,6 +17,8 @@ package com.amazon.aace.core;
 
 import com.amazon.aace.core.NativeRef;
 
+import java.nio.ByteBuffer;
+
 public class MessageStream extends NativeRef {
     /// An enumeration representing the stream operation mode.
     public enum Mode {
@@ -78,6 +80,26 @@ public class MessageStream extends NativeRef {
         return read(getNativeRef(), data, offset, size);
     }
 
+    /**
+     * Reads audio data from the @c MessageStream into a direct buffer, without copying it through the Java heap.
+     * Data is read from the position of the buffer up to its limit, and the position is advanced by the number of
+     * bytes read.
+     *
+     * @param  buffer The direct buffer where audio data should be copied, see @c ByteBuffer.allocateDirect()
+     * @return The number of bytes read, 0 if the end of stream is reached or data is not currently available,
+     * or -1 if an error occurred
+     * @throws IllegalArgumentException if @c buffer is not a direct buffer
+     */
+    final public int read(ByteBuffer buffer) {
+        checkDirect(buffer);
+        int position = buffer.position();
+        int size = readDirect(getNativeRef(), buffer, position, buffer.remaining());
+        if (size > 0) {
+            buffer.position(position + size);
+        }
+        return size;
+    }
+
     /**
      * Writes data to the @c MessageStream.
      *
@@ -102,6 +124,26 @@ public class MessageStream extends NativeRef {
         return write(getNativeRef(), data, offset, size);
     }
 
+    /**
+     * Writes data from a direct buffer to the @c MessageStream, without copying it through the Java heap. Data is
+     * written from the position of the buffer up to its limit, and the position is advanced by the number of bytes
+     * written.
+     *
+     * @param buffer The direct buffer holding the data to be written to the stream
+     * @return The number of bytes successfully written to the stream or a negative error code
+     * if data could not be written
+     * @throws IllegalArgumentException if @c buffer is not a direct buffer
+     */
+    final public int write(ByteBuffer buffer) {
+        checkDirect(buffer);
+        int position = buffer.position();
+        int size = writeDirect(getNativeRef(), buffer, position, buffer.remaining());
+        if (size > 0) {
+            buffer.position(position + size);
+        }
+        return size;
+    }
+
     /**
      * @return @c true if the @c MessageStream is closed and no more data is available to read.
      */
@@ -116,6 +158,12 @@ public class MessageStream extends NativeRef {
         return getMode(getNativeRef());
     }
 
+    private static void checkDirect(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("MessageStream requires a direct ByteBuffer");
+        }
+    }
+
     // NativeRef implementation
     protected long createNativeRef() {
         return 0;
@@ -129,6 +177,8 @@ public class MessageStream extends NativeRef {
     private native void disposeBinder(long nativeRef);
     private native int read(long nativeObject, byte[] data, long offset, long size);
     private native int write(long nativeObject, byte[] data, long offset, long size);
+    private native int readDirect(long nativeObject, ByteBuffer buffer, int offset, int size);
+    private native int writeDirect(long nativeObject, ByteBuffer buffer, int offset, int size);
     private native boolean isClosed(long nativeObject);
     private native Mode getMode(long nativeObject);
 }